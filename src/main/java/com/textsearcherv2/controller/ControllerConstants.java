@@ -11,5 +11,20 @@ public class ControllerConstants {
     public static final int CORES = Runtime.getRuntime().availableProcessors();
     public static final String FILE_ID_PATH_VAR = "/{fileId}";
     public static final String ERROR = "/errors";
+    public static final String JOBS = "/jobs";
+    public static final String JOB_ID_PATH_VAR = "/{jobId}";
+    public static final String WORKER = "/worker";
+    public static final String CHUNKS = "/chunks";
+    public static final String ADMISSION = "/admission";
+    public static final String CHUNK_CACHE = "/chunk-cache";
+    public static final String MATCHES = "/matches";
+    public static final String TIMELINE = "/timeline";
+    public static final String STATISTICS = "/statistics";
+    public static final String EXPORT = "/export";
+    public static final String REACTIVE = "/reactive";
+    public static final String SUMMARY = "/summary";
+    public static final String PROFILING_RECORDING = "/profiling/recording";
+    public static final String DUMP = "/dump";
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
 
 }
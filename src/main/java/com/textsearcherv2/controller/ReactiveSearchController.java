@@ -0,0 +1,97 @@
+package com.textsearcherv2.controller;
+
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.NameMatch;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.SearchSummary;
+import com.textsearcherv2.service.AdmissionControlService;
+import com.textsearcherv2.service.ReactiveSearchService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.textsearcherv2.controller.ControllerConstants.*;
+
+/**
+ * Searches documents within the request instead of a job. The responses are streamed from the reactive pipeline of
+ * {@link ReactiveSearchService}, which holds no request thread while documents download or chunks are matched.
+ */
+@RestController
+@RequestMapping(value = V1 + REACTIVE)
+@Log4j2
+public class ReactiveSearchController {
+    private static final Logger logger = LogManager.getLogger(ReactiveSearchController.class);
+
+    @Autowired
+    private ReactiveSearchService reactiveSearchService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    /**
+     * Endpoint to stream the matches of a list of URLs as they are found.
+     *
+     * @param urls     List of URLs to search.
+     * @param mode     The match mode, EXACT or FUZZY.
+     * @param maxEdits The maximum edit distance of FUZZY mode.
+     * @param clientId The client the search counts against, from the {@code X-Client-Id} header, resolved like the
+     *                 client of a job, see {@link TextSearcherController#processUrls}.
+     * @param request  The HTTP request, for its principal and remote address.
+     * @return The matches as newline delimited JSON, in the order of the URLs and then of lines and columns.
+     * @throws com.textsearcherv2.exception.AdmissionRejectedException if the job queue or the quota of the client
+     * is full, answered with 429 (Too Many Requests).
+     */
+    @PostMapping(value = MATCHES, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<NameMatch> streamMatches(@RequestBody List<String> urls,
+                                         @RequestParam(defaultValue = "EXACT") MatchMode mode,
+                                         @RequestParam(defaultValue = "1") int maxEdits,
+                                         @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                         HttpServletRequest request) {
+        logger.info("Streaming the matches of {} URLs", urls.size());
+        return reactiveSearchService.matches(urls, options(mode, maxEdits), client(clientId, request));
+    }
+
+    /**
+     * Endpoint to count the matches of every name in a list of URLs.
+     *
+     * @param urls     List of URLs to search.
+     * @param mode     The match mode, EXACT or FUZZY.
+     * @param maxEdits The maximum edit distance of FUZZY mode.
+     * @param clientId The client the search counts against, from the {@code X-Client-Id} header, resolved like the
+     *                 client of a job, see {@link TextSearcherController#processUrls}.
+     * @param request  The HTTP request, for its principal and remote address.
+     * @return The summary of the search, with the documents that could not be searched.
+     * @throws com.textsearcherv2.exception.AdmissionRejectedException if the job queue or the quota of the client
+     * is full, answered with 429 (Too Many Requests).
+     */
+    @PostMapping(value = SUMMARY)
+    public Mono<SearchSummary> summarize(@RequestBody List<String> urls,
+                                         @RequestParam(defaultValue = "EXACT") MatchMode mode,
+                                         @RequestParam(defaultValue = "1") int maxEdits,
+                                         @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                         HttpServletRequest request) {
+        logger.info("Summarizing the matches of {} URLs", urls.size());
+        return reactiveSearchService.summary(urls, options(mode, maxEdits), client(clientId, request));
+    }
+
+    private String client(String clientId, HttpServletRequest request) {
+        return admissionControlService.clientOf(
+                request.getUserPrincipal() == null ? null : request.getUserPrincipal().getName(),
+                request.getRemoteAddr(), clientId);
+    }
+
+    private SearchOptions options(MatchMode mode, int maxEdits) {
+        SearchOptions options = new SearchOptions();
+        options.setMatchMode(mode);
+        options.setMaxEdits(maxEdits);
+        return options;
+    }
+}
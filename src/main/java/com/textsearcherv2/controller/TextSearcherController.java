@@ -1,15 +1,39 @@
 package com.textsearcherv2.controller;
 
+import com.textsearcherv2.exception.JobNotCompletedException;
+import com.textsearcherv2.model.AdmissionStats;
+import com.textsearcherv2.model.ChunkCacheStats;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.JobStatistics;
+import com.textsearcherv2.model.MatchPage;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.RecordingStatus;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TraceFormat;
+import com.textsearcherv2.service.AdmissionControlService;
+import com.textsearcherv2.service.AggregatorService;
+import com.textsearcherv2.service.ChunkCacheService;
 import com.textsearcherv2.service.ProcessingService;
+import com.textsearcherv2.service.ProfilingService;
+import com.textsearcherv2.service.ResultExportService;
+import com.textsearcherv2.service.ResultQueryService;
+import com.textsearcherv2.service.TracingService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.textsearcherv2.controller.ControllerConstants.*;
 
@@ -24,23 +48,313 @@ public class TextSearcherController {
     @Autowired
     private ProcessingService processingService;
 
+    @Autowired
+    private AggregatorService aggregatorService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private ChunkCacheService chunkCacheService;
+
+    @Autowired
+    private ResultQueryService resultQueryService;
+
+    @Autowired
+    private TracingService tracingService;
+
+    @Autowired
+    private ResultExportService resultExportService;
+
+    @Autowired
+    private ProfilingService profilingService;
+
     /**
      * Endpoint to process a list of URLs. Receives a POST request with a JSON body containing a list of URLs as strings.
-     * This method starts the processing of URLs and immediate response is returned to the caller.
+     * This method submits a batch job over the URLs and the running job is returned to the caller immediately.
      *
-     * @param urls A list of URLs received in the request body to be processed.
-     * @return A {@link ResponseEntity} the HTTP Status 200 (OK) and a message indicating the successful start of the process.
+     * @param urls     A list of URLs received in the request body to be processed.
+     * @param mode     The match mode, {@code EXACT} (default), {@code FUZZY} or {@code REGEX}.
+     * @param maxEdits The maximum edit distance between a word and a name in {@code FUZZY} mode, 0 to 2.
+     * @param pattern  The regular expression to search for in {@code REGEX} mode.
+     * @param priority The admission lane of the job, {@code HIGH}, {@code NORMAL} (default) or {@code LOW}.
+     * @param follow   Whether to scan only the lines appended to each document since its last follow scan, and
+     *                 return them merged with the earlier results. Not supported in {@code REGEX} mode.
+     * @param trace    Whether to trace the job whatever the sample rate, see {@link #getTimeline(String, TraceFormat)}.
+     * @param statistics Whether to compute per-name statistics and co-occurrences while matching, see
+     *                 {@link #getStatistics(String)}.
+     * @param names    The names to search for in {@code EXACT} and {@code FUZZY} mode, repeated or comma separated.
+     *                 Defaults to the built-in dictionary.
+     * @param timeoutMillis The deadline of the job in milliseconds from its submission, queueing included, after
+     *                 which it is cancelled. 0 (default) for none.
+     * @param clientId The client the job counts against, from the {@code X-Client-Id} header. Only honoured when
+     *                 the request comes from a proxy listed in {@code textsearcher.admission.trusted-proxies};
+     *                 otherwise the client is the authenticated principal, or else the remote address.
+     * @param request  The HTTP request, for its principal and remote address.
+     * @return A {@link ResponseEntity} with HTTP Status 202 (Accepted) and the submitted job, running or queued,
+     * whose id can be used to fetch the results.
      *
      * <p>Example of a Curl command:
-     * <br>curl -X POST -H "Content-Type: application/json" -d '["http://example1.com", "http://example2.com"]' http://localhost:8080/PROCESS_URLS</p>
+     * <br>curl -X POST -H "Content-Type: application/json" -H "X-Client-Id: reports" -d '["http://example1.com", "http://example2.com"]' http://localhost:9095/v1/process-url?mode=FUZZY&amp;maxEdits=2&amp;priority=LOW</p>
      *
-     * @throws IllegalArgumentException if the urls list is null or empty.
+     * @throws IllegalArgumentException if the urls list is null, empty or too long, an option is out of range or
+     * the pattern does not compile.
+     * @throws com.textsearcherv2.exception.AdmissionRejectedException if the job queue or the quota of the client
+     * is full, answered with 429 (Too Many Requests).
      */
     @PostMapping(value = PROCESS_URL)
-    public ResponseEntity<String> processUrls(@RequestBody List<String> urls) {
-        logger.info("Received request to process URLs: {}", urls);
-        processingService.start(urls, CHUNK_SIZE_LIMIT);
-        logger.info("Processing of URLs started");
-        return ResponseEntity.ok("Processing Finished");
+    public ResponseEntity<SearchJob> processUrls(@RequestBody List<String> urls,
+                                                 @RequestParam(defaultValue = "EXACT") MatchMode mode,
+                                                 @RequestParam(defaultValue = "1") int maxEdits,
+                                                 @RequestParam(required = false) String pattern,
+                                                 @RequestParam(defaultValue = "NORMAL") JobPriority priority,
+                                                 @RequestParam(defaultValue = "false") boolean follow,
+                                                 @RequestParam(defaultValue = "false") boolean trace,
+                                                 @RequestParam(defaultValue = "false") boolean statistics,
+                                                 @RequestParam(required = false) List<String> names,
+                                                 @RequestParam(defaultValue = "0") long timeoutMillis,
+                                                 @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                                 HttpServletRequest request) {
+        logger.info("Received request to process URLs: {} in {} mode", urls, mode);
+        SearchOptions options = new SearchOptions();
+        options.setMatchMode(mode);
+        options.setMaxEdits(maxEdits);
+        options.setPattern(pattern);
+        options.setFollow(follow);
+        options.setTrace(trace);
+        options.setStatistics(statistics);
+        options.setNames(names);
+        options.setTimeoutMillis(timeoutMillis);
+        String client = admissionControlService.clientOf(
+                request.getUserPrincipal() == null ? null : request.getUserPrincipal().getName(),
+                request.getRemoteAddr(), clientId);
+        SearchJob job = processingService.submit(urls, CHUNK_SIZE_LIMIT, options, client, priority);
+        logger.info("Processing of URLs started as job {}", job.getJobId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * Endpoint to fetch a batch job. By default, the results are partitioned per document; with {@code merged=true}
+     * the results of all documents are merged per name, each position attributed to its document.
+     *
+     * @param jobId  The id of the job.
+     * @param merged Whether to return the merged cross-document view instead of the job.
+     * @return A {@link ResponseEntity} with the job, or with the merged view once the job has completed.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl http://localhost:9095/v1/jobs/{jobId}?merged=true</p>
+     */
+    @GetMapping(value = JOBS + JOB_ID_PATH_VAR)
+    public ResponseEntity<?> getJob(@PathVariable String jobId,
+                                    @RequestParam(defaultValue = "false") boolean merged) {
+        SearchJob job = processingService.getJob(jobId);
+        if (merged && job.getResultsByDocument() != null) {
+            return ResponseEntity.ok(aggregatorService.mergeDocumentResults(job.getResultsByDocument()));
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Endpoint to cancel a batch job. A queued job leaves the queue; a running job stops fetching and matching its
+     * documents and completes without results. A finished job is returned unchanged.
+     *
+     * @param jobId The id of the job.
+     * @return A {@link ResponseEntity} with the job, {@code CANCELLED} with its {@code cancellationReason} unless it
+     * had already finished.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -X DELETE http://localhost:9095/v1/jobs/{jobId}</p>
+     */
+    @DeleteMapping(value = JOBS + JOB_ID_PATH_VAR)
+    public ResponseEntity<SearchJob> cancelJob(@PathVariable String jobId) {
+        logger.info("Received request to cancel job {}", jobId);
+        return ResponseEntity.ok(processingService.cancel(jobId));
+    }
+
+    /**
+     * Endpoint to page through the matches of one name in a completed job, sorted by document URL, line and column.
+     *
+     * @param jobId  The id of the job.
+     * @param name   The name, or the matched text in {@code REGEX} mode.
+     * @param cursor The {@code nextCursor} of the previous page, omitted for the first page.
+     * @param limit  The maximum number of matches of the page, 1 to 1000.
+     * @return A {@link ResponseEntity} with the page, the total number of matches of the name and the cursor of the
+     * next page, null on the last page.
+     * @throws com.textsearcherv2.exception.JobNotCompletedException if the job is still queued or running, answered
+     * with 409 (Conflict).
+     *
+     * <p>Example of a Curl command:
+     * <br>curl "http://localhost:9095/v1/jobs/{jobId}/matches?name=John&amp;limit=100"</p>
+     */
+    @GetMapping(value = JOBS + JOB_ID_PATH_VAR + MATCHES)
+    public ResponseEntity<MatchPage> getMatches(@PathVariable String jobId,
+                                                @RequestParam String name,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(resultQueryService.page(processingService.getJob(jobId), name, cursor, limit));
+    }
+
+    /**
+     * Endpoint to fetch the timeline of a traced job: a span for the fetch of every document, for the reading,
+     * admission, queueing, matching and commit of every chunk, and for the aggregation of every document. While
+     * the job runs, the timeline holds the spans recorded so far.
+     *
+     * @param jobId  The id of the job.
+     * @param format {@code CHROME} (default) for the Trace Event format of chrome://tracing and Perfetto, or
+     *               {@code OTLP} for OpenTelemetry OTLP/JSON.
+     * @return A {@link ResponseEntity} with the timeline, or with HTTP Status 404 (Not Found) if the job was not
+     * traced or its trace was forgotten.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -o trace.json "http://localhost:9095/v1/jobs/{jobId}/timeline?format=CHROME"</p>
+     */
+    @GetMapping(value = JOBS + JOB_ID_PATH_VAR + TIMELINE)
+    public ResponseEntity<Map<String, Object>> getTimeline(@PathVariable String jobId,
+                                                           @RequestParam(defaultValue = "CHROME") TraceFormat format) {
+        processingService.getJob(jobId);
+        return tracingService.timeline(jobId, format)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Endpoint to fetch the statistics of a completed job submitted with {@code statistics=true}: per document, the
+     * count, first and last occurrence and per line window counts of every name, and the pairs of names most often
+     * found close to each other; across documents, the count of every name and the most frequent pairs.
+     *
+     * @param jobId The id of the job.
+     * @return A {@link ResponseEntity} with the statistics, or with HTTP Status 404 (Not Found) if the job was not
+     * submitted with statistics.
+     * @throws com.textsearcherv2.exception.JobNotCompletedException if the job is still queued or running, answered
+     * with 409 (Conflict).
+     *
+     * <p>Example of a Curl command:
+     * <br>curl http://localhost:9095/v1/jobs/{jobId}/statistics</p>
+     */
+    @GetMapping(value = JOBS + JOB_ID_PATH_VAR + STATISTICS)
+    public ResponseEntity<JobStatistics> getStatistics(@PathVariable String jobId) {
+        SearchJob job = processingService.getJob(jobId);
+        if (job.getCompletedAt() == null) {
+            throw new JobNotCompletedException(jobId);
+        }
+        return job.getStatistics() == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.getStatistics());
+    }
+
+    /**
+     * Endpoint to export the results of a completed job in the compact binary format read by
+     * {@link com.textsearcherv2.util.BinaryResultReader}: a dictionary of names and, per document and name, delta
+     * encoded varint columns of lines and columns. The export is streamed as it is written.
+     *
+     * @param jobId The id of the job.
+     * @return A {@link ResponseEntity} streaming the export as {@code application/x-textsearcher-results}.
+     * @throws com.textsearcherv2.exception.JobNotCompletedException if the job is still queued or running, answered
+     * with 409 (Conflict).
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -o results.tsrb http://localhost:9095/v1/jobs/{jobId}/export</p>
+     */
+    @GetMapping(value = JOBS + JOB_ID_PATH_VAR + EXPORT)
+    public ResponseEntity<StreamingResponseBody> exportResults(@PathVariable String jobId) {
+        SearchJob job = processingService.getJob(jobId);
+        if (job.getCompletedAt() == null) {
+            throw new JobNotCompletedException(jobId);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ResultExportService.CONTENT_TYPE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + jobId + ".tsrb\"")
+                .body(out -> resultExportService.export(job, out));
+    }
+
+    /**
+     * Endpoint to inspect admission control: running and queued jobs, jobs per client and the chunk bytes in
+     * memory, each with its limit.
+     *
+     * @return A {@link ResponseEntity} with the admission statistics.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl http://localhost:9095/v1/admission</p>
+     */
+    @GetMapping(value = ADMISSION)
+    public ResponseEntity<AdmissionStats> getAdmissionStats() {
+        return ResponseEntity.ok(admissionControlService.stats());
+    }
+
+    /**
+     * Endpoint to inspect the chunk match cache.
+     *
+     * @return A {@link ResponseEntity} with HTTP Status 200 (OK) and the size, budget, hit and miss counts and hit
+     * rate of the cache.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl http://localhost:9095/v1/chunk-cache</p>
+     */
+    @GetMapping(value = CHUNK_CACHE)
+    public ResponseEntity<ChunkCacheStats> getChunkCacheStats() {
+        return ResponseEntity.ok(chunkCacheService.stats());
+    }
+
+    /**
+     * Endpoint to start a Java Flight Recorder recording of the service, with the events of the search pipeline:
+     * chunks fetched, matched and merged and documents aggregated.
+     *
+     * @param settings The JFR configuration of the JVM events, {@code profile} (default) or {@code default}.
+     * @return A {@link ResponseEntity} with HTTP Status 201 (Created) and the status of the recording.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -X POST http://localhost:9095/v1/profiling/recording?settings=profile</p>
+     *
+     * @throws IllegalArgumentException if the configuration does not exist.
+     * @throws com.textsearcherv2.exception.RecordingStateException if a recording is already running, answered with
+     * 409 (Conflict).
+     */
+    @PostMapping(value = PROFILING_RECORDING)
+    public ResponseEntity<RecordingStatus> startRecording(
+            @RequestParam(value = "settings", defaultValue = "profile") String settings) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(profilingService.start(settings));
+    }
+
+    /**
+     * Endpoint to inspect the running recording, or the last one stopped.
+     *
+     * @return A {@link ResponseEntity} with the status of the recording and the file it was last dumped to.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl http://localhost:9095/v1/profiling/recording</p>
+     */
+    @GetMapping(value = PROFILING_RECORDING)
+    public ResponseEntity<RecordingStatus> getRecording() {
+        return ResponseEntity.ok(profilingService.status());
+    }
+
+    /**
+     * Endpoint to dump the running recording to a file of the dump directory of the service. The recording goes on.
+     *
+     * @return A {@link ResponseEntity} with the status of the recording and the file it was dumped to.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -X POST http://localhost:9095/v1/profiling/recording/dump</p>
+     *
+     * @throws com.textsearcherv2.exception.RecordingStateException if no recording is running, answered with 409
+     * (Conflict).
+     */
+    @PostMapping(value = PROFILING_RECORDING + DUMP)
+    public ResponseEntity<RecordingStatus> dumpRecording() {
+        return ResponseEntity.ok(profilingService.dump());
+    }
+
+    /**
+     * Endpoint to stop the running recording and dump it to a file of the dump directory of the service.
+     *
+     * @return A {@link ResponseEntity} with the status of the stopped recording and the file it was dumped to.
+     *
+     * <p>Example of a Curl command:
+     * <br>curl -X DELETE http://localhost:9095/v1/profiling/recording</p>
+     *
+     * @throws com.textsearcherv2.exception.RecordingStateException if no recording is running, answered with 409
+     * (Conflict).
+     */
+    @DeleteMapping(value = PROFILING_RECORDING)
+    public ResponseEntity<RecordingStatus> stopRecording() {
+        return ResponseEntity.ok(profilingService.stop());
     }
 }
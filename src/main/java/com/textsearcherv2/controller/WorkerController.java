@@ -0,0 +1,43 @@
+package com.textsearcherv2.controller;
+
+import com.textsearcherv2.model.ChunkResult;
+import com.textsearcherv2.model.ChunkTask;
+import com.textsearcherv2.service.ClusterCoordinatorService;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import static com.textsearcherv2.controller.ControllerConstants.*;
+
+/**
+ * The worker side of a multi-node deployment: matches chunks sent by a coordinator node. Every instance exposes it,
+ * so any instance can act as a worker.
+ */
+@RestController
+@RequestMapping(value = V1 + WORKER)
+@Log4j2
+public class WorkerController {
+    private static final Logger logger = LogManager.getLogger(WorkerController.class);
+
+    @Autowired
+    private ClusterCoordinatorService clusterCoordinatorService;
+
+    /**
+     * Endpoint to match one chunk on behalf of a coordinator.
+     *
+     * @param task The chunk, starting at line 0, and the search options of the job.
+     * @return A {@link ResponseEntity} with the chunk result, line numbers relative to the chunk.
+     */
+    @PostMapping(value = CHUNKS)
+    public ResponseEntity<ChunkResult> matchChunk(@RequestBody ChunkTask task) {
+        if (task.getChunk() == null || task.getChunk().getText() == null || task.getOptions() == null) {
+            throw new IllegalArgumentException("A chunk and its options are required");
+        }
+        task.getOptions().validate();
+        logger.debug("Matching chunk {} for a coordinator", task.getChunk().getIndex());
+        return ResponseEntity.ok(clusterCoordinatorService.matchLocally(task, 0, ClusterCoordinatorService.LOCAL_WORKER));
+    }
+}
@@ -1,9 +1,14 @@
 package com.textsearcherv2.controller.error;
 
 import com.textsearcherv2.controller.TextSearcherController;
+import com.textsearcherv2.exception.AdmissionRejectedException;
 import com.textsearcherv2.exception.InvalidFileException;
+import com.textsearcherv2.exception.JobNotCompletedException;
+import com.textsearcherv2.exception.JobNotFoundException;
+import com.textsearcherv2.exception.RecordingStateException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -18,4 +23,36 @@ public class GlobalExceptionHandler {
         logger.error("Error: ", ex);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex) {
+        logger.error("Error: ", ex);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<String> handleJobNotFound(JobNotFoundException ex) {
+        logger.warn("Error: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(JobNotCompletedException.class)
+    public ResponseEntity<String> handleJobNotCompleted(JobNotCompletedException ex) {
+        logger.warn("Error: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(RecordingStateException.class)
+    public ResponseEntity<String> handleRecordingState(RecordingStateException ex) {
+        logger.warn("Error: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> handleAdmissionRejected(AdmissionRejectedException ex) {
+        logger.warn("Rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+}
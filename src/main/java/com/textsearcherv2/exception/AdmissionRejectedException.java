@@ -0,0 +1,17 @@
+package com.textsearcherv2.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a job is not admitted because the queue or the quota of its client is full. The client should retry
+ * after {@link #getRetryAfterSeconds()}.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
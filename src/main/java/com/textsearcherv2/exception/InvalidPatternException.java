@@ -0,0 +1,7 @@
+package com.textsearcherv2.exception;
+
+public class InvalidPatternException extends IllegalArgumentException {
+    public InvalidPatternException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
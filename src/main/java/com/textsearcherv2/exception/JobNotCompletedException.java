@@ -0,0 +1,7 @@
+package com.textsearcherv2.exception;
+
+public class JobNotCompletedException extends RuntimeException {
+    public JobNotCompletedException(String jobId) {
+        super("Job has not completed yet: " + jobId);
+    }
+}
@@ -0,0 +1,7 @@
+package com.textsearcherv2.exception;
+
+public class RegexTimeoutException extends RuntimeException {
+    public RegexTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * This class represents a snapshot of the admission control state: running jobs, queued jobs per lane, jobs per
+ * client and the chunk bytes held in memory, each with its limit.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdmissionStats {
+    private int runningJobs;
+    private int maxRunningJobs;
+    private Map<JobPriority, Integer> queuedJobs;
+    private int maxQueuedJobs;
+    private Map<String, Integer> jobsByClient;
+    private int maxJobsPerClient;
+    private long inFlightBytes;
+    private long maxInFlightBytes;
+    private long rejectedJobs;
+}
@@ -0,0 +1,13 @@
+package com.textsearcherv2.model;
+
+/**
+ * How the chunk match cache served a chunk.
+ */
+public enum ChunkCacheOutcome {
+    /** The positions of the chunk were found in the cache. */
+    HIT,
+    /** The chunk was matched and its positions stored in the cache. */
+    MISS,
+    /** The chunk was matched without the cache: the cache is disabled or the chunk is not cacheable. */
+    BYPASS
+}
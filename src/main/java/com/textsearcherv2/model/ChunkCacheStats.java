@@ -0,0 +1,22 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents a snapshot of the chunk match cache: its size against its memory budget, and how often
+ * chunks were served from it since startup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkCacheStats {
+    private int entries;
+    private long bytes;
+    private long maxBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -0,0 +1,29 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents one record of the checkpoint log of a document: the positions matched in a chunk, with
+ * absolute line numbers, and how far the document was read once the chunk was done.
+ *
+ * <p>
+ * {@code endOffset} is the byte offset of the first line following the chunk and {@code endLine} its line number,
+ * so a scan resumed from the record starts with a Range request at {@code endOffset}. A record with
+ * {@code endOfDocument} set marks the document as fully scanned and carries no positions.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkCheckpoint {
+    private int chunkIndex;
+    private long endOffset;
+    private int endLine;
+    private Map<String, List<TextPosition>> positionsByName;
+    private boolean endOfDocument;
+}
@@ -0,0 +1,27 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the partial result of matching one chunk on a worker node.
+ *
+ * <p>
+ * Line numbers in {@code positionsByName} are relative to the first line of the chunk; the coordinator shifts
+ * them by {@code firstLine} when merging. {@code worker} names the node that produced the result, or
+ * {@code local} when the coordinator matched the chunk itself.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkResult {
+    private int chunkIndex;
+    private int firstLine;
+    private Map<String, List<TextPosition>> positionsByName;
+    private String worker;
+}
@@ -0,0 +1,17 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents a chunk sent by a coordinator to a worker node, together with the options to match it
+ * with.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkTask {
+    private TextChunk chunk;
+    private SearchOptions options;
+}
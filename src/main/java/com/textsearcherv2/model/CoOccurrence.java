@@ -0,0 +1,18 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents two names found close to each other, with the number of times they were. The count is a
+ * count-min estimate: it may exceed the true count, never fall short of it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoOccurrence {
+    private String first;
+    private String second;
+    private long count;
+}
@@ -0,0 +1,30 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the point a document scan resumes from: the byte offset, line number and chunk index of
+ * the first chunk not yet matched, and the positions matched before it.
+ *
+ * <p>A new scan starts from {@link #start()}.</p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentCheckpoint {
+    private long offset;
+    private int nextLine;
+    private int nextChunkIndex;
+    private boolean complete;
+    private Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+
+    public static DocumentCheckpoint start() {
+        return new DocumentCheckpoint();
+    }
+}
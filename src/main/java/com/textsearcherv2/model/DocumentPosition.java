@@ -0,0 +1,18 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents a match position attributed to the document it was found in.
+ * It is the element type of the merged, cross-document view of a {@link SearchJob}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentPosition {
+    private String documentUrl;
+    private int lineNumber;
+    private int columnNumber;
+}
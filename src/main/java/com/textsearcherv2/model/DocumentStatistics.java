@@ -0,0 +1,20 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * This class represents the statistics of the names found in one document, and the names most often found close
+ * to each other in it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentStatistics {
+    private String documentUrl;
+    private List<NameStats> names;
+    private List<CoOccurrence> coOccurrences;
+}
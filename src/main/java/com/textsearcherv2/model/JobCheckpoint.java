@@ -0,0 +1,25 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This class represents the durable description of a running job, written when the job starts so that it can be
+ * resubmitted with the same id, documents and options after a restart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+    private String jobId;
+    private List<String> urls;
+    private int linesPerPart;
+    private SearchOptions options;
+    private Instant submittedAt;
+    private String clientId;
+    private JobPriority priority;
+}
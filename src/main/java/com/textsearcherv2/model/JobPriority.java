@@ -0,0 +1,12 @@
+package com.textsearcherv2.model;
+
+/**
+ * The admission lanes of a {@link SearchJob}. A queued job is started before every queued job of a lower lane.
+ */
+public enum JobPriority {
+    /** Interactive searches that should start ahead of batch work. */
+    HIGH,
+    NORMAL,
+    /** Bulk batches that only use capacity left over by the other lanes. */
+    LOW
+}
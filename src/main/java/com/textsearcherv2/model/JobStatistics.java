@@ -0,0 +1,29 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the statistics of a job submitted with {@code statistics=true}, computed while its chunks
+ * were matched.
+ *
+ * <p>
+ * {@code windowLines} is the size of the line windows of the per-name counts and {@code coOccurrenceChars} the
+ * distance within which two names on one line co-occur. {@code coOccurrences} are the pairs most often found
+ * together across all documents.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobStatistics {
+    private int windowLines;
+    private int coOccurrenceChars;
+    private Map<String, Long> matchesByName;
+    private List<CoOccurrence> coOccurrences;
+    private List<DocumentStatistics> documents;
+}
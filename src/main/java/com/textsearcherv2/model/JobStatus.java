@@ -0,0 +1,12 @@
+package com.textsearcherv2.model;
+
+/**
+ * Lifecycle states of a {@link SearchJob}.
+ */
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
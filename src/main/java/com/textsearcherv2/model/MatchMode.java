@@ -0,0 +1,13 @@
+package com.textsearcherv2.model;
+
+/**
+ * The ways a job can match its documents against the name set.
+ */
+public enum MatchMode {
+    /** Every occurrence of a name as a substring of a line. */
+    EXACT,
+    /** Whole words within a bounded edit distance of a name, tolerating typos and OCR noise. */
+    FUZZY,
+    /** Every match of a regular expression, keyed by the matched text. */
+    REGEX
+}
@@ -0,0 +1,26 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * This class represents one page of the matches of a name in a completed job, sorted by document URL, line and
+ * column.
+ *
+ * <p>
+ * {@code nextCursor} fetches the page after this one and is null on the last page; {@code total} counts the matches
+ * of the name over all pages.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchPage {
+    private String name;
+    private List<DocumentPosition> matches;
+    private long total;
+    private String nextCursor;
+}
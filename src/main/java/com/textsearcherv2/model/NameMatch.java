@@ -0,0 +1,19 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents one match of a name, attributed to its document. It is the element of the match stream of
+ * the reactive search endpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NameMatch {
+    private String name;
+    private String documentUrl;
+    private int lineNumber;
+    private int columnNumber;
+}
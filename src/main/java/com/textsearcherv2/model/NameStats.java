@@ -0,0 +1,28 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents the positional statistics of one name in one document: how often it occurs, where it first
+ * and last occurs, and how often it occurs in every window of lines.
+ *
+ * <p>
+ * {@code countsByWindow} maps the index of a window, its first line divided by the window size, to the number of
+ * matches in it; windows without matches are left out.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NameStats {
+    private String name;
+    private long count;
+    private TextPosition first;
+    private TextPosition last;
+    private Map<Integer, Long> countsByWindow = new TreeMap<>();
+}
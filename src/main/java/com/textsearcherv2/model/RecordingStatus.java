@@ -0,0 +1,25 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * This class represents the state of the flight recording of the service, running or the last one stopped, and
+ * the file it was last dumped to.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecordingStatus {
+    private String name;
+    private boolean running;
+    private String settings;
+    private Instant startedAt;
+    private Instant stoppedAt;
+    private long recordedBytes;
+    private String dumpFile;
+    private long dumpBytes;
+}
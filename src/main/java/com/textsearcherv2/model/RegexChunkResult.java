@@ -0,0 +1,32 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the regex matches a chunk owns, i.e. the matches starting inside the chunk.
+ *
+ * <p>
+ * {@code firstMatchStart} and {@code matchesEnd} are offsets relative to the start of the chunk text. A match
+ * may run past the end of the chunk into its lookahead, in which case {@code matchesEnd} exceeds the chunk length
+ * and the next chunk must not report matches starting before that point.
+ * </p>
+ *
+ * <p>
+ * {@code hitEnd} tells that the scan read up to the end of the chunk and its lookahead, so more text could have
+ * lengthened, added or removed a match: the matches are final only if the lookahead ran to the end of the content.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegexChunkResult {
+    private Map<String, List<TextPosition>> positionsByName;
+    private int firstMatchStart;
+    private int matchesEnd;
+    private boolean hitEnd;
+}
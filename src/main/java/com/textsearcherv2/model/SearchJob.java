@@ -0,0 +1,71 @@
+package com.textsearcherv2.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.textsearcherv2.util.NameMatchIndex;
+import com.textsearcherv2.util.OffHeapPositionStore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents one batch search submitted through the API.
+ *
+ * <p>
+ * A job covers a list of document URLs. While the job is running its partial results live in the
+ * {@code AggregatorService}; once every document is done they are moved into {@code resultsByDocument},
+ * keyed by document URL and then by matched name, and the aggregator partition is released.
+ * </p>
+ *
+ * <p>
+ * A job waiting for admission is {@code QUEUED}; {@code clientId} and {@code priority} decide its quota and lane.
+ * </p>
+ *
+ * <p>
+ * With off-heap results {@code resultsByDocument} are read-only views of {@code positionStore}, which is closed when
+ * the job is evicted.
+ * </p>
+ *
+ * <p>
+ * {@code matchIndexes} holds the sorted per name indexes built by the result query API once the job completed.
+ * </p>
+ *
+ * <p>
+ * {@code statistics} holds the statistics of a job submitted with them, once it completed.
+ * </p>
+ *
+ * <p>
+ * A job cancelled on request or at its deadline is {@code CANCELLED}, without results, and
+ * {@code cancellationReason} tells why.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+public class SearchJob {
+    private String jobId;
+    private List<String> urls;
+    private SearchOptions options;
+    private String clientId;
+    private JobPriority priority = JobPriority.NORMAL;
+    private volatile JobStatus status = JobStatus.RUNNING;
+    private Instant submittedAt;
+    private volatile Instant completedAt;
+    private volatile Map<String, Map<String, List<TextPosition>>> resultsByDocument;
+    private Map<String, String> failedDocuments = new ConcurrentHashMap<>();
+    private volatile String cancellationReason;
+    @JsonIgnore
+    private volatile OffHeapPositionStore positionStore;
+    @JsonIgnore
+    private volatile JobStatistics statistics;
+    @JsonIgnore
+    private final Map<String, NameMatchIndex> matchIndexes = new ConcurrentHashMap<>();
+
+    public SearchJob(String jobId, List<String> urls) {
+        this.jobId = jobId;
+        this.urls = urls;
+        this.submittedAt = Instant.now();
+    }
+}
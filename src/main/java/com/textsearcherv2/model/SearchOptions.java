@@ -0,0 +1,81 @@
+package com.textsearcherv2.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * This class holds the per-job options of a search, threaded from the API down to the matcher.
+ */
+@Data
+@NoArgsConstructor
+public class SearchOptions {
+    public static final int MAX_SUPPORTED_EDITS = 2;
+    public static final int MAX_QUERY_NAMES = 10000;
+    public static final int MAX_NAME_LENGTH = 256;
+
+    private MatchMode matchMode = MatchMode.EXACT;
+    private int maxEdits = 1;
+    private String pattern;
+    // rescan only the lines appended since the last follow scan of the same document
+    private boolean follow;
+    // record a trace of the job whatever the sample rate
+    private boolean trace;
+    // compute per-name statistics and co-occurrences while matching
+    private boolean statistics;
+    // the names to search for in EXACT and FUZZY mode, null for the default dictionary
+    private List<String> names;
+    // cancel the job once this many milliseconds passed since its submission, 0 for no deadline
+    private long timeoutMillis;
+
+    /**
+     * Returns the options used when a caller does not specify any.
+     *
+     * @return exact matching options
+     */
+    public static SearchOptions defaults() {
+        return new SearchOptions();
+    }
+
+    /**
+     * Validates the options.
+     *
+     * @throws IllegalArgumentException if an option is out of range
+     */
+    public void validate() {
+        if (matchMode == null) {
+            throw new IllegalArgumentException("Match mode is required");
+        }
+        if (maxEdits < 0 || maxEdits > MAX_SUPPORTED_EDITS) {
+            throw new IllegalArgumentException("maxEdits must be between 0 and " + MAX_SUPPORTED_EDITS);
+        }
+        if (matchMode == MatchMode.REGEX && (pattern == null || pattern.isEmpty())) {
+            throw new IllegalArgumentException("A pattern is required in REGEX mode");
+        }
+        if (matchMode == MatchMode.REGEX && follow) {
+            throw new IllegalArgumentException("Follow mode is not supported in REGEX mode");
+        }
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeoutMillis must not be negative");
+        }
+        if (names != null) {
+            if (matchMode == MatchMode.REGEX) {
+                throw new IllegalArgumentException("Names are not supported in REGEX mode");
+            }
+            if (names.isEmpty() || names.size() > MAX_QUERY_NAMES) {
+                throw new IllegalArgumentException("A query must list between 1 and " + MAX_QUERY_NAMES + " names");
+            }
+            if (names.stream().anyMatch(name -> name == null || name.isBlank())) {
+                throw new IllegalArgumentException("Names must not be blank");
+            }
+            // a name is matched within a line, and its length bounds the overlap of the segments of a long line
+            if (names.stream().anyMatch(name -> name.length() > MAX_NAME_LENGTH)) {
+                throw new IllegalArgumentException("Names must be at most " + MAX_NAME_LENGTH + " chars long");
+            }
+            if (names.stream().anyMatch(name -> name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0)) {
+                throw new IllegalArgumentException("Names must not contain line breaks");
+            }
+        }
+    }
+}
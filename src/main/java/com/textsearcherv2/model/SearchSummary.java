@@ -0,0 +1,23 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * This class represents the outcome of a reactive search: the number of matches of every name found, the bytes
+ * read, and the documents that could not be searched with their error.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchSummary {
+    private int documents;
+    private long bytes;
+    private long matches;
+    private Map<String, Long> matchesByName;
+    private Map<String, String> failedDocuments;
+    private long elapsedMillis;
+}
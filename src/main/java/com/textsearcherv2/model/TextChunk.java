@@ -0,0 +1,67 @@
+package com.textsearcherv2.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents a contiguous block of lines cut out of a document for matching.
+ *
+ * <p>
+ * {@code firstLine} is the zero based line number of the first line of the chunk inside the whole document,
+ * so positions found inside the chunk can be shifted back to absolute document positions.
+ * </p>
+ *
+ * <p>
+ * {@code lookahead} optionally holds the text following the chunk in the document, starting with the line feed
+ * that separates the two chunks. Matches may extend into it but must start inside the chunk.
+ * </p>
+ *
+ * <p>
+ * A line longer than the chunk budget is cut into segments, one chunk each. A segment starts at column
+ * {@code firstColumn} of its line, its {@code lookahead} continues the line without a line feed, and
+ * {@code lookbehind} holds the end of the previous segment. Both overlap the neighbouring segments by the longest
+ * match, so a name cut by the segment boundary is still found whole, by the segment it starts in only.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextChunk {
+    private int index;
+    private int firstLine;
+    private String text;
+    private String lookahead;
+    private int firstColumn;
+    private String lookbehind;
+
+    public TextChunk(int index, int firstLine, String text) {
+        this(index, firstLine, text, null);
+    }
+
+    public TextChunk(int index, int firstLine, String text, String lookahead) {
+        this(index, firstLine, text, lookahead, 0, null);
+    }
+
+    /**
+     * Tells whether the chunk is a segment of a line longer than the chunk budget.
+     *
+     * @return true for a segment, false for a chunk of whole lines
+     */
+    @JsonIgnore
+    public boolean isSegment() {
+        return firstColumn > 0 || lookbehind != null || lookahead != null && !lookahead.startsWith("\n");
+    }
+
+    /**
+     * Returns a copy of the chunk starting at another line, as sent to a worker or cached, with line numbers
+     * relative to the chunk.
+     *
+     * @param firstLine the first line of the copy
+     * @return the copy
+     */
+    public TextChunk withFirstLine(int firstLine) {
+        return new TextChunk(index, firstLine, text, lookahead, firstColumn, lookbehind);
+    }
+}
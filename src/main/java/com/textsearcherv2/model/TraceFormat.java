@@ -0,0 +1,11 @@
+package com.textsearcherv2.model;
+
+/**
+ * The formats a job trace is exported in.
+ */
+public enum TraceFormat {
+    /** The Trace Event format of chrome://tracing and Perfetto. */
+    CHROME,
+    /** OpenTelemetry OTLP/JSON, as accepted by OTLP/HTTP collectors and trace viewers. */
+    OTLP
+}
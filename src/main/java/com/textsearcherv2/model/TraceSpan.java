@@ -0,0 +1,22 @@
+package com.textsearcherv2.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This class represents one timed stage of a job trace, in microseconds since the start of the job. The document
+ * is null and the chunk index -1 for spans not tied to one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceSpan {
+    private TraceStage stage;
+    private String document;
+    private int chunkIndex;
+    private long threadId;
+    private String threadName;
+    private long startMicros;
+    private long durationMicros;
+}
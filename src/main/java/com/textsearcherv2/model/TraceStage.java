@@ -0,0 +1,35 @@
+package com.textsearcherv2.model;
+
+/**
+ * The stages of the search pipeline recorded as spans of a job trace, each with the component it runs in.
+ */
+public enum TraceStage {
+    /** The job, from its start to its completion. */
+    JOB("ProcessingService"),
+    /** Sending the request of a document until its response headers arrive, DNS and connecting included. */
+    FETCH("FileReaderService"),
+    /** Reading and decoding the bytes of a chunk and cutting it at line boundaries. */
+    READ("FileReaderService"),
+    /** Waiting for a free in-flight chunk slot and for chunk bytes in the admission budget. */
+    ADMIT("FileReaderService"),
+    /** Waiting in the queue of the matcher executor. */
+    QUEUE("ContentProcessorService"),
+    /** Matching a chunk, or a whole document in regex mode. */
+    MATCH("MatcherService"),
+    /** Matching a chunk on a worker node, the round trip included. */
+    DISPATCH("ClusterCoordinatorService"),
+    /** Checkpointing a matched chunk and merging its positions in document order. */
+    COMMIT("FileReaderService"),
+    /** Aggregating the positions of a document into its job. */
+    AGGREGATE("AggregatorService");
+
+    private final String component;
+
+    TraceStage(String component) {
+        this.component = component;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+}
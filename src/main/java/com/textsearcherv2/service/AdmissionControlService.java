@@ -0,0 +1,245 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.model.AdmissionStats;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.SearchJob;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control in front of {@link ProcessingService}, keeping latency predictable when big batches and small
+ * searches share the service.
+ *
+ * <ul>
+ *     <li>At most {@code max-running-jobs} jobs run at once. Other jobs wait in a queue of at most
+ *     {@code max-queued-jobs} jobs, ordered by {@link JobPriority} lane and then by arrival.</li>
+ *     <li>A client has at most {@code max-jobs-per-client} jobs running or queued, so one client cannot fill the
+ *     queue. A client is identified by what the caller cannot choose freely, see
+ *     {@link #clientOf(String, String, String)}.</li>
+ *     <li>A job is rejected with {@link AdmissionRejectedException}, answered with 429, when the queue or the quota
+ *     of its client is full.</li>
+ *     <li>Across all running jobs, the chunks read but not yet matched hold at most {@code max-in-flight-bytes}
+ *     bytes of heap; readers block until matchers free enough of the budget.</li>
+ * </ul>
+ */
+@Service
+@Log4j2
+public class AdmissionControlService {
+    private static final Logger logger = LogManager.getLogger(AdmissionControlService.class);
+
+    private final int maxRunningJobs;
+    private final int maxQueuedJobs;
+    private final int maxJobsPerClient;
+    private final int maxInFlightBytes;
+    private final Semaphore inFlightBytes;
+
+    private final PriorityQueue<QueuedJob> queue = new PriorityQueue<>(Comparator
+            .comparing((QueuedJob queued) -> queued.job.getPriority())
+            .thenComparingLong(queued -> queued.sequence));
+    private final Map<String, Integer> jobsByClient = new HashMap<>();
+    private int runningJobs;
+    private long sequence;
+    private long rejectedJobs;
+
+    // addresses of the proxies trusted to name the client of a request in its client id header
+    @Value("${textsearcher.admission.trusted-proxies:}")
+    private Set<String> trustedProxies = Set.of();
+
+    public AdmissionControlService(@Value("${textsearcher.admission.max-running-jobs:4}") int maxRunningJobs,
+                                   @Value("${textsearcher.admission.max-queued-jobs:64}") int maxQueuedJobs,
+                                   @Value("${textsearcher.admission.max-jobs-per-client:8}") int maxJobsPerClient,
+                                   @Value("${textsearcher.admission.max-in-flight-bytes:268435456}") int maxInFlightBytes) {
+        if (maxRunningJobs <= 0 || maxQueuedJobs < 0 || maxJobsPerClient <= 0 || maxInFlightBytes <= 0) {
+            throw new IllegalArgumentException("Admission limits must be positive");
+        }
+        this.maxRunningJobs = maxRunningJobs;
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.maxJobsPerClient = maxJobsPerClient;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.inFlightBytes = new Semaphore(maxInFlightBytes, true);
+    }
+
+    /**
+     * Returns the client a request counts against. The client id header is set freely by the caller, so a caller
+     * sending a new id with each request would escape its quota: the header is only trusted from the configured
+     * proxies, which set it for the clients behind them. Otherwise the client is the authenticated principal of
+     * the request, or else its remote address.
+     *
+     * @param principal      the name of the authenticated principal, null if the request is not authenticated
+     * @param remoteAddress  the address the request came from
+     * @param clientIdHeader the client id header of the request, null if missing
+     * @return the client id
+     */
+    public String clientOf(String principal, String remoteAddress, String clientIdHeader) {
+        if (clientIdHeader != null && !clientIdHeader.isBlank() && trustedProxies.contains(remoteAddress)) {
+            return clientIdHeader;
+        }
+        return principal != null ? principal : remoteAddress;
+    }
+
+    public void setTrustedProxies(Set<String> trustedProxies) {
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    /**
+     * Admits a job: starts it right away if a run slot is free, queues it otherwise.
+     *
+     * @param job   the job, with its client id and priority
+     * @param start starts the job, called once the job holds a run slot
+     * @throws AdmissionRejectedException if the quota of the client or the queue is full
+     */
+    public void admit(SearchJob job, Runnable start) {
+        Runnable toStart;
+        synchronized (this) {
+            int clientJobs = jobsByClient.getOrDefault(job.getClientId(), 0);
+            if (clientJobs >= maxJobsPerClient) {
+                rejectedJobs++;
+                throw new AdmissionRejectedException("Client " + job.getClientId() + " already has " + clientJobs
+                        + " jobs running or queued", 1);
+            }
+            if (runningJobs >= maxRunningJobs && queue.size() >= maxQueuedJobs) {
+                rejectedJobs++;
+                throw new AdmissionRejectedException("The job queue is full", 5);
+            }
+            jobsByClient.merge(job.getClientId(), 1, Integer::sum);
+            job.setStatus(JobStatus.QUEUED);
+            toStart = enqueue(job, start);
+        }
+        startAll(toStart == null ? List.of() : List.of(toStart));
+    }
+
+    /**
+     * Admits a job resumed from a checkpoint. It was admitted before the restart, so it is queued without checking
+     * the queue size or the quota of its client.
+     *
+     * @param job   the job
+     * @param start starts the job, called once the job holds a run slot
+     */
+    public void readmit(SearchJob job, Runnable start) {
+        Runnable toStart;
+        synchronized (this) {
+            jobsByClient.merge(job.getClientId(), 1, Integer::sum);
+            job.setStatus(JobStatus.QUEUED);
+            toStart = enqueue(job, start);
+        }
+        startAll(toStart == null ? List.of() : List.of(toStart));
+    }
+
+    /**
+     * Releases the run slot and client quota of a finished job and starts the next queued jobs.
+     *
+     * @param job the finished job
+     */
+    public void complete(SearchJob job) {
+        List<Runnable> toStart = new ArrayList<>();
+        synchronized (this) {
+            jobsByClient.computeIfPresent(job.getClientId(), (client, count) -> count > 1 ? count - 1 : null);
+            runningJobs--;
+            while (runningJobs < maxRunningJobs && !queue.isEmpty()) {
+                runningJobs++;
+                toStart.add(queue.poll().start);
+            }
+        }
+        startAll(toStart);
+    }
+
+    /**
+     * Removes a job cancelled while queued from the queue and releases its client quota. A job that already holds a
+     * run slot keeps it until {@link #complete(SearchJob)}.
+     *
+     * @param job the cancelled job
+     * @return true if the job was queued and is removed, false if it holds a run slot
+     */
+    public boolean withdraw(SearchJob job) {
+        synchronized (this) {
+            if (!queue.removeIf(queuedJob -> queuedJob.job == job)) {
+                return false;
+            }
+            jobsByClient.computeIfPresent(job.getClientId(), (client, count) -> count > 1 ? count - 1 : null);
+        }
+        logger.info("Job {} withdrawn from lane {}", job.getJobId(), job.getPriority());
+        return true;
+    }
+
+    /**
+     * Reserves chunk bytes from the global in-flight budget, blocking until enough is free. A chunk larger than the
+     * whole budget reserves the whole budget.
+     *
+     * @param bytes the size of the chunk
+     * @return the number of bytes reserved, to pass to {@link #releaseBytes(int)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int acquireBytes(int bytes) throws InterruptedException {
+        int reserved = Math.max(1, Math.min(bytes, maxInFlightBytes));
+        inFlightBytes.acquire(reserved);
+        return reserved;
+    }
+
+    /**
+     * Returns chunk bytes to the in-flight budget once the chunk is matched.
+     *
+     * @param reserved the number returned by {@link #acquireBytes(int)}
+     */
+    public void releaseBytes(int reserved) {
+        inFlightBytes.release(reserved);
+    }
+
+    /**
+     * Returns a snapshot of the admission state.
+     *
+     * @return the current counts and their limits
+     */
+    public synchronized AdmissionStats stats() {
+        Map<JobPriority, Integer> queued = new EnumMap<>(JobPriority.class);
+        for (JobPriority priority : JobPriority.values()) {
+            queued.put(priority, 0);
+        }
+        queue.forEach(queuedJob -> queued.merge(queuedJob.job.getPriority(), 1, Integer::sum));
+        return new AdmissionStats(runningJobs, maxRunningJobs, queued, maxQueuedJobs, new TreeMap<>(jobsByClient),
+                maxJobsPerClient, maxInFlightBytes - inFlightBytes.availablePermits(), maxInFlightBytes,
+                rejectedJobs);
+    }
+
+    /**
+     * Takes a run slot for the job if one is free, queues it otherwise. Must hold the lock.
+     *
+     * @return the start of the job if it got a slot, null if it was queued
+     */
+    private Runnable enqueue(SearchJob job, Runnable start) {
+        if (runningJobs < maxRunningJobs && queue.isEmpty()) {
+            runningJobs++;
+            return start;
+        }
+        queue.add(new QueuedJob(job, start, sequence++));
+        logger.info("Job {} queued in lane {} behind {} jobs", job.getJobId(), job.getPriority(), queue.size() - 1);
+        return null;
+    }
+
+    /**
+     * Starts jobs outside the lock, so a job starting synchronously cannot block admission.
+     */
+    private void startAll(List<Runnable> starts) {
+        for (Runnable start : starts) {
+            start.run();
+        }
+    }
+
+    private record QueuedJob(SearchJob job, Runnable start, long sequence) {
+    }
+}
@@ -1,27 +1,102 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.model.ChunkResult;
+import com.textsearcherv2.model.DocumentPosition;
+import com.textsearcherv2.model.DocumentStatistics;
+import com.textsearcherv2.model.JobStatistics;
 import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.NameStatistics;
+import com.textsearcherv2.util.OffHeapPositionStore;
+import com.textsearcherv2.util.ProfilingEvents;
+import com.textsearcherv2.util.SpillingPartition;
+import com.textsearcherv2.util.WordIndex;
 import lombok.NoArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+import static com.textsearcherv2.service.ServiceConstants.WORD_INDEX_CHUNK_CHARS;
 
 @Service
 @Log4j2
 @NoArgsConstructor(force = true)
 public class AggregatorService {
+    private static final Logger logger = LogManager.getLogger(AggregatorService.class);
 
-    private final Map<String, List<TextPosition>> aggregatedResults = new ConcurrentHashMap<>();
+    // Per job partitions of document URL -> name -> positions, spilling beyond maxHeapBytesPerJob. A partition is
+    // dropped by releaseJob.
+    private final Map<String, SpillingPartition> partitionsByJob = new ConcurrentHashMap<>();
+    // Per job off-heap partitions, used instead of partitionsByJob when offHeap is set
+    private final Map<String, OffHeapPositionStore> storesByJob = new ConcurrentHashMap<>();
+    private final AtomicLong directBytesInUse = new AtomicLong();
+    // Per job statistics: jobId -> document URL -> statistics, for jobs submitted with statistics
+    private final Map<String, Map<String, NameStatistics>> statisticsByJob = new ConcurrentHashMap<>();
     private List<CompletableFuture<Void>> futures = new ArrayList<>();
 
+    @Value("${textsearcher.results.off-heap:false}")
+    private boolean offHeap;
+
+    @Value("${textsearcher.results.max-direct-bytes:268435456}")
+    private long maxDirectBytes = 268435456;
+
+    @Value("${textsearcher.results.max-heap-bytes-per-job:67108864}")
+    private long maxHeapBytesPerJob = 67108864;
+
+    @Value("${textsearcher.results.spill-dir:${java.io.tmpdir}/textsearcher/spill}")
+    private String spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "textsearcher", "spill").toString();
+
+    @Value("${textsearcher.statistics.window-lines:1000}")
+    private int statisticsWindowLines = 1000;
+
+    @Value("${textsearcher.statistics.co-occurrence-chars:50}")
+    private int coOccurrenceChars = 50;
+
+    @Value("${textsearcher.statistics.sketch-width:2048}")
+    private int sketchWidth = 2048;
+
+    @Value("${textsearcher.statistics.sketch-depth:4}")
+    private int sketchDepth = 4;
+
+    @Value("${textsearcher.statistics.max-pairs:100}")
+    private int maxPairs = 100;
+
+    /**
+     * Creates an aggregator keeping job positions off-heap, see {@link OffHeapPositionStore}.
+     *
+     * @param maxDirectBytes the direct memory of all jobs before positions spill to memory-mapped files
+     * @param spillDirectory the directory of the spill files
+     */
+    public AggregatorService(long maxDirectBytes, Path spillDirectory) {
+        this.offHeap = true;
+        this.maxDirectBytes = maxDirectBytes;
+        this.spillDirectory = spillDirectory.toString();
+    }
+
+    /**
+     * Creates an aggregator keeping job positions on the heap, each job within the given budget before its positions
+     * spill to sorted runs, see {@link SpillingPartition}.
+     *
+     * @param maxHeapBytesPerJob the estimated heap the positions of a job may take before they spill
+     * @param maxDirectBytes     the direct memory of the stores the spilled positions are merged into on completion
+     * @param spillDirectory     the directory of the run and spill files
+     */
+    public AggregatorService(long maxHeapBytesPerJob, long maxDirectBytes, Path spillDirectory) {
+        this.maxHeapBytesPerJob = maxHeapBytesPerJob;
+        this.maxDirectBytes = maxDirectBytes;
+        this.spillDirectory = spillDirectory.toString();
+    }
+
     public CompletableFuture<Void> aggregateAndPrintResults(Map<String, List<TextPosition>> textPositionsByName) {
         return CompletableFuture.runAsync(() -> executePositionAggregationAndLogging(textPositionsByName));
     }
@@ -106,21 +181,37 @@ public class AggregatorService {
      * @return A CompletableFuture holding a map of words and their positions
      */
     public CompletableFuture<Map<String, List<TextPosition>>> findMatchesInContent(String content) {
-        return CompletableFuture.supplyAsync(() -> {
-            Map<String, List<TextPosition>> matches = new HashMap<>();
-            String[] lines = content.split("\n");
-
-            Pattern wordPattern = Pattern.compile("\\b\\w+\\b");
-            for (int i = 0; i < lines.length; i++) {
-                Matcher wordMatcher = wordPattern.matcher(lines[i]);
-                while (wordMatcher.find()) {
-                    String word = wordMatcher.group();
-                    int columnNumber = wordMatcher.start();
-                    matches.computeIfAbsent(word, k -> new ArrayList<>())
-                            .add(new TextPosition(i, columnNumber));
-                }
+        return indexContent(content).thenApply(WordIndex::toMap);
+    }
+
+    /**
+     * Indexes every word of the given content, see {@link WordIndex}. The content is cut at line breaks into chunks
+     * of about {@link ServiceConstants#WORD_INDEX_CHUNK_CHARS} chars, indexed in parallel and appended in order, so
+     * that any word can be looked up once the content was scanned once.
+     *
+     * @param content the content to index
+     * @return a CompletableFuture holding the index of the content
+     */
+    public CompletableFuture<WordIndex> indexContent(String content) {
+        List<CompletableFuture<WordIndex>> chunks = new ArrayList<>();
+        int from = 0;
+        do {
+            int to = content.length();
+            if (to - from > WORD_INDEX_CHUNK_CHARS) {
+                int lineBreak = content.indexOf('\n', from + WORD_INDEX_CHUNK_CHARS);
+                to = lineBreak < 0 ? to : lineBreak + 1;
+            }
+            int start = from;
+            int end = to;
+            chunks.add(CompletableFuture.supplyAsync(() -> WordIndex.build(content, start, end)));
+            from = to;
+        } while (from < content.length());
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(done -> {
+            WordIndex index = chunks.get(0).join();
+            for (int i = 1; i < chunks.size(); i++) {
+                index.append(chunks.get(i).join());
             }
-            return matches;
+            return index;
         });
     }
 
@@ -136,8 +227,6 @@ public class AggregatorService {
             matches.forEach((key, positions) -> {
                 TextPosition aggregatedPosition = constructTextPosition(positions);
                 result.put(key, Arrays.asList(aggregatedPosition));
-                List<TextPosition> list = new ArrayList<>(positions);
-                mergeLists(key, list);
             });
             return result;
         }).thenCompose(matches -> this.aggregateAndPrintResults(matches));
@@ -161,19 +250,251 @@ public class AggregatorService {
     }
 
     /**
-     * Merges the given list of {@code TextPosition} objects with the existing list associated with the specified key.
-     * If the key does not exist, a new key-value pair will be created.
+     * Opens an empty result partition for the given job. Documents aggregated for the job are kept apart from
+     * every other job until {@link #releaseJob(String)} is called.
+     *
+     * @param jobId the id of the job
+     */
+    public void openJob(String jobId) {
+        if (offHeap) {
+            storesByJob.computeIfAbsent(jobId, id -> new OffHeapPositionStore(maxDirectBytes, directBytesInUse,
+                    Paths.get(spillDirectory)));
+        } else {
+            partitionsByJob.computeIfAbsent(jobId, id -> new SpillingPartition(id, maxHeapBytesPerJob,
+                    Paths.get(spillDirectory)));
+        }
+    }
+
+    /**
+     * Aggregates the positions found in one document into the partition of the given job, committing a
+     * {@link ProfilingEvents.DocumentAggregated} event.
      *
-     * @param key The key associated with the list of {@code TextPosition} objects.
-     * @param value The list of {@code TextPosition} objects to be merged.
+     * @param jobId               the id of the job the document belongs to
+     * @param documentUrl         the URL of the document the positions were found in
+     * @param textPositionsByName the positions found in the document, grouped by name
+     * @return a CompletableFuture that completes once the positions are merged into the partition
+     * @throws IllegalStateException if the job has no open partition
      */
-    private void mergeLists(String key, List<TextPosition> value) {
-        aggregatedResults.merge(key, value, (existingList, newList) -> {
-            existingList.addAll(newList);
-            return existingList;
+    public CompletableFuture<Void> aggregateDocument(String jobId, String documentUrl,
+                                                     Map<String, List<TextPosition>> textPositionsByName) {
+        long submittedNanos = System.nanoTime();
+        return CompletableFuture.runAsync(() -> {
+            ProfilingEvents.DocumentAggregated event = new ProfilingEvents.DocumentAggregated();
+            event.begin(submittedNanos);
+            OffHeapPositionStore store = storesByJob.get(jobId);
+            if (store != null) {
+                textPositionsByName.forEach((name, positions) -> store.appendAll(documentUrl, name, positions));
+                event.commit(jobId, documentUrl, textPositionsByName, store.spilledBytes() > 0);
+                return;
+            }
+            SpillingPartition partition = partitionsByJob.get(jobId);
+            if (partition == null) {
+                throw new IllegalStateException("No open partition for job " + jobId);
+            }
+            partition.addAll(documentUrl, textPositionsByName);
+            event.commit(jobId, documentUrl, textPositionsByName, partition.hasSpilled());
         });
     }
 
+    /**
+     * Creates empty statistics with the configured windows, co-occurrence distance and sketch, for the chunks of a
+     * document to accumulate before {@link #aggregateStatistics(String, String, NameStatistics)} merges them.
+     *
+     * @return the empty statistics
+     */
+    public NameStatistics newStatistics() {
+        return new NameStatistics(statisticsWindowLines, coOccurrenceChars, sketchWidth, sketchDepth, maxPairs);
+    }
+
+    /**
+     * Merges the statistics of part of a document into those of the document in the given job. Parts merge in any
+     * order, from any thread.
+     *
+     * @param jobId       the id of the job the document belongs to
+     * @param documentUrl the URL of the document
+     * @param statistics  the statistics of the part, not used afterwards by the caller
+     */
+    public void aggregateStatistics(String jobId, String documentUrl, NameStatistics statistics) {
+        statisticsByJob.computeIfAbsent(jobId, id -> new ConcurrentHashMap<>())
+                .merge(documentUrl, statistics, (merged, part) -> {
+                    merged.merge(part);
+                    return merged;
+                });
+    }
+
+    /**
+     * Drops the statistics of a document of the given job, when its scan starts over.
+     *
+     * @param jobId       the id of the job
+     * @param documentUrl the URL of the document
+     */
+    public void discardStatistics(String jobId, String documentUrl) {
+        Map<String, NameStatistics> documents = statisticsByJob.get(jobId);
+        if (documents != null) {
+            documents.remove(documentUrl);
+        }
+    }
+
+    /**
+     * Removes the statistics of the given job and returns them per document and combined across documents.
+     *
+     * @param jobId the id of the job
+     * @return the statistics, empty if no document of the job had a match
+     */
+    public JobStatistics releaseStatistics(String jobId) {
+        Map<String, NameStatistics> documents = statisticsByJob.remove(jobId);
+        NameStatistics combined = newStatistics();
+        List<DocumentStatistics> documentStatistics = new ArrayList<>();
+        if (documents != null) {
+            new TreeMap<>(documents).forEach((documentUrl, statistics) -> {
+                documentStatistics.add(statistics.toDocumentStatistics(documentUrl));
+                combined.merge(statistics);
+            });
+        }
+        return new JobStatistics(statisticsWindowLines, coOccurrenceChars, combined.matchesByName(),
+                combined.coOccurrences(), documentStatistics);
+    }
+
+    /**
+     * Removes the partition of the given job and returns its per-document results, so nothing of the job is left
+     * behind in the aggregator once it completes. Off-heap results are copied onto the heap and their store is
+     * closed; {@link #releaseJobStore(String)} keeps them off-heap. Spilled positions are merged back onto the heap.
+     *
+     * @param jobId the id of the job
+     * @return the results of the job keyed by document URL and then by name, or an empty map if none were aggregated
+     */
+    public Map<String, Map<String, List<TextPosition>>> releaseJob(String jobId) {
+        OffHeapPositionStore store = storesByJob.remove(jobId);
+        if (store != null) {
+            try (store) {
+                Map<String, Map<String, List<TextPosition>>> copy = new HashMap<>();
+                store.asMap().forEach((documentUrl, positionsByName) -> {
+                    Map<String, List<TextPosition>> documentCopy = copy.computeIfAbsent(documentUrl,
+                            url -> new HashMap<>());
+                    positionsByName.forEach((name, positions) -> documentCopy.put(name, new ArrayList<>(positions)));
+                });
+                return copy;
+            }
+        }
+        SpillingPartition partition = partitionsByJob.remove(jobId);
+        if (partition == null) {
+            return new HashMap<>();
+        }
+        try (partition) {
+            return partition.toMap();
+        }
+    }
+
+    /**
+     * Removes the off-heap partition of the given job and hands its store over to the caller, who closes it once
+     * the results are no longer read. The positions of a job that spilled beyond its heap budget are merged into a
+     * new store, so they are not brought back onto the heap.
+     *
+     * @param jobId the id of the job
+     * @return the store of the job, or null if its results are kept on the heap
+     */
+    public OffHeapPositionStore releaseJobStore(String jobId) {
+        OffHeapPositionStore store = storesByJob.remove(jobId);
+        if (store != null) {
+            return store;
+        }
+        SpillingPartition partition = partitionsByJob.get(jobId);
+        if (partition == null || !partition.hasSpilled() || !partitionsByJob.remove(jobId, partition)) {
+            return null;
+        }
+        try (partition) {
+            OffHeapPositionStore merged = new OffHeapPositionStore(maxDirectBytes, directBytesInUse,
+                    Paths.get(spillDirectory));
+            try {
+                partition.mergeInto(merged);
+            } catch (RuntimeException e) {
+                merged.close();
+                throw e;
+            }
+            logger.info("Merged the {} spilled runs of job {}", partition.runCount(), jobId);
+            return merged;
+        }
+    }
+
+    /**
+     * Drops the results of the given job without reading them, closing its store or deleting its runs.
+     *
+     * @param jobId the id of the job
+     */
+    public void discardJob(String jobId) {
+        OffHeapPositionStore store = storesByJob.remove(jobId);
+        if (store != null) {
+            store.close();
+        }
+        SpillingPartition partition = partitionsByJob.remove(jobId);
+        if (partition != null) {
+            partition.close();
+        }
+    }
+
+    /**
+     * Returns the number of job partitions currently held in memory.
+     *
+     * @return the number of open partitions
+     */
+    public int openPartitionCount() {
+        return partitionsByJob.size() + storesByJob.size();
+    }
+
+    /**
+     * Returns the direct memory used by the off-heap partitions of open and retained jobs.
+     *
+     * @return the direct bytes in use
+     */
+    public long directBytesInUse() {
+        return directBytesInUse.get();
+    }
+
+    /**
+     * Merges per-document results into a single cross-document view. Every position keeps the URL of the document
+     * it was found in.
+     *
+     * @param resultsByDocument results keyed by document URL and then by name
+     * @return positions grouped by name across all documents
+     */
+    public Map<String, List<DocumentPosition>> mergeDocumentResults(
+            Map<String, Map<String, List<TextPosition>>> resultsByDocument) {
+        Map<String, List<DocumentPosition>> merged = new TreeMap<>();
+        resultsByDocument.forEach((documentUrl, positionsByName) ->
+                positionsByName.forEach((name, positions) -> {
+                    List<DocumentPosition> namePositions = merged.computeIfAbsent(name, k -> new ArrayList<>());
+                    for (TextPosition position : positions) {
+                        namePositions.add(new DocumentPosition(documentUrl, position.getLineNumber(),
+                                position.getColumnNumber()));
+                    }
+                }));
+        return merged;
+    }
+
+    /**
+     * Merges the partial results of the chunks of one document, shifting the chunk-relative line numbers by the
+     * first line of each chunk so every position is absolute inside the document.
+     *
+     * @param chunkResults the partial results, in any order
+     * @return the positions of the document grouped by name, in document order
+     */
+    public Map<String, List<TextPosition>> mergeChunkResults(List<ChunkResult> chunkResults) {
+        List<ChunkResult> ordered = new ArrayList<>(chunkResults);
+        ordered.sort(Comparator.comparingInt(ChunkResult::getChunkIndex));
+        Map<String, List<TextPosition>> merged = new HashMap<>();
+        for (ChunkResult chunkResult : ordered) {
+            int firstLine = chunkResult.getFirstLine();
+            chunkResult.getPositionsByName().forEach((name, positions) -> {
+                List<TextPosition> namePositions = merged.computeIfAbsent(name, k -> new ArrayList<>());
+                for (TextPosition position : positions) {
+                    namePositions.add(new TextPosition(firstLine + position.getLineNumber(),
+                            position.getColumnNumber()));
+                }
+            });
+        }
+        return merged;
+    }
+
     /**
      * Merges two maps of type Map<String, List<TextPosition>>. It copies all entries from map1 to a new map,
      * then adds or updates the entries from map2. If a key already exists in the new map, the lists of TextPosition
@@ -0,0 +1,100 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.util.CancellationToken;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the cancellation tokens of the jobs not finished yet, and cancels the jobs whose deadline passed.
+ *
+ * <p>
+ * The stages of a job look its token up by job id and register the actions stopping their work in flight with it,
+ * see {@link CancellationToken}. A job is cancelled on request or when its deadline passes, whichever comes first.
+ * </p>
+ */
+@Service
+@Log4j2
+public class CancellationService {
+    private static final Logger logger = LogManager.getLogger(CancellationService.class);
+
+    private final Map<String, CancellationToken> tokens = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> deadlines = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates the token of a job.
+     *
+     * @param jobId the id of the job
+     * @return the token of the job
+     */
+    public CancellationToken open(String jobId) {
+        return tokens.computeIfAbsent(jobId, id -> new CancellationToken());
+    }
+
+    /**
+     * Cancels a job once its deadline passes, at once if it already has.
+     *
+     * @param jobId    the id of the job
+     * @param deadline the deadline of the job
+     */
+    public void scheduleDeadline(String jobId, Instant deadline) {
+        long delayMillis = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+        deadlines.put(jobId, timer.schedule(() -> {
+            deadlines.remove(jobId);
+            if (cancel(jobId, "Deadline of " + deadline + " exceeded")) {
+                logger.info("Job {} cancelled at its deadline {}", jobId, deadline);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Returns the token of a job.
+     *
+     * @param jobId the id of the job, null for work outside of any job
+     * @return the token, {@link CancellationToken#NONE} if the job has none
+     */
+    public CancellationToken token(String jobId) {
+        CancellationToken token = jobId == null ? null : tokens.get(jobId);
+        return token == null ? CancellationToken.NONE : token;
+    }
+
+    /**
+     * Cancels a job.
+     *
+     * @param jobId  the id of the job
+     * @param reason why the job is cancelled
+     * @return true if the job had a token not cancelled before
+     */
+    public boolean cancel(String jobId, String reason) {
+        CancellationToken token = tokens.get(jobId);
+        return token != null && token.cancel(reason);
+    }
+
+    /**
+     * Drops the token and the deadline of a finished job.
+     *
+     * @param jobId the id of the job
+     */
+    public void close(String jobId) {
+        tokens.remove(jobId);
+        ScheduledFuture<?> deadline = deadlines.remove(jobId);
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.model.ChunkCheckpoint;
+import com.textsearcherv2.model.DocumentCheckpoint;
+import com.textsearcherv2.model.JobCheckpoint;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Persists the progress of running jobs to local disk, so that a job interrupted by a restart resumes where it
+ * stopped instead of refetching and rematching its documents.
+ *
+ * <p>
+ * Each job gets a directory under {@code textsearcher.checkpoint.dir} holding a {@code job.json} written when the
+ * job starts, and one append-only log per document. Every completed chunk appends a {@link ChunkCheckpoint} line
+ * to the log of its document and forces it to disk, in document order. A line torn by a crash is detected and cut
+ * off when the log is read back. The directory is deleted once the job completes. Checkpointing is disabled when
+ * the property is empty.
+ * </p>
+ */
+@Service
+@Log4j2
+public class CheckpointService {
+    private static final Logger logger = LogManager.getLogger(CheckpointService.class);
+    private static final String JOB_FILE = "job.json";
+    private static final String DOCUMENT_LOG_SUFFIX = ".log";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public CheckpointService(@Value("${textsearcher.checkpoint.dir:}") String directory, ObjectMapper objectMapper) {
+        this.directory = directory == null || directory.isBlank() ? null : Paths.get(directory);
+        this.objectMapper = objectMapper;
+        if (this.directory != null) {
+            logger.info("Checkpointing jobs to {}", this.directory.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns whether checkpoints are written.
+     *
+     * @return true if a checkpoint directory is configured
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Records the start of a job. The job file is replaced atomically, so a resumed job may record it again.
+     *
+     * @param checkpoint the description of the job
+     */
+    public void startJob(JobCheckpoint checkpoint) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Path jobDirectory = Files.createDirectories(directory.resolve(checkpoint.getJobId()));
+            Path temp = jobDirectory.resolve(JOB_FILE + ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(checkpoint));
+            Files.move(temp, jobDirectory.resolve(JOB_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not checkpoint job " + checkpoint.getJobId(), e);
+        }
+    }
+
+    /**
+     * Appends a completed chunk to the log of its document and forces it to disk. Chunks must be recorded in
+     * document order.
+     *
+     * @param jobId      the id of the job
+     * @param url        the URL of the document
+     * @param checkpoint the completed chunk
+     */
+    public void recordChunk(String jobId, String url, ChunkCheckpoint checkpoint) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path log = documentLog(jobId, url);
+        try {
+            Files.createDirectories(log.getParent());
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                byte[] record = objectMapper.writeValueAsBytes(checkpoint);
+                ByteBuffer buffer = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n').flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not checkpoint chunk " + checkpoint.getChunkIndex() + " of " + url, e);
+        }
+    }
+
+    /**
+     * Reads back the log of a document and returns the point its scan resumes from. A record torn by a crash ends
+     * the log and is truncated away, so later records are appended after the last complete one.
+     *
+     * @param jobId the id of the job
+     * @param url   the URL of the document
+     * @return the resume point, {@link DocumentCheckpoint#start()} if nothing was recorded
+     */
+    public DocumentCheckpoint resumePoint(String jobId, String url) {
+        DocumentCheckpoint resume = DocumentCheckpoint.start();
+        if (!isEnabled()) {
+            return resume;
+        }
+        Path log = documentLog(jobId, url);
+        if (!Files.exists(log)) {
+            return resume;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(log);
+            int validLength = 0;
+            int lineStart = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                ChunkCheckpoint record;
+                try {
+                    record = objectMapper.readValue(bytes, lineStart, i - lineStart, ChunkCheckpoint.class);
+                } catch (IOException e) {
+                    break;
+                }
+                apply(resume, record);
+                lineStart = i + 1;
+                validLength = lineStart;
+            }
+            if (validLength < bytes.length) {
+                logger.warn("Truncating torn checkpoint record of {} in job {}", url, jobId);
+                try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                    channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the checkpoint of " + url, e);
+        }
+        return resume;
+    }
+
+    /**
+     * Deletes the log of a document, so its scan starts over from the first byte.
+     *
+     * @param jobId the id of the job
+     * @param url   the URL of the document
+     */
+    public void discardDocument(String jobId, String url) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(documentLog(jobId, url));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not discard the checkpoint of " + url, e);
+        }
+    }
+
+    /**
+     * Returns the jobs with a checkpoint left behind, i.e. the jobs that did not complete before the last shutdown.
+     *
+     * @return the checkpointed jobs
+     */
+    public List<JobCheckpoint> pendingJobs() {
+        List<JobCheckpoint> pending = new ArrayList<>();
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return pending;
+        }
+        try (DirectoryStream<Path> jobDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path jobDirectory : jobDirectories) {
+                Path jobFile = jobDirectory.resolve(JOB_FILE);
+                if (!Files.exists(jobFile)) {
+                    continue;
+                }
+                try {
+                    pending.add(objectMapper.readValue(jobFile.toFile(), JobCheckpoint.class));
+                } catch (IOException e) {
+                    logger.warn("Ignoring unreadable checkpoint {}", jobFile, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the checkpoints in " + directory, e);
+        }
+        return pending;
+    }
+
+    /**
+     * Deletes the checkpoint of a job once it no longer needs to be resumed.
+     *
+     * @param jobId the id of the job
+     */
+    public void completeJob(String jobId) {
+        if (!isEnabled()) {
+            return;
+        }
+        Path jobDirectory = directory.resolve(jobId);
+        if (!Files.exists(jobDirectory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(jobDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete the checkpoint of job {}", jobId, e);
+        }
+    }
+
+    private void apply(DocumentCheckpoint resume, ChunkCheckpoint record) {
+        if (record.isEndOfDocument()) {
+            resume.setComplete(true);
+            return;
+        }
+        resume.setOffset(record.getEndOffset());
+        resume.setNextLine(record.getEndLine());
+        resume.setNextChunkIndex(record.getChunkIndex() + 1);
+        if (record.getPositionsByName() != null) {
+            record.getPositionsByName().forEach((name, positions) ->
+                    resume.getPositionsByName().computeIfAbsent(name, k -> new ArrayList<>()).addAll(positions));
+        }
+    }
+
+    private Path documentLog(String jobId, String url) {
+        String name = UUID.nameUUIDFromBytes(url.getBytes(StandardCharsets.UTF_8)) + DOCUMENT_LOG_SUFFIX;
+        return directory.resolve(jobId).resolve(name);
+    }
+}
@@ -0,0 +1,253 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.model.ChunkCacheOutcome;
+import com.textsearcherv2.model.ChunkCacheStats;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.XxHash64;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A cache of chunk match results, so that a chunk repeated across documents (license headers, boilerplate, mirrored
+ * copies) is matched only once.
+ *
+ * <p>
+ * A chunk is keyed by the 64 bit xxHash and the length of its text, the version of the name dictionary and the match
+ * options. Results are stored with line numbers relative to the chunk and shifted to the first line of the chunk
+ * they are served for. Chunks of every document are cached, including chunks without any match.
+ * </p>
+ *
+ * <p>
+ * The cache holds at most {@code textsearcher.chunk-cache.max-bytes} of estimated result memory and evicts the least
+ * recently used chunks beyond it; 0 disables it. {@link MatchMode#REGEX} chunks are never cached, their results
+ * depend on the chunks before them.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ChunkCacheService {
+    private static final Logger logger = LogManager.getLogger(ChunkCacheService.class);
+    // map entry, key and value objects of a cached chunk
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    // references to the name and its position array, and the array header; names are shared dictionary strings
+    private static final int NAME_OVERHEAD_BYTES = 32;
+
+    private final long maxBytes;
+    private final LinkedHashMap<ChunkKey, CachedMatches> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ChunkCacheService(@Value("${textsearcher.chunk-cache.max-bytes:67108864}") long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The chunk cache budget must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        if (maxBytes > 0) {
+            logger.info("Caching chunk matches in up to {} bytes", maxBytes);
+        }
+    }
+
+    /**
+     * Returns whether chunk results are cached.
+     *
+     * @return true if the cache has a memory budget
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Returns the positions of a chunk from the cache, matching the chunk on a miss.
+     *
+     * @param chunk             the chunk, knowing the document line it starts at
+     * @param options           the search options of the job
+     * @param dictionaryVersion the version of the name dictionary the matcher searches for
+     * @param matcher           matches a chunk starting at line 0, called on a miss
+     * @return the positions found in the chunk, absolute in the document
+     */
+    public Map<String, List<TextPosition>> match(TextChunk chunk, SearchOptions options, long dictionaryVersion,
+                                                 Function<TextChunk, Map<String, List<TextPosition>>> matcher) {
+        return match(chunk, options, dictionaryVersion, matcher, outcome -> {
+        });
+    }
+
+    /**
+     * Returns the positions of a chunk from the cache, matching the chunk on a miss, and reports whether the cache
+     * served the chunk.
+     *
+     * @param chunk             the chunk, knowing the document line it starts at
+     * @param options           the search options of the job
+     * @param dictionaryVersion the version of the name dictionary the matcher searches for
+     * @param matcher           matches a chunk starting at line 0, called on a miss
+     * @param outcome           receives the outcome of the lookup before the chunk is matched
+     * @return the positions found in the chunk, absolute in the document
+     */
+    public Map<String, List<TextPosition>> match(TextChunk chunk, SearchOptions options, long dictionaryVersion,
+                                                 Function<TextChunk, Map<String, List<TextPosition>>> matcher,
+                                                 Consumer<ChunkCacheOutcome> outcome) {
+        if (!isCacheable(chunk, options)) {
+            outcome.accept(ChunkCacheOutcome.BYPASS);
+            return matcher.apply(chunk);
+        }
+        ChunkKey key = key(chunk, options, dictionaryVersion);
+        Map<String, List<TextPosition>> cached = lookup(key, chunk.getFirstLine());
+        if (cached != null) {
+            outcome.accept(ChunkCacheOutcome.HIT);
+            return cached;
+        }
+        outcome.accept(ChunkCacheOutcome.MISS);
+        return store(key, matcher.apply(relativeChunk(chunk))).toPositions(chunk.getFirstLine());
+    }
+
+    /**
+     * Returns the positions of a chunk from the cache, matching the chunk asynchronously on a miss.
+     *
+     * @param chunk             the chunk, knowing the document line it starts at
+     * @param options           the search options of the job
+     * @param dictionaryVersion the version of the name dictionary the matcher searches for
+     * @param matcher           matches a chunk starting at line 0, called on a miss
+     * @return a CompletableFuture that completes with the positions found in the chunk, absolute in the document
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> matchAsync(
+            TextChunk chunk, SearchOptions options, long dictionaryVersion,
+            Function<TextChunk, CompletableFuture<Map<String, List<TextPosition>>>> matcher) {
+        if (!isCacheable(chunk, options)) {
+            return matcher.apply(chunk);
+        }
+        ChunkKey key = key(chunk, options, dictionaryVersion);
+        Map<String, List<TextPosition>> cached = lookup(key, chunk.getFirstLine());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return matcher.apply(relativeChunk(chunk))
+                .thenApply(relative -> store(key, relative).toPositions(chunk.getFirstLine()));
+    }
+
+    /**
+     * Returns a snapshot of the cache size and hit counts.
+     *
+     * @return the cache statistics
+     */
+    public synchronized ChunkCacheStats stats() {
+        long lookups = hits + misses;
+        return new ChunkCacheStats(entries.size(), bytes, maxBytes, hits, misses, evictions,
+                lookups == 0 ? 0 : (double) hits / lookups);
+    }
+
+    /**
+     * Regex chunks depend on the preceding chunk, and the matches of a line segment on the segments around it.
+     */
+    private boolean isCacheable(TextChunk chunk, SearchOptions options) {
+        return isEnabled() && options.getMatchMode() != MatchMode.REGEX && !chunk.isSegment();
+    }
+
+    private ChunkKey key(TextChunk chunk, SearchOptions options, long dictionaryVersion) {
+        String text = chunk.getText();
+        int maxEdits = options.getMatchMode() == MatchMode.FUZZY ? options.getMaxEdits() : 0;
+        return new ChunkKey(XxHash64.hash(text, 0), text.length(), dictionaryVersion, options.getMatchMode(),
+                maxEdits);
+    }
+
+    private TextChunk relativeChunk(TextChunk chunk) {
+        return chunk.withFirstLine(0);
+    }
+
+    private Map<String, List<TextPosition>> lookup(ChunkKey key, int firstLine) {
+        CachedMatches cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        return cached.toPositions(firstLine);
+    }
+
+    /**
+     * Caches the relative positions of a chunk, unless they alone exceed the budget, and evicts the least recently
+     * used chunks beyond the budget.
+     *
+     * @return the packed positions
+     */
+    private CachedMatches store(ChunkKey key, Map<String, List<TextPosition>> relative) {
+        CachedMatches matches = new CachedMatches(relative);
+        if (matches.bytes > maxBytes) {
+            return matches;
+        }
+        synchronized (this) {
+            CachedMatches previous = entries.put(key, matches);
+            bytes += matches.bytes - (previous == null ? 0 : previous.bytes);
+            Iterator<CachedMatches> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return matches;
+    }
+
+    private record ChunkKey(long hash, int length, long dictionaryVersion, MatchMode matchMode, int maxEdits) {
+    }
+
+    /**
+     * The positions of a chunk packed as line and column pairs, relative to the chunk.
+     */
+    private static final class CachedMatches {
+        private final String[] names;
+        private final int[][] positions;
+        private final long bytes;
+
+        CachedMatches(Map<String, List<TextPosition>> relative) {
+            names = new String[relative.size()];
+            positions = new int[relative.size()][];
+            long size = ENTRY_OVERHEAD_BYTES;
+            int i = 0;
+            for (Map.Entry<String, List<TextPosition>> entry : relative.entrySet()) {
+                List<TextPosition> namePositions = entry.getValue();
+                int[] packed = new int[namePositions.size() * 2];
+                for (int p = 0; p < namePositions.size(); p++) {
+                    packed[2 * p] = namePositions.get(p).getLineNumber();
+                    packed[2 * p + 1] = namePositions.get(p).getColumnNumber();
+                }
+                names[i] = entry.getKey();
+                positions[i++] = packed;
+                size += NAME_OVERHEAD_BYTES + 4L * packed.length;
+            }
+            bytes = size;
+        }
+
+        Map<String, List<TextPosition>> toPositions(int firstLine) {
+            Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                int[] packed = positions[i];
+                List<TextPosition> namePositions = new ArrayList<>(packed.length / 2);
+                for (int p = 0; p < packed.length; p += 2) {
+                    namePositions.add(new TextPosition(firstLine + packed[p], packed[p + 1]));
+                }
+                positionsByName.put(names[i], namePositions);
+            }
+            return positionsByName;
+        }
+    }
+}
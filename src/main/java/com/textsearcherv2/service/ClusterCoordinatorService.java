@@ -0,0 +1,181 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.model.ChunkResult;
+import com.textsearcherv2.model.ChunkTask;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.textsearcherv2.controller.ControllerConstants.CHUNKS;
+import static com.textsearcherv2.controller.ControllerConstants.V1;
+import static com.textsearcherv2.controller.ControllerConstants.WORKER;
+
+/**
+ * The coordinator side of a multi-node deployment. When worker nodes are configured with
+ * {@code textsearcher.cluster.workers}, the chunks of a document are sent round-robin to the workers over HTTP
+ * instead of being matched in this JVM.
+ *
+ * <p>
+ * A chunk whose worker fails, times out or answers with an error is re-dispatched to the next worker, and a worker
+ * that failed is skipped for {@code textsearcher.cluster.worker-cooldown-millis} while others are healthy. If every
+ * worker failed for a chunk, the coordinator matches it locally, so a job never fails because of worker outages.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ClusterCoordinatorService {
+    private static final Logger logger = LogManager.getLogger(ClusterCoordinatorService.class);
+    public static final String LOCAL_WORKER = "local";
+
+    private final List<String> workers;
+    private final MatcherService matcherService;
+    private final ObjectMapper objectMapper;
+    private final Duration workerTimeout;
+    private final long workerCooldownMillis;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final Map<String, Long> unhealthyUntil = new ConcurrentHashMap<>();
+
+    public ClusterCoordinatorService(@Value("${textsearcher.cluster.workers:}") List<String> workers,
+                                     @Value("${textsearcher.cluster.worker-timeout-millis:30000}") long workerTimeoutMillis,
+                                     @Value("${textsearcher.cluster.worker-cooldown-millis:10000}") long workerCooldownMillis,
+                                     @Lazy MatcherService matcherService,
+                                     ObjectMapper objectMapper) {
+        this.workers = workers.stream()
+                .map(String::trim)
+                .filter(worker -> !worker.isEmpty())
+                .map(worker -> worker.endsWith("/") ? worker.substring(0, worker.length() - 1) : worker)
+                .collect(Collectors.toList());
+        this.workerTimeout = Duration.ofMillis(workerTimeoutMillis);
+        this.workerCooldownMillis = workerCooldownMillis;
+        this.matcherService = matcherService;
+        this.objectMapper = objectMapper;
+        if (!this.workers.isEmpty()) {
+            logger.info("Coordinating chunk matching across workers {}", this.workers);
+        }
+    }
+
+    /**
+     * Returns whether worker nodes are configured, i.e. whether this node acts as a coordinator.
+     *
+     * @return true if chunks are dispatched to workers
+     */
+    public boolean isEnabled() {
+        return !workers.isEmpty();
+    }
+
+    /**
+     * Dispatches a chunk to a worker, re-dispatching it to the other workers on failure and matching it locally
+     * once every worker failed.
+     *
+     * @param chunk   the chunk to match
+     * @param options the search options of the job
+     * @return a CompletableFuture that completes with the chunk result, with chunk-relative line numbers
+     */
+    public CompletableFuture<ChunkResult> dispatch(TextChunk chunk, SearchOptions options) {
+        ChunkTask task = new ChunkTask(chunk.withFirstLine(0), options);
+        return dispatch(task, chunk.getFirstLine(), workerOrder(), 0);
+    }
+
+    /**
+     * Matches a chunk sent by a coordinator. This is the worker side of {@link #dispatch(TextChunk, SearchOptions)}.
+     *
+     * @param task the chunk and options received from the coordinator, the chunk starting at line 0
+     * @param firstLine the first line of the chunk inside its document
+     * @param worker the name reported as the producer of the result
+     * @return the chunk result with chunk-relative line numbers
+     */
+    public ChunkResult matchLocally(ChunkTask task, int firstLine, String worker) {
+        return new ChunkResult(task.getChunk().getIndex(), firstLine,
+                matcherService.matchChunk(task.getChunk(), task.getOptions()), worker);
+    }
+
+    private CompletableFuture<ChunkResult> dispatch(ChunkTask task, int firstLine, List<String> order, int attempt) {
+        if (attempt >= order.size()) {
+            logger.warn("All workers failed for chunk {}, matching it locally", task.getChunk().getIndex());
+            return CompletableFuture.supplyAsync(() -> matchLocally(task, firstLine, LOCAL_WORKER));
+        }
+        String worker = order.get(attempt);
+        return send(worker, task)
+                .thenApply(result -> {
+                    result.setFirstLine(firstLine);
+                    result.setWorker(worker);
+                    return CompletableFuture.completedFuture(result);
+                })
+                .exceptionally(ex -> {
+                    logger.warn("Worker {} failed chunk {}, re-dispatching: {}", worker, task.getChunk().getIndex(),
+                            ex.getMessage());
+                    unhealthyUntil.put(worker, System.currentTimeMillis() + workerCooldownMillis);
+                    return dispatch(task, firstLine, order, attempt + 1);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<ChunkResult> send(String worker, ChunkTask task) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(URI.create(worker + V1 + WORKER + CHUNKS))
+                    .timeout(workerTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(task)))
+                    .build();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("HTTP status " + response.statusCode());
+                    }
+                    try {
+                        return objectMapper.readValue(response.body(), ChunkResult.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Returns the workers in the order a chunk tries them: round-robin over all workers, healthy workers first.
+     */
+    private List<String> workerOrder() {
+        int start = Math.floorMod(nextWorker.getAndIncrement(), workers.size());
+        long now = System.currentTimeMillis();
+        List<String> healthy = new ArrayList<>();
+        List<String> cooling = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            String worker = workers.get((start + i) % workers.size());
+            if (unhealthyUntil.getOrDefault(worker, 0L) > now) {
+                cooling.add(worker);
+            } else {
+                healthy.add(worker);
+            }
+        }
+        healthy.addAll(cooling);
+        return healthy;
+    }
+}
@@ -1,12 +1,23 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.RegexChunkResult;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
 import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.model.TraceStage;
+import com.textsearcherv2.util.DeadlineCharSequence;
+import com.textsearcherv2.util.FairChunkScheduler;
+import com.textsearcherv2.util.JobTrace;
+import com.textsearcherv2.util.ProfilingEvents;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
@@ -14,12 +25,17 @@ import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static com.textsearcherv2.controller.ControllerConstants.CORES;
 import static com.textsearcherv2.service.FileReaderService.CHUNK_SIZE_LIMIT;
 import static com.textsearcherv2.service.ServiceConstants.LINE_DELIMITER;
+import static com.textsearcherv2.service.ServiceConstants.REGEX_CHUNK_TIMEOUT_MILLIS;
+import static com.textsearcherv2.service.ServiceConstants.REGEX_LOOKAHEAD_CHARS;
 
 @NoArgsConstructor(force = true)
 @AllArgsConstructor
@@ -31,8 +47,18 @@ public class ContentProcessorService {
 
     @Autowired
     final MatcherService matcherService;
-    // Executor Service for processing chunks
-    private ExecutorService matcherExecutor = Executors.newFixedThreadPool(CORES); // adjust the thr
+    // Executor Service for processing chunks, interleaving the chunks of concurrent jobs by priority
+    private ExecutorService matcherExecutor = new FairChunkScheduler(CORES, "matcher");
+
+    @Autowired
+    private ClusterCoordinatorService clusterCoordinatorService;
+
+    @Autowired
+    @Lazy
+    private AggregatorService aggregatorService;
+
+    @Autowired
+    private ChunkCacheService chunkCacheService;
 
 
     /**
@@ -46,6 +72,342 @@ public class ContentProcessorService {
         return processContentInChunks(content, CHUNK_SIZE_LIMIT);
     }
 
+    /**
+     * Matches the content chunk by chunk on the matcher executor and merges the chunk results.
+     * Unlike {@link #processContentInChunksStep(String)}, the result is typed and every position is absolute
+     * inside the content.
+     *
+     * @param content       The content to be matched.
+     * @param linesPerChunk The number of lines in each chunk.
+     * @param options       The search options of the job.
+     * @return A CompletableFuture that completes with the positions found in the content, grouped by name.
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> matchContentInChunks(String content, int linesPerChunk,
+                                                                                   SearchOptions options) {
+        return matchContentInChunks(null, content, linesPerChunk, options);
+    }
+
+    /**
+     * Matches the content chunk by chunk like {@link #matchContentInChunks(String, int, SearchOptions)}, scheduling
+     * the chunks as tasks of the given job.
+     *
+     * @param jobId         The id of the job, null for none.
+     * @param content       The content to be matched.
+     * @param linesPerChunk The number of lines in each chunk.
+     * @param options       The search options of the job.
+     * @return A CompletableFuture that completes with the positions found in the content, grouped by name.
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> matchContentInChunks(String jobId, String content,
+                                                                                   int linesPerChunk,
+                                                                                   SearchOptions options) {
+        if (options.getMatchMode() == MatchMode.REGEX) {
+            return matchRegexInChunks(splitIntoChunks(content, linesPerChunk, REGEX_LOOKAHEAD_CHARS),
+                    matcherService.compilePattern(options.getPattern()), jobId);
+        }
+        List<TextChunk> chunks = splitIntoChunks(content, linesPerChunk, 0);
+        logger.info("matching content of size {} in {} chunks", content.length(), chunks.size());
+        List<CompletableFuture<Map<String, List<TextPosition>>>> futures = new ArrayList<>();
+        for (TextChunk chunk : chunks) {
+            futures.add(matchChunk(jobId, chunk, options, JobTrace.NONE, null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, List<TextPosition>> merged = new HashMap<>();
+                    for (CompletableFuture<Map<String, List<TextPosition>>> future : futures) {
+                        future.join().forEach((name, positions) ->
+                                merged.computeIfAbsent(name, k -> new ArrayList<>()).addAll(positions));
+                    }
+                    return merged;
+                });
+    }
+
+    /**
+     * Matches one chunk, on a worker node when worker nodes are configured and on the matcher executor otherwise.
+     * A chunk whose text was matched before is served from the chunk cache instead.
+     * Not supported for {@link MatchMode#REGEX}, whose chunks depend on each other.
+     *
+     * @param chunk   The chunk, knowing the document line it starts at.
+     * @param options The search options of the job.
+     * @return A CompletableFuture that completes with the positions found in the chunk, absolute in the document.
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> matchChunk(TextChunk chunk, SearchOptions options) {
+        return matchChunk(null, chunk, options, JobTrace.NONE, null);
+    }
+
+    /**
+     * Matches one chunk like {@link #matchChunk(TextChunk, SearchOptions)} as a task of its job, recording the time
+     * it waits for a matcher thread and the time it is matched, or its round trip to a worker node, in the trace of
+     * its job. A chunk matched locally also commits a {@link ProfilingEvents.ChunkMatched} event.
+     *
+     * @param jobId    The id of the job, whose priority and share of the matcher threads the chunk is scheduled
+     *                 by, null for none.
+     * @param chunk    The chunk, knowing the document line it starts at.
+     * @param options  The search options of the job.
+     * @param trace    The trace of the job.
+     * @param document The URL of the document of the chunk.
+     * @return A CompletableFuture that completes with the positions found in the chunk, absolute in the document.
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> matchChunk(String jobId, TextChunk chunk,
+                                                                         SearchOptions options, JobTrace trace,
+                                                                         String document) {
+        boolean cached = chunkCacheService != null && chunkCacheService.isEnabled();
+        long submitted = trace.now();
+        if (clusterCoordinatorService != null && clusterCoordinatorService.isEnabled()) {
+            CompletableFuture<Map<String, List<TextPosition>>> dispatched = cached
+                    ? chunkCacheService.matchAsync(chunk, options, matcherService.getDictionaryVersion(options),
+                    relative -> dispatchChunk(relative, options))
+                    : dispatchChunk(chunk, options);
+            return trace.isEnabled() ? dispatched.whenComplete((r, ex) ->
+                    trace.record(TraceStage.DISPATCH, submitted, document, chunk.getIndex())) : dispatched;
+        }
+        long submittedNanos = System.nanoTime();
+        return supplyChunk(jobId, () -> {
+            trace.record(TraceStage.QUEUE, submitted, document, chunk.getIndex());
+            long started = trace.now();
+            ProfilingEvents.ChunkMatched event = new ProfilingEvents.ChunkMatched();
+            event.begin(submittedNanos);
+            Map<String, List<TextPosition>> positions = null;
+            try {
+                positions = cached ? chunkCacheService.match(chunk, options,
+                        matcherService.getDictionaryVersion(options),
+                        relative -> matcherService.matchChunk(relative, options), event::setCacheOutcome)
+                        : matcherService.matchChunk(chunk, options);
+                return positions;
+            } finally {
+                trace.record(TraceStage.MATCH, started, document, chunk.getIndex());
+                event.commit(jobId, document, chunk, positions);
+            }
+        });
+    }
+
+    /**
+     * Registers a starting job with the matcher threads, so its chunks are scheduled by its priority.
+     *
+     * @param jobId    the id of the job
+     * @param priority the priority of the job
+     */
+    public void startJob(String jobId, JobPriority priority) {
+        if (matcherExecutor instanceof FairChunkScheduler scheduler) {
+            scheduler.registerJob(jobId, priority);
+        }
+    }
+
+    /**
+     * Unregisters a completed job from the matcher threads.
+     *
+     * @param jobId the id of the job
+     */
+    public void finishJob(String jobId) {
+        if (matcherExecutor instanceof FairChunkScheduler scheduler) {
+            scheduler.unregisterJob(jobId);
+        }
+    }
+
+    /**
+     * Cancels the chunks of a job waiting for a matcher thread. They fail with a {@link CancellationException} right
+     * away, so the memory they hold and reserve is freed without matching them, and the chunks the job submits
+     * from then on fail the same way. Chunks being matched finish.
+     *
+     * @param jobId the id of the job
+     */
+    public void cancelJob(String jobId) {
+        if (matcherExecutor instanceof FairChunkScheduler scheduler) {
+            List<Runnable> cancelled = scheduler.cancelJob(jobId);
+            cancelled.forEach(task -> ((CancellableChunk<?>) task).cancel());
+            logger.info("Cancelled {} queued chunks of job {}", cancelled.size(), jobId);
+        }
+    }
+
+    /**
+     * Runs a chunk task of a job on its executor. A task the executor rejects, because the job was cancelled, fails
+     * its future instead.
+     */
+    private <T> CompletableFuture<T> supplyChunk(String jobId, Supplier<T> match) {
+        CancellableChunk<T> task = new CancellableChunk<>(match);
+        try {
+            executorFor(jobId).execute(task);
+        } catch (RejectedExecutionException e) {
+            task.result.completeExceptionally(new CancellationException(e.getMessage()));
+        }
+        return task.result;
+    }
+
+    /**
+     * Returns the executor the chunks of a job run on: its share of the fair scheduler, or the matcher executor as
+     * it is when it is not one.
+     */
+    private Executor executorFor(String jobId) {
+        return jobId != null && matcherExecutor instanceof FairChunkScheduler scheduler
+                ? scheduler.forJob(jobId) : matcherExecutor;
+    }
+
+    private CompletableFuture<Map<String, List<TextPosition>>> dispatchChunk(TextChunk chunk, SearchOptions options) {
+        return clusterCoordinatorService.dispatch(chunk, options)
+                .thenApply(result -> aggregatorService.mergeChunkResults(List.of(result)));
+    }
+
+    /**
+     * Matches a regular expression chunk by chunk in parallel. Each chunk is scanned with a lookahead into the next
+     * chunk, so a match crossing a chunk boundary is found in full by the chunk it starts in. The chunk results are
+     * then merged in document order: when a match ran into the next chunk, that chunk is rescanned from the end of
+     * the match. A chunk whose scan read to the end of a lookahead short of the end of the content may have had a
+     * match cut short, missed or wrongly found, however long the lookahead; from such a chunk on, the content is
+     * scanned sequentially until the scan reaches a chunk whose own result is final and that no match runs into.
+     * The merged matches are thus those of one sequential scan over the whole content, a pattern whose matches
+     * run far past the lookahead costing a sequential scan of the chunks they cross.
+     *
+     * @param chunks  The chunks of the content, with their lookahead.
+     * @param pattern The compiled pattern.
+     * @param jobId   The id of the job, null for none.
+     * @return A CompletableFuture that completes with the matches, keyed by matched text.
+     */
+    private CompletableFuture<Map<String, List<TextPosition>>> matchRegexInChunks(List<TextChunk> chunks,
+                                                                                 Pattern pattern, String jobId) {
+        List<CompletableFuture<RegexChunkResult>> futures = new ArrayList<>();
+        for (TextChunk chunk : chunks) {
+            futures.add(supplyChunk(jobId, () -> matcherService.matchChunkRegex(chunk, pattern, 0)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> new RegexChunkMerge(chunks, futures, pattern).merge());
+    }
+
+    /**
+     * Merges the regex results of the chunks of a content in document order, falling back to sequential scans where
+     * a chunk result is not final. Runs on one thread.
+     */
+    private final class RegexChunkMerge {
+        private final List<TextChunk> chunks;
+        private final List<CompletableFuture<RegexChunkResult>> futures;
+        private final Pattern pattern;
+        private final Map<String, List<TextPosition>> merged = new HashMap<>();
+        // the chunks joined by line feeds and the offset of each in it, built on the first sequential scan
+        private String text;
+        private int[] chunkStarts;
+
+        private RegexChunkMerge(List<TextChunk> chunks, List<CompletableFuture<RegexChunkResult>> futures,
+                                Pattern pattern) {
+            this.chunks = chunks;
+            this.futures = futures;
+            this.pattern = pattern;
+        }
+
+        private Map<String, List<TextPosition>> merge() {
+            int carriedEnd = 0;
+            int i = 0;
+            while (i < chunks.size()) {
+                TextChunk chunk = chunks.get(i);
+                RegexChunkResult result = futures.get(i).join();
+                if (carriedEnd > 0 && result.getFirstMatchStart() >= 0 && result.getFirstMatchStart() < carriedEnd) {
+                    result = matcherService.matchChunkRegex(chunk, pattern, carriedEnd);
+                }
+                if (!isFinal(i, result)) {
+                    i = matchSequentially(i, Math.max(carriedEnd, 0));
+                    carriedEnd = 0;
+                    continue;
+                }
+                result.getPositionsByName().forEach((match, positions) ->
+                        merged.computeIfAbsent(match, k -> new ArrayList<>()).addAll(positions));
+                // offset of the end of the last match inside the next chunk, past the separating line feed
+                carriedEnd = result.getMatchesEnd() - (chunk.getText().length() + 1);
+                i++;
+            }
+            return merged;
+        }
+
+        /**
+         * Tells whether the result of a chunk is the one of a sequential scan: its scan did not read to the end of
+         * its input, or its input ran to the end of the content.
+         */
+        private boolean isFinal(int index, RegexChunkResult result) {
+            if (!result.isHitEnd() || index == chunks.size() - 1) {
+                return true;
+            }
+            String lookahead = chunks.get(index).getLookahead();
+            return index == chunks.size() - 2 && lookahead != null
+                    && lookahead.length() == chunks.get(index + 1).getText().length() + 1;
+        }
+
+        /**
+         * Scans the content sequentially from an offset of a chunk on, until a match starts in a later chunk whose
+         * own result is final and that no earlier match ran into. That chunk and the following ones are merged from
+         * their parallel results again: the attempts the sequential scan made up to that match failed in the chunk
+         * as well, and the chunk found the same match. The scan has the time budget of the chunks it may cover.
+         *
+         * @return the index of the chunk to go on merging from, the number of chunks if the scan reached the end
+         */
+        private int matchSequentially(int first, int fromOffset) {
+            if (text == null) {
+                chunkStarts = new int[chunks.size()];
+                StringBuilder joined = new StringBuilder();
+                for (int i = 0; i < chunks.size(); i++) {
+                    if (i > 0) {
+                        joined.append(LINE_DELIMITER);
+                    }
+                    chunkStarts[i] = joined.length();
+                    joined.append(chunks.get(i).getText());
+                }
+                text = joined.toString();
+            }
+            logger.debug("Matching the chunks from chunk {} on sequentially", first);
+            long budgetNanos = TimeUnit.MILLISECONDS.toNanos(REGEX_CHUNK_TIMEOUT_MILLIS) * (chunks.size() - first);
+            Matcher matcher = pattern.matcher(new DeadlineCharSequence(text, System.nanoTime() + budgetNanos))
+                    .useTransparentBounds(true)
+                    .useAnchoringBounds(false)
+                    .region(Math.min(chunkStarts[first] + fromOffset, text.length()), text.length());
+            int owner = first;
+            int lastEnd = 0;
+            int lineNumber = chunks.get(first).getFirstLine();
+            int cursor = chunkStarts[first];
+            int lineStart = cursor;
+            while (matcher.find()) {
+                int start = matcher.start();
+                if (matcher.end() == start) {
+                    continue;
+                }
+                while (owner + 1 < chunks.size() && start >= chunkStarts[owner + 1]) {
+                    owner++;
+                }
+                if (owner > first && lastEnd <= chunkStarts[owner] && isFinal(owner, futures.get(owner).join())) {
+                    return owner;
+                }
+                for (; cursor < start; cursor++) {
+                    if (text.charAt(cursor) == '\n') {
+                        lineNumber++;
+                        lineStart = cursor + 1;
+                    }
+                }
+                merged.computeIfAbsent(matcher.group(), k -> new ArrayList<>())
+                        .add(new TextPosition(lineNumber, start - lineStart));
+                lastEnd = matcher.end();
+            }
+            return chunks.size();
+        }
+    }
+
+    /**
+     * Splits the content into chunks of consecutive lines, in document order.
+     *
+     * @param content        The content to split.
+     * @param linesPerChunk  The number of lines in each chunk.
+     * @param lookaheadChars How many characters following each chunk to attach as its lookahead, 0 for none.
+     * @return The chunks, each knowing the document line it starts at.
+     */
+    List<TextChunk> splitIntoChunks(String content, int linesPerChunk, int lookaheadChars) {
+        List<TextChunk> chunks = new ArrayList<>();
+        List<String> lines = new BufferedReader(new StringReader(content)).lines().collect(Collectors.toList());
+        for (int firstLine = 0; firstLine < lines.size(); firstLine += linesPerChunk) {
+            List<String> chunkLines = lines.subList(firstLine, Math.min(firstLine + linesPerChunk, lines.size()));
+            chunks.add(new TextChunk(chunks.size(), firstLine, String.join(LINE_DELIMITER, chunkLines)));
+        }
+        if (lookaheadChars > 0) {
+            for (int i = 0; i + 1 < chunks.size(); i++) {
+                String next = chunks.get(i + 1).getText();
+                chunks.get(i).setLookahead(LINE_DELIMITER + next.substring(0, Math.min(next.length(), lookaheadChars - 1)));
+            }
+        }
+        return chunks;
+    }
+
     private String logException(Throwable throwable) {
         logger.info("Exception occurred during content processing", throwable);
         return null; // Returning null as an error signal
@@ -131,4 +493,29 @@ public class ContentProcessorService {
                         .map(CompletableFuture::join)
                         .collect(Collectors.toList()));
     }
+
+    /**
+     * A chunk matched on a matcher thread, whose future fails if the chunk is cancelled before it runs.
+     */
+    private static final class CancellableChunk<T> implements Runnable {
+        private final Supplier<T> match;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private CancellableChunk(Supplier<T> match) {
+            this.match = match;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(match.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+
+        private void cancel() {
+            result.completeExceptionally(new CancellationException("The job was cancelled"));
+        }
+    }
 }
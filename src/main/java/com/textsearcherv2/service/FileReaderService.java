@@ -1,7 +1,19 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.model.ChunkCheckpoint;
+import com.textsearcherv2.model.DocumentCheckpoint;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.TextChunk;
 import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.model.TraceStage;
 import com.textsearcherv2.exception.InvalidFileException;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.util.CancellationToken;
+import com.textsearcherv2.util.Compression;
+import com.textsearcherv2.util.JobTrace;
+import com.textsearcherv2.util.LineChunkReader;
+import com.textsearcherv2.util.NameStatistics;
+import com.textsearcherv2.util.ProfilingEvents;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,22 +21,30 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import com.textsearcherv2.validation.UrlValidationService;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import static com.textsearcherv2.controller.ControllerConstants.CORES;
+import static com.textsearcherv2.service.ServiceConstants.DECODE_WINDOW_MEMBERS;
+import static com.textsearcherv2.service.ServiceConstants.MAX_IN_FLIGHT_CHUNKS;
 import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
 
 @Service
@@ -51,15 +71,41 @@ public class FileReaderService {
     @Autowired
     private ContentProcessorService contentProcessorService;
 
-    private static final Logger logger = LogManager.getLogger(FileReaderService.class);
+    @Autowired
+    private CheckpointService checkpointService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private FollowService followService;
+
+    @Autowired
+    private TracingService tracingService;
+
+    @Autowired
+    private ScanBatchService scanBatchService;
 
-    private Map<String, List<TextPosition>> aggregatedResults = new ConcurrentHashMap<>();
+    @Autowired
+    private CancellationService cancellationService;
 
-    private List<Map<String, List<TextPosition>>> resultsByPart = new ArrayList<>();
+    // Bytes a chunk may hold, lines beyond it are cut into overlapping segments
+    @Value("${textsearcher.chunk.max-bytes:1048576}")
+    private int maxChunkBytes = 1048576;
+
+    private static final Logger logger = LogManager.getLogger(FileReaderService.class);
 
     // Executor Service for processing chunks
     private ExecutorService matcherExecutor = Executors.newFixedThreadPool(CORES); // adjust the thread count as needed
 
+    private HttpClient httpClient = HttpClient.newHttpClient();
+
+    // Threads reading response bodies, they block on the network and on the in-flight chunk limit
+    private ExecutorService fetchExecutor = Executors.newCachedThreadPool();
+
+    // Threads inflating the members of BGZF documents ahead of the readers
+    private ExecutorService decoderExecutor = Executors.newFixedThreadPool(CORES);
+
     /**
      * Asynchronously fetches the content from a given URL.
      *
@@ -104,6 +150,490 @@ public class FileReaderService {
     }
 
 
+    /**
+     * Asynchronously fetches the content of one document of a job, matches it chunk by chunk and aggregates the
+     * positions into the partition of the job.
+     *
+     * <p>
+     * The body is streamed and cut into chunks as it arrives, with at most
+     * {@link ServiceConstants#MAX_IN_FLIGHT_CHUNKS} chunks read ahead of the matchers, and never more than the
+     * global in-flight byte budget of {@link AdmissionControlService} across all documents. Each matched chunk is
+     * checkpointed in document order with the byte offset reached, so if the job is resumed after a restart the
+     * document is fetched again from that offset with a Range request and the chunks already matched are skipped.
+     * {@link MatchMode#REGEX} documents are fetched and matched as a whole, because their chunks are merged in
+     * order with matches carried across chunk boundaries.
+     * </p>
+     *
+     * <p>
+     * In follow mode the scan starts where the last follow scan of the document stopped, see {@link FollowService},
+     * so only the appended bytes are fetched and only the appended lines matched. A final line without its line
+     * break is left for the next scan. A document found shorter than the point reached before was truncated or
+     * replaced, and is scanned in full again.
+     * </p>
+     *
+     * @param jobId       The id of the job the document belongs to.
+     * @param url         The URL to fetch content from.
+     * @param linePerPart The number of lines per chunk.
+     * @param options     The search options of the job.
+     * @return A CompletableFuture that completes once the document is aggregated. Unlike
+     * {@link #fetchContentAndProcess(String, int)} it completes exceptionally on failure, so the job can attribute
+     * the error to the document.
+     */
+    public CompletableFuture<Void> fetchContentAndProcess(String jobId, String url, int linePerPart,
+                                                          SearchOptions options) {
+        if (!urlValidationService.isValidUrl(url)) {
+            logger.warn("Invalid or unsafe URL provided: {}", url);
+            return CompletableFuture.failedFuture(new InvalidFileException("Invalid or unsafe URL"));
+        }
+
+        JobTrace trace = trace(jobId);
+        CancellationToken token = token(jobId);
+        if (token.isCancelled()) {
+            return CompletableFuture.failedFuture(token.cancellationException());
+        }
+        if (options.getMatchMode() == MatchMode.REGEX) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .build();
+            long fetchStarted = trace.now();
+            return send(token, request)
+                    .thenApply(response -> fetched(trace, fetchStarted, url, response))
+                    .thenApplyAsync(response -> readDecodedBody(response, url, token), fetchExecutor)
+                    .thenCompose(body -> {
+                        long matchStarted = trace.now();
+                        return contentProcessorService.matchContentInChunks(jobId, body, linePerPart, options)
+                                .whenComplete((r, ex) -> trace.record(TraceStage.MATCH, matchStarted, url, -1));
+                    })
+                    .thenApply(positions -> aggregateStatistics(token, jobId, url, options, positions))
+                    .thenCompose(positions -> aggregate(trace, token, jobId, url, options, positions));
+        }
+
+        DocumentCheckpoint checkpoint = checkpointService.resumePoint(jobId, url);
+        if (options.isFollow() && checkpoint.getOffset() == 0 && !checkpoint.isComplete()) {
+            checkpoint = followService.resumePoint(url, options);
+            if (checkpoint.getOffset() > 0) {
+                logger.info("Job {} follows {} from byte {}, line {}", jobId, url, checkpoint.getOffset(),
+                        checkpoint.getNextLine());
+                // the positions of the earlier scans head the log, so a restart resumes with them
+                checkpointService.recordChunk(jobId, url, new ChunkCheckpoint(checkpoint.getNextChunkIndex() - 1,
+                        checkpoint.getOffset(), checkpoint.getNextLine(), checkpoint.getPositionsByName(), false));
+            }
+        } else if (checkpoint.getOffset() > 0 && !checkpoint.isComplete()) {
+            logger.info("Job {} resumes {} at byte {}, line {}", jobId, url, checkpoint.getOffset(),
+                    checkpoint.getNextLine());
+        }
+        DocumentCheckpoint resume = checkpoint;
+        CompletableFuture<Map<String, List<TextPosition>>> scanned;
+        if (resume.isComplete()) {
+            logger.info("Job {} restores {} from its checkpoint", jobId, url);
+            scanned = CompletableFuture.completedFuture(
+                    aggregateStatistics(token, jobId, url, options, resume.getPositionsByName()));
+        } else if (scanBatchService != null && scanBatchService.isBatchable(options, resume.getOffset())) {
+            scanned = scanBatchService.scan(jobId, url, options,
+                            combined -> fetchAndScan(trace, token, jobId, url, linePerPart, combined, resume))
+                    .thenApply(positions -> aggregateStatistics(token, jobId, url, options, positions));
+        } else {
+            scanned = fetchAndScan(trace, token, jobId, url, linePerPart, options, resume);
+        }
+        return scanned
+                .thenApply(positions -> {
+                    if (options.isFollow()) {
+                        followService.record(url, options, resume);
+                    }
+                    return positions;
+                })
+                .thenCompose(positions -> aggregate(trace, token, jobId, url, options, positions));
+    }
+
+    private CompletableFuture<Map<String, List<TextPosition>>> fetchAndScan(JobTrace trace, CancellationToken token,
+                                                                            String jobId, String url, int linePerPart,
+                                                                            SearchOptions options,
+                                                                            DocumentCheckpoint resume) {
+        long fetchStarted = trace.now();
+        return send(token, documentRequest(url, resume.getOffset()))
+                .thenApply(response -> fetched(trace, fetchStarted, url, response))
+                .thenApplyAsync(response -> scanCancellable(token, jobId, url, response, linePerPart, options, resume),
+                        fetchExecutor);
+    }
+
+    private JobTrace trace(String jobId) {
+        return tracingService == null ? JobTrace.NONE : tracingService.trace(jobId);
+    }
+
+    private CancellationToken token(String jobId) {
+        return cancellationService == null ? CancellationToken.NONE : cancellationService.token(jobId);
+    }
+
+    /**
+     * Sends a request for a streamed body, aborting the exchange if the job is cancelled before the response
+     * arrives.
+     *
+     * @return the response, or a future failed with a {@link CancellationException} once the job is cancelled
+     */
+    private CompletableFuture<HttpResponse<InputStream>> send(CancellationToken token, HttpRequest request) {
+        CompletableFuture<HttpResponse<InputStream>> sent =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CancellationToken.Registration abort = token.onCancel(() -> sent.cancel(true));
+        return sent.handle((response, ex) -> {
+            abort.close();
+            if (token.isCancelled()) {
+                if (response != null) {
+                    closeQuietly(response.body());
+                }
+                throw token.cancellationException();
+            }
+            if (ex != null) {
+                throw ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Scans a document as {@link #scanDocument} does, stopping as soon as the job is cancelled: the body is closed
+     * and the scanning thread interrupted, which wakes it from reading the body or waiting to submit a chunk.
+     *
+     * @throws CancellationException once the job is cancelled
+     */
+    private Map<String, List<TextPosition>> scanCancellable(CancellationToken token, String jobId, String url,
+                                                            HttpResponse<InputStream> response, int linePerPart,
+                                                            SearchOptions options, DocumentCheckpoint resume) {
+        try (CancellationToken.Registration interrupt = token.interruptOnCancel();
+             CancellationToken.Registration closeBody = token.onCancel(() -> closeQuietly(response.body()))) {
+            return scanDocument(token, jobId, url, response, linePerPart, options, resume);
+        } catch (RuntimeException e) {
+            if (token.isCancelled()) {
+                throw token.cancellationException();
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            logger.debug("Closing a response body failed", e);
+        }
+    }
+
+    /**
+     * Merges the statistics of positions into those of the document, if the job computes statistics.
+     *
+     * @return the positions
+     * @throws CancellationException if the job was cancelled, whose statistics were discarded
+     */
+    private Map<String, List<TextPosition>> aggregateStatistics(CancellationToken token, String jobId, String url,
+                                                               SearchOptions options,
+                                                               Map<String, List<TextPosition>> positions) {
+        token.throwIfCancelled();
+        if (options.isStatistics() && !positions.isEmpty()) {
+            NameStatistics statistics = aggregatorService.newStatistics();
+            statistics.addChunk(ownPositions(options, positions));
+            aggregatorService.aggregateStatistics(jobId, url, statistics);
+        }
+        return positions;
+    }
+
+    private HttpResponse<InputStream> fetched(JobTrace trace, long fetchStarted, String url,
+                                              HttpResponse<InputStream> response) {
+        trace.record(TraceStage.FETCH, fetchStarted, url, -1);
+        return response;
+    }
+
+    /**
+     * Returns the positions of the names the job searches for, those of the default dictionary for a job without
+     * names. The checkpoints of a job that led a batched scan hold the positions of the names of every job of the
+     * batch, so a job resumed or restored from them drops the others.
+     */
+    private static Map<String, List<TextPosition>> ownPositions(SearchOptions options,
+                                                                Map<String, List<TextPosition>> positions) {
+        Set<String> names = options.getNames() == null ? PERSON_NAMES : new HashSet<>(options.getNames());
+        if (names.containsAll(positions.keySet())) {
+            return positions;
+        }
+        Map<String, List<TextPosition>> own = new HashMap<>();
+        positions.forEach((name, namePositions) -> {
+            if (names.contains(name)) {
+                own.put(name, namePositions);
+            }
+        });
+        return own;
+    }
+
+    private CompletableFuture<Void> aggregate(JobTrace trace, CancellationToken token, String jobId, String url,
+                                              SearchOptions options, Map<String, List<TextPosition>> positions) {
+        if (token.isCancelled()) {
+            return CompletableFuture.failedFuture(token.cancellationException());
+        }
+        long started = trace.now();
+        return aggregatorService.aggregateDocument(jobId, url, ownPositions(options, positions))
+                .whenComplete((v, ex) -> trace.record(TraceStage.AGGREGATE, started, url, -1));
+    }
+
+    /**
+     * Builds the request of a document, for the bytes from the given offset on unless the document is compressed.
+     */
+    private HttpRequest documentRequest(String url, long offset) {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(url));
+        if (offset > 0 && Compression.fromExtension(url) == Compression.NONE) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+        return request.build();
+    }
+
+    /**
+     * Reads a document body chunk by chunk, matches the chunks and checkpoints them in document order. A body
+     * compressed with gzip, zstd or bzip2, as told by its Content-Encoding or the extension of the URL, is decoded
+     * as it streams in; offsets then count decoded bytes.
+     *
+     * @param jobId       The id of the job the document belongs to.
+     * @param url         The URL of the document.
+     * @param response    The response, streaming the document from the resume point.
+     * @param linePerPart The number of lines per chunk.
+     * @param options     The search options of the job.
+     * @param resume      The point the scan resumes from, its positions are completed in place and it is advanced
+     *                    to the point the scan stopped at.
+     * @return The positions found in the whole document, grouped by name.
+     * @throws InvalidFileException if the status code is not 2xx or the server answered another byte range
+     */
+    private Map<String, List<TextPosition>> scanDocument(CancellationToken token, String jobId, String url,
+                                                         HttpResponse<InputStream> response, int linePerPart,
+                                                         SearchOptions options, DocumentCheckpoint resume) {
+        Map<String, List<TextPosition>> positions = resume.getPositionsByName();
+        try {
+            Compression compression = compressionOf(response, url);
+            if (response.statusCode() == 206 && compression != Compression.NONE) {
+                // the range applies to the encoded bytes, so decoding has to start over from the first byte
+                response.body().close();
+                response = httpClient.send(HttpRequest.newBuilder().uri(URI.create(url)).build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                compression = compressionOf(response, url);
+            }
+            if (options.isFollow() && resume.getOffset() > 0 && isShorterThan(response, compression,
+                    resume.getOffset())) {
+                response.body().close();
+                return rescanTruncated(token, jobId, url, linePerPart, options, resume);
+            }
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 416 && resume.getOffset() > 0) {
+                    // the document was read to its end before the restart, only the end marker was lost, or in
+                    // follow mode nothing was appended since the last scan
+                    checkpointService.recordChunk(jobId, url, new ChunkCheckpoint(resume.getNextChunkIndex(),
+                            resume.getOffset(), resume.getNextLine(), null, true));
+                    return positions;
+                }
+                if (response.statusCode() / 100 != 2) {
+                    throw new InvalidFileException("Fetching " + url + " failed with HTTP status "
+                            + response.statusCode());
+                }
+                try (InputStream decoded = compression.decode(body, decoderExecutor, DECODE_WINDOW_MEMBERS)) {
+                    if (resume.getOffset() > 0) {
+                        try {
+                            skipToResumeOffset(url, response, decoded, resume.getOffset());
+                        } catch (EOFException e) {
+                            if (!options.isFollow()) {
+                                throw e;
+                            }
+                            // the decoded document ends before the point reached by the last follow scan
+                            return rescanTruncated(token, jobId, url, linePerPart, options, resume);
+                        }
+                    }
+                    matchChunks(token, jobId, url, new LineChunkReader(decoded, linePerPart, resume.getOffset(),
+                            resume.getNextLine(), resume.getNextChunkIndex(), options.isFollow(), maxChunkBytes,
+                            contentProcessorService.getMatcherService().getSegmentOverlap(options)), options, resume);
+                }
+            }
+            return positions;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reading " + url + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading " + url, e);
+        }
+    }
+
+    /**
+     * Tells whether a follow scan found the document shorter than the offset it resumes from: a server refusing the
+     * range for a document of fewer bytes, or sending the whole document in fewer bytes. The size of a compressed
+     * document tells nothing about its decoded size, which is checked while skipping instead.
+     */
+    private boolean isShorterThan(HttpResponse<InputStream> response, Compression compression, long offset) {
+        if (response.statusCode() == 416) {
+            // Content-Range: bytes */<complete length>
+            String contentRange = response.headers().firstValue("Content-Range").orElse("");
+            int slash = contentRange.indexOf("*/");
+            try {
+                return slash >= 0 && Long.parseLong(contentRange.substring(slash + 2).trim()) < offset;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return response.statusCode() == 200 && compression == Compression.NONE
+                && response.headers().firstValueAsLong("Content-Length").orElse(Long.MAX_VALUE) < offset;
+    }
+
+    /**
+     * Scans a document in full again after a follow scan found it truncated, dropping what was found before.
+     */
+    private Map<String, List<TextPosition>> rescanTruncated(CancellationToken token, String jobId, String url,
+                                                            int linePerPart, SearchOptions options,
+                                                            DocumentCheckpoint resume)
+            throws IOException, InterruptedException {
+        logger.info("Job {} found {} shorter than byte {}, scanning it from the start", jobId, url,
+                resume.getOffset());
+        checkpointService.discardDocument(jobId, url);
+        aggregatorService.discardStatistics(jobId, url);
+        resume.setOffset(0);
+        resume.setNextLine(0);
+        resume.setNextChunkIndex(0);
+        resume.getPositionsByName().clear();
+        HttpResponse<InputStream> response = httpClient.send(documentRequest(url, 0),
+                HttpResponse.BodyHandlers.ofInputStream());
+        return scanDocument(token, jobId, url, response, linePerPart, options, resume);
+    }
+
+    /**
+     * Matches the chunks of a reader, checkpointing them and merging their positions in document order, then
+     * checkpoints the end of the document and advances the resume point to it. The segments of a long line are
+     * checkpointed together with its last segment, since a scan resumes at line boundaries only. With statistics,
+     * each chunk is accumulated on the thread that matched it, and the positions of earlier scans once up front.
+     */
+    private void matchChunks(CancellationToken token, String jobId, String url, LineChunkReader reader,
+                             SearchOptions options, DocumentCheckpoint resume)
+            throws IOException, InterruptedException {
+        Map<String, List<TextPosition>> positions = resume.getPositionsByName();
+        JobTrace trace = trace(jobId);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_CHUNKS);
+        CompletableFuture<Void> committed = CompletableFuture.completedFuture(null);
+        // positions of the segments of a long line read so far, committed in order so never accessed concurrently
+        Map<String, List<TextPosition>> lineSegmentPositions = new HashMap<>();
+        aggregateStatistics(token, jobId, url, options, positions);
+        while (!committed.isCompletedExceptionally()) {
+            token.throwIfCancelled();
+            long readStarted = trace.now();
+            ProfilingEvents.ChunkFetched fetched = new ProfilingEvents.ChunkFetched();
+            fetched.begin();
+            TextChunk chunk = reader.next();
+            if (chunk == null) {
+                break;
+            }
+            fetched.end();
+            trace.record(TraceStage.READ, readStarted, url, chunk.getIndex());
+            long admitStarted = trace.now();
+            long admitStartedNanos = System.nanoTime();
+            inFlight.acquire();
+            int reservedBytes = admissionControlService.acquireBytes(heapBytes(chunk));
+            trace.record(TraceStage.ADMIT, admitStarted, url, chunk.getIndex());
+            fetched.commit(jobId, url, chunk, admitStartedNanos);
+            ChunkCheckpoint checkpoint = new ChunkCheckpoint(chunk.getIndex(), reader.getOffset(),
+                    reader.getNextLine(), null, false);
+            boolean insideLine = chunk.isSegment() && chunk.getLookahead() != null;
+            CompletableFuture<Map<String, List<TextPosition>>> matched =
+                    contentProcessorService.matchChunk(jobId, chunk, options, trace, url).whenComplete((r, ex) -> {
+                        admissionControlService.releaseBytes(reservedBytes);
+                        inFlight.release();
+                    }).thenApply(chunkPositions -> aggregateStatistics(token, jobId, url, options, chunkPositions));
+            // each commit waits for the previous one, so chunks are checkpointed and merged in document order
+            committed = committed.thenCombine(matched, (v, chunkPositions) -> {
+                // a cancelled job left its checkpoint deleted, a late commit must not write it again
+                token.throwIfCancelled();
+                long commitStarted = trace.now();
+                ProfilingEvents.ChunkMerged merged = new ProfilingEvents.ChunkMerged();
+                merged.begin();
+                chunkPositions.forEach((name, namePositions) ->
+                        positions.computeIfAbsent(name, k -> new ArrayList<>()).addAll(namePositions));
+                if (insideLine || !lineSegmentPositions.isEmpty()) {
+                    chunkPositions.forEach((name, namePositions) -> lineSegmentPositions
+                            .computeIfAbsent(name, k -> new ArrayList<>()).addAll(namePositions));
+                    if (insideLine) {
+                        trace.record(TraceStage.COMMIT, commitStarted, url, chunk.getIndex());
+                        merged.commit(jobId, url, chunk.getIndex(), chunkPositions);
+                        return null;
+                    }
+                    chunkPositions = new HashMap<>(lineSegmentPositions);
+                    lineSegmentPositions.clear();
+                }
+                checkpoint.setPositionsByName(chunkPositions);
+                checkpointService.recordChunk(jobId, url, checkpoint);
+                trace.record(TraceStage.COMMIT, commitStarted, url, chunk.getIndex());
+                merged.commit(jobId, url, chunk.getIndex(), chunkPositions);
+                return null;
+            });
+        }
+        committed.join();
+        token.throwIfCancelled();
+        checkpointService.recordChunk(jobId, url, new ChunkCheckpoint(reader.getNextChunkIndex(),
+                reader.getOffset(), reader.getNextLine(), null, true));
+        resume.setOffset(reader.getOffset());
+        resume.setNextLine(reader.getNextLine());
+        resume.setNextChunkIndex(reader.getNextChunkIndex());
+        resume.setComplete(true);
+    }
+
+    /**
+     * Returns the bytes a chunk holds on the heap until it is matched: two per character of its text, lookbehind and
+     * lookahead, the most a String takes. Charging characters instead would let text outside Latin-1 hold twice the
+     * in-flight budget.
+     */
+    private static int heapBytes(TextChunk chunk) {
+        long chars = (long) chunk.getText().length()
+                + (chunk.getLookbehind() == null ? 0 : chunk.getLookbehind().length())
+                + (chunk.getLookahead() == null ? 0 : chunk.getLookahead().length());
+        return (int) Math.min(Integer.MAX_VALUE, 2 * chars);
+    }
+
+    /**
+     * Positions the body at the resume offset. A server honouring the Range request starts the body there; for a
+     * server ignoring it, or a compressed document, whose offsets count decoded bytes, the already scanned bytes
+     * are skipped.
+     */
+    private void skipToResumeOffset(String url, HttpResponse<InputStream> response, InputStream body, long offset)
+            throws IOException {
+        if (response.statusCode() == 206) {
+            String contentRange = response.headers().firstValue("Content-Range").orElse("");
+            if (!contentRange.startsWith("bytes " + offset + "-")) {
+                throw new InvalidFileException("Resuming " + url + " at byte " + offset
+                        + " returned the range " + contentRange);
+            }
+            return;
+        }
+        logger.info("Skipping the {} bytes of {} scanned before the restart", offset, url);
+        body.skipNBytes(offset);
+    }
+
+    /**
+     * Reads the whole decoded body of the response as UTF-8 text, failing for any non 2xx status code.
+     *
+     * @param response the HTTP response
+     * @param url      the URL the response was fetched from
+     * @param token    the token of the job, closing the body and interrupting the reading thread once cancelled
+     * @return the decoded response body
+     * @throws InvalidFileException if the status code is not 2xx
+     */
+    private String readDecodedBody(HttpResponse<InputStream> response, String url, CancellationToken token) {
+        try (InputStream body = response.body();
+             CancellationToken.Registration interrupt = token.interruptOnCancel();
+             CancellationToken.Registration closeBody = token.onCancel(() -> closeQuietly(body))) {
+            if (response.statusCode() / 100 != 2) {
+                throw new InvalidFileException("Fetching " + url + " failed with HTTP status " + response.statusCode());
+            }
+            try (InputStream decoded = compressionOf(response, url).decode(body, decoderExecutor,
+                    DECODE_WINDOW_MEMBERS)) {
+                return new String(decoded.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            if (token.isCancelled()) {
+                throw token.cancellationException();
+            }
+            throw new UncheckedIOException("Reading " + url + " failed", e);
+        }
+    }
+
+    private Compression compressionOf(HttpResponse<?> response, String url) {
+        return Compression.detect(response.headers().firstValue("Content-Encoding").orElse(null), url);
+    }
+
     private Map<String, List<TextPosition>> transformListToMap(List<String> contentList) {
         Map<String, List<TextPosition>> namePositions = new HashMap<>();
 
@@ -265,6 +795,24 @@ public class FileReaderService {
         return allFutures;
     }
 
+    /**
+     * Starts fetching and processing every URL of a job. The returned futures are in the same order as the URLs.
+     *
+     * @param jobId       The id of the job the URLs belong to
+     * @param fileURLs    The list of URLs to fetch content from
+     * @param linePerPart The number of lines per chunk
+     * @param options     The search options of the job
+     * @return one CompletableFuture per URL, completing once that document is aggregated
+     */
+    public List<CompletableFuture<Void>> getFutureListFromUrl(String jobId, final List<String> fileURLs,
+                                                              int linePerPart, SearchOptions options) {
+        List<CompletableFuture<Void>> allFutures = new ArrayList<>();
+        for (String fileURL : fileURLs) {
+            allFutures.add(this.fetchContentAndProcess(jobId, fileURL, linePerPart, options));
+        }
+        return allFutures;
+    }
+
     /**
      * Returns a list of CompletableFuture objects for the given list of file URLs.
      * Each CompletableFuture represents a task that processes a URL and returns void.
@@ -0,0 +1,100 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.model.DocumentCheckpoint;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers how far documents scanned in follow mode were read, so the next follow scan of a growing document
+ * fetches and matches only the lines appended since.
+ *
+ * <p>
+ * For every document and match options it keeps the byte offset and line number after the last complete line,
+ * the index of the next chunk, and the positions found so far. A follow scan starts from there and its new
+ * positions, numbered from that line on, are added to the earlier ones. At most
+ * {@code textsearcher.follow.max-documents} documents are remembered, the least recently scanned is forgotten
+ * first and scanned in full again by its next follow scan. The state lives in memory, so follow scans after a
+ * restart start over from the first byte.
+ * </p>
+ */
+@Service
+@Log4j2
+public class FollowService {
+    private static final Logger logger = LogManager.getLogger(FollowService.class);
+
+    private final Map<FollowKey, DocumentCheckpoint> documents;
+
+    public FollowService(@Value("${textsearcher.follow.max-documents:1000}") int maxDocuments) {
+        if (maxDocuments <= 0) {
+            throw new IllegalArgumentException("The number of followed documents must be positive");
+        }
+        this.documents = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FollowKey, DocumentCheckpoint> eldest) {
+                return size() > maxDocuments;
+            }
+        };
+    }
+
+    /**
+     * Returns the point the next follow scan of a document starts from.
+     *
+     * @param url     the URL of the document
+     * @param options the search options of the scan
+     * @return a copy of the state after the last follow scan, {@link DocumentCheckpoint#start()} if there was none
+     */
+    public DocumentCheckpoint resumePoint(String url, SearchOptions options) {
+        DocumentCheckpoint followed;
+        synchronized (documents) {
+            followed = documents.get(key(url, options));
+        }
+        return followed == null ? DocumentCheckpoint.start() : copy(followed);
+    }
+
+    /**
+     * Records the state after a follow scan. Of concurrent scans of the same document the last one to finish is
+     * recorded, which is correct whichever it is: a scan starting from an earlier state only rescans more lines.
+     *
+     * @param url     the URL of the document
+     * @param options the search options of the scan
+     * @param state   the state after the scan
+     */
+    public void record(String url, SearchOptions options, DocumentCheckpoint state) {
+        DocumentCheckpoint recorded = copy(state);
+        recorded.setComplete(false);
+        synchronized (documents) {
+            documents.put(key(url, options), recorded);
+        }
+        logger.debug("Following {} from byte {}, line {}", url, state.getOffset(), state.getNextLine());
+    }
+
+    private FollowKey key(String url, SearchOptions options) {
+        int maxEdits = options.getMatchMode() == MatchMode.FUZZY ? options.getMaxEdits() : 0;
+        List<String> names = options.getNames() == null ? null : options.getNames().stream().sorted().distinct()
+                .collect(Collectors.toList());
+        return new FollowKey(url, options.getMatchMode(), maxEdits, names);
+    }
+
+    private static DocumentCheckpoint copy(DocumentCheckpoint state) {
+        Map<String, List<TextPosition>> positions = new HashMap<>();
+        state.getPositionsByName().forEach((name, namePositions) -> positions.put(name, new ArrayList<>(namePositions)));
+        return new DocumentCheckpoint(state.getOffset(), state.getNextLine(), state.getNextChunkIndex(),
+                state.isComplete(), positions);
+    }
+
+    private record FollowKey(String url, MatchMode matchMode, int maxEdits, List<String> names) {
+    }
+}
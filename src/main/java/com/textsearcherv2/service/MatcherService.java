@@ -4,17 +4,35 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.RegexChunkResult;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
 import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.CandidatePrefilter;
+import com.textsearcherv2.util.CandidatePrefilters;
+import com.textsearcherv2.util.CompiledDictionary;
+import com.textsearcherv2.util.DeadlineCharSequence;
+import com.textsearcherv2.util.FuzzyNameIndex;
+import com.textsearcherv2.util.NameDictionary;
+import com.textsearcherv2.util.PatternCache;
 
 import static com.textsearcherv2.controller.ControllerConstants.CORES;
+import static com.textsearcherv2.service.ServiceConstants.LINE_DELIMITER;
+import static com.textsearcherv2.service.ServiceConstants.PATTERN_CACHE_SIZE;
 import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+import static com.textsearcherv2.service.ServiceConstants.QUERY_DICTIONARY_CACHE_SIZE;
+import static com.textsearcherv2.service.ServiceConstants.REGEX_CHUNK_TIMEOUT_MILLIS;
 
 
 @Service
@@ -32,6 +50,102 @@ public class MatcherService {
     private static final ExecutorService executorService = Executors.newFixedThreadPool(CORES);
             // create a thread pool with a fixed number of threads
 
+    // PERSON_NAMES compiled for exact matching and every edit distance, loaded precompiled when the build wrote it
+    private final CompiledDictionary compiledDictionary =
+            CompiledDictionary.loadOrCompile(CompiledDictionary.PERSON_NAMES_RESOURCE, PERSON_NAMES);
+
+    private static final int PREFILTER_BLOCK_SIZE = 4096;
+    private final NameDictionary dictionary = compiledDictionary.getDictionary();
+    private CandidatePrefilter prefilter = CandidatePrefilters.select("auto");
+    private final PatternCache patternCache = new PatternCache(PATTERN_CACHE_SIZE);
+    // dictionaries compiled for the name lists of queries, keyed by their sorted names, least recently used evicted
+    private final Map<List<String>, CompiledDictionary> queryDictionaries =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, CompiledDictionary> eldest) {
+                    return size() > QUERY_DICTIONARY_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Selects the candidate prefilter in front of exact matching.
+     *
+     * @param mode {@code auto} (default), {@code vector}, {@code scalar}, or {@code off} to scan every line for
+     *             every name with indexOf
+     */
+    @Value("${textsearcher.matcher.prefilter:auto}")
+    public void setPrefilterMode(String mode) {
+        this.prefilter = CandidatePrefilters.select(mode);
+        logger.info("Exact matching prefilter: {}", prefilter == null ? "off" : prefilter.name());
+    }
+
+
+    /**
+     * Returns the version of the name dictionary that exact and fuzzy matching search for.
+     *
+     * @return the fingerprint of the dictionary, see {@link NameDictionary#getVersion()}
+     */
+    public long getDictionaryVersion() {
+        return dictionary.getVersion();
+    }
+
+    /**
+     * Returns the version of the name dictionary that exact and fuzzy matching search for with the given options.
+     *
+     * @param options the search options of the job
+     * @return the fingerprint of the dictionary of the names of the options, or of the default dictionary
+     */
+    public long getDictionaryVersion(SearchOptions options) {
+        return dictionaryFor(options).getVersion();
+    }
+
+    /**
+     * Returns how many characters neighbouring line segments must overlap so that no match is lost at a segment
+     * boundary: the longest word a fuzzy match can cover, plus the character ending it.
+     *
+     * @return the overlap in characters
+     */
+    public int getSegmentOverlap() {
+        return getSegmentOverlap(SearchOptions.defaults());
+    }
+
+    /**
+     * Returns the segment overlap for the names searched with the given options, see {@link #getSegmentOverlap()}.
+     *
+     * @param options the search options of the job
+     * @return the overlap in characters
+     */
+    public int getSegmentOverlap(SearchOptions options) {
+        int longestName = dictionaryFor(options).getDictionary().getNames().stream().mapToInt(String::length).max()
+                .orElse(0);
+        return longestName + SearchOptions.MAX_SUPPORTED_EDITS + 1;
+    }
+
+    /**
+     * Returns the compiled dictionary of the names searched with the given options: the default dictionary, or the
+     * names of the query compiled on first use.
+     *
+     * @param options the search options of the job
+     * @return the compiled dictionary
+     */
+    CompiledDictionary dictionaryFor(SearchOptions options) {
+        if (options.getNames() == null) {
+            return compiledDictionary;
+        }
+        List<String> key = options.getNames().stream().sorted().distinct().collect(Collectors.toList());
+        synchronized (queryDictionaries) {
+            CompiledDictionary compiled = queryDictionaries.get(key);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        CompiledDictionary compiled = CompiledDictionary.compile(key);
+        synchronized (queryDictionaries) {
+            queryDictionaries.putIfAbsent(key, compiled);
+        }
+        return compiled;
+    }
+
 
     /**
      * Matches the given content against a matcher and returns a list of matched strings asynchronously.
@@ -125,6 +239,234 @@ public class MatcherService {
     }
 
 
+    /**
+     * Matches a chunk of a document against the name set. The returned positions are absolute inside the document:
+     * line numbers are shifted by the first line of the chunk.
+     *
+     * @param chunk the chunk to match
+     * @return the positions found in the chunk, grouped by name
+     */
+    public Map<String, List<TextPosition>> matchChunk(TextChunk chunk) {
+        return matchChunk(chunk, SearchOptions.defaults());
+    }
+
+    /**
+     * Matches a chunk of a document in the match mode of the given options. The returned positions are absolute
+     * inside the document.
+     *
+     * @param chunk   the chunk to match
+     * @param options the search options of the job
+     * @return the positions found in the chunk, grouped by name
+     */
+    public Map<String, List<TextPosition>> matchChunk(TextChunk chunk, SearchOptions options) {
+        if (chunk.isSegment() && options.getMatchMode() != MatchMode.REGEX) {
+            return matchSegment(chunk, options);
+        }
+        switch (options.getMatchMode()) {
+            case FUZZY:
+                return matchChunkFuzzy(chunk, dictionaryFor(options), options.getMaxEdits());
+            case REGEX:
+                return matchChunkRegex(chunk, compilePattern(options.getPattern()), 0).getPositionsByName();
+            case EXACT:
+            default:
+                return matchChunkExact(chunk, dictionaryFor(options));
+        }
+    }
+
+    /**
+     * Matches a segment of a long line together with its lookbehind and lookahead, and keeps the matches starting
+     * inside the segment. A match crossing a segment boundary is thus reported once, by the segment it starts in;
+     * a word cut at the start of the segment is seen whole through the lookbehind instead of as a shorter word.
+     *
+     * @param segment the segment to match
+     * @param options the search options of the job
+     * @return the positions found in the segment, with columns in its line
+     */
+    private Map<String, List<TextPosition>> matchSegment(TextChunk segment, SearchOptions options) {
+        String lookbehind = segment.getLookbehind() == null ? "" : segment.getLookbehind();
+        String lookahead = segment.getLookahead() == null ? "" : segment.getLookahead();
+        TextChunk window = new TextChunk(segment.getIndex(), segment.getFirstLine(),
+                lookbehind + segment.getText() + lookahead);
+        CompiledDictionary compiled = dictionaryFor(options);
+        Map<String, List<TextPosition>> windowPositions = options.getMatchMode() == MatchMode.FUZZY
+                ? matchChunkFuzzy(window, compiled, options.getMaxEdits()) : matchChunkExact(window, compiled);
+        int ownedStart = lookbehind.length();
+        int ownedEnd = ownedStart + segment.getText().length();
+        int shift = segment.getFirstColumn() - ownedStart;
+        Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+        windowPositions.forEach((name, positions) -> {
+            for (TextPosition position : positions) {
+                if (position.getColumnNumber() >= ownedStart && position.getColumnNumber() < ownedEnd) {
+                    positionsByName.computeIfAbsent(name, k -> new ArrayList<>())
+                            .add(new TextPosition(position.getLineNumber(), position.getColumnNumber() + shift));
+                }
+            }
+        });
+        return positionsByName;
+    }
+
+    /**
+     * Returns the compiled pattern for a regular expression from the bounded pattern cache.
+     *
+     * @param regex the regular expression
+     * @return the compiled pattern
+     * @throws com.textsearcherv2.exception.InvalidPatternException if the regular expression does not compile
+     */
+    public Pattern compilePattern(String regex) {
+        return patternCache.get(regex);
+    }
+
+    /**
+     * Finds the regex matches owned by a chunk: the non-empty matches starting inside the chunk, or on the line
+     * feed separating it from the next chunk. A match may run into the lookahead of the chunk, so matches crossing
+     * the chunk boundary are found in full, unless they run past the end of the lookahead, which the result tells by
+     * {@link RegexChunkResult#isHitEnd()}. The scan is aborted once {@link ServiceConstants#REGEX_CHUNK_TIMEOUT_MILLIS}
+     * have passed, which bounds catastrophic backtracking.
+     *
+     * @param chunk      the chunk to match
+     * @param pattern    the compiled pattern
+     * @param fromOffset the offset inside the chunk text the scan starts at
+     * @return the matches owned by the chunk, keyed by matched text, with the extent they cover
+     * @throws com.textsearcherv2.exception.RegexTimeoutException if the scan exceeds its time budget
+     */
+    public RegexChunkResult matchChunkRegex(TextChunk chunk, Pattern pattern, int fromOffset) {
+        String text = chunk.getText();
+        String lookahead = chunk.getLookahead() == null ? "" : chunk.getLookahead();
+        int ownedEnd = lookahead.isEmpty() ? text.length() : text.length() + 1;
+        CharSequence input = new DeadlineCharSequence(text + lookahead,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REGEX_CHUNK_TIMEOUT_MILLIS));
+        Matcher matcher = pattern.matcher(input)
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false)
+                .region(Math.min(fromOffset, input.length()), input.length());
+
+        Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+        int firstMatchStart = -1;
+        int matchesEnd = 0;
+        int lineNumber = chunk.getFirstLine();
+        int lineStart = 0;
+        int cursor = 0;
+        boolean hitEnd = false;
+        while (matcher.find()) {
+            hitEnd |= matcher.hitEnd();
+            int start = matcher.start();
+            if (start >= ownedEnd) {
+                break;
+            }
+            if (matcher.end() == start) {
+                continue;
+            }
+            for (; cursor < start; cursor++) {
+                if (text.charAt(cursor) == '\n') {
+                    lineNumber++;
+                    lineStart = cursor + 1;
+                }
+            }
+            if (firstMatchStart < 0) {
+                firstMatchStart = start;
+            }
+            matchesEnd = matcher.end();
+            positionsByName.computeIfAbsent(matcher.group(), k -> new ArrayList<>())
+                    .add(new TextPosition(lineNumber, start - lineStart));
+        }
+        // the last find failed or ended the scan; its attempts may have read to the end of the input as well
+        hitEnd |= matcher.hitEnd();
+        return new RegexChunkResult(positionsByName, firstMatchStart, matchesEnd, hitEnd);
+    }
+
+    /**
+     * Matches every word of the chunk against the fuzzy index for the given edit distance. A word matching a name
+     * with typos is reported under the dictionary spelling of the name.
+     *
+     * @param chunk    the chunk to match
+     * @param compiled the dictionary to match against
+     * @param maxEdits the maximum edit distance between a word and a name
+     * @return the positions found in the chunk, grouped by name
+     */
+    private Map<String, List<TextPosition>> matchChunkFuzzy(TextChunk chunk, CompiledDictionary compiled,
+                                                            int maxEdits) {
+        FuzzyNameIndex index = compiled.getFuzzyIndexes().get(maxEdits);
+        if (index == null) {
+            throw new IllegalArgumentException("maxEdits must be between 0 and " + SearchOptions.MAX_SUPPORTED_EDITS);
+        }
+        Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+        String[] lines = chunk.getText().split(LINE_DELIMITER);
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            index.matchLine(lines[lineNumber], chunk.getFirstLine() + lineNumber, 0, positionsByName);
+        }
+        return positionsByName;
+    }
+
+    private Map<String, List<TextPosition>> matchChunkExact(TextChunk chunk, CompiledDictionary compiled) {
+        if (prefilter != null) {
+            return matchChunkPrefiltered(chunk, compiled.getDictionary());
+        }
+        Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+        String[] lines = chunk.getText().split(LINE_DELIMITER);
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            String line = lines[lineNumber];
+            for (String name : compiled.getDictionary().getNames()) {
+                int charIndex = line.indexOf(name);
+                while (charIndex >= 0) {
+                    positionsByName.computeIfAbsent(name, k -> new ArrayList<>())
+                            .add(new TextPosition(chunk.getFirstLine() + lineNumber, charIndex));
+                    charIndex = line.indexOf(name, charIndex + 1);
+                }
+            }
+        }
+        return positionsByName;
+    }
+
+    /**
+     * Exact matching behind the candidate prefilter: the prefilter reports the positions that can start a name and
+     * the line feeds, and only the names starting with the character at a candidate are compared there. Finds the
+     * same positions, in the same order, as scanning every line with indexOf for every name.
+     *
+     * @param chunk      the chunk to match
+     * @param dictionary the names to match
+     * @return the positions found in the chunk, grouped by name
+     */
+    private Map<String, List<TextPosition>> matchChunkPrefiltered(TextChunk chunk, NameDictionary dictionary) {
+        Map<String, List<TextPosition>> positionsByName = new HashMap<>();
+        char[] text = chunk.getText().toCharArray();
+        int[] candidates = new int[Math.min(PREFILTER_BLOCK_SIZE, text.length)];
+        int lineNumber = chunk.getFirstLine();
+        int lineStart = 0;
+        for (int blockStart = 0; blockStart < text.length; blockStart += PREFILTER_BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + PREFILTER_BLOCK_SIZE, text.length);
+            int count = prefilter.findCandidates(text, blockStart, blockEnd, dictionary.getMinFirstChar(),
+                    dictionary.getMaxFirstChar(), candidates);
+            for (int k = 0; k < count; k++) {
+                int position = candidates[k];
+                char c = text[position];
+                if (c == '\n') {
+                    lineNumber++;
+                    lineStart = position + 1;
+                } else if (dictionary.isFirstChar(c)) {
+                    for (String name : dictionary.namesStartingWith(c)) {
+                        if (startsWith(text, position, name)) {
+                            positionsByName.computeIfAbsent(name, n -> new ArrayList<>())
+                                    .add(new TextPosition(lineNumber, position - lineStart));
+                        }
+                    }
+                }
+            }
+        }
+        return positionsByName;
+    }
+
+    private static boolean startsWith(char[] text, int position, String name) {
+        if (position + name.length() > text.length) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (text[position + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Parses the given content into a map of name positions.
      *
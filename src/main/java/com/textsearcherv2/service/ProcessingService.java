@@ -1,19 +1,41 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.exception.JobNotFoundException;
+import com.textsearcherv2.model.JobCheckpoint;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.JobStatistics;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.util.CancellationToken;
+import com.textsearcherv2.util.OffHeapPositionStore;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.textsearcherv2.controller.ControllerConstants.CORES;
+import static com.textsearcherv2.service.ServiceConstants.MAX_RETAINED_JOBS;
 import static com.textsearcherv2.service.ServiceConstants.THREAD_WAIT_SECONDS;
 
 @Service
@@ -31,6 +53,35 @@ public class ProcessingService {
     @Autowired
     private FileReaderService fileReaderService;
 
+    @Autowired
+    private AggregatorService aggregatorService;
+
+    @Autowired
+    private MatcherService matcherService;
+
+    @Autowired
+    private CheckpointService checkpointService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private TracingService tracingService;
+
+    @Autowired
+    private ContentProcessorService contentProcessorService;
+
+    @Autowired
+    private CancellationService cancellationService;
+
+    @Value("${textsearcher.admission.max-urls-per-job:1000}")
+    private int maxUrlsPerJob = 1000;
+
+    public static final String ANONYMOUS_CLIENT = "anonymous";
+
+    private final Map<String, SearchJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> completedJobIds = new ArrayDeque<>();
+
     ExecutorService matcherExecutor = Executors.newFixedThreadPool(CORES);
 
     /**
@@ -59,6 +110,303 @@ public class ProcessingService {
     }
 
 
+    /**
+     * Submits a batch search job over a list of file URLs and returns immediately. Each document is matched
+     * independently and its results are kept in its own partition of the job; once all documents are done the
+     * results are moved onto the job and the aggregator memory of the job is released.
+     *
+     * @param fileURLs     The list of file URLs to process.
+     * @param linesPerPart The number of lines per chunk.
+     * @return the running job
+     * @throws IllegalArgumentException if the list is empty or any URL is null or empty
+     */
+    public SearchJob submit(List<String> fileURLs, int linesPerPart) {
+        return submit(fileURLs, linesPerPart, SearchOptions.defaults());
+    }
+
+    /**
+     * Submits a batch search job over a list of file URLs with the given search options.
+     *
+     * @param fileURLs     The list of file URLs to process.
+     * @param linesPerPart The number of lines per chunk.
+     * @param options      The search options of the job.
+     * @return the running job
+     * @throws IllegalArgumentException if the list is empty, any URL is null or empty or an option is invalid
+     */
+    public SearchJob submit(List<String> fileURLs, int linesPerPart, SearchOptions options) {
+        return submit(fileURLs, linesPerPart, options, ANONYMOUS_CLIENT, JobPriority.NORMAL);
+    }
+
+    /**
+     * Submits a batch search job on behalf of a client. The job starts right away if admission control has a free
+     * run slot, otherwise it is returned {@code QUEUED} and starts once the jobs ahead of it in its lane and the
+     * higher lanes have started. A URL listed more than once is scanned once.
+     *
+     * @param fileURLs     The list of file URLs to process.
+     * @param linesPerPart The number of lines per chunk.
+     * @param options      The search options of the job.
+     * @param clientId     The client the job counts against.
+     * @param priority     The admission lane of the job.
+     * @return the running or queued job
+     * @throws IllegalArgumentException   if the list is empty or too long, any URL is null or empty or an option is
+     *                                    invalid
+     * @throws AdmissionRejectedException if the queue or the quota of the client is full
+     */
+    public SearchJob submit(List<String> fileURLs, int linesPerPart, SearchOptions options, String clientId,
+                            JobPriority priority) {
+        if (fileURLs == null || fileURLs.isEmpty()) {
+            throw new IllegalArgumentException("At least one URL is required");
+        }
+        if (fileURLs.size() > maxUrlsPerJob) {
+            throw new IllegalArgumentException("A job covers at most " + maxUrlsPerJob + " URLs");
+        }
+        validateUrls(fileURLs);
+        options.validate();
+        if (options.getMatchMode() == MatchMode.REGEX) {
+            matcherService.compilePattern(options.getPattern());
+        }
+        // a URL listed twice is scanned once, its scans would share its results, failure and checkpoint log
+        SearchJob job = new SearchJob(UUID.randomUUID().toString(), List.copyOf(new LinkedHashSet<>(fileURLs)));
+        job.setOptions(options);
+        job.setClientId(clientId);
+        job.setPriority(priority);
+        jobs.put(job.getJobId(), job);
+        cancellationService.open(job.getJobId());
+        Runnable admitted = watchCancellation(job);
+        try {
+            admissionControlService.admit(job, () -> startJob(job, linesPerPart));
+        } catch (AdmissionRejectedException e) {
+            jobs.remove(job.getJobId());
+            cancellationService.close(job.getJobId());
+            throw e;
+        }
+        admitted.run();
+        logger.info("Job {} of client {} submitted with {} documents", job.getJobId(), clientId,
+                job.getUrls().size());
+        return job;
+    }
+
+    /**
+     * Resumes the jobs left unfinished by the last shutdown, under their original ids. Documents that were fully
+     * matched are restored from their checkpoint and the others continue from the last checkpointed chunk.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeCheckpointedJobs() {
+        for (JobCheckpoint checkpoint : checkpointService.pendingJobs()) {
+            if (jobs.containsKey(checkpoint.getJobId())) {
+                continue;
+            }
+            SearchJob job = new SearchJob(checkpoint.getJobId(), checkpoint.getUrls());
+            job.setSubmittedAt(checkpoint.getSubmittedAt());
+            job.setOptions(checkpoint.getOptions());
+            job.setClientId(checkpoint.getClientId() != null ? checkpoint.getClientId() : ANONYMOUS_CLIENT);
+            job.setPriority(checkpoint.getPriority() != null ? checkpoint.getPriority() : JobPriority.NORMAL);
+            jobs.put(job.getJobId(), job);
+            logger.info("Resuming job {} from its checkpoint", job.getJobId());
+            cancellationService.open(job.getJobId());
+            Runnable admitted = watchCancellation(job);
+            admissionControlService.readmit(job, () -> startJob(job, checkpoint.getLinesPerPart()));
+            admitted.run();
+        }
+    }
+
+    /**
+     * Cancels a job. A queued job leaves the queue; a running job stops fetching and reading its documents, its
+     * chunks waiting for a matcher thread are dropped, and it completes right away without results. A finished job
+     * is left as it is.
+     *
+     * @param jobId the id of the job
+     * @return the job
+     * @throws JobNotFoundException if the job is unknown or was already evicted
+     */
+    public SearchJob cancel(String jobId) {
+        SearchJob job = getJob(jobId);
+        if (cancellationService.cancel(jobId, "Cancelled on request")) {
+            logger.info("Job {} cancelled on request", jobId);
+        }
+        return job;
+    }
+
+    /**
+     * Completes a job as soon as its token is cancelled, and schedules its cancellation at its deadline if it has
+     * one. A job cancelled while queued is withdrawn from the queue, without taking a run slot.
+     *
+     * <p>
+     * Called before the job is admitted, so no cancellation goes unseen while it is. A job cancelled before it is
+     * admitted is completed by the returned action, once the admission tells whether it is queued or holds a run
+     * slot. A job rejected by the admission closes its token instead, which drops its deadline.
+     * </p>
+     *
+     * @param job the job about to be admitted
+     * @return the action to run once the job is admitted
+     */
+    private Runnable watchCancellation(SearchJob job) {
+        CancellationToken token = cancellationService.token(job.getJobId());
+        AtomicBoolean admitted = new AtomicBoolean();
+        // the cancellation and the admission may both see the other happened, only one of them completes the job
+        AtomicBoolean completing = new AtomicBoolean();
+        Runnable completeCancelled = () -> {
+            if (!completing.compareAndSet(false, true)) {
+                return;
+            }
+            if (admissionControlService.withdraw(job)) {
+                finishJob(job, false);
+            } else {
+                contentProcessorService.cancelJob(job.getJobId());
+                finishJob(job, true);
+            }
+        };
+        token.onCancel(() -> {
+            if (admitted.get()) {
+                completeCancelled.run();
+            }
+        });
+        long timeoutMillis = job.getOptions() == null ? 0 : job.getOptions().getTimeoutMillis();
+        if (timeoutMillis > 0) {
+            cancellationService.scheduleDeadline(job.getJobId(), job.getSubmittedAt().plusMillis(timeoutMillis));
+        }
+        return () -> {
+            admitted.set(true);
+            if (token.isCancelled()) {
+                completeCancelled.run();
+            }
+        };
+    }
+
+    /**
+     * Starts an admitted job. A job failing to start is completed right away, so it gives its run slot back.
+     *
+     * @param job          the admitted job
+     * @param linesPerPart The number of lines per chunk.
+     */
+    private void startJob(SearchJob job, int linesPerPart) {
+        try {
+            runJob(job, linesPerPart);
+        } catch (RuntimeException e) {
+            logger.error("Job {} failed to start", job.getJobId(), e);
+            job.getUrls().forEach(url -> job.getFailedDocuments().putIfAbsent(url, String.valueOf(e.getMessage())));
+            completeJob(job);
+        }
+    }
+
+    /**
+     * Checkpoints a job and starts processing its documents.
+     *
+     * @param job          the job to run
+     * @param linesPerPart The number of lines per chunk.
+     */
+    private void runJob(SearchJob job, int linesPerPart) {
+        // the documents are launched under the lock too, so a cancellation cannot finish the job half started
+        synchronized (job) {
+            if (job.getCompletedAt() != null || cancellationService.token(job.getJobId()).isCancelled()) {
+                // cancelled between leaving the queue and starting, or while being admitted; the cancellation
+                // completes it
+                return;
+            }
+            tracingService.startJob(job.getJobId(), job.getOptions().isTrace());
+            aggregatorService.openJob(job.getJobId());
+            contentProcessorService.startJob(job.getJobId(), job.getPriority());
+            job.setStatus(JobStatus.RUNNING);
+            checkpointService.startJob(new JobCheckpoint(job.getJobId(), job.getUrls(), linesPerPart,
+                    job.getOptions(), job.getSubmittedAt(), job.getClientId(), job.getPriority()));
+
+            List<CompletableFuture<Void>> documentFutures = fileReaderService.getFutureListFromUrl(job.getJobId(),
+                    job.getUrls(), linesPerPart, job.getOptions());
+            List<CompletableFuture<Void>> attributedFutures = new ArrayList<>();
+            for (int i = 0; i < documentFutures.size(); i++) {
+                String url = job.getUrls().get(i);
+                attributedFutures.add(documentFutures.get(i).exceptionally(ex -> {
+                    logger.error("Job {} failed to process {}", job.getJobId(), url, ex);
+                    job.getFailedDocuments().put(url, String.valueOf(ex.getCause() != null
+                            ? ex.getCause().getMessage() : ex.getMessage()));
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(attributedFutures.toArray(new CompletableFuture[0]))
+                    .whenComplete((v, ex) -> completeJob(job));
+        }
+    }
+
+    /**
+     * Returns a submitted job. Completed jobs are retained until {@link ServiceConstants#MAX_RETAINED_JOBS} newer
+     * jobs have completed.
+     *
+     * @param jobId the id of the job
+     * @return the job
+     * @throws JobNotFoundException if the job is unknown or was already evicted
+     */
+    public SearchJob getJob(String jobId) {
+        SearchJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new JobNotFoundException(jobId);
+        }
+        return job;
+    }
+
+    private void completeJob(SearchJob job) {
+        finishJob(job, true);
+    }
+
+    /**
+     * Moves the results and statistics of a finished job out of the aggregator onto the job, deletes its checkpoint, ends its
+     * trace, unregisters it from the matcher threads, frees its admission slot and evicts the oldest completed job once more than {@link ServiceConstants#MAX_RETAINED_JOBS}
+     * are retained, closing its off-heap results. Results spilled beyond the heap budget of the job are merged
+     * off-heap. A cancelled job drops its results and statistics instead. Only the first call for a job has an
+     * effect, as a cancelled job is finished by the cancellation and again once its documents stopped.
+     *
+     * @param job          the finished job
+     * @param holdsRunSlot whether the job took a run slot, which is then freed
+     */
+    private void finishJob(SearchJob job, boolean holdsRunSlot) {
+        synchronized (job) {
+            if (job.getCompletedAt() != null) {
+                return;
+            }
+            CancellationToken token = cancellationService.token(job.getJobId());
+            if (token.isCancelled()) {
+                aggregatorService.discardJob(job.getJobId());
+                aggregatorService.releaseStatistics(job.getJobId());
+                job.setResultsByDocument(Map.of());
+                job.setCancellationReason(token.getReason());
+                job.setStatus(JobStatus.CANCELLED);
+            } else {
+                OffHeapPositionStore store = aggregatorService.releaseJobStore(job.getJobId());
+                if (store != null) {
+                    job.setPositionStore(store);
+                    job.setResultsByDocument(store.asMap());
+                } else {
+                    job.setResultsByDocument(aggregatorService.releaseJob(job.getJobId()));
+                }
+                JobStatistics statistics = aggregatorService.releaseStatistics(job.getJobId());
+                if (job.getOptions() != null && job.getOptions().isStatistics()) {
+                    job.setStatistics(statistics);
+                }
+                boolean allFailed = !job.getUrls().isEmpty()
+                        && job.getFailedDocuments().size() == job.getUrls().size();
+                job.setStatus(allFailed ? JobStatus.FAILED : JobStatus.COMPLETED);
+            }
+            job.setCompletedAt(Instant.now());
+        }
+        cancellationService.close(job.getJobId());
+        checkpointService.completeJob(job.getJobId());
+        tracingService.finishJob(job.getJobId());
+        contentProcessorService.finishJob(job.getJobId());
+        if (holdsRunSlot) {
+            admissionControlService.complete(job);
+        }
+        logger.info("Job {} finished with status {}", job.getJobId(), job.getStatus());
+
+        synchronized (completedJobIds) {
+            completedJobIds.addLast(job.getJobId());
+            while (completedJobIds.size() > MAX_RETAINED_JOBS) {
+                SearchJob evicted = jobs.remove(completedJobIds.removeFirst());
+                if (evicted != null && evicted.getPositionStore() != null) {
+                    evicted.getPositionStore().close();
+                }
+            }
+        }
+    }
+
     /**
      * Shuts down the executor service and waits for any pending tasks to complete.
      * If the tasks take too long to complete, they will be forcibly terminated.
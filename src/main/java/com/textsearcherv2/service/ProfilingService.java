@@ -0,0 +1,173 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.RecordingStateException;
+import com.textsearcherv2.model.RecordingStatus;
+import com.textsearcherv2.util.ProfilingEvents;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.NoArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Starts, dumps and stops a Java Flight Recorder recording of the running service, so hot spots can be diagnosed
+ * under real load without attaching an agent.
+ *
+ * <p>
+ * A recording takes the JVM events of a predefined JFR configuration, {@code default} or {@code profile}, and the
+ * events of the search pipeline, see {@link ProfilingEvents}, whatever their duration. It keeps the events of the
+ * last {@code max-age-seconds}, at most {@code max-size-bytes} of them, in the JFR repository on disk. It can be
+ * dumped to the dump directory while it runs, and is dumped there once more when it is stopped. One recording runs
+ * at a time.
+ * </p>
+ */
+@Service
+@Log4j2
+@NoArgsConstructor
+public class ProfilingService {
+    private static final Logger logger = LogManager.getLogger(ProfilingService.class);
+    private static final DateTimeFormatter NAME_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    @Value("${textsearcher.profiling.dump-dir:${java.io.tmpdir}/textsearcher/recordings}")
+    private String dumpDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "textsearcher", "recordings")
+            .toString();
+
+    @Value("${textsearcher.profiling.max-age-seconds:900}")
+    private long maxAgeSeconds = 900;
+
+    @Value("${textsearcher.profiling.max-size-bytes:268435456}")
+    private long maxSizeBytes = 268435456;
+
+    private Recording recording;
+    private RecordingStatus status = new RecordingStatus();
+    // dumps of the current recording, numbering its dump files
+    private int dumps;
+
+    /**
+     * Creates a profiling service with the given dump directory and limits.
+     *
+     * @param dumpDirectory the directory recordings are dumped to
+     * @param maxAgeSeconds the age beyond which events are dropped from a running recording
+     * @param maxSizeBytes  the size beyond which the oldest events are dropped from a running recording
+     */
+    public ProfilingService(Path dumpDirectory, long maxAgeSeconds, long maxSizeBytes) {
+        this.dumpDirectory = dumpDirectory.toString();
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Starts a recording.
+     *
+     * @param settings the name of the JFR configuration of the JVM events, {@code default} or {@code profile}
+     * @return the status of the recording
+     * @throws IllegalArgumentException if the configuration does not exist
+     * @throws RecordingStateException  if a recording is already running
+     */
+    public synchronized RecordingStatus start(String settings) {
+        if (recording != null) {
+            throw new RecordingStateException("A recording is already running: " + recording.getName());
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown recording settings: " + settings);
+        }
+        Instant startedAt = Instant.now();
+        Recording started = new Recording(configuration);
+        started.setName("textsearcher-" + NAME_TIMESTAMP.format(startedAt));
+        ProfilingEvents.eventTypes().forEach(type -> started.enable(type).withoutThreshold());
+        started.setToDisk(true);
+        started.setMaxAge(Duration.ofSeconds(maxAgeSeconds));
+        started.setMaxSize(maxSizeBytes);
+        started.start();
+        recording = started;
+        dumps = 0;
+        status = new RecordingStatus(started.getName(), true, settings, startedAt, null, 0, null, 0);
+        logger.info("Started recording {} with the {} settings", started.getName(), settings);
+        return status();
+    }
+
+    /**
+     * Dumps the events of the running recording to a new file of the dump directory. The recording goes on.
+     *
+     * @return the status of the recording, with the file dumped to
+     * @throws RecordingStateException if no recording is running
+     */
+    public synchronized RecordingStatus dump() {
+        requireRecording();
+        dumpTo(recording);
+        return status();
+    }
+
+    /**
+     * Stops the running recording and dumps its events to a new file of the dump directory.
+     *
+     * @return the status of the stopped recording, with the file dumped to
+     * @throws RecordingStateException if no recording is running
+     */
+    public synchronized RecordingStatus stop() {
+        requireRecording();
+        Recording stopped = recording;
+        recording = null;
+        try {
+            stopped.stop();
+            status.setStoppedAt(Instant.now());
+            status.setRunning(false);
+            status.setRecordedBytes(stopped.getSize());
+            dumpTo(stopped);
+        } finally {
+            stopped.close();
+        }
+        logger.info("Stopped recording {}, dumped to {}", status.getName(), status.getDumpFile());
+        return status();
+    }
+
+    /**
+     * Returns the status of the running recording, or of the last one stopped.
+     *
+     * @return the status, neither running nor named if no recording was started
+     */
+    public synchronized RecordingStatus status() {
+        if (recording != null) {
+            status.setRecordedBytes(recording.getSize());
+        }
+        return new RecordingStatus(status.getName(), status.isRunning(), status.getSettings(),
+                status.getStartedAt(), status.getStoppedAt(), status.getRecordedBytes(), status.getDumpFile(),
+                status.getDumpBytes());
+    }
+
+    private void requireRecording() {
+        if (recording == null) {
+            throw new RecordingStateException("No recording is running");
+        }
+    }
+
+    private void dumpTo(Recording source) {
+        Path file = Paths.get(dumpDirectory, source.getName() + "-" + ++dumps + ".jfr");
+        try {
+            Files.createDirectories(file.getParent());
+            source.dump(file);
+            status.setDumpFile(file.toString());
+            status.setDumpBytes(Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not dump recording " + source.getName() + " to " + file, e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.exception.InvalidFileException;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.NameMatch;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.SearchSummary;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.Compression;
+import com.textsearcherv2.util.PushLineChunker;
+import com.textsearcherv2.validation.UrlValidationService;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.textsearcherv2.service.ServiceConstants.MAX_IN_FLIGHT_CHUNKS;
+
+/**
+ * Searches documents without blocking a thread on the network or on the matchers, for the reactive endpoints.
+ *
+ * <p>
+ * Bodies are fetched with a {@link HttpClient} whose responses are published as byte buffers on a few I/O threads,
+ * cut into chunks of whole lines as the buffers arrive, and matched through
+ * {@link ContentProcessorService#matchChunk(TextChunk, SearchOptions)} on the matcher executor, the chunk cache and
+ * the worker nodes included. Demand flows back from the subscriber: at most {@link ServiceConstants#MAX_IN_FLIGHT_CHUNKS}
+ * chunks of a document are matched ahead of it, and the body is only read as fast as its chunks are matched, so a
+ * search holds a bounded amount of memory and no thread while it waits. Matches are emitted in document order.
+ * </p>
+ *
+ * <p>
+ * Only {@code EXACT} and {@code FUZZY} searches of uncompressed documents are supported: regex chunks depend on
+ * each other and decoding is done on blocking streams. Searches are not jobs; they are neither checkpointed nor
+ * retained, and end with their response.
+ * </p>
+ *
+ * <p>
+ * A search goes through {@link AdmissionControlService} like a job of the {@code NORMAL} lane. It covers at most
+ * {@code max-urls-per-job} URLs, counts against the quota of its client, and waits for a run slot before it fetches
+ * anything. It holds the slot until its response ends or is cancelled. Its chunks are not charged to the in-flight
+ * byte budget, which blocks the reading thread: the demand of the response bounds them instead, to
+ * {@link ServiceConstants#MAX_IN_FLIGHT_CHUNKS} chunks of each of {@code max-concurrent-documents} documents.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ReactiveSearchService {
+    private static final Logger logger = LogManager.getLogger(ReactiveSearchService.class);
+    private static final Comparator<NameMatch> DOCUMENT_ORDER = Comparator
+            .comparingInt(NameMatch::getLineNumber)
+            .thenComparingInt(NameMatch::getColumnNumber);
+
+    private final ContentProcessorService contentProcessorService;
+    private final UrlValidationService urlValidationService;
+    private final AdmissionControlService admissionControlService;
+    private final HttpClient httpClient;
+    private final int maxConcurrentDocuments;
+    private final int linesPerChunk;
+    private final int maxUrlsPerSearch;
+
+    public ReactiveSearchService(ContentProcessorService contentProcessorService,
+                                 UrlValidationService urlValidationService,
+                                 AdmissionControlService admissionControlService,
+                                 @Value("${textsearcher.reactive.io-threads:2}") int ioThreads,
+                                 @Value("${textsearcher.reactive.max-concurrent-documents:4}") int maxConcurrentDocuments,
+                                 @Value("${textsearcher.reactive.lines-per-chunk:1000}") int linesPerChunk,
+                                 @Value("${textsearcher.admission.max-urls-per-job:1000}") int maxUrlsPerSearch) {
+        if (ioThreads <= 0 || maxConcurrentDocuments <= 0 || linesPerChunk <= 0) {
+            throw new IllegalArgumentException("The reactive threads, documents and lines per chunk must be positive");
+        }
+        this.contentProcessorService = contentProcessorService;
+        this.urlValidationService = urlValidationService;
+        this.admissionControlService = admissionControlService;
+        this.maxUrlsPerSearch = maxUrlsPerSearch;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(ioThreads, runnable -> {
+                    Thread thread = new Thread(runnable, "reactive-io");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+        this.maxConcurrentDocuments = maxConcurrentDocuments;
+        this.linesPerChunk = linesPerChunk;
+    }
+
+    /**
+     * Streams the matches of the documents, document after document in the order of the URLs, and within a
+     * document by line and column. Up to the maximum number of concurrent documents are fetched and matched ahead.
+     *
+     * @param urls     the URLs of the documents
+     * @param options  the search options
+     * @param clientId the client the search counts against
+     * @return the matches, failing with the error of the first document that cannot be searched
+     * @throws IllegalArgumentException   if a URL is missing or unsafe, there are too many URLs, or the options are
+     *                                    not supported
+     * @throws AdmissionRejectedException if the job queue or the quota of the client is full
+     */
+    public Flux<NameMatch> matches(List<String> urls, SearchOptions options, String clientId) {
+        validate(urls, options);
+        Admission admission = admit(urls, clientId);
+        return Mono.fromFuture(admission.started)
+                .thenMany(Flux.fromIterable(urls)
+                        .flatMapSequential(url -> documentMatches(url, options, new PushLineChunker(linesPerChunk)),
+                                maxConcurrentDocuments))
+                .doOnTerminate(admission::release)
+                .doFinally(signal -> admission.release());
+    }
+
+    /**
+     * Searches the documents and counts the matches of every name. A document that cannot be searched is reported
+     * in the summary and does not fail the others.
+     *
+     * @param urls     the URLs of the documents
+     * @param options  the search options
+     * @param clientId the client the search counts against
+     * @return the summary, once every document was searched
+     * @throws IllegalArgumentException   if a URL is missing or unsafe, there are too many URLs, or the options are
+     *                                    not supported
+     * @throws AdmissionRejectedException if the job queue or the quota of the client is full
+     */
+    public Mono<SearchSummary> summary(List<String> urls, SearchOptions options, String clientId) {
+        validate(urls, options);
+        Admission admission = admit(urls, clientId);
+        return Mono.fromFuture(admission.started)
+                .then(Mono.defer(() -> summarize(urls, options)))
+                .doOnTerminate(admission::release)
+                .doFinally(signal -> admission.release());
+    }
+
+    private Mono<SearchSummary> summarize(List<String> urls, SearchOptions options) {
+        long started = System.nanoTime();
+        // each document reports on its own, and the reports are merged once all of them are in
+        return Flux.fromIterable(urls)
+                .flatMap(url -> {
+                    PushLineChunker chunker = new PushLineChunker(linesPerChunk);
+                    Map<String, Long> counts = new TreeMap<>();
+                    return documentMatches(url, options, chunker)
+                            .doOnNext(match -> counts.merge(match.getName(), 1L, Long::sum))
+                            .then(Mono.fromCallable(() -> new DocumentReport(url, chunker.getBytes(), counts, null)))
+                            .onErrorResume(e -> {
+                                logger.warn("Reactive search of {} failed", url, e);
+                                return Mono.just(new DocumentReport(url, chunker.getBytes(), counts,
+                                        String.valueOf(e.getMessage())));
+                            });
+                }, maxConcurrentDocuments)
+                .collectList()
+                .map(reports -> {
+                    long bytes = 0;
+                    long matches = 0;
+                    Map<String, Long> matchesByName = new TreeMap<>();
+                    Map<String, String> failedDocuments = new LinkedHashMap<>();
+                    for (DocumentReport report : reports) {
+                        bytes += report.bytes;
+                        if (report.error != null) {
+                            failedDocuments.put(report.url, report.error);
+                            continue;
+                        }
+                        for (Map.Entry<String, Long> entry : report.counts.entrySet()) {
+                            matchesByName.merge(entry.getKey(), entry.getValue(), Long::sum);
+                            matches += entry.getValue();
+                        }
+                    }
+                    return new SearchSummary(urls.size(), bytes, matches, matchesByName, failedDocuments,
+                            (System.nanoTime() - started) / 1_000_000);
+                });
+    }
+
+    /**
+     * Fetches a document and streams its matches in document order.
+     */
+    private Flux<NameMatch> documentMatches(String url, SearchOptions options, PushLineChunker chunker) {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+        return Mono.fromFuture(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofPublisher()))
+                .flatMapMany(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        JdkFlowAdapter.flowPublisherToFlux(response.body()).subscribe().dispose();
+                        return Flux.error(new InvalidFileException("Fetching " + url + " failed with HTTP status "
+                                + response.statusCode()));
+                    }
+                    Compression compression = Compression.detect(
+                            response.headers().firstValue("Content-Encoding").orElse(null), url);
+                    if (compression != Compression.NONE) {
+                        JdkFlowAdapter.flowPublisherToFlux(response.body()).subscribe().dispose();
+                        return Flux.error(new InvalidFileException("Compressed documents are only searched by "
+                                + "batch jobs: " + url));
+                    }
+                    return JdkFlowAdapter.flowPublisherToFlux(response.body())
+                            .concatMapIterable(chunker::push)
+                            .concatWith(Mono.fromSupplier(chunker::finish));
+                })
+                .flatMapSequential(chunk -> Mono.fromFuture(() -> contentProcessorService.matchChunk(chunk, options)),
+                        MAX_IN_FLIGHT_CHUNKS)
+                .concatMapIterable(positionsByName -> inDocumentOrder(url, positionsByName));
+    }
+
+    private List<NameMatch> inDocumentOrder(String url, Map<String, List<TextPosition>> positionsByName) {
+        List<NameMatch> matches = new ArrayList<>();
+        positionsByName.forEach((name, positions) -> positions.forEach(position ->
+                matches.add(new NameMatch(name, url, position.getLineNumber(), position.getColumnNumber()))));
+        matches.sort(DOCUMENT_ORDER);
+        return matches;
+    }
+
+    /**
+     * Admits a search like a job of its client, queueing it until a run slot is free.
+     *
+     * @throws AdmissionRejectedException if the job queue or the quota of the client is full
+     */
+    private Admission admit(List<String> urls, String clientId) {
+        SearchJob search = new SearchJob("reactive-" + UUID.randomUUID(), urls);
+        search.setClientId(clientId);
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        admissionControlService.admit(search, () -> started.complete(null));
+        return new Admission(search, started);
+    }
+
+    private void validate(List<String> urls, SearchOptions options) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one URL is required");
+        }
+        if (urls.size() > maxUrlsPerSearch) {
+            throw new IllegalArgumentException("A search covers at most " + maxUrlsPerSearch + " URLs");
+        }
+        for (String url : urls) {
+            if (url == null || !url.startsWith("http://") && !url.startsWith("https://")
+                    || !urlValidationService.isValidUrl(url)) {
+                throw new IllegalArgumentException("Invalid or unsafe URL: " + url);
+            }
+        }
+        options.validate();
+        if (options.getMatchMode() == MatchMode.REGEX || options.isFollow()) {
+            throw new IllegalArgumentException("Reactive searches support EXACT and FUZZY mode only");
+        }
+    }
+
+    /**
+     * A search admitted like a job, holding a run slot once started until it is released.
+     */
+    private final class Admission {
+        private final SearchJob search;
+        private final CompletableFuture<Void> started;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(SearchJob search, CompletableFuture<Void> started) {
+            this.search = search;
+            this.started = started;
+        }
+
+        /**
+         * Leaves the queue if the search is still waiting there, and frees its run slot otherwise. Called once the
+         * response ends, before its subscriber sees the end, and again on cancellation; only the first call counts.
+         */
+        private void release() {
+            if (released.compareAndSet(false, true) && !admissionControlService.withdraw(search)) {
+                admissionControlService.complete(search);
+            }
+        }
+    }
+
+    /**
+     * The bytes and match counts of one document, and its error if it could not be searched.
+     */
+    private static final class DocumentReport {
+        private final String url;
+        private final long bytes;
+        private final Map<String, Long> counts;
+        private final String error;
+
+        private DocumentReport(String url, long bytes, Map<String, Long> counts, String error) {
+            this.url = url;
+            this.bytes = bytes;
+            this.counts = counts;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.JobNotCompletedException;
+import com.textsearcherv2.model.DocumentPosition;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.MatchPage;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.util.NameMatchIndex;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static com.textsearcherv2.service.ServiceConstants.MAX_PAGE_LIMIT;
+
+/**
+ * Pages through the matches of a completed job, one name at a time, in document URL, line and column order.
+ *
+ * <p>
+ * The first query of a name builds its {@link NameMatchIndex}, kept on the job for later pages, so a page costs
+ * the same whether it is the first or the millionth, and no query serializes more than its page. A cursor is the
+ * opaque address of the first match of its page; the results of a completed job do not change, so a cursor stays
+ * valid for as long as the job is retained.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ResultQueryService {
+    private static final Logger logger = LogManager.getLogger(ResultQueryService.class);
+
+    /**
+     * Returns a page of the matches of a name.
+     *
+     * @param job    the job
+     * @param name   the name, or the matched text of a regex job
+     * @param cursor the cursor of the page, null for the first page
+     * @param limit  the maximum number of matches of the page
+     * @return the page, with the cursor of the next page
+     * @throws JobNotCompletedException if the job is still queued or running
+     * @throws IllegalArgumentException if the limit is out of range or the cursor is not one of the name
+     */
+    public MatchPage page(SearchJob job, String name, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        if (job.getStatus() != JobStatus.COMPLETED && job.getStatus() != JobStatus.FAILED
+                || job.getResultsByDocument() == null) {
+            throw new JobNotCompletedException(job.getJobId());
+        }
+        NameMatchIndex index = job.getMatchIndexes().computeIfAbsent(name, n -> {
+            logger.debug("Indexing the matches of {} in job {}", n, job.getJobId());
+            return NameMatchIndex.build(job.getResultsByDocument(), n);
+        });
+        int[] start = cursor == null || cursor.isEmpty() ? new int[]{0, 0} : decodeCursor(cursor, index);
+        List<DocumentPosition> matches = new ArrayList<>(limit);
+        int[] next = index.read(start[0], start[1], limit, matches);
+        return new MatchPage(name, matches, index.total(), next == null ? null : encodeCursor(next));
+    }
+
+    private String encodeCursor(int[] address) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((address[0] + ":" + address[1]).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private int[] decodeCursor(String cursor, NameMatchIndex index) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            int document = Integer.parseInt(parts[0]);
+            int position = Integer.parseInt(parts[1]);
+            if (parts.length == 2 && document >= 0 && document < index.documentCount()
+                    && position >= 0 && position < index.size(document)) {
+                return new int[]{document, position};
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,233 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+
+/**
+ * Shares the download and the scan of a document between the jobs searching it at the same time.
+ *
+ * <p>
+ * The first job to scan a document opens a batch and leads it: the scan starts once the batch has been open for
+ * {@code textsearcher.batch.window-millis}, so the jobs submitted meanwhile join it. The leader fetches the document
+ * once and matches it once against the union of the names of the members, a job without names standing for the
+ * default dictionary. Every name of the union is tagged with the jobs searching for it, and each member receives the
+ * positions of its own names only. A job arriving once the scan started still joins it if the union covers its
+ * names, since the scan reads the whole document whenever it joins; otherwise it opens the next batch.
+ * </p>
+ *
+ * <p>
+ * Exact matching finds every name independently of the others, so exact jobs with different names share a batch.
+ * Fuzzy matching reports a word under the closest name of the dictionary only, which depends on the other names, so
+ * fuzzy jobs share a batch only with jobs searching the same names. Regex, follow and resumed scans are not batched.
+ * </p>
+ *
+ * <p>
+ * The scan runs as a task of the leader, so it stops when the leader is cancelled; the other members then scan the
+ * document on their own.
+ * </p>
+ */
+@Service
+@Log4j2
+public class ScanBatchService {
+    private static final Logger logger = LogManager.getLogger(ScanBatchService.class);
+
+    private final boolean enabled;
+    private final long windowMillis;
+    // batches not completed yet, guarded by itself
+    private final Map<BatchKey, Batch> batches = new HashMap<>();
+
+    public ScanBatchService(@Value("${textsearcher.batch.enabled:true}") boolean enabled,
+                            @Value("${textsearcher.batch.window-millis:20}") long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("The batch window must not be negative");
+        }
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Tells whether a scan of a document can be shared with other jobs.
+     *
+     * @param options the search options of the job
+     * @param offset  the byte offset the scan starts from
+     * @return true if batching is enabled and the scan is a fresh, non-follow exact or fuzzy scan
+     */
+    public boolean isBatchable(SearchOptions options, long offset) {
+        return enabled && offset == 0 && !options.isFollow() && options.getMatchMode() != MatchMode.REGEX;
+    }
+
+    /**
+     * Scans a document for a job, in a batch with the other jobs scanning it at the same time.
+     *
+     * @param jobId   the id of the job
+     * @param url     the URL of the document
+     * @param options the search options of the job
+     * @param scanner scans the document for the job with the given options, called with the combined options of the
+     *                batch if the job leads it
+     * @return the positions of the names of the job, grouped by name
+     */
+    public CompletableFuture<Map<String, List<TextPosition>>> scan(
+            String jobId, String url, SearchOptions options,
+            Function<SearchOptions, CompletableFuture<Map<String, List<TextPosition>>>> scanner) {
+        BatchKey key = key(url, options);
+        Set<String> names = names(options);
+        Batch batch;
+        boolean leader = false;
+        synchronized (batches) {
+            batch = batches.get(key);
+            if (batch == null || batch.started && !batch.covers(names)) {
+                batch = new Batch(key, jobId, options);
+                batches.put(key, batch);
+                leader = true;
+            }
+            batch.join(jobId, names);
+        }
+        Batch joined = batch;
+        if (!leader) {
+            logger.debug("Job {} joins the scan of {} led by job {}", jobId, url, joined.leaderJobId);
+        } else if (windowMillis == 0) {
+            start(joined, scanner);
+        } else {
+            CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(() -> start(joined, scanner));
+        }
+        CompletableFuture<Map<String, List<TextPosition>>> own =
+                joined.result.thenApply(positions -> joined.positionsOf(jobId, positions));
+        if (leader) {
+            return own;
+        }
+        // a member does not share the cancellation of the leader, it scans the document alone instead
+        return own.exceptionallyCompose(ex -> {
+            if (!(unwrap(ex) instanceof CancellationException)) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            logger.info("The scan of {} led by job {} was cancelled, job {} scans it alone", url,
+                    joined.leaderJobId, jobId);
+            return scanner.apply(options);
+        });
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private void start(Batch batch,
+                       Function<SearchOptions, CompletableFuture<Map<String, List<TextPosition>>>> scanner) {
+        SearchOptions combined;
+        synchronized (batches) {
+            batch.started = true;
+            combined = batch.combinedOptions();
+            if (batch.jobIds.size() > 1) {
+                logger.info("Job {} scans {} for {} jobs", batch.leaderJobId, batch.key.url(), batch.jobIds.size());
+            }
+        }
+        CompletableFuture<Map<String, List<TextPosition>>> scanned;
+        try {
+            scanned = scanner.apply(combined);
+        } catch (RuntimeException e) {
+            scanned = CompletableFuture.failedFuture(e);
+        }
+        scanned.whenComplete((positions, ex) -> {
+            synchronized (batches) {
+                batches.remove(batch.key, batch);
+            }
+            if (ex != null) {
+                batch.result.completeExceptionally(ex);
+            } else {
+                batch.result.complete(positions);
+            }
+        });
+    }
+
+    private static BatchKey key(String url, SearchOptions options) {
+        boolean fuzzy = options.getMatchMode() == MatchMode.FUZZY;
+        return new BatchKey(url, options.getMatchMode(), fuzzy ? options.getMaxEdits() : 0,
+                fuzzy ? names(options) : null);
+    }
+
+    private static Set<String> names(SearchOptions options) {
+        return new TreeSet<>(options.getNames() == null ? PERSON_NAMES : options.getNames());
+    }
+
+    private record BatchKey(String url, MatchMode matchMode, int maxEdits, Set<String> names) {
+    }
+
+    /**
+     * The jobs sharing one scan of a document. Its members are guarded by the map of batches.
+     */
+    private static final class Batch {
+        private final BatchKey key;
+        private final String leaderJobId;
+        private final SearchOptions leaderOptions;
+        // the jobs searching for each name of the union
+        private final Map<String, Set<String>> jobsByName = new HashMap<>();
+        private final Set<String> jobIds = new HashSet<>();
+        private final CompletableFuture<Map<String, List<TextPosition>>> result = new CompletableFuture<>();
+        private boolean defaultNamesOnly = true;
+        private boolean started;
+
+        private Batch(BatchKey key, String leaderJobId, SearchOptions leaderOptions) {
+            this.key = key;
+            this.leaderJobId = leaderJobId;
+            this.leaderOptions = leaderOptions;
+        }
+
+        private void join(String jobId, Set<String> names) {
+            jobIds.add(jobId);
+            names.forEach(name -> jobsByName.computeIfAbsent(name, n -> new HashSet<>()).add(jobId));
+            defaultNamesOnly &= names.size() == PERSON_NAMES.size() && names.containsAll(PERSON_NAMES);
+        }
+
+        private boolean covers(Set<String> names) {
+            return jobsByName.keySet().containsAll(names);
+        }
+
+        /**
+         * Returns the options of the scan: those of the leader, searching the union of the names, and without
+         * statistics, which each member computes from its own positions.
+         */
+        private SearchOptions combinedOptions() {
+            SearchOptions combined = new SearchOptions();
+            combined.setMatchMode(leaderOptions.getMatchMode());
+            combined.setMaxEdits(leaderOptions.getMaxEdits());
+            combined.setTrace(leaderOptions.isTrace());
+            combined.setNames(defaultNamesOnly ? null : new ArrayList<>(new TreeSet<>(jobsByName.keySet())));
+            return combined;
+        }
+
+        /**
+         * Returns the positions of the names of a member. Called once the scan completed, when the batch no longer
+         * takes members.
+         */
+        private Map<String, List<TextPosition>> positionsOf(String jobId, Map<String, List<TextPosition>> positions) {
+            Map<String, List<TextPosition>> own = new HashMap<>();
+            positions.forEach((name, namePositions) -> {
+                Set<String> jobs = jobsByName.get(name);
+                if (jobs != null && jobs.contains(jobId)) {
+                    own.put(name, namePositions);
+                }
+            });
+            return own;
+        }
+    }
+}
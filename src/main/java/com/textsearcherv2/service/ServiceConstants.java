@@ -17,4 +17,13 @@ public class ServiceConstants {
             "Carl", "Arthur", "Ryan", "Roger"
     ));
     public static final long THREAD_WAIT_SECONDS = 60;
+    public static final int MAX_RETAINED_JOBS = 100; // completed jobs kept for retrieval before the oldest is evicted
+    public static final int PATTERN_CACHE_SIZE = 256;
+    public static final int QUERY_DICTIONARY_CACHE_SIZE = 64; // compiled name lists of queries kept for reuse
+    public static final int REGEX_LOOKAHEAD_CHARS = 1024; // longest regex match that may cross a chunk boundary
+    public static final long REGEX_CHUNK_TIMEOUT_MILLIS = 2000;
+    public static final int MAX_IN_FLIGHT_CHUNKS = 16; // chunks of a document read ahead of the matchers
+    public static final int DECODE_WINDOW_MEMBERS = 32; // BGZF members inflated ahead of the reader, 64 KiB each
+    public static final int MAX_PAGE_LIMIT = 1000; // matches per page of the result query API
+    public static final int WORD_INDEX_CHUNK_CHARS = 256 * 1024; // chars of content indexed per parallel chunk
 }
@@ -0,0 +1,257 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.model.TraceFormat;
+import com.textsearcherv2.model.TraceSpan;
+import com.textsearcherv2.model.TraceStage;
+import com.textsearcherv2.util.JobTrace;
+import com.textsearcherv2.util.XxHash64;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples jobs for tracing and exports their timelines.
+ *
+ * <p>
+ * A job is traced when it asks for it or when it falls within {@code textsearcher.tracing.sample-rate}, 0 by
+ * default. The pipeline records a span per stage and chunk into the {@link JobTrace} of its job: the fetch of every
+ * document, the reading, admission, queueing, matching and commit of every chunk and the aggregation of every
+ * document. Unsampled jobs get {@link JobTrace#NONE}, so tracing costs them a map lookup per document and nothing
+ * per chunk beyond a field check.
+ * </p>
+ *
+ * <p>
+ * The traces of the last {@code textsearcher.tracing.max-jobs} traced jobs are kept for the timeline endpoint, in
+ * the Chrome Trace Event format or as OpenTelemetry OTLP/JSON. With {@code textsearcher.tracing.export-dir} set,
+ * the trace of every traced job is also written there once the job completes.
+ * </p>
+ */
+@Service
+@Log4j2
+public class TracingService {
+    private static final Logger logger = LogManager.getLogger(TracingService.class);
+    private static final String SERVICE_NAME = "textsearcher";
+    // SPAN_KIND_INTERNAL
+    private static final int INTERNAL_SPAN_KIND = 1;
+
+    private final double sampleRate;
+    private final int maxSpansPerJob;
+    private final int maxJobs;
+    private final Path exportDirectory;
+    private final TraceFormat exportFormat;
+    private final ObjectMapper objectMapper;
+    private final Map<String, JobTrace> traces = new ConcurrentHashMap<>();
+    private final Deque<String> tracedJobIds = new ArrayDeque<>();
+
+    public TracingService(@Value("${textsearcher.tracing.sample-rate:0}") double sampleRate,
+                          @Value("${textsearcher.tracing.max-spans-per-job:100000}") int maxSpansPerJob,
+                          @Value("${textsearcher.tracing.max-jobs:100}") int maxJobs,
+                          @Value("${textsearcher.tracing.export-dir:}") String exportDirectory,
+                          @Value("${textsearcher.tracing.export-format:CHROME}") TraceFormat exportFormat,
+                          ObjectMapper objectMapper) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("The trace sample rate must be between 0 and 1");
+        }
+        if (maxSpansPerJob < 0 || maxJobs <= 0) {
+            throw new IllegalArgumentException("The span limit must not be negative and the traced jobs positive");
+        }
+        this.sampleRate = sampleRate;
+        this.maxSpansPerJob = maxSpansPerJob;
+        this.maxJobs = maxJobs;
+        this.exportDirectory = exportDirectory == null || exportDirectory.isBlank() ? null : Paths.get(exportDirectory);
+        this.exportFormat = exportFormat;
+        this.objectMapper = objectMapper;
+        if (sampleRate > 0) {
+            logger.info("Tracing {}% of jobs", sampleRate * 100);
+        }
+    }
+
+    /**
+     * Starts the trace of a job if it is sampled, forgetting the oldest trace beyond the retained jobs.
+     *
+     * @param jobId  the id of the job
+     * @param forced whether the job asked to be traced
+     * @return the trace of the job, {@link JobTrace#NONE} if it is not sampled
+     */
+    public JobTrace startJob(String jobId, boolean forced) {
+        if (!forced && (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return JobTrace.NONE;
+        }
+        JobTrace trace = new JobTrace(jobId, maxSpansPerJob);
+        synchronized (tracedJobIds) {
+            if (traces.put(jobId, trace) == null) {
+                tracedJobIds.addLast(jobId);
+            }
+            while (tracedJobIds.size() > maxJobs) {
+                traces.remove(tracedJobIds.removeFirst());
+            }
+        }
+        logger.debug("Tracing job {}", jobId);
+        return trace;
+    }
+
+    /**
+     * Returns the trace of a job.
+     *
+     * @param jobId the id of the job
+     * @return the trace, {@link JobTrace#NONE} if the job is not traced
+     */
+    public JobTrace trace(String jobId) {
+        JobTrace trace = traces.get(jobId);
+        return trace == null ? JobTrace.NONE : trace;
+    }
+
+    /**
+     * Ends the job span of a traced job and exports its trace if an export directory is configured.
+     *
+     * @param jobId the id of the job
+     */
+    public void finishJob(String jobId) {
+        JobTrace trace = traces.get(jobId);
+        if (trace == null) {
+            return;
+        }
+        trace.finish();
+        if (exportDirectory == null) {
+            return;
+        }
+        Path file = exportDirectory.resolve(jobId + "." + exportFormat.name().toLowerCase(Locale.ROOT) + ".json");
+        try {
+            Files.createDirectories(exportDirectory);
+            Files.write(file, objectMapper.writeValueAsBytes(export(trace, exportFormat)));
+            logger.info("Exported the trace of job {} to {}", jobId, file);
+        } catch (IOException e) {
+            logger.warn("Could not export the trace of job {} to {}", jobId, file, e);
+        }
+    }
+
+    /**
+     * Returns the timeline of a traced job, complete once the job finished and up to now while it runs.
+     *
+     * @param jobId  the id of the job
+     * @param format the format of the timeline
+     * @return the timeline as a JSON tree, empty if the job is not traced or its trace was forgotten
+     */
+    public Optional<Map<String, Object>> timeline(String jobId, TraceFormat format) {
+        JobTrace trace = traces.get(jobId);
+        return trace == null ? Optional.empty() : Optional.of(export(trace, format));
+    }
+
+    private Map<String, Object> export(JobTrace trace, TraceFormat format) {
+        return format == TraceFormat.OTLP ? otlpTrace(trace) : chromeTrace(trace);
+    }
+
+    /**
+     * Builds a Trace Event format document with a complete event per span and the thread names as metadata.
+     */
+    private Map<String, Object> chromeTrace(JobTrace trace) {
+        List<Map<String, Object>> events = new ArrayList<>();
+        Map<Long, String> threadNames = new LinkedHashMap<>();
+        for (TraceSpan span : trace.spans()) {
+            threadNames.putIfAbsent(span.getThreadId(), span.getThreadName());
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("name", span.getStage().name().toLowerCase(Locale.ROOT));
+            event.put("cat", span.getStage().getComponent());
+            event.put("ph", "X");
+            event.put("ts", span.getStartMicros());
+            event.put("dur", span.getDurationMicros());
+            event.put("pid", 1);
+            event.put("tid", span.getThreadId());
+            event.put("args", spanAttributes(span));
+            events.add(event);
+        }
+        threadNames.forEach((threadId, threadName) -> {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("name", "thread_name");
+            event.put("ph", "M");
+            event.put("pid", 1);
+            event.put("tid", threadId);
+            event.put("args", Map.of("name", threadName));
+            events.add(event);
+        });
+        Map<String, Object> otherData = new LinkedHashMap<>();
+        otherData.put("jobId", trace.getJobId());
+        otherData.put("startEpochMicros", trace.getStartEpochMicros());
+        otherData.put("droppedSpans", trace.droppedSpans());
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("traceEvents", events);
+        document.put("displayTimeUnit", "ms");
+        document.put("otherData", otherData);
+        return document;
+    }
+
+    /**
+     * Builds an OTLP/JSON document with one trace per job, the job span being the parent of every other span.
+     */
+    private Map<String, Object> otlpTrace(JobTrace trace) {
+        String traceId = String.format("%016x%016x", XxHash64.hash(trace.getJobId(), 0),
+                XxHash64.hash(trace.getJobId(), 1));
+        String jobSpanId = String.format("%016x", 1);
+        List<Map<String, Object>> spans = new ArrayList<>();
+        long nextSpanId = 2;
+        for (TraceSpan span : trace.spans()) {
+            boolean jobSpan = span.getStage() == TraceStage.JOB;
+            long startNanos = (trace.getStartEpochMicros() + span.getStartMicros()) * 1000;
+            Map<String, Object> otlpSpan = new LinkedHashMap<>();
+            otlpSpan.put("traceId", traceId);
+            otlpSpan.put("spanId", jobSpan ? jobSpanId : String.format("%016x", nextSpanId++));
+            if (!jobSpan) {
+                otlpSpan.put("parentSpanId", jobSpanId);
+            }
+            otlpSpan.put("name", span.getStage().name().toLowerCase(Locale.ROOT));
+            otlpSpan.put("kind", INTERNAL_SPAN_KIND);
+            // 64 bit integers are strings in OTLP/JSON
+            otlpSpan.put("startTimeUnixNano", String.valueOf(startNanos));
+            otlpSpan.put("endTimeUnixNano", String.valueOf(startNanos + span.getDurationMicros() * 1000));
+            List<Map<String, Object>> attributes = new ArrayList<>();
+            attributes.add(attribute("code.namespace", span.getStage().getComponent()));
+            attributes.add(attribute("thread.name", span.getThreadName()));
+            spanAttributes(span).forEach((key, value) -> attributes.add(attribute("textsearcher." + key, value)));
+            otlpSpan.put("attributes", attributes);
+            spans.add(otlpSpan);
+        }
+        Map<String, Object> scopeSpans = new LinkedHashMap<>();
+        scopeSpans.put("scope", Map.of("name", "com.textsearcherv2"));
+        scopeSpans.put("spans", spans);
+        Map<String, Object> resourceSpans = new LinkedHashMap<>();
+        resourceSpans.put("resource", Map.of("attributes", List.of(attribute("service.name", SERVICE_NAME))));
+        resourceSpans.put("scopeSpans", List.of(scopeSpans));
+        return Map.of("resourceSpans", List.of(resourceSpans));
+    }
+
+    private Map<String, Object> spanAttributes(TraceSpan span) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        if (span.getDocument() != null) {
+            attributes.put("document", span.getDocument());
+        }
+        if (span.getChunkIndex() >= 0) {
+            attributes.put("chunk", span.getChunkIndex());
+        }
+        return attributes;
+    }
+
+    private Map<String, Object> attribute(String key, Object value) {
+        Map<String, Object> typed = value instanceof Integer
+                ? Map.of("intValue", String.valueOf(value))
+                : Map.of("stringValue", String.valueOf(value));
+        return Map.of("key", key, "value", typed);
+    }
+}
@@ -0,0 +1,185 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.textsearcherv2.util.BinaryResultWriter.*;
+
+/**
+ * Reads an export written by {@link BinaryResultWriter}, one document at a time.
+ *
+ * <pre>{@code
+ * try (BinaryResultReader reader = new BinaryResultReader(in)) {
+ *     while (reader.next()) {
+ *         process(reader.getDocumentUrl(), reader.getPositionsByName());
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class BinaryResultReader implements Closeable {
+    private final InputStream in;
+    // buffered here rather than in a BufferedInputStream, whose reads are synchronized
+    private final byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+    private final List<String> names = new ArrayList<>();
+    private String documentUrl;
+    private Map<String, List<TextPosition>> positionsByName;
+    private int pendingTag = -1;
+    private boolean ended;
+
+    /**
+     * Opens an export.
+     *
+     * @param in the stream of the export, closed with the reader
+     * @throws IOException if the header cannot be read or is not the one of a supported export
+     */
+    public BinaryResultReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = (byte) read();
+        }
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a binary result export");
+        }
+        int version = read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary result export version " + version);
+        }
+    }
+
+    /**
+     * Reads the next document.
+     *
+     * @return true if a document was read, false at the end of the export
+     * @throws IOException if the export is truncated or malformed
+     */
+    public boolean next() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int tag = pendingTag >= 0 ? pendingTag : readTag();
+        pendingTag = -1;
+        while (tag == TAG_NAME) {
+            names.add(readString());
+            tag = readTag();
+        }
+        if (tag == TAG_END) {
+            ended = true;
+            documentUrl = null;
+            positionsByName = null;
+            return false;
+        }
+        if (tag != TAG_DOCUMENT) {
+            throw new IOException("Expected a document, found tag " + tag);
+        }
+        documentUrl = readString();
+        positionsByName = new LinkedHashMap<>();
+        while (true) {
+            tag = readTag();
+            if (tag == TAG_NAME) {
+                names.add(readString());
+            } else if (tag == TAG_BLOCK) {
+                readBlock();
+            } else {
+                pendingTag = tag;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the URL of the document read last.
+     *
+     * @return the URL, null at the end of the export
+     */
+    public String getDocumentUrl() {
+        return documentUrl;
+    }
+
+    /**
+     * Returns the positions of the document read last, in document order.
+     *
+     * @return the positions by name, null at the end of the export
+     */
+    public Map<String, List<TextPosition>> getPositionsByName() {
+        return positionsByName;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readBlock() throws IOException {
+        int nameId = readVarint();
+        if (nameId >= names.size()) {
+            throw new IOException("Undefined name id " + nameId);
+        }
+        int count = readVarint();
+        int[] lines = new int[count];
+        int line = 0;
+        for (int i = 0; i < count; i++) {
+            line += readVarint();
+            lines[i] = line;
+        }
+        List<TextPosition> positions = positionsByName.computeIfAbsent(names.get(nameId),
+                n -> new ArrayList<>(count));
+        int column = 0;
+        for (int i = 0; i < count; i++) {
+            int value = readVarint();
+            column = i > 0 && lines[i] == lines[i - 1] ? column + value : value;
+            positions.add(new TextPosition(lines[i], column));
+        }
+    }
+
+    private int readTag() throws IOException {
+        return read();
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) read();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = read();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in the binary result export");
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException("The binary result export is truncated");
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+}
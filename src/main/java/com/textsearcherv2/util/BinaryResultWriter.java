@@ -0,0 +1,184 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the results of a job in the compact binary export format, one document at a time, so an export of any size
+ * streams out in constant memory beyond the document being written.
+ *
+ * <p>
+ * The format starts with the magic {@code TSRB} and a version byte, followed by records, each introduced by a tag
+ * byte; integers are unsigned LEB128 varints and strings a varint byte length and UTF-8 bytes:
+ * </p>
+ * <ul>
+ *     <li>{@code NAME}: a name, whose id is the number of names defined before it. Names are defined on first use,
+ *     so the dictionary builds up as the export streams.</li>
+ *     <li>{@code DOCUMENT}: the URL of the document the next blocks belong to.</li>
+ *     <li>{@code BLOCK}: the id of a name, a count and two columns of that many varints: the lines, each the
+ *     difference to the line before, then the columns, each the difference to the column before on the same line
+ *     or the column itself on a new line. Positions are written in document order, so every difference is
+ *     non-negative and most fit in one byte. A name with more than {@link #MAX_BLOCK_POSITIONS} positions in a
+ *     document takes several blocks.</li>
+ *     <li>{@code END}: the end of the export.</li>
+ * </ul>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class BinaryResultWriter implements Closeable {
+    public static final byte[] MAGIC = {'T', 'S', 'R', 'B'};
+    public static final int VERSION = 1;
+    public static final int TAG_END = 0;
+    public static final int TAG_NAME = 1;
+    public static final int TAG_DOCUMENT = 2;
+    public static final int TAG_BLOCK = 3;
+    public static final int MAX_BLOCK_POSITIONS = 65536;
+    private static final Comparator<TextPosition> DOCUMENT_ORDER = Comparator
+            .comparingInt(TextPosition::getLineNumber)
+            .thenComparingInt(TextPosition::getColumnNumber);
+
+    private final OutputStream out;
+    // buffered here rather than in a BufferedOutputStream, whose writes are synchronized
+    private final byte[] buffer = new byte[64 * 1024];
+    private int buffered;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * Starts an export.
+     *
+     * @param out the stream the export is written to, closed with the writer
+     * @throws IOException if the header cannot be written
+     */
+    public BinaryResultWriter(OutputStream out) throws IOException {
+        this.out = out;
+        for (byte b : MAGIC) {
+            write(b);
+        }
+        write(VERSION);
+    }
+
+    /**
+     * Writes the positions of a document.
+     *
+     * @param documentUrl     the URL of the document
+     * @param positionsByName the positions of the document, by name
+     * @throws IOException if the export cannot be written
+     */
+    public void writeDocument(String documentUrl, Map<String, List<TextPosition>> positionsByName)
+            throws IOException {
+        write(TAG_DOCUMENT);
+        writeString(documentUrl);
+        for (Map.Entry<String, List<TextPosition>> entry : positionsByName.entrySet()) {
+            List<TextPosition> positions = inDocumentOrder(entry.getValue());
+            if (positions.isEmpty()) {
+                continue;
+            }
+            int nameId = nameId(entry.getKey());
+            for (int from = 0; from < positions.size(); from += MAX_BLOCK_POSITIONS) {
+                writeBlock(nameId, positions.subList(from, Math.min(positions.size(), from + MAX_BLOCK_POSITIONS)));
+            }
+        }
+    }
+
+    /**
+     * Ends the export and closes the stream.
+     *
+     * @throws IOException if the export cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (out) {
+            write(TAG_END);
+            flushBuffer();
+        }
+    }
+
+    private int nameId(String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = nameIds.size();
+            nameIds.put(name, id);
+            write(TAG_NAME);
+            writeString(name);
+        }
+        return id;
+    }
+
+    private void writeBlock(int nameId, List<TextPosition> positions) throws IOException {
+        write(TAG_BLOCK);
+        writeVarint(nameId);
+        writeVarint(positions.size());
+        int line = 0;
+        for (TextPosition position : positions) {
+            writeVarint(position.getLineNumber() - line);
+            line = position.getLineNumber();
+        }
+        line = -1;
+        int column = 0;
+        for (TextPosition position : positions) {
+            boolean sameLine = position.getLineNumber() == line;
+            writeVarint(sameLine ? position.getColumnNumber() - column : position.getColumnNumber());
+            line = position.getLineNumber();
+            column = position.getColumnNumber();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        for (byte b : bytes) {
+            write(b);
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value + " in the binary export");
+        }
+        if (buffered + 5 > buffer.length) {
+            flushBuffer();
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer[buffered++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[buffered++] = (byte) value;
+    }
+
+    private void write(int b) throws IOException {
+        if (buffered == buffer.length) {
+            flushBuffer();
+        }
+        buffer[buffered++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+
+    private static List<TextPosition> inDocumentOrder(List<TextPosition> positions) {
+        for (int i = 1; i < positions.size(); i++) {
+            if (DOCUMENT_ORDER.compare(positions.get(i - 1), positions.get(i)) > 0) {
+                List<TextPosition> sorted = new ArrayList<>(positions);
+                sorted.sort(DOCUMENT_ORDER);
+                return sorted;
+            }
+        }
+        return positions;
+    }
+}
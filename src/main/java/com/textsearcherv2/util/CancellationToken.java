@@ -0,0 +1,173 @@
+package com.textsearcherv2.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tells the stages of a job that it was cancelled, and runs the actions that stop its work in flight: aborting an
+ * HTTP exchange, closing a body being read, interrupting a thread waiting for a permit.
+ *
+ * <p>
+ * An action is registered for as long as the work it stops is in flight, and the registration is closed once the
+ * work is done. Once {@link Registration#close()} returned, its action no longer runs, so an action interrupting a
+ * pooled thread cannot hit the next task of that thread. An action registered after the cancellation runs at once,
+ * on the registering thread. Actions must not block.
+ * </p>
+ */
+public final class CancellationToken {
+    private static final Logger logger = LogManager.getLogger(CancellationToken.class);
+
+    /**
+     * A token that is never cancelled, for work outside of any job.
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private final Set<Registration> registrations = new LinkedHashSet<>();
+    private volatile String reason;
+
+    /**
+     * Cancels the token and runs the registered actions. Later calls do nothing.
+     *
+     * @param reason why the work is cancelled
+     * @return true if this call cancelled the token
+     */
+    public boolean cancel(String reason) {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("The NONE token cannot be cancelled");
+        }
+        List<Registration> toRun;
+        synchronized (registrations) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(registrations);
+            registrations.clear();
+        }
+        toRun.forEach(Registration::fire);
+        return true;
+    }
+
+    /**
+     * Tells whether the token was cancelled.
+     *
+     * @return true once cancelled
+     */
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * Returns why the token was cancelled.
+     *
+     * @return the reason, null while not cancelled
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Throws if the token was cancelled.
+     *
+     * @throws CancellationException if the token was cancelled
+     */
+    public void throwIfCancelled() {
+        if (reason != null) {
+            throw cancellationException();
+        }
+    }
+
+    /**
+     * Returns the exception failing the work of a cancelled token.
+     *
+     * @return the exception, its message the reason of the cancellation
+     */
+    public CancellationException cancellationException() {
+        return new CancellationException(reason);
+    }
+
+    /**
+     * Registers an action run when the token is cancelled, at once if it already is.
+     *
+     * @param action the action, which must not block
+     * @return the registration, to close once the work the action stops is done
+     */
+    public Registration onCancel(Runnable action) {
+        return register(new Registration(action, false));
+    }
+
+    /**
+     * Registers the interruption of the calling thread when the token is cancelled. Closing the registration clears
+     * an interruption it made, so the thread goes back to its pool clean.
+     *
+     * @return the registration, to close on the same thread once it no longer waits for the work of the token
+     */
+    public Registration interruptOnCancel() {
+        return register(new Registration(Thread.currentThread()::interrupt, true));
+    }
+
+    private Registration register(Registration registration) {
+        if (this == NONE) {
+            return registration;
+        }
+        synchronized (registrations) {
+            if (reason == null) {
+                registrations.add(registration);
+                return registration;
+            }
+        }
+        registration.fire();
+        return registration;
+    }
+
+    /**
+     * An action registered with a token.
+     */
+    public final class Registration implements AutoCloseable {
+        private final Runnable action;
+        private final boolean interrupts;
+        private boolean closed;
+        private boolean fired;
+
+        private Registration(Runnable action, boolean interrupts) {
+            this.action = action;
+            this.interrupts = interrupts;
+        }
+
+        private synchronized void fire() {
+            if (closed) {
+                return;
+            }
+            fired = true;
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.warn("A cancellation action failed", e);
+            }
+        }
+
+        /**
+         * Unregisters the action. It does not run once this method returned.
+         */
+        @Override
+        public void close() {
+            boolean interrupted;
+            synchronized (this) {
+                closed = true;
+                interrupted = interrupts && fired;
+            }
+            synchronized (registrations) {
+                registrations.remove(this);
+            }
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.textsearcherv2.util;
+
+/**
+ * A prefilter stage in front of exact matching. It finds the positions of a text where a name can start, so the
+ * full verification only runs on those candidates instead of on every position for every name.
+ *
+ * <p>
+ * A position is a candidate when its character lies in the range of first characters of the dictionary; line
+ * feeds are reported as well, so the caller can keep track of line numbers without scanning the text a second
+ * time. Candidates are a superset of the real name starts: the caller still checks the exact first character set.
+ * </p>
+ */
+public interface CandidatePrefilter {
+    /**
+     * Writes the positions in text[from, to) whose character is in [low, high] or is a line feed into out, in
+     * increasing order.
+     *
+     * @param text the text to scan
+     * @param from the first position to scan
+     * @param to   the position after the last one to scan
+     * @param low  the lowest candidate character
+     * @param high the highest candidate character
+     * @param out  receives the candidate positions, must hold at least {@code to - from} entries
+     * @return the number of candidates written
+     */
+    int findCandidates(char[] text, int from, int to, char low, char high, int[] out);
+
+    /**
+     * Returns the name of the implementation, for logging and benchmarks.
+     *
+     * @return the name of the implementation
+     */
+    String name();
+}
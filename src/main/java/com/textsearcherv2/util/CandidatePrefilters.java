@@ -0,0 +1,63 @@
+package com.textsearcherv2.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Locale;
+
+/**
+ * Selects the {@link CandidatePrefilter} implementation, falling back automatically when the Vector API is not
+ * available in the running JVM.
+ */
+public final class CandidatePrefilters {
+    private static final Logger logger = LogManager.getLogger(CandidatePrefilters.class);
+
+    public static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_IMPLEMENTATION = "com.textsearcherv2.util.VectorCandidatePrefilter";
+
+    private CandidatePrefilters() {
+    }
+
+    /**
+     * Selects a prefilter for the configured mode.
+     *
+     * @param mode {@code auto} for the vectorized prefilter when the {@value #VECTOR_MODULE} module is available
+     *             and the scalar one otherwise, {@code vector}, {@code scalar}, or {@code off} for none
+     * @return the prefilter, or null when prefiltering is off
+     * @throws IllegalArgumentException if the mode is unknown
+     */
+    public static CandidatePrefilter select(String mode) {
+        switch (mode.trim().toLowerCase(Locale.ROOT)) {
+            case "off":
+                return null;
+            case "scalar":
+                return new ScalarCandidatePrefilter();
+            case "vector":
+            case "auto":
+                CandidatePrefilter vector = loadVectorPrefilter();
+                return vector != null ? vector : new ScalarCandidatePrefilter();
+            default:
+                throw new IllegalArgumentException("Unknown prefilter mode: " + mode);
+        }
+    }
+
+    /**
+     * Loads the vectorized prefilter reflectively, so no Vector API class is linked unless the incubator module
+     * was added to the JVM with {@code --add-modules jdk.incubator.vector}.
+     *
+     * @return the vectorized prefilter, or null if the module is not available
+     */
+    private static CandidatePrefilter loadVectorPrefilter() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            logger.info("{} is not available, falling back to the scalar prefilter", VECTOR_MODULE);
+            return null;
+        }
+        try {
+            return (CandidatePrefilter) Class.forName(VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Vector prefilter could not be loaded, falling back to the scalar prefilter", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.textsearcherv2.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.textsearcherv2.model.SearchOptions.MAX_SUPPORTED_EDITS;
+import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+
+/**
+ * Every structure the matchers compile from a name set: the {@link NameDictionary} of exact matching and one
+ * {@link FuzzyNameIndex} per supported edit distance.
+ *
+ * <p>
+ * A compiled dictionary can be serialized at build time and loaded at startup, so a fresh instance does not compile
+ * the name set again, in particular not on its first fuzzy search. The build writes the dictionary of
+ * {@code ServiceConstants.PERSON_NAMES} to {@value #PERSON_NAMES_RESOURCE} by running {@link #main(String[])}. A
+ * serialized dictionary is only used if it was compiled from the expected names; otherwise the names are compiled
+ * as before.
+ * </p>
+ */
+public final class CompiledDictionary {
+    private static final Logger logger = LogManager.getLogger(CompiledDictionary.class);
+    public static final String PERSON_NAMES_RESOURCE = "/dictionary/person-names.bin";
+    private static final int MAGIC = 0x54534443; // "TSDC"
+    private static final int FORMAT_VERSION = 1;
+
+    private final NameDictionary dictionary;
+    private final Map<Integer, FuzzyNameIndex> fuzzyIndexes;
+
+    private CompiledDictionary(NameDictionary dictionary, Map<Integer, FuzzyNameIndex> fuzzyIndexes) {
+        this.dictionary = dictionary;
+        this.fuzzyIndexes = Collections.unmodifiableMap(fuzzyIndexes);
+    }
+
+    /**
+     * Compiles the given names for every match mode.
+     *
+     * @param names the names
+     * @return the compiled dictionary
+     * @throws IllegalArgumentException if the names are empty or contain an empty name
+     */
+    public static CompiledDictionary compile(Collection<String> names) {
+        Map<Integer, FuzzyNameIndex> fuzzyIndexes = new TreeMap<>();
+        for (int edits = 0; edits <= MAX_SUPPORTED_EDITS; edits++) {
+            fuzzyIndexes.put(edits, FuzzyNameIndex.compile(names, edits));
+        }
+        return new CompiledDictionary(NameDictionary.compile(names), fuzzyIndexes);
+    }
+
+    /**
+     * Loads the dictionary serialized in the given classpath resource if it was compiled from the given names, and
+     * compiles the names otherwise.
+     *
+     * @param resource the classpath resource
+     * @param names    the names the dictionary must hold
+     * @return the compiled dictionary
+     */
+    public static CompiledDictionary loadOrCompile(String resource, Collection<String> names) {
+        try (InputStream in = CompiledDictionary.class.getResourceAsStream(resource)) {
+            if (in != null) {
+                CompiledDictionary loaded = readFrom(in);
+                if (loaded.getVersion() == NameDictionary.compile(names).getVersion()) {
+                    logger.debug("Loaded the precompiled dictionary {}", resource);
+                    return loaded;
+                }
+                logger.warn("The precompiled dictionary {} is stale, compiling the names", resource);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not load the precompiled dictionary {}, compiling the names", resource, e);
+        }
+        return compile(names);
+    }
+
+    public NameDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the fuzzy indexes by edit distance, from 0 to {@code SearchOptions.MAX_SUPPORTED_EDITS}.
+     *
+     * @return the fuzzy indexes
+     */
+    public Map<Integer, FuzzyNameIndex> getFuzzyIndexes() {
+        return fuzzyIndexes;
+    }
+
+    /**
+     * Returns the version of the names, see {@link NameDictionary#getVersion()}.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return dictionary.getVersion();
+    }
+
+    /**
+     * Serializes the compiled dictionary.
+     *
+     * @param out the output, left open
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(getVersion());
+        data.writeInt(dictionary.getNames().size());
+        for (String name : dictionary.getNames()) {
+            data.writeUTF(name);
+        }
+        data.writeInt(fuzzyIndexes.size());
+        for (FuzzyNameIndex index : fuzzyIndexes.values()) {
+            index.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a dictionary serialized by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the input, left open
+     * @return the compiled dictionary
+     * @throws IOException if reading fails or the input is not a serialized dictionary of this format
+     */
+    public static CompiledDictionary readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a compiled dictionary of format " + FORMAT_VERSION);
+        }
+        long version = data.readLong();
+        int nameCount = data.readInt();
+        List<String> names = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            names.add(data.readUTF());
+        }
+        NameDictionary dictionary = NameDictionary.compile(names);
+        if (dictionary.getVersion() != version) {
+            throw new IOException("Corrupt compiled dictionary");
+        }
+        Map<Integer, FuzzyNameIndex> fuzzyIndexes = new TreeMap<>();
+        int indexCount = data.readInt();
+        for (int i = 0; i < indexCount; i++) {
+            FuzzyNameIndex index = FuzzyNameIndex.readFrom(data);
+            fuzzyIndexes.put(index.getMaxEdits(), index);
+        }
+        return new CompiledDictionary(dictionary, fuzzyIndexes);
+    }
+
+    /**
+     * Writes the compiled dictionary of {@code ServiceConstants.PERSON_NAMES}. Run by the build.
+     *
+     * @param args the output file
+     * @throws IOException if writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        Path target = Paths.get(args[0]);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(target)) {
+            compile(PERSON_NAMES).writeTo(out);
+        }
+    }
+}
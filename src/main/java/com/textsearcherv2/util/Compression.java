@@ -0,0 +1,109 @@
+package com.textsearcherv2.util;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The compression formats a document can be served in, and their streaming decoders.
+ *
+ * <p>
+ * Decoders never inflate a whole document: they decode as the chunker reads. Concatenated gzip members and bzip2
+ * streams are decoded one after the other as one document. A gzip document in the blocked BGZF layout records the
+ * compressed size of every member, so its members are decoded in parallel by {@link ParallelGzipInputStream}.
+ * </p>
+ */
+public enum Compression {
+    NONE,
+    GZIP,
+    ZSTD,
+    BZIP2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Detects the compression of a document from the Content-Encoding of its response, or else from the extension
+     * of its URL path.
+     *
+     * @param contentEncoding the Content-Encoding header, or null
+     * @param url             the URL of the document
+     * @return the detected compression, {@link #NONE} for plain text
+     */
+    public static Compression detect(String contentEncoding, String url) {
+        if (contentEncoding != null) {
+            switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip", "x-gzip" -> {
+                    return GZIP;
+                }
+                case "zstd" -> {
+                    return ZSTD;
+                }
+                case "bzip2", "x-bzip2" -> {
+                    return BZIP2;
+                }
+                default -> {
+                    // identity or unknown, fall back to the extension
+                }
+            }
+        }
+        return fromExtension(url);
+    }
+
+    /**
+     * Detects the compression of a document from the extension of its URL path.
+     *
+     * @param url the URL of the document
+     * @return the detected compression, {@link #NONE} for plain text
+     */
+    public static Compression fromExtension(String url) {
+        String path = URI.create(url).getPath();
+        path = path == null ? "" : path.toLowerCase(Locale.ROOT);
+        if (path.endsWith(".gz") || path.endsWith(".gzip") || path.endsWith(".bgz")) {
+            return GZIP;
+        }
+        if (path.endsWith(".zst") || path.endsWith(".zstd")) {
+            return ZSTD;
+        }
+        if (path.endsWith(".bz2")) {
+            return BZIP2;
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps a stream of compressed bytes into a stream of decoded bytes.
+     *
+     * @param in       the compressed stream
+     * @param executor the executor decoding BGZF members in parallel
+     * @param window   the maximum number of BGZF members decoded ahead of the reader
+     * @return the decoded stream, {@code in} itself for {@link #NONE}
+     * @throws IOException if the stream does not start like the format
+     */
+    public InputStream decode(InputStream in, Executor executor, int window) throws IOException {
+        switch (this) {
+            case GZIP -> {
+                BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+                if (ParallelGzipInputStream.isBgzf(buffered)) {
+                    return new ParallelGzipInputStream(buffered, executor, window);
+                }
+                return new GZIPInputStream(buffered, BUFFER_SIZE);
+            }
+            case ZSTD -> {
+                return new ZstdCompressorInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+            }
+            case BZIP2 -> {
+                return new BZip2CompressorInputStream(new BufferedInputStream(in, BUFFER_SIZE), true);
+            }
+            default -> {
+                return in;
+            }
+        }
+    }
+}
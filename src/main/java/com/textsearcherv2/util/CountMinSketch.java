@@ -0,0 +1,96 @@
+package com.textsearcherv2.util;
+
+/**
+ * Estimates how often keys were added in a fixed amount of memory, for counting pairs of names whose number is not
+ * known ahead.
+ *
+ * <p>
+ * Every key is counted in one cell of each of {@code depth} rows of {@code width} cells, the cells picked by double
+ * hashing its xxHash64. The estimate of a key is its smallest cell, which exceeds the true count by at most
+ * {@code e / width} of all counts with probability {@code 1 - e^-depth}. Sketches of the same shape merge by adding
+ * their cells, so parts of a document counted in parallel merge into the sketch of the whole.
+ * </p>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] cells;
+    private long total;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param width the cells of every row
+     * @param depth the number of rows
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("The width and depth of a sketch must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.cells = new long[width * depth];
+    }
+
+    /**
+     * Counts a key.
+     *
+     * @param key   the key
+     * @param count the number of times it was seen
+     */
+    public void add(String key, long count) {
+        long hash = XxHash64.hash(key, 0);
+        for (int row = 0; row < depth; row++) {
+            cells[row * width + cell(hash, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates the count of a key.
+     *
+     * @param key the key
+     * @return the estimate, never below the true count
+     */
+    public long estimate(String key) {
+        long hash = XxHash64.hash(key, 0);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells[row * width + cell(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch of the same shape.
+     *
+     * @param other the other sketch
+     * @throws IllegalArgumentException if the shapes differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Only sketches of the same width and depth merge");
+        }
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] += other.cells[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Returns the sum of all counts added.
+     *
+     * @return the total count
+     */
+    public long total() {
+        return total;
+    }
+
+    private int cell(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
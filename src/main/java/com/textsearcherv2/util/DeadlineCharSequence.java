@@ -0,0 +1,51 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.exception.RegexTimeoutException;
+
+/**
+ * A CharSequence that fails once a deadline has passed. {@link java.util.regex.Matcher} reads its input through
+ * {@link #charAt(int)} only, so wrapping the input bounds the time a backtracking pattern can spend on it, which
+ * the regex engine itself has no way of doing.
+ */
+public final class DeadlineCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final CharSequence text;
+    private final long deadlineNanos;
+    private int untilCheck = CHECK_INTERVAL;
+
+    /**
+     * @param text          the wrapped text
+     * @param deadlineNanos the {@link System#nanoTime()} value after which reads fail
+     */
+    public DeadlineCharSequence(CharSequence text, long deadlineNanos) {
+        this.text = text;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--untilCheck == 0) {
+            untilCheck = CHECK_INTERVAL;
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw new RegexTimeoutException("Pattern matching exceeded its time budget");
+            }
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,364 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.JobPriority;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the chunk tasks of concurrent jobs on a fixed set of worker threads, interleaving the jobs fairly and in
+ * proportion to their priority instead of in submission order.
+ *
+ * <p>
+ * Every job has its own queue of tasks, and the scheduler picks the next task by stride scheduling: each job has a
+ * virtual pass, which grows with every task it runs by a stride inversely proportional to the weight of its
+ * priority, and the job with the lowest pass runs next. A {@link JobPriority#HIGH} job thus runs
+ * {@link #HIGH_WEIGHT} tasks for every {@link #LOW_WEIGHT} of a {@link JobPriority#LOW} one while both have work,
+ * and a job alone uses every worker. A job that had no queued task joins at the current virtual time, so it neither
+ * waits for the others to catch up with it nor saves credit while it idles. However many chunks a large scan has
+ * queued, a small job waits for at most one task per active job before its own tasks start.
+ * </p>
+ *
+ * <p>
+ * Workers do not keep queues of their own: whenever one is idle, it takes the next task in fair order from the
+ * shared queues, so no worker idles while any job has work, which is what per-worker queues with work stealing would
+ * provide, without giving up the global order. Chunk tasks take milliseconds, so the lock taken per task costs
+ * nothing measurable. Tasks submitted without a job, through {@link #execute(Runnable)}, share one queue of
+ * {@link JobPriority#NORMAL} priority.
+ * </p>
+ */
+public final class FairChunkScheduler extends AbstractExecutorService {
+    private static final Logger logger = LogManager.getLogger(FairChunkScheduler.class);
+    public static final int HIGH_WEIGHT = 4;
+    public static final int NORMAL_WEIGHT = 2;
+    public static final int LOW_WEIGHT = 1;
+    // pass added by one task of weight 1, divisible by every weight
+    private static final long STRIDE = 1L << 20;
+    private static final String UNATTRIBUTED = "";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition terminated = lock.newCondition();
+    // priorities of the jobs registered, jobs not registered run at NORMAL priority
+    private final Map<String, JobPriority> priorities = new HashMap<>();
+    // queues of the jobs with queued tasks or registered
+    private final Map<String, JobQueue> queues = new HashMap<>();
+    // registered jobs that were cancelled, whose tasks are rejected
+    private final Set<String> cancelledJobs = new HashSet<>();
+    private final PriorityQueue<JobQueue> runnable = new PriorityQueue<>(
+            Comparator.comparingLong((JobQueue queue) -> queue.pass).thenComparingLong(queue -> queue.sequence));
+    private final List<Thread> workers = new ArrayList<>();
+    private long virtualTime;
+    private long sequence;
+    private int liveWorkers;
+    private boolean shutdown;
+
+    /**
+     * Creates a scheduler and starts its workers.
+     *
+     * @param threads the number of worker threads
+     * @param name    the prefix of the names of the worker threads
+     */
+    public FairChunkScheduler(int threads, String name) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of worker threads must be positive");
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        liveWorkers = threads;
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Registers the priority of a job, for the tasks it submits until it is unregistered. A registered job keeps its
+     * pass while it has no task queued, so it cannot catch up on the turns it missed by briefly running dry.
+     *
+     * @param jobId    the id of the job
+     * @param priority the priority of the job
+     */
+    public void registerJob(String jobId, JobPriority priority) {
+        lock.lock();
+        try {
+            priorities.put(jobId, priority);
+            JobQueue queue = queues.get(jobId);
+            if (queue != null) {
+                queue.weight = weightOf(priority);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a job once it completed. Tasks it still has queued run at their turn.
+     *
+     * @param jobId the id of the job
+     */
+    public void unregisterJob(String jobId) {
+        lock.lock();
+        try {
+            priorities.remove(jobId);
+            cancelledJobs.remove(jobId);
+            JobQueue queue = queues.get(jobId);
+            if (queue != null && queue.tasks.isEmpty()) {
+                queues.remove(jobId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a job: removes its queued tasks and rejects the tasks it submits until it is unregistered. Tasks
+     * already running finish.
+     *
+     * @param jobId the id of the job
+     * @return the tasks removed from the queue, never run
+     */
+    public List<Runnable> cancelJob(String jobId) {
+        lock.lock();
+        try {
+            if (priorities.containsKey(jobId)) {
+                cancelledJobs.add(jobId);
+            }
+            JobQueue queue = queues.get(jobId);
+            if (queue == null) {
+                return List.of();
+            }
+            List<Runnable> removed = new ArrayList<>(queue.tasks);
+            queue.tasks.clear();
+            if (queue.queued) {
+                runnable.remove(queue);
+                queue.queued = false;
+            }
+            if (!priorities.containsKey(jobId)) {
+                queues.remove(jobId);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an executor running its tasks as tasks of the given job.
+     *
+     * @param jobId the id of the job
+     * @return the executor of the job
+     */
+    public Executor forJob(String jobId) {
+        return task -> submitTask(jobId, task);
+    }
+
+    /**
+     * Returns the number of tasks queued and not started yet, across all jobs.
+     *
+     * @return the number of queued tasks
+     */
+    public int queuedTasks() {
+        lock.lock();
+        try {
+            return queues.values().stream().mapToInt(queue -> queue.tasks.size()).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitTask(UNATTRIBUTED, task);
+    }
+
+    private void submitTask(String jobId, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("The chunk scheduler is shut down");
+            }
+            if (cancelledJobs.contains(jobId)) {
+                throw new RejectedExecutionException("Job " + jobId + " was cancelled");
+            }
+            JobQueue queue = queues.computeIfAbsent(jobId, id ->
+                    new JobQueue(id, weightOf(priorities.getOrDefault(id, JobPriority.NORMAL)), virtualTime));
+            queue.tasks.addLast(task);
+            if (!queue.queued) {
+                // a job joining the competition starts at the current virtual time, not ahead of the others
+                queue.pass = Math.max(queue.pass, virtualTime);
+                queue.sequence = sequence++;
+                queue.queued = true;
+                runnable.add(queue);
+            }
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int weightOf(JobPriority priority) {
+        switch (priority) {
+            case HIGH:
+                return HIGH_WEIGHT;
+            case LOW:
+                return LOW_WEIGHT;
+            case NORMAL:
+            default:
+                return NORMAL_WEIGHT;
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Runnable task = next();
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("Chunk task failed", t);
+            }
+        }
+    }
+
+    /**
+     * Takes the next task in fair order, waiting for one, or returns null once the scheduler is shut down and the
+     * queues are drained.
+     */
+    private Runnable next() {
+        lock.lock();
+        try {
+            while (runnable.isEmpty()) {
+                if (shutdown) {
+                    if (--liveWorkers == 0) {
+                        terminated.signalAll();
+                    }
+                    return null;
+                }
+                workAvailable.awaitUninterruptibly();
+            }
+            JobQueue queue = runnable.poll();
+            virtualTime = queue.pass;
+            Runnable task = queue.tasks.pollFirst();
+            queue.pass += STRIDE / queue.weight;
+            if (!queue.tasks.isEmpty()) {
+                queue.sequence = sequence++;
+                runnable.add(queue);
+            } else {
+                queue.queued = false;
+                if (!priorities.containsKey(queue.jobId)) {
+                    queues.remove(queue.jobId);
+                }
+            }
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for (JobQueue queue : runnable) {
+                pending.addAll(queue.tasks);
+                queue.tasks.clear();
+                queue.queued = false;
+            }
+            runnable.clear();
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && liveWorkers == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(shutdown && liveWorkers == 0)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = terminated.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The queued tasks of a job and its virtual pass. Guarded by the lock of the scheduler.
+     */
+    private static final class JobQueue {
+        private final String jobId;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private int weight;
+        private long pass;
+        private long sequence;
+        private boolean queued;
+
+        private JobQueue(String jobId, int weight, long pass) {
+            this.jobId = jobId;
+            this.weight = weight;
+            this.pass = pass;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A precompiled index over a name dictionary that finds the dictionary name closest to a word within a bounded
+ * edit distance.
+ *
+ * <p>
+ * Two strings within edit distance k can always be reduced to a common string by deleting at most k characters
+ * from each of them. At compile time every name is expanded into all of its deletion variants and their hashes
+ * are stored in an open addressing table pointing back to the names. A word is looked up by hashing its own
+ * deletion variants in O(1) each from prefix hashes, without allocating them, and only the names that share a
+ * variant with the word have their distance verified. The cost per word depends on the word length and k, not on
+ * the dictionary size, and most words are rejected after a handful of table probes.
+ * </p>
+ *
+ * <p>
+ * Distances are optimal string alignment distances: an adjacent transposition ("Jonh", "Micheal") counts as a
+ * single edit. Short names tolerate fewer edits, otherwise any three letter word would match a three letter name:
+ * names shorter than {@link #ONE_EDIT_MIN_LENGTH} must match exactly and names shorter than
+ * {@link #TWO_EDITS_MIN_LENGTH} allow at most one edit.
+ * </p>
+ *
+ * <p>Instances are immutable and safe to share between matcher threads.</p>
+ */
+public final class FuzzyNameIndex {
+    public static final int ONE_EDIT_MIN_LENGTH = 4;
+    public static final int TWO_EDITS_MIN_LENGTH = 7;
+
+    private static final long HASH_BASE = 0x100000001B3L;
+    private static final long EMPTY = 0L;
+
+    private final int maxEdits;
+    private final int minNameLength;
+    private final int maxNameLength;
+    private final String[] names;
+    private final int[] nameMaxEdits;
+    private final long[] powers;
+
+    // Open addressing table: variant hash -> ids of the names having that deletion variant.
+    private final long[] tableKeys;
+    private final int[][] tableNames;
+    private final int tableMask;
+
+    private FuzzyNameIndex(int maxEdits, String[] names, int[] nameMaxEdits, long[] tableKeys, int[][] tableNames) {
+        this.maxEdits = maxEdits;
+        this.names = names;
+        this.nameMaxEdits = nameMaxEdits;
+        this.tableKeys = tableKeys;
+        this.tableNames = tableNames;
+        this.tableMask = tableKeys.length - 1;
+        this.minNameLength = Arrays.stream(names).mapToInt(String::length).min().orElse(0);
+        this.maxNameLength = Arrays.stream(names).mapToInt(String::length).max().orElse(0);
+        this.powers = powers(maxNameLength + maxEdits + 1);
+    }
+
+    /**
+     * Compiles the given names into an index.
+     *
+     * @param dictionary the names
+     * @param maxEdits   the maximum edit distance between a word and a name, at most 2
+     * @return the compiled index
+     * @throws IllegalArgumentException if maxEdits is out of range or the dictionary is empty
+     */
+    public static FuzzyNameIndex compile(Collection<String> dictionary, int maxEdits) {
+        if (maxEdits < 0 || maxEdits > 2) {
+            throw new IllegalArgumentException("maxEdits must be between 0 and 2");
+        }
+        if (dictionary.isEmpty()) {
+            throw new IllegalArgumentException("The dictionary must not be empty");
+        }
+        String[] names = new TreeSet<>(dictionary).toArray(new String[0]);
+        int[] nameMaxEdits = new int[names.length];
+        int longest = 0;
+        for (int id = 0; id < names.length; id++) {
+            nameMaxEdits[id] = Math.min(maxEdits, allowedEdits(names[id].length()));
+            longest = Math.max(longest, names[id].length());
+        }
+        long[] powers = powers(longest + maxEdits + 1);
+
+        List<long[]> entries = new ArrayList<>();
+        for (int id = 0; id < names.length; id++) {
+            int nameId = id;
+            forEachVariantHash(names[id], 0, names[id].length(), nameMaxEdits[id], powers,
+                    hash -> entries.add(new long[]{hash, nameId}));
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 2) - 1) << 1;
+        long[] keys = new long[capacity];
+        int[][] values = new int[capacity][];
+        for (long[] entry : entries) {
+            int slot = slot(keys, capacity - 1, entry[0]);
+            keys[slot] = nonEmpty(entry[0]);
+            int[] ids = values[slot];
+            int nameId = (int) entry[1];
+            if (ids == null) {
+                values[slot] = new int[]{nameId};
+            } else if (ids[ids.length - 1] != nameId) {
+                int[] grown = Arrays.copyOf(ids, ids.length + 1);
+                grown[ids.length] = nameId;
+                values[slot] = grown;
+            }
+        }
+        return new FuzzyNameIndex(maxEdits, names, nameMaxEdits, keys, values);
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    /**
+     * Writes the compiled index, so it can be loaded with {@link #readFrom(DataInput)} instead of compiled again.
+     * Only the used slots of the table are written.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(maxEdits);
+        out.writeInt(names.length);
+        for (int id = 0; id < names.length; id++) {
+            out.writeUTF(names[id]);
+            out.writeInt(nameMaxEdits[id]);
+        }
+        out.writeInt(tableKeys.length);
+        int used = 0;
+        for (long key : tableKeys) {
+            used += key != EMPTY ? 1 : 0;
+        }
+        out.writeInt(used);
+        for (int slot = 0; slot < tableKeys.length; slot++) {
+            if (tableKeys[slot] != EMPTY) {
+                out.writeInt(slot);
+                out.writeLong(tableKeys[slot]);
+                out.writeInt(tableNames[slot].length);
+                for (int nameId : tableNames[slot]) {
+                    out.writeInt(nameId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input
+     * @return the index
+     * @throws IOException if reading fails or the input is not a valid index
+     */
+    public static FuzzyNameIndex readFrom(DataInput in) throws IOException {
+        int maxEdits = in.readInt();
+        int nameCount = in.readInt();
+        if (maxEdits < 0 || maxEdits > 2 || nameCount <= 0) {
+            throw new IOException("Invalid fuzzy name index");
+        }
+        String[] names = new String[nameCount];
+        int[] nameMaxEdits = new int[nameCount];
+        for (int id = 0; id < nameCount; id++) {
+            names[id] = in.readUTF();
+            nameMaxEdits[id] = in.readInt();
+        }
+        int capacity = in.readInt();
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IOException("Invalid fuzzy name index table of " + capacity + " slots");
+        }
+        long[] keys = new long[capacity];
+        int[][] values = new int[capacity][];
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int slot = in.readInt();
+            long key = in.readLong();
+            if (slot < 0 || slot >= capacity || key == EMPTY) {
+                throw new IOException("Invalid slot " + slot + " in fuzzy name index");
+            }
+            int[] ids = new int[in.readInt()];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = in.readInt();
+                if (ids[id] < 0 || ids[id] >= nameCount) {
+                    throw new IOException("Invalid name id " + ids[id] + " in fuzzy name index");
+                }
+            }
+            keys[slot] = key;
+            values[slot] = ids;
+        }
+        return new FuzzyNameIndex(maxEdits, names, nameMaxEdits, keys, values);
+    }
+
+    /**
+     * Returns how many edits a name of the given length tolerates at most.
+     *
+     * @param nameLength the length of the name
+     * @return the maximum number of edits
+     */
+    static int allowedEdits(int nameLength) {
+        if (nameLength < ONE_EDIT_MIN_LENGTH) {
+            return 0;
+        }
+        return nameLength < TWO_EDITS_MIN_LENGTH ? 1 : 2;
+    }
+
+    /**
+     * Finds every word of the line that is within the allowed distance of a dictionary name and adds its position
+     * under the closest name. A word is a maximal run of letters.
+     *
+     * @param line            the line to scan
+     * @param lineNumber      the line number reported in the positions
+     * @param columnOffset    added to every reported column
+     * @param positionsByName the map the positions are added to
+     */
+    public void matchLine(String line, int lineNumber, int columnOffset, Map<String, List<TextPosition>> positionsByName) {
+        int length = line.length();
+        Lookup lookup = null;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetter(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetter(line.charAt(i))) {
+                i++;
+            }
+            int wordLength = i - start;
+            if (wordLength == 0 || wordLength < minNameLength - maxEdits || wordLength > maxNameLength + maxEdits) {
+                continue;
+            }
+            if (lookup == null) {
+                lookup = new Lookup(maxNameLength + maxEdits);
+            }
+            String name = lookup.closestName(line, start, wordLength);
+            if (name != null) {
+                positionsByName.computeIfAbsent(name, k -> new ArrayList<>())
+                        .add(new TextPosition(lineNumber, columnOffset + start));
+            }
+        }
+    }
+
+    /**
+     * Returns the dictionary name closest to the given word, or null if no name is within the allowed distance.
+     *
+     * @param word the word to look up
+     * @return the closest name, or null
+     */
+    public String closestName(String word) {
+        if (word.isEmpty() || word.length() < minNameLength - maxEdits || word.length() > maxNameLength + maxEdits) {
+            return null;
+        }
+        return new Lookup(word.length()).closestName(word, 0, word.length());
+    }
+
+    /**
+     * Per-scan scratch state, so a line is matched without allocating per word.
+     */
+    private final class Lookup {
+        private final long[] prefixHash;
+        private final int[][] rows;
+        private String bestName;
+        private int bestDistance;
+        private CharSequence text;
+        private int start;
+        private int length;
+
+        private Lookup(int maxWordLength) {
+            prefixHash = new long[maxWordLength + 1];
+            rows = new int[3][maxNameLength + 1];
+        }
+
+        private String closestName(CharSequence text, int start, int length) {
+            this.text = text;
+            this.start = start;
+            this.length = length;
+            bestName = null;
+            bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < length; i++) {
+                prefixHash[i + 1] = prefixHash[i] * HASH_BASE + text.charAt(start + i);
+            }
+            probe(prefixHash[length]);
+            for (int first = 0; first < length && bestDistance > 0 && maxEdits >= 1; first++) {
+                long head = prefixHash[first];
+                probe(concat(head, segment(first + 1, length), length - first - 1));
+                for (int second = first + 1; second < length && maxEdits >= 2; second++) {
+                    long middle = concat(head, segment(first + 1, second), second - first - 1);
+                    probe(concat(middle, segment(second + 1, length), length - second - 1));
+                }
+            }
+            return bestName;
+        }
+
+        private long segment(int from, int to) {
+            return prefixHash[to] - prefixHash[from] * powers[to - from];
+        }
+
+        private long concat(long left, long right, int rightLength) {
+            return left * powers[rightLength] + right;
+        }
+
+        private void probe(long hash) {
+            int slot = slot(tableKeys, tableMask, hash);
+            int[] ids = tableNames[slot];
+            if (ids == null) {
+                return;
+            }
+            for (int id : ids) {
+                String name = names[id];
+                int limit = Math.min(nameMaxEdits[id], bestDistance - 1);
+                if (limit < 0 || Math.abs(name.length() - length) > limit) {
+                    continue;
+                }
+                int distance = distance(name, limit);
+                if (distance <= limit) {
+                    bestDistance = distance;
+                    bestName = name;
+                }
+            }
+        }
+
+        /**
+         * Returns the optimal string alignment distance between the name and the current word, or a value above
+         * the limit as soon as the distance is known to exceed it.
+         */
+        private int distance(String name, int limit) {
+            int n = name.length();
+            int[] twoBack = rows[0];
+            int[] previous = rows[1];
+            int[] current = rows[2];
+            for (int j = 0; j <= n; j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= length; i++) {
+                char wordChar = text.charAt(start + i - 1);
+                current[0] = i;
+                int rowMin = i;
+                for (int j = 1; j <= n; j++) {
+                    char nameChar = name.charAt(j - 1);
+                    int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+                            previous[j - 1] + (wordChar == nameChar ? 0 : 1));
+                    if (i > 1 && j > 1 && wordChar == name.charAt(j - 2)
+                            && text.charAt(start + i - 2) == nameChar) {
+                        value = Math.min(value, twoBack[j - 2] + 1);
+                    }
+                    current[j] = value;
+                    rowMin = Math.min(rowMin, value);
+                }
+                if (rowMin > limit) {
+                    return limit + 1;
+                }
+                int[] recycled = twoBack;
+                twoBack = previous;
+                previous = current;
+                current = recycled;
+            }
+            return previous[n];
+        }
+    }
+
+    private interface HashConsumer {
+        void accept(long hash);
+    }
+
+    /**
+     * Emits the hash of every string obtained by deleting at most {@code edits} characters of text[from, to).
+     * Duplicates are harmless, the table keeps one entry per name and hash.
+     */
+    private static void forEachVariantHash(String text, int from, int to, int edits, long[] powers,
+                                           HashConsumer consumer) {
+        consumer.accept(hash(text, from, to));
+        if (edits == 0) {
+            return;
+        }
+        for (int deleted = from; deleted < to; deleted++) {
+            String variant = text.substring(from, deleted) + text.substring(deleted + 1, to);
+            forEachVariantHash(variant, 0, variant.length(), edits - 1, powers, consumer);
+        }
+    }
+
+    private static long hash(CharSequence text, int from, int to) {
+        long hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = hash * HASH_BASE + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static long[] powers(int count) {
+        long[] powers = new long[count + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= count; i++) {
+            powers[i] = powers[i - 1] * HASH_BASE;
+        }
+        return powers;
+    }
+
+    private static int slot(long[] keys, int mask, long hash) {
+        long key = nonEmpty(hash);
+        int slot = (int) (key ^ (key >>> 29) ^ (key >>> 47)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long nonEmpty(long hash) {
+        return hash == EMPTY ? 1L : hash;
+    }
+}
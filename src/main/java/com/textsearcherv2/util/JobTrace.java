@@ -0,0 +1,151 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TraceSpan;
+import com.textsearcherv2.model.TraceStage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The spans recorded for one sampled job.
+ *
+ * <p>
+ * Stages take their start time with {@link #now()} and record a span once they end. Jobs that are not sampled get
+ * {@link #NONE}, whose {@link #now()} does not read the clock and whose {@link #record} returns right away, so an
+ * unsampled job pays a field check per stage and nothing else. A trace keeps at most its span limit and counts
+ * the spans beyond it as dropped.
+ * </p>
+ *
+ * <p>Instances are thread safe.</p>
+ */
+public final class JobTrace {
+    /** The trace of jobs that are not sampled, recording nothing. */
+    public static final JobTrace NONE = new JobTrace();
+
+    private final String jobId;
+    private final long startNanos;
+    private final long startEpochMicros;
+    private final int maxSpans;
+    private final ConcurrentLinkedQueue<TraceSpan> spans;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private volatile TraceSpan jobSpan;
+
+    private JobTrace() {
+        this.jobId = null;
+        this.startNanos = 0;
+        this.startEpochMicros = 0;
+        this.maxSpans = 0;
+        this.spans = null;
+    }
+
+    /**
+     * Starts the trace of a job.
+     *
+     * @param jobId    the id of the job
+     * @param maxSpans the number of spans kept, the job span aside
+     */
+    public JobTrace(String jobId, int maxSpans) {
+        this.jobId = jobId;
+        this.startNanos = System.nanoTime();
+        this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.maxSpans = maxSpans;
+        this.spans = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns whether the trace records spans.
+     *
+     * @return false for {@link #NONE}
+     */
+    public boolean isEnabled() {
+        return spans != null;
+    }
+
+    /**
+     * Returns the start time of a stage.
+     *
+     * @return the current {@link System#nanoTime()}, 0 if the trace records nothing
+     */
+    public long now() {
+        return spans == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a stage that started at the given time and ends now, on the current thread.
+     *
+     * @param stage      the stage
+     * @param startNanos the start time returned by {@link #now()}
+     * @param document   the URL of the document, null if the stage is not tied to one
+     * @param chunkIndex the index of the chunk, -1 if the stage is not tied to one
+     */
+    public void record(TraceStage stage, long startNanos, String document, int chunkIndex) {
+        if (spans == null) {
+            return;
+        }
+        long endNanos = System.nanoTime();
+        if (recorded.getAndIncrement() < maxSpans) {
+            spans.add(span(stage, startNanos, endNanos, document, chunkIndex));
+        }
+    }
+
+    /**
+     * Records the job span, from the start of the trace to now. Later calls replace it.
+     */
+    public void finish() {
+        if (spans != null) {
+            jobSpan = span(TraceStage.JOB, startNanos, System.nanoTime(), null, -1);
+        }
+    }
+
+    /**
+     * Returns the spans recorded so far, the job span first once the job finished, then by start time.
+     *
+     * @return a copy of the spans
+     */
+    public List<TraceSpan> spans() {
+        List<TraceSpan> sorted = new ArrayList<>();
+        if (spans == null) {
+            return sorted;
+        }
+        TraceSpan job = jobSpan;
+        if (job != null) {
+            sorted.add(job);
+        }
+        List<TraceSpan> stages = new ArrayList<>(spans);
+        stages.sort(Comparator.comparingLong(TraceSpan::getStartMicros));
+        sorted.addAll(stages);
+        return sorted;
+    }
+
+    /**
+     * Returns the number of spans dropped beyond the span limit.
+     *
+     * @return the dropped spans
+     */
+    public int droppedSpans() {
+        return Math.max(0, recorded.get() - maxSpans);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Returns the wall clock time the trace started at, which span start times are relative to.
+     *
+     * @return the start in microseconds since the epoch
+     */
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+
+    private TraceSpan span(TraceStage stage, long spanStartNanos, long spanEndNanos, String document, int chunkIndex) {
+        Thread thread = Thread.currentThread();
+        return new TraceSpan(stage, document, chunkIndex, thread.getId(), thread.getName(),
+                (spanStartNanos - startNanos) / 1000, (spanEndNanos - spanStartNanos) / 1000);
+    }
+}
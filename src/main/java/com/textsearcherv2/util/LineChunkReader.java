@@ -0,0 +1,348 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextChunk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a UTF-8 byte stream as chunks of whole lines while keeping track of the byte offset reached, so a scan can
+ * later resume at a chunk boundary with an HTTP Range request.
+ *
+ * <p>
+ * Lines are split like {@link java.io.BufferedReader#readLine()} splits them: on a line feed, a carriage return or
+ * a carriage return followed by a line feed, and a final line without terminator still counts. Within a chunk the
+ * lines are joined with a line feed. Neither terminator byte can occur inside a multi-byte UTF-8 sequence, so a
+ * chunk is decoded in one go.
+ * </p>
+ *
+ * <p>
+ * A reader of complete lines only holds back a final line without terminator, and a final carriage return that a
+ * line feed may still follow. They are not returned and not counted in the offset, so a document still being
+ * written can be read again from that offset once it has grown.
+ * </p>
+ *
+ * <p>
+ * With a chunk budget, a chunk ends early once its lines reach the budget, and a line longer than the budget is cut
+ * into segments of at most the budget each, cut between UTF-8 sequences, see {@link TextChunk}. Every segment carries
+ * the given overlap of characters of the line before and after it as its lookbehind and lookahead. The offset and
+ * line reported after a segment stay at the start of its line until its last segment is read, so a scan only
+ * resumes at line boundaries. A reader of complete lines only does not cut lines, since it cannot tell a long line
+ * from one still being written.
+ * </p>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class LineChunkReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final InputStream in;
+    private final int linesPerChunk;
+    private final boolean completeLinesOnly;
+    private final int maxChunkBytes;
+    private final int overlapChars;
+    private final int overlapBytes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private byte[] chunkBytes = new byte[BUFFER_SIZE];
+    private int chunkLength;
+    private long streamOffset;
+    private long offset;
+    private int nextLine;
+    private int nextChunkIndex;
+    // The line being cut into segments: its bytes from segmentStart - overlapBytes on, read up to lineLength
+    private byte[] lineBytes;
+    private int lineLength;
+    private boolean lineEnded;
+    private int segmentStart;
+    private int segmentColumn;
+
+    /**
+     * Creates a reader over a stream positioned at the given point of the document.
+     *
+     * @param in             the stream, positioned at {@code offset}
+     * @param linesPerChunk  the number of lines in each chunk
+     * @param offset         the byte offset of the stream start inside the document
+     * @param firstLine      the line number of the first line of the stream
+     * @param firstChunkIndex the index of the first chunk read
+     */
+    public LineChunkReader(InputStream in, int linesPerChunk, long offset, int firstLine, int firstChunkIndex) {
+        this(in, linesPerChunk, offset, firstLine, firstChunkIndex, false);
+    }
+
+    /**
+     * Creates a reader over a stream positioned at the given point of the document.
+     *
+     * @param in                the stream, positioned at {@code offset}
+     * @param linesPerChunk     the number of lines in each chunk
+     * @param offset            the byte offset of the stream start inside the document
+     * @param firstLine         the line number of the first line of the stream
+     * @param firstChunkIndex   the index of the first chunk read
+     * @param completeLinesOnly whether to hold back a final line that is not terminated yet
+     */
+    public LineChunkReader(InputStream in, int linesPerChunk, long offset, int firstLine, int firstChunkIndex,
+                           boolean completeLinesOnly) {
+        this(in, linesPerChunk, offset, firstLine, firstChunkIndex, completeLinesOnly, UNBOUNDED, 0);
+    }
+
+    /**
+     * Creates a reader over a stream positioned at the given point of the document, with a chunk budget.
+     *
+     * @param in                the stream, positioned at {@code offset}
+     * @param linesPerChunk     the number of lines in each chunk
+     * @param offset            the byte offset of the stream start inside the document
+     * @param firstLine         the line number of the first line of the stream
+     * @param firstChunkIndex   the index of the first chunk read
+     * @param completeLinesOnly whether to hold back a final line that is not terminated yet
+     * @param maxChunkBytes     the bytes a chunk may hold, {@link #UNBOUNDED} for no budget
+     * @param overlapChars      the characters neighbouring segments of a long line overlap by
+     */
+    public LineChunkReader(InputStream in, int linesPerChunk, long offset, int firstLine, int firstChunkIndex,
+                           boolean completeLinesOnly, int maxChunkBytes, int overlapChars) {
+        if (linesPerChunk <= 0) {
+            throw new IllegalArgumentException("linesPerChunk must be positive");
+        }
+        if (maxChunkBytes < 4 || overlapChars < 0) {
+            throw new IllegalArgumentException("The chunk budget must hold a character and the overlap not be negative");
+        }
+        this.in = in;
+        this.linesPerChunk = linesPerChunk;
+        this.completeLinesOnly = completeLinesOnly;
+        this.maxChunkBytes = maxChunkBytes;
+        this.overlapChars = overlapChars;
+        // a character takes at most 4 bytes
+        this.overlapBytes = 4 * overlapChars;
+        this.streamOffset = offset;
+        this.offset = offset;
+        this.nextLine = firstLine;
+        this.nextChunkIndex = firstChunkIndex;
+    }
+
+    /**
+     * Reads the next chunk.
+     *
+     * @return the next chunk, or null at the end of the stream
+     * @throws IOException if reading the stream fails
+     */
+    public TextChunk next() throws IOException {
+        if (lineBytes != null) {
+            return nextSegment();
+        }
+        boolean cutLines = maxChunkBytes != UNBOUNDED && !completeLinesOnly;
+        chunkLength = 0;
+        int lines = 0;
+        boolean lineStarted = false;
+        int lineStartLength = 0;
+        long endOffset = streamOffset;
+        while (lines < linesPerChunk && (lines == 0 || lineStarted || chunkLength < maxChunkBytes)) {
+            if (cutLines && lineStarted && chunkLength - lineStartLength > maxChunkBytes) {
+                startSegments(lineStartLength, lines > 0);
+                if (lines == 0) {
+                    return nextSegment();
+                }
+                chunkLength = lineStartLength;
+                break;
+            }
+            int b = read();
+            if (b < 0) {
+                if (lineStarted) {
+                    if (completeLinesOnly) {
+                        chunkLength = lineStartLength;
+                    } else {
+                        lines++;
+                        endOffset = streamOffset;
+                    }
+                }
+                break;
+            }
+            if (!lineStarted) {
+                lineStartLength = chunkLength;
+                if (lines > 0) {
+                    append('\n');
+                }
+                lineStarted = true;
+            }
+            if (b == '\n' || b == '\r') {
+                if (b == '\r') {
+                    int next = peek();
+                    if (next == '\n') {
+                        read();
+                    } else if (next < 0 && completeLinesOnly) {
+                        chunkLength = lineStartLength;
+                        break;
+                    }
+                }
+                lines++;
+                lineStarted = false;
+                endOffset = streamOffset;
+            } else {
+                append(b);
+            }
+        }
+        if (lines == 0) {
+            return null;
+        }
+        TextChunk chunk = new TextChunk(nextChunkIndex++, nextLine,
+                new String(chunkBytes, 0, chunkLength, StandardCharsets.UTF_8));
+        nextLine += lines;
+        offset = endOffset;
+        return chunk;
+    }
+
+    /**
+     * Moves the start of a line longer than the budget out of the chunk, to be read as segments.
+     */
+    private void startSegments(int lineStartLength, boolean separated) {
+        int from = separated ? lineStartLength + 1 : lineStartLength;
+        lineBytes = Arrays.copyOfRange(chunkBytes, from, Math.max(chunkLength, from + BUFFER_SIZE));
+        lineLength = chunkLength - from;
+        lineEnded = false;
+        segmentStart = 0;
+        segmentColumn = 0;
+    }
+
+    /**
+     * Returns the next segment of the long line, reading the line far enough for the segment and its lookahead.
+     */
+    private TextChunk nextSegment() throws IOException {
+        while (!lineEnded && lineLength <= segmentStart + maxChunkBytes + overlapBytes) {
+            int b = read();
+            if (b < 0 || b == '\n') {
+                lineEnded = true;
+            } else if (b == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                lineEnded = true;
+            } else {
+                if (lineLength == lineBytes.length) {
+                    lineBytes = Arrays.copyOf(lineBytes, lineBytes.length * 2);
+                }
+                lineBytes[lineLength++] = (byte) b;
+            }
+        }
+        boolean last = lineEnded && lineLength - segmentStart <= maxChunkBytes;
+        int end = last ? lineLength : sequenceStart(segmentStart + maxChunkBytes);
+        String text = decode(segmentStart, end);
+        String lookbehind = null;
+        if (segmentStart > 0) {
+            String before = decode(nextSequence(Math.max(0, segmentStart - overlapBytes)), segmentStart);
+            lookbehind = before.substring(Math.max(0, before.length() - overlapChars));
+        }
+        String lookahead = null;
+        if (!last) {
+            String after = decode(end, sequenceStart(Math.min(lineLength, end + overlapBytes)));
+            lookahead = after.substring(0, Math.min(after.length(), overlapChars));
+        }
+        TextChunk segment = new TextChunk(nextChunkIndex++, nextLine, text, lookahead, segmentColumn, lookbehind);
+        segmentColumn += text.length();
+        if (last) {
+            lineBytes = null;
+            nextLine++;
+            offset = streamOffset;
+        } else {
+            // keep the bytes of the next segment and of its lookbehind only
+            int keepFrom = Math.max(0, end - overlapBytes);
+            System.arraycopy(lineBytes, keepFrom, lineBytes, 0, lineLength - keepFrom);
+            lineLength -= keepFrom;
+            segmentStart = end - keepFrom;
+        }
+        return segment;
+    }
+
+    /**
+     * Returns the start of the UTF-8 sequence holding the given byte of the line, or the line length.
+     */
+    private int sequenceStart(int index) {
+        while (index > segmentStart && index < lineLength && (lineBytes[index] & 0xC0) == 0x80) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the start of the first UTF-8 sequence at or after the given byte of the line.
+     */
+    private int nextSequence(int index) {
+        while (index < segmentStart && (lineBytes[index] & 0xC0) == 0x80) {
+            index++;
+        }
+        return index;
+    }
+
+    private String decode(int from, int to) {
+        return new String(lineBytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the byte offset of the first line after the last chunk read.
+     *
+     * @return the byte offset inside the document
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the line number of the first line after the last chunk read.
+     *
+     * @return the line number inside the document
+     */
+    public int getNextLine() {
+        return nextLine;
+    }
+
+    /**
+     * Returns the index the next chunk read gets.
+     *
+     * @return the chunk index
+     */
+    public int getNextChunkIndex() {
+        return nextChunkIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        streamOffset++;
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer);
+        while (read == 0) {
+            read = in.read(buffer);
+        }
+        if (read < 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private void append(int b) {
+        if (chunkLength == chunkBytes.length) {
+            chunkBytes = Arrays.copyOf(chunkBytes, chunkBytes.length * 2);
+        }
+        chunkBytes[chunkLength++] = (byte) b;
+    }
+}
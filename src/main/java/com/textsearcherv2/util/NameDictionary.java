@@ -0,0 +1,112 @@
+package com.textsearcherv2.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A name dictionary compiled for candidate based exact matching: the set of first characters of all names as a
+ * bitset, their range for the vectorized prefilter, and the names bucketed by first character so a candidate
+ * position is only verified against the names that can start there.
+ *
+ * <p>Instances are immutable and safe to share between matcher threads.</p>
+ */
+public final class NameDictionary {
+    private final Set<String> names;
+    private final long[] firstCharBits = new long[(Character.MAX_VALUE + 1) / Long.SIZE];
+    private final String[][] asciiBuckets = new String[128][];
+    private final Map<Character, String[]> otherBuckets = new HashMap<>();
+    private final char minFirstChar;
+    private final char maxFirstChar;
+    private final long version;
+
+    private NameDictionary(Collection<String> dictionary) {
+        this.names = Collections.unmodifiableSet(new LinkedHashSet<>(new TreeSet<>(dictionary)));
+        Map<Character, List<String>> buckets = new HashMap<>();
+        char min = Character.MAX_VALUE;
+        char max = Character.MIN_VALUE;
+        for (String name : names) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Names must not be empty");
+            }
+            char first = name.charAt(0);
+            firstCharBits[first >>> 6] |= 1L << first;
+            buckets.computeIfAbsent(first, c -> new ArrayList<>()).add(name);
+            min = (char) Math.min(min, first);
+            max = (char) Math.max(max, first);
+        }
+        buckets.forEach((first, bucket) -> {
+            String[] bucketNames = bucket.toArray(new String[0]);
+            if (first < asciiBuckets.length) {
+                asciiBuckets[first] = bucketNames;
+            } else {
+                otherBuckets.put(first, bucketNames);
+            }
+        });
+        this.minFirstChar = min;
+        this.maxFirstChar = max;
+        this.version = XxHash64.hash(String.join("\n", names), 0);
+    }
+
+    /**
+     * Compiles the given names.
+     *
+     * @param names the names of the dictionary
+     * @return the compiled dictionary
+     * @throws IllegalArgumentException if the dictionary is empty or contains an empty name
+     */
+    public static NameDictionary compile(Collection<String> names) {
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("The dictionary must not be empty");
+        }
+        return new NameDictionary(names);
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    public char getMinFirstChar() {
+        return minFirstChar;
+    }
+
+    public char getMaxFirstChar() {
+        return maxFirstChar;
+    }
+
+    /**
+     * Returns a fingerprint of the names, equal for dictionaries with the same names. Results cached per chunk are
+     * keyed by it, so they are never served for a different dictionary.
+     *
+     * @return the hash of the sorted names
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether a name of the dictionary starts with the given character.
+     *
+     * @param c the character
+     * @return true if some name starts with c
+     */
+    public boolean isFirstChar(char c) {
+        return (firstCharBits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Returns the names starting with the given character.
+     *
+     * @param c the first character
+     * @return the names starting with c, or null if there are none
+     */
+    public String[] namesStartingWith(char c) {
+        return c < asciiBuckets.length ? asciiBuckets[c] : otherBuckets.get(c);
+    }
+}
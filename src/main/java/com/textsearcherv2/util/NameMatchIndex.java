@@ -0,0 +1,126 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.DocumentPosition;
+import com.textsearcherv2.model.TextPosition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The matches of one name across the documents of a job, sorted by document URL, line and column, and seekable to
+ * any match in constant time.
+ *
+ * <p>
+ * The index only holds the sorted document URLs and their position lists. Lists already in document order, as the
+ * chunked scans produce them, are used as they are, including off-heap lists; only lists out of order are copied and
+ * sorted. A match is addressed by the index of its document and its index in the document list, so reading a page
+ * costs the same wherever it starts.
+ * </p>
+ *
+ * <p>Instances are immutable once built and safe to share between request threads.</p>
+ */
+public final class NameMatchIndex {
+    private static final Comparator<TextPosition> DOCUMENT_ORDER = Comparator
+            .comparingInt(TextPosition::getLineNumber)
+            .thenComparingInt(TextPosition::getColumnNumber);
+
+    private final String[] documentUrls;
+    private final List<List<TextPosition>> positions;
+    private final long total;
+
+    private NameMatchIndex(String[] documentUrls, List<List<TextPosition>> positions, long total) {
+        this.documentUrls = documentUrls;
+        this.positions = positions;
+        this.total = total;
+    }
+
+    /**
+     * Builds the index of a name over the results of a job.
+     *
+     * @param resultsByDocument the results of the job keyed by document URL and then by name
+     * @param name              the name
+     * @return the index, empty if the name was not found
+     */
+    public static NameMatchIndex build(Map<String, Map<String, List<TextPosition>>> resultsByDocument, String name) {
+        TreeMap<String, List<TextPosition>> sorted = new TreeMap<>();
+        resultsByDocument.forEach((documentUrl, positionsByName) -> {
+            List<TextPosition> namePositions = positionsByName.get(name);
+            if (namePositions != null && !namePositions.isEmpty()) {
+                sorted.put(documentUrl, inDocumentOrder(namePositions));
+            }
+        });
+        long total = 0;
+        for (List<TextPosition> namePositions : sorted.values()) {
+            total += namePositions.size();
+        }
+        return new NameMatchIndex(sorted.keySet().toArray(new String[0]), new ArrayList<>(sorted.values()), total);
+    }
+
+    /**
+     * Returns the number of matches of the name.
+     *
+     * @return the number of matches
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the number of documents the name was found in.
+     *
+     * @return the number of documents
+     */
+    public int documentCount() {
+        return documentUrls.length;
+    }
+
+    /**
+     * Returns the number of matches of the name in a document.
+     *
+     * @param document the index of the document, in URL order
+     * @return the number of matches
+     */
+    public int size(int document) {
+        return positions.get(document).size();
+    }
+
+    /**
+     * Reads the matches from the given one on, moving to the next documents as each one ends.
+     *
+     * @param document the index of the document of the first match
+     * @param position the index of the first match within its document
+     * @param limit    the maximum number of matches
+     * @param page     receives the matches
+     * @return the address of the match after the page as {document, position}, or null past the last match
+     */
+    public int[] read(int document, int position, int limit, List<DocumentPosition> page) {
+        while (document < documentUrls.length) {
+            List<TextPosition> documentPositions = positions.get(document);
+            while (position < documentPositions.size()) {
+                if (page.size() == limit) {
+                    return new int[]{document, position};
+                }
+                TextPosition match = documentPositions.get(position++);
+                page.add(new DocumentPosition(documentUrls[document], match.getLineNumber(),
+                        match.getColumnNumber()));
+            }
+            document++;
+            position = 0;
+        }
+        return null;
+    }
+
+    private static List<TextPosition> inDocumentOrder(List<TextPosition> positions) {
+        for (int i = 1; i < positions.size(); i++) {
+            if (DOCUMENT_ORDER.compare(positions.get(i - 1), positions.get(i)) > 0) {
+                List<TextPosition> sorted = new ArrayList<>(positions);
+                sorted.sort(DOCUMENT_ORDER);
+                return sorted;
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,259 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.CoOccurrence;
+import com.textsearcherv2.model.DocumentStatistics;
+import com.textsearcherv2.model.NameStats;
+import com.textsearcherv2.model.TextPosition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Accumulates the positional statistics of the names of a document and the pairs of names found close to each
+ * other, from the positions of its chunks as they are matched.
+ *
+ * <p>
+ * Every statistic merges: counts and window counts add up, first and last occurrences are the earliest and latest of
+ * the parts, and the pairs are counted in a {@link CountMinSketch}. The chunks of a document can therefore be
+ * accumulated separately, on the threads that matched them and in any order, and merged into the statistics of the
+ * whole document, and documents into those of a job. Two names co-occur when they start on the same line within
+ * the co-occurrence distance of each other; pairs are counted per chunk, so the two names of a pair split across
+ * the segments of a long line are not.
+ * </p>
+ *
+ * <p>
+ * The sketch counts every pair in fixed memory. Only the pairs most often seen so far are reported, at most
+ * {@code maxPairs} of them: a pair replaces the least frequent one reported once its estimate exceeds it.
+ * </p>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class NameStatistics {
+    private static final char PAIR_SEPARATOR = '\u0000';
+    private static final Comparator<TextPosition> DOCUMENT_ORDER = Comparator
+            .comparingInt(TextPosition::getLineNumber)
+            .thenComparingInt(TextPosition::getColumnNumber);
+
+    private final int windowLines;
+    private final int coOccurrenceChars;
+    private final int maxPairs;
+    private final Map<String, NameStats> names = new TreeMap<>();
+    private final CountMinSketch pairs;
+    // the reported pairs; the estimate of none of them is below minReportedEstimate
+    private final Set<String> reportedPairs = new HashSet<>();
+    private long minReportedEstimate;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param windowLines       the lines of every window of the per-name counts
+     * @param coOccurrenceChars the distance within which two names on a line co-occur, 0 to count no pairs
+     * @param sketchWidth       the cells of every row of the pair sketch
+     * @param sketchDepth       the rows of the pair sketch
+     * @param maxPairs          the maximum number of pairs reported
+     */
+    public NameStatistics(int windowLines, int coOccurrenceChars, int sketchWidth, int sketchDepth, int maxPairs) {
+        if (windowLines <= 0 || coOccurrenceChars < 0 || maxPairs < 0) {
+            throw new IllegalArgumentException("The window lines must be positive, the distance and pairs not negative");
+        }
+        this.windowLines = windowLines;
+        this.coOccurrenceChars = coOccurrenceChars;
+        this.maxPairs = maxPairs;
+        this.pairs = new CountMinSketch(sketchWidth, sketchDepth);
+    }
+
+    /**
+     * Accumulates the positions of a chunk, or of any part of the document made of whole lines.
+     *
+     * @param positionsByName the positions, with line numbers in the document
+     */
+    public void addChunk(Map<String, List<TextPosition>> positionsByName) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        positionsByName.forEach((name, positions) -> {
+            if (positions.isEmpty()) {
+                return;
+            }
+            NameStats stats = names.computeIfAbsent(name, n -> new NameStats(n, 0, null, null, new TreeMap<>()));
+            // consecutive positions of one window are counted at once
+            int window = -1;
+            long inWindow = 0;
+            for (TextPosition position : positions) {
+                if (stats.getFirst() == null || DOCUMENT_ORDER.compare(position, stats.getFirst()) < 0) {
+                    stats.setFirst(position);
+                }
+                if (stats.getLast() == null || DOCUMENT_ORDER.compare(position, stats.getLast()) > 0) {
+                    stats.setLast(position);
+                }
+                int positionWindow = position.getLineNumber() / windowLines;
+                if (positionWindow != window) {
+                    if (inWindow > 0) {
+                        stats.getCountsByWindow().merge(window, inWindow, Long::sum);
+                    }
+                    window = positionWindow;
+                    inWindow = 0;
+                }
+                inWindow++;
+                if (coOccurrenceChars > 0) {
+                    occurrences.add(new Occurrence(name, position.getLineNumber(), position.getColumnNumber()));
+                }
+            }
+            stats.getCountsByWindow().merge(window, inWindow, Long::sum);
+            stats.setCount(stats.getCount() + positions.size());
+        });
+        if (occurrences.size() > 1) {
+            countPairs(occurrences);
+        }
+    }
+
+    /**
+     * Adds the statistics of another part of the document, or of another document.
+     *
+     * @param other statistics of the same settings
+     * @throws IllegalArgumentException if the sketches differ in shape
+     */
+    public void merge(NameStatistics other) {
+        other.names.forEach((name, stats) -> {
+            NameStats merged = names.get(name);
+            if (merged == null) {
+                names.put(name, new NameStats(name, stats.getCount(), stats.getFirst(), stats.getLast(),
+                        new TreeMap<>(stats.getCountsByWindow())));
+                return;
+            }
+            merged.setCount(merged.getCount() + stats.getCount());
+            if (DOCUMENT_ORDER.compare(stats.getFirst(), merged.getFirst()) < 0) {
+                merged.setFirst(stats.getFirst());
+            }
+            if (DOCUMENT_ORDER.compare(stats.getLast(), merged.getLast()) > 0) {
+                merged.setLast(stats.getLast());
+            }
+            stats.getCountsByWindow().forEach((window, count) -> merged.getCountsByWindow().merge(window, count,
+                    Long::sum));
+        });
+        pairs.merge(other.pairs);
+        // estimates only grow, so the pairs reported by either side are the candidates
+        other.reportedPairs.forEach(this::report);
+    }
+
+    /**
+     * Returns the number of matches of every name.
+     *
+     * @return the counts, by name
+     */
+    public Map<String, Long> matchesByName() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        names.forEach((name, stats) -> counts.put(name, stats.getCount()));
+        return counts;
+    }
+
+    /**
+     * Returns the reported pairs, most frequent first.
+     *
+     * @return the pairs with their estimated counts
+     */
+    public List<CoOccurrence> coOccurrences() {
+        List<CoOccurrence> coOccurrences = new ArrayList<>(reportedPairs.size());
+        for (String pair : reportedPairs) {
+            int separator = pair.indexOf(PAIR_SEPARATOR);
+            coOccurrences.add(new CoOccurrence(pair.substring(0, separator), pair.substring(separator + 1),
+                    pairs.estimate(pair)));
+        }
+        coOccurrences.sort(Comparator.comparingLong(CoOccurrence::getCount).reversed()
+                .thenComparing(CoOccurrence::getFirst)
+                .thenComparing(CoOccurrence::getSecond));
+        return coOccurrences;
+    }
+
+    /**
+     * Returns the statistics of a document.
+     *
+     * @param documentUrl the URL of the document
+     * @return the statistics, names in alphabetical order
+     */
+    public DocumentStatistics toDocumentStatistics(String documentUrl) {
+        List<NameStats> nameStats = new ArrayList<>(names.size());
+        names.values().forEach(stats -> nameStats.add(new NameStats(stats.getName(), stats.getCount(),
+                stats.getFirst(), stats.getLast(), new TreeMap<>(stats.getCountsByWindow()))));
+        return new DocumentStatistics(documentUrl, nameStats, coOccurrences());
+    }
+
+    /**
+     * Counts the pairs of different names starting on the same line within the co-occurrence distance.
+     */
+    private void countPairs(List<Occurrence> occurrences) {
+        occurrences.sort(Comparator.comparingInt((Occurrence o) -> o.line).thenComparingInt(o -> o.column));
+        Map<String, Long> chunkPairs = new HashMap<>();
+        for (int i = 0; i < occurrences.size(); i++) {
+            Occurrence first = occurrences.get(i);
+            for (int j = i + 1; j < occurrences.size(); j++) {
+                Occurrence second = occurrences.get(j);
+                if (second.line != first.line || second.column - first.column > coOccurrenceChars) {
+                    break;
+                }
+                if (!first.name.equals(second.name)) {
+                    chunkPairs.merge(pairKey(first.name, second.name), 1L, Long::sum);
+                }
+            }
+        }
+        chunkPairs.forEach(pairs::add);
+        chunkPairs.keySet().forEach(this::report);
+    }
+
+    /**
+     * Reports a pair if there is room, or if it is now more frequent than the least frequent pair reported.
+     */
+    private void report(String pair) {
+        if (maxPairs == 0 || reportedPairs.contains(pair)) {
+            return;
+        }
+        if (reportedPairs.size() < maxPairs) {
+            reportedPairs.add(pair);
+            return;
+        }
+        long estimate = pairs.estimate(pair);
+        if (estimate <= minReportedEstimate) {
+            return;
+        }
+        // the minimum only grows, so it is recomputed when a pair may beat it
+        String leastFrequent = null;
+        long least = Long.MAX_VALUE;
+        for (String reported : reportedPairs) {
+            long reportedEstimate = pairs.estimate(reported);
+            if (reportedEstimate < least) {
+                least = reportedEstimate;
+                leastFrequent = reported;
+            }
+        }
+        if (estimate > least) {
+            reportedPairs.remove(leastFrequent);
+            reportedPairs.add(pair);
+            least = Long.MAX_VALUE;
+            for (String reported : reportedPairs) {
+                least = Math.min(least, pairs.estimate(reported));
+            }
+        }
+        minReportedEstimate = least;
+    }
+
+    private static String pairKey(String first, String second) {
+        return first.compareTo(second) < 0 ? first + PAIR_SEPARATOR + second : second + PAIR_SEPARATOR + first;
+    }
+
+    private static final class Occurrence {
+        private final String name;
+        private final int line;
+        private final int column;
+
+        private Occurrence(String name, int line, int column) {
+            this.name = name;
+            this.line = line;
+            this.column = column;
+        }
+    }
+}
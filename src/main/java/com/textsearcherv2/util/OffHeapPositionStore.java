@@ -0,0 +1,316 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the positions of one job outside the Java heap, so hundreds of millions of them cost the garbage collector
+ * nothing to trace or copy.
+ *
+ * <p>
+ * The positions of every document and name form an append-only list of blocks, each position packed into 8 bytes
+ * of line and column. Blocks start at 16 positions and double up to {@link #MAX_BLOCK_POSITIONS}, so a rare name
+ * wastes little and a frequent one needs few blocks. They are carved in order out of 1 MiB pages: direct
+ * ByteBuffers while the direct memory shared by all stores stays within its budget, and memory-mapped regions of a
+ * spill file beyond it, which the operating system pages out to disk under memory pressure. The heap only holds the
+ * block addresses of each list.
+ * </p>
+ *
+ * <p>
+ * {@link #asMap()} returns the positions as read-only lists that decode a position whenever it is read, so results
+ * can be streamed back, in full or page by page with {@link #page(String, String, int, int)}, without copying them
+ * onto the heap. Appends are synchronized; reads are safe once the appends happened before them, as they do when a
+ * job completes.
+ * </p>
+ */
+public final class OffHeapPositionStore implements Closeable {
+    private static final Logger logger = LogManager.getLogger(OffHeapPositionStore.class);
+    public static final int PAGE_BYTES = 1 << 20;
+    public static final int POSITION_BYTES = 8;
+    static final int FIRST_BLOCK_POSITIONS = 16;
+    static final int MAX_BLOCK_POSITIONS = 8192;
+    // positions in the blocks that grow, 16 + 32 + ... + 8192
+    private static final int GROWING_POSITIONS = 2 * MAX_BLOCK_POSITIONS - FIRST_BLOCK_POSITIONS;
+    private static final int GROWING_BLOCKS = Integer.numberOfTrailingZeros(MAX_BLOCK_POSITIONS / FIRST_BLOCK_POSITIONS) + 1;
+
+    private final long maxDirectBytes;
+    private final AtomicLong directBytesInUse;
+    private final Path spillDirectory;
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private final Map<String, Map<String, PositionList>> lists = new LinkedHashMap<>();
+    private long directBytes;
+    private int pageUsed = PAGE_BYTES;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private int spilledPages;
+    private volatile boolean closed;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param maxDirectBytes   the direct memory all stores sharing the counter may use before spilling to files
+     * @param directBytesInUse the direct memory in use by the stores sharing the budget
+     * @param spillDirectory   the directory of the spill files, created when the first page spills
+     */
+    public OffHeapPositionStore(long maxDirectBytes, AtomicLong directBytesInUse, Path spillDirectory) {
+        this.maxDirectBytes = maxDirectBytes;
+        this.directBytesInUse = directBytesInUse;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Appends positions to the list of a document and name.
+     *
+     * @param documentUrl the URL of the document
+     * @param name        the matched name
+     * @param positions   the positions, in order
+     * @throws IllegalStateException if the store is closed
+     */
+    public synchronized void appendAll(String documentUrl, String name, List<TextPosition> positions) {
+        if (closed) {
+            throw new IllegalStateException("The position store is closed");
+        }
+        PositionList list = lists.computeIfAbsent(documentUrl, url -> new LinkedHashMap<>())
+                .computeIfAbsent(name, n -> new PositionList());
+        for (TextPosition position : positions) {
+            int block = blockOf(list.size);
+            if (block == list.blockCount) {
+                list.addBlock(allocate(blockPositions(block) * POSITION_BYTES));
+            }
+            long address = list.blockAddresses[block];
+            ByteBuffer page = pages.get((int) (address >>> 32));
+            int index = (int) address + (list.size - blockStart(block)) * POSITION_BYTES;
+            page.putInt(index, position.getLineNumber());
+            page.putInt(index + 4, position.getColumnNumber());
+            list.size++;
+        }
+    }
+
+    /**
+     * Returns the number of positions of a document and name.
+     *
+     * @param documentUrl the URL of the document
+     * @param name        the matched name
+     * @return the number of positions, 0 if there are none
+     */
+    public int size(String documentUrl, String name) {
+        PositionList list = list(documentUrl, name);
+        return list == null ? 0 : list.size;
+    }
+
+    /**
+     * Reads a page of the positions of a document and name.
+     *
+     * @param documentUrl the URL of the document
+     * @param name        the matched name
+     * @param from        the index of the first position of the page
+     * @param limit       the maximum number of positions of the page
+     * @return the positions of the page, empty past the last position
+     */
+    public List<TextPosition> page(String documentUrl, String name, int from, int limit) {
+        PositionList list = list(documentUrl, name);
+        if (list == null || from >= list.size) {
+            return Collections.emptyList();
+        }
+        List<TextPosition> page = new ArrayList<>(Math.min(limit, list.size - from));
+        for (int i = from; i < list.size && i - from < limit; i++) {
+            page.add(get(list, i));
+        }
+        return page;
+    }
+
+    /**
+     * Returns read-only views of the positions, keyed by document URL and then by name, in the order they were first
+     * appended. The lists decode their positions when read and must not be read once the store is closed.
+     *
+     * @return the positions
+     */
+    public synchronized Map<String, Map<String, List<TextPosition>>> asMap() {
+        Map<String, Map<String, List<TextPosition>>> documents = new LinkedHashMap<>();
+        lists.forEach((documentUrl, names) -> {
+            Map<String, List<TextPosition>> views = new LinkedHashMap<>();
+            names.forEach((name, list) -> views.put(name, new PositionListView(list, list.size)));
+            documents.put(documentUrl, Collections.unmodifiableMap(views));
+        });
+        return Collections.unmodifiableMap(documents);
+    }
+
+    /**
+     * Returns the bytes of the direct pages of the store.
+     *
+     * @return the direct bytes
+     */
+    public synchronized long directBytes() {
+        return directBytes;
+    }
+
+    /**
+     * Returns the bytes of the pages of the store mapped from its spill file.
+     *
+     * @return the spilled bytes
+     */
+    public synchronized long spilledBytes() {
+        return (long) spilledPages * PAGE_BYTES;
+    }
+
+    /**
+     * Releases the pages of the store and deletes its spill file. Direct memory is returned to the budget right
+     * away and to the operating system once the garbage collector clears the buffers.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pages.clear();
+        lists.clear();
+        directBytesInUse.addAndGet(-directBytes);
+        directBytes = 0;
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete the spill file {}", spillFile, e);
+            }
+        }
+    }
+
+    private PositionList list(String documentUrl, String name) {
+        if (closed) {
+            throw new IllegalStateException("The position store is closed");
+        }
+        synchronized (this) {
+            Map<String, PositionList> names = lists.get(documentUrl);
+            return names == null ? null : names.get(name);
+        }
+    }
+
+    private TextPosition get(PositionList list, int index) {
+        int block = blockOf(index);
+        long address = list.blockAddresses[block];
+        ByteBuffer page = pages.get((int) (address >>> 32));
+        int offset = (int) address + (index - blockStart(block)) * POSITION_BYTES;
+        return new TextPosition(page.getInt(offset), page.getInt(offset + 4));
+    }
+
+    /**
+     * Carves a block out of the current page, starting a new page if the block does not fit.
+     *
+     * @return the address of the block, the page index in the high and the byte offset in the low 32 bits
+     */
+    private long allocate(int bytes) {
+        if (pageUsed + bytes > PAGE_BYTES) {
+            pages.add(newPage());
+            pageUsed = 0;
+        }
+        long address = ((long) (pages.size() - 1) << 32) | pageUsed;
+        pageUsed += bytes;
+        return address;
+    }
+
+    private ByteBuffer newPage() {
+        if (directBytesInUse.addAndGet(PAGE_BYTES) <= maxDirectBytes) {
+            directBytes += PAGE_BYTES;
+            return ByteBuffer.allocateDirect(PAGE_BYTES);
+        }
+        directBytesInUse.addAndGet(-PAGE_BYTES);
+        try {
+            if (spillChannel == null) {
+                Files.createDirectories(spillDirectory);
+                spillFile = Files.createTempFile(spillDirectory, "positions-", ".spill");
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                logger.info("Spilling positions beyond {} bytes of direct memory to {}", maxDirectBytes, spillFile);
+            }
+            ByteBuffer page = spillChannel.map(FileChannel.MapMode.READ_WRITE, (long) spilledPages * PAGE_BYTES,
+                    PAGE_BYTES);
+            spilledPages++;
+            return page;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill positions to " + spillDirectory, e);
+        }
+    }
+
+    /**
+     * Returns the block holding the position of the given index within its list.
+     */
+    static int blockOf(int index) {
+        if (index < GROWING_POSITIONS) {
+            return 31 - Integer.numberOfLeadingZeros(index / FIRST_BLOCK_POSITIONS + 1);
+        }
+        return GROWING_BLOCKS + (index - GROWING_POSITIONS) / MAX_BLOCK_POSITIONS;
+    }
+
+    static int blockStart(int block) {
+        if (block < GROWING_BLOCKS) {
+            return FIRST_BLOCK_POSITIONS * ((1 << block) - 1);
+        }
+        return GROWING_POSITIONS + (block - GROWING_BLOCKS) * MAX_BLOCK_POSITIONS;
+    }
+
+    static int blockPositions(int block) {
+        return block < GROWING_BLOCKS ? FIRST_BLOCK_POSITIONS << block : MAX_BLOCK_POSITIONS;
+    }
+
+    private static final class PositionList {
+        private long[] blockAddresses = new long[4];
+        private int blockCount;
+        private int size;
+
+        private void addBlock(long address) {
+            if (blockCount == blockAddresses.length) {
+                blockAddresses = Arrays.copyOf(blockAddresses, blockCount * 2);
+            }
+            blockAddresses[blockCount++] = address;
+        }
+    }
+
+    /**
+     * The positions of a list appended before the view was taken.
+     */
+    private final class PositionListView extends AbstractList<TextPosition> implements RandomAccess {
+        private final PositionList list;
+        private final int size;
+
+        private PositionListView(PositionList list, int size) {
+            this.list = list;
+            this.size = size;
+        }
+
+        @Override
+        public TextPosition get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+            }
+            if (closed) {
+                throw new IllegalStateException("The position store is closed");
+            }
+            return OffHeapPositionStore.this.get(list, index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.textsearcherv2.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decodes a BGZF stream, the blocked multi-member gzip layout written by bgzip, with its members inflated in
+ * parallel and read back in order.
+ *
+ * <p>
+ * Every BGZF member stores its compressed size in a {@code BC} extra field of its header, so members can be cut
+ * out of the compressed stream without inflating them. Up to {@code window} members are inflated ahead of the
+ * reader on the executor; each holds at most 64 KiB of decoded text, so memory stays bounded whatever the document
+ * size. Each member is checked against its CRC.
+ * </p>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public final class ParallelGzipInputStream extends InputStream {
+    private static final int FIXED_HEADER_LENGTH = 12;
+    private static final int FLAG_EXTRA = 4;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream in;
+    private final Executor executor;
+    private final int window;
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private byte[] current = EMPTY;
+    private int position;
+    private boolean inExhausted;
+
+    /**
+     * Creates a stream decoding the BGZF members read from {@code in}.
+     *
+     * @param in       the compressed stream, starting with a BGZF member
+     * @param executor the executor inflating the members
+     * @param window   the maximum number of members inflated ahead of the reader
+     */
+    public ParallelGzipInputStream(InputStream in, Executor executor, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.in = in;
+        this.executor = executor;
+        this.window = window;
+    }
+
+    /**
+     * Returns whether the stream starts with a BGZF member header, leaving the stream where it was.
+     *
+     * @param in a stream supporting mark and reset
+     * @return true if the first member has a {@code BC} extra field
+     * @throws IOException if reading the stream fails
+     */
+    public static boolean isBgzf(InputStream in) throws IOException {
+        in.mark(FIXED_HEADER_LENGTH + 6);
+        try {
+            byte[] header = in.readNBytes(FIXED_HEADER_LENGTH + 6);
+            return header.length == FIXED_HEADER_LENGTH + 6 && hasBgzfHeader(header);
+        } finally {
+            in.reset();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.forEach(future -> future.cancel(false));
+        pending.clear();
+        in.close();
+    }
+
+    /**
+     * Makes sure decoded bytes are available, moving to the next member when the current one is used up.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean ensureAvailable() throws IOException {
+        while (position == current.length) {
+            fillWindow();
+            CompletableFuture<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                current = next.join();
+            } catch (CompletionException e) {
+                throw new IOException("Corrupt BGZF member", e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    private void fillWindow() throws IOException {
+        while (!inExhausted && pending.size() < window) {
+            byte[] member = readMember();
+            if (member == null) {
+                inExhausted = true;
+                return;
+            }
+            pending.add(CompletableFuture.supplyAsync(() -> inflate(member), executor));
+        }
+    }
+
+    /**
+     * Reads the compressed bytes of the next member.
+     *
+     * @return the member, or null at the end of the stream
+     */
+    private byte[] readMember() throws IOException {
+        byte[] header = in.readNBytes(FIXED_HEADER_LENGTH + 6);
+        if (header.length == 0) {
+            return null;
+        }
+        if (header.length < FIXED_HEADER_LENGTH + 6 || !hasBgzfHeader(header)) {
+            throw new IOException("Not a BGZF member");
+        }
+        int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+        int blockSize = ((header[16] & 0xFF) | (header[17] & 0xFF) << 8) + 1;
+        if (blockSize < FIXED_HEADER_LENGTH + extraLength) {
+            throw new IOException("Invalid BGZF block size " + blockSize);
+        }
+        byte[] member = Arrays.copyOf(header, blockSize);
+        int read = in.readNBytes(member, header.length, blockSize - header.length);
+        if (read < blockSize - header.length) {
+            throw new EOFException("Truncated BGZF member");
+        }
+        return member;
+    }
+
+    private static byte[] inflate(byte[] member) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(member), member.length)) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Checks the magic, deflate method, FEXTRA flag and a leading {@code BC} subfield of length 2.
+     */
+    private static boolean hasBgzfHeader(byte[] header) {
+        return (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8
+                && (header[3] & FLAG_EXTRA) != 0 && header[12] == 'B' && header[13] == 'C'
+                && header[14] == 2 && header[15] == 0;
+    }
+}
@@ -0,0 +1,65 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.exception.InvalidPatternException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A bounded cache of compiled regular expressions, evicting the least recently used pattern once full, so
+ * repeated searches for the same pattern compile it only once.
+ */
+public class PatternCache {
+    private final Map<String, Pattern> patterns;
+
+    public PatternCache(int capacity) {
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled pattern for the given regular expression, compiling it on first use.
+     *
+     * @param regex the regular expression
+     * @return the compiled pattern
+     * @throws InvalidPatternException if the regular expression is empty or does not compile
+     */
+    public Pattern get(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            throw new InvalidPatternException("A pattern is required", null);
+        }
+        synchronized (patterns) {
+            Pattern pattern = patterns.get(regex);
+            if (pattern != null) {
+                return pattern;
+            }
+        }
+        Pattern compiled;
+        try {
+            compiled = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new InvalidPatternException("Invalid pattern: " + e.getDescription(), e);
+        }
+        synchronized (patterns) {
+            patterns.putIfAbsent(regex, compiled);
+            return patterns.get(regex);
+        }
+    }
+
+    /**
+     * Returns the number of cached patterns.
+     *
+     * @return the number of cached patterns
+     */
+    public int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.ChunkCacheOutcome;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Java Flight Recorder events of the search pipeline: one per chunk fetched, matched and merged, and one per
+ * document aggregated into its job. A recording taken in production with them shows where the time of a job goes
+ * without attaching an agent.
+ *
+ * <p>
+ * A stage creates its event and calls {@code begin} when it starts, and calls the {@code commit} method of the event
+ * with what it measured when it ends. While no recording enables an event type, {@link Event#shouldCommit()} is
+ * false and the event is dropped before its fields are computed, so a stage pays one allocation the JIT usually
+ * elides. Events carry no stack trace: the stage is known from the type of the event, and chunk events are
+ * frequent.
+ * </p>
+ */
+public final class ProfilingEvents {
+    public static final String CATEGORY = "TextSearcher";
+
+    private ProfilingEvents() {
+    }
+
+    /**
+     * Returns the event types, to enable in a recording.
+     *
+     * @return the classes of the events
+     */
+    public static List<Class<? extends Event>> eventTypes() {
+        return List.of(ChunkFetched.class, ChunkMatched.class, ChunkMerged.class, DocumentAggregated.class);
+    }
+
+    private static int countPositions(Map<String, List<TextPosition>> positionsByName) {
+        int count = 0;
+        if (positionsByName != null) {
+            for (List<TextPosition> positions : positionsByName.values()) {
+                count += positions.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the length of a text encoded in UTF-8, without encoding it. A lone surrogate is encoded as one
+     * replacement byte, as {@link String#getBytes} does.
+     */
+    private static long utf8Length(String text) {
+        long bytes = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes++;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A chunk read from the body of a document, decoded and cut at line boundaries, then admitted into memory. The
+     * duration of the event is the read; the wait for admission that follows it is a field.
+     */
+    @Name("com.textsearcherv2.ChunkFetched")
+    @Label("Chunk Fetched")
+    @Category(CATEGORY)
+    @Description("A chunk of a document read, decoded and cut at line boundaries, then admitted into memory")
+    @StackTrace(false)
+    public static final class ChunkFetched extends Event {
+        @Label("Job Id")
+        String jobId;
+
+        @Label("Document")
+        String document;
+
+        @Label("Chunk Index")
+        int chunkIndex;
+
+        @Label("Size")
+        @Description("Bytes of the text of the chunk encoded in UTF-8")
+        @DataAmount(DataAmount.BYTES)
+        long size;
+
+        @Label("Admission Wait")
+        @Description("Time waiting for an in-flight chunk slot and for chunk bytes in the admission budget")
+        @Timespan(Timespan.NANOSECONDS)
+        long admissionWait;
+
+        /**
+         * Commits the event once the chunk was admitted. {@link #end()} must have been called once it was read.
+         *
+         * @param jobId           the id of the job
+         * @param document        the URL of the document
+         * @param chunk           the chunk
+         * @param admitStartNanos the {@link System#nanoTime()} the chunk started to wait for admission at
+         */
+        public void commit(String jobId, String document, TextChunk chunk, long admitStartNanos) {
+            if (shouldCommit()) {
+                this.jobId = jobId;
+                this.document = document;
+                this.chunkIndex = chunk.getIndex();
+                this.size = utf8Length(chunk.getText());
+                this.admissionWait = System.nanoTime() - admitStartNanos;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A chunk matched on a matcher thread. The duration of the event is the matching; the wait for the thread that
+     * precedes it is a field.
+     */
+    @Name("com.textsearcherv2.ChunkMatched")
+    @Label("Chunk Matched")
+    @Category(CATEGORY)
+    @Description("A chunk matched against the names of its job on a matcher thread")
+    @StackTrace(false)
+    public static final class ChunkMatched extends Event {
+        @Label("Job Id")
+        String jobId;
+
+        @Label("Document")
+        String document;
+
+        @Label("Chunk Index")
+        int chunkIndex;
+
+        @Label("Size")
+        @Description("Bytes of the text of the chunk encoded in UTF-8")
+        @DataAmount(DataAmount.BYTES)
+        long size;
+
+        @Label("Match Count")
+        int matchCount;
+
+        @Label("Executor Wait")
+        @Description("Time the chunk waited in the queue of the matcher threads")
+        @Timespan(Timespan.NANOSECONDS)
+        long executorWait;
+
+        @Label("Cache Outcome")
+        @Description("HIT if the chunk match cache served the chunk, MISS if the chunk was matched into it, BYPASS if "
+                + "the chunk was matched without it")
+        String cacheOutcome = ChunkCacheOutcome.BYPASS.name();
+
+        /**
+         * Starts the matching of the chunk.
+         *
+         * @param submittedNanos the {@link System#nanoTime()} the chunk was submitted to the matcher threads at
+         */
+        public void begin(long submittedNanos) {
+            executorWait = System.nanoTime() - submittedNanos;
+            begin();
+        }
+
+        /**
+         * Records how the chunk match cache served the chunk, {@link ChunkCacheOutcome#BYPASS} until then.
+         *
+         * @param outcome the outcome of the cache lookup
+         */
+        public void setCacheOutcome(ChunkCacheOutcome outcome) {
+            cacheOutcome = outcome.name();
+        }
+
+        /**
+         * Commits the event once the chunk was matched, or failed to be.
+         *
+         * @param jobId           the id of the job, null for none
+         * @param document        the URL of the document, null for none
+         * @param chunk           the chunk
+         * @param positionsByName the positions found, null if matching failed
+         */
+        public void commit(String jobId, String document, TextChunk chunk,
+                           Map<String, List<TextPosition>> positionsByName) {
+            end();
+            if (shouldCommit()) {
+                this.jobId = jobId;
+                this.document = document;
+                this.chunkIndex = chunk.getIndex();
+                this.size = utf8Length(chunk.getText());
+                this.matchCount = countPositions(positionsByName);
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A matched chunk merged into the positions of its document in document order and checkpointed.
+     */
+    @Name("com.textsearcherv2.ChunkMerged")
+    @Label("Chunk Merged")
+    @Category(CATEGORY)
+    @Description("The positions of a matched chunk merged in document order and checkpointed")
+    @StackTrace(false)
+    public static final class ChunkMerged extends Event {
+        @Label("Job Id")
+        String jobId;
+
+        @Label("Document")
+        String document;
+
+        @Label("Chunk Index")
+        int chunkIndex;
+
+        @Label("Match Count")
+        int matchCount;
+
+        /**
+         * Commits the event once the chunk was merged.
+         *
+         * @param jobId           the id of the job
+         * @param document        the URL of the document
+         * @param chunkIndex      the index of the chunk in the document
+         * @param positionsByName the positions merged
+         */
+        public void commit(String jobId, String document, int chunkIndex,
+                           Map<String, List<TextPosition>> positionsByName) {
+            end();
+            if (shouldCommit()) {
+                this.jobId = jobId;
+                this.document = document;
+                this.chunkIndex = chunkIndex;
+                this.matchCount = countPositions(positionsByName);
+                commit();
+            }
+        }
+    }
+
+    /**
+     * The positions of a scanned document aggregated into the results of its job. The duration of the event is the
+     * aggregation; the wait for a thread that precedes it is a field.
+     */
+    @Name("com.textsearcherv2.DocumentAggregated")
+    @Label("Document Aggregated")
+    @Category(CATEGORY)
+    @Description("The positions of a document aggregated into the results of its job")
+    @StackTrace(false)
+    public static final class DocumentAggregated extends Event {
+        @Label("Job Id")
+        String jobId;
+
+        @Label("Document")
+        String document;
+
+        @Label("Match Count")
+        int matchCount;
+
+        @Label("Executor Wait")
+        @Description("Time the aggregation waited for a thread")
+        @Timespan(Timespan.NANOSECONDS)
+        long executorWait;
+
+        @Label("Spilled")
+        @Description("Whether the results of the job had spilled to disk")
+        boolean spilled;
+
+        /**
+         * Starts the aggregation of the document.
+         *
+         * @param submittedNanos the {@link System#nanoTime()} the aggregation was submitted at
+         */
+        public void begin(long submittedNanos) {
+            executorWait = System.nanoTime() - submittedNanos;
+            begin();
+        }
+
+        /**
+         * Commits the event once the document was aggregated, or failed to be.
+         *
+         * @param jobId           the id of the job
+         * @param document        the URL of the document
+         * @param positionsByName the positions aggregated
+         * @param spilled         whether the results of the job had spilled to disk
+         */
+        public void commit(String jobId, String document, Map<String, List<TextPosition>> positionsByName,
+                           boolean spilled) {
+            end();
+            if (shouldCommit()) {
+                this.jobId = jobId;
+                this.document = document;
+                this.matchCount = countPositions(positionsByName);
+                this.spilled = spilled;
+                commit();
+            }
+        }
+    }
+}
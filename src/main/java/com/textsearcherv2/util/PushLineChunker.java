@@ -0,0 +1,126 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextChunk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cuts a UTF-8 document pushed in byte buffers into chunks of whole lines, for bodies that arrive as a stream of
+ * buffers rather than an {@link java.io.InputStream}.
+ *
+ * <p>
+ * Lines are split like {@link LineChunkReader} splits them: at "\n", "\r\n" or "\r", with a "\r\n" split across
+ * two buffers counted once, and joined with "\n" inside a chunk. Bytes are only decoded once a chunk is complete, so
+ * a character split across buffers is decoded whole.
+ * </p>
+ *
+ * <p>Instances are not thread safe; buffers of one document are pushed in order.</p>
+ */
+public final class PushLineChunker {
+    private final int linesPerChunk;
+    private byte[] chunkBytes = new byte[64 * 1024];
+    private int chunkLength;
+    private int lines;
+    private boolean lineStarted;
+    private boolean afterCarriageReturn;
+    private int nextLine;
+    private int nextChunkIndex;
+    private long bytes;
+
+    /**
+     * Creates a chunker for a document read from its start.
+     *
+     * @param linesPerChunk the number of lines in each chunk
+     */
+    public PushLineChunker(int linesPerChunk) {
+        if (linesPerChunk <= 0) {
+            throw new IllegalArgumentException("linesPerChunk must be positive");
+        }
+        this.linesPerChunk = linesPerChunk;
+    }
+
+    /**
+     * Consumes buffers of the document.
+     *
+     * @param buffers the next bytes of the document, consumed up to their limit
+     * @return the chunks completed by the bytes, in document order
+     */
+    public List<TextChunk> push(List<ByteBuffer> buffers) {
+        List<TextChunk> chunks = null;
+        for (ByteBuffer buffer : buffers) {
+            bytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                int b = buffer.get();
+                if (afterCarriageReturn) {
+                    afterCarriageReturn = false;
+                    if (b == '\n') {
+                        continue;
+                    }
+                }
+                if (!lineStarted) {
+                    if (lines > 0) {
+                        append('\n');
+                    }
+                    lineStarted = true;
+                }
+                if (b == '\n' || b == '\r') {
+                    afterCarriageReturn = b == '\r';
+                    lines++;
+                    lineStarted = false;
+                    if (lines == linesPerChunk) {
+                        if (chunks == null) {
+                            chunks = new ArrayList<>();
+                        }
+                        chunks.add(emit());
+                    }
+                } else {
+                    append(b);
+                }
+            }
+        }
+        return chunks == null ? Collections.emptyList() : chunks;
+    }
+
+    /**
+     * Ends the document, completing the last chunk with a final line that has no terminator.
+     *
+     * @return the last chunk, or null if the document ended with a complete chunk
+     */
+    public TextChunk finish() {
+        if (lineStarted) {
+            lines++;
+            lineStarted = false;
+        }
+        return lines == 0 ? null : emit();
+    }
+
+    /**
+     * Returns the bytes pushed so far.
+     *
+     * @return the bytes of the document read so far
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    private TextChunk emit() {
+        TextChunk chunk = new TextChunk(nextChunkIndex++, nextLine,
+                new String(chunkBytes, 0, chunkLength, StandardCharsets.UTF_8));
+        nextLine += lines;
+        lines = 0;
+        chunkLength = 0;
+        return chunk;
+    }
+
+    private void append(int b) {
+        if (chunkLength == chunkBytes.length) {
+            chunkBytes = Arrays.copyOf(chunkBytes, chunkBytes.length * 2);
+        }
+        chunkBytes[chunkLength++] = (byte) b;
+    }
+}
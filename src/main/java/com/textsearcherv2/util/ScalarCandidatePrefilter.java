@@ -0,0 +1,25 @@
+package com.textsearcherv2.util;
+
+/**
+ * The portable prefilter, one character at a time.
+ */
+public final class ScalarCandidatePrefilter implements CandidatePrefilter {
+
+    @Override
+    public int findCandidates(char[] text, int from, int to, char low, char high, int[] out) {
+        int count = 0;
+        int span = high - low;
+        for (int i = from; i < to; i++) {
+            char c = text[i];
+            if ((char) (c - low) <= span || c == '\n') {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
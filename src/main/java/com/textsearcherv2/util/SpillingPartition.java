@@ -0,0 +1,452 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Holds the positions of one job on the heap within a budget, and spills them to sorted run files beyond it, so a
+ * job of any number of documents completes without running out of heap.
+ *
+ * <p>
+ * Positions are kept per document and name as they are added. Once their estimated heap size exceeds the budget,
+ * they are sorted by document, name, line and column, written to a run file and dropped from the heap. When the job
+ * completes, the runs and the positions still on the heap are combined by a k-way merge, which reads every run
+ * sequentially and holds one position of each at a time, into an {@link OffHeapPositionStore} or back onto the heap.
+ * Once more than {@link #MAX_MERGE_RUNS} runs were spilled they are merged into one, so a merge never has more than
+ * that many files open. A partition that never exceeded its budget hands its map over as it is.
+ * </p>
+ *
+ * <p>
+ * The budget covers documents once they are added, one document at a time. The positions of a document being scanned
+ * are gathered on the heap until its scan completes: follow scans, batched scans and checkpoint restores need the
+ * positions of the whole document. So a single document must fit its positions on the heap.
+ * </p>
+ *
+ * <p>
+ * A run is a sequence of segments, each made of the document URL and name in modified UTF-8, the number of
+ * positions and the line and column of every position, and ends with a zero byte. The positions of a document and
+ * name may span several consecutive segments. All methods are synchronized, so documents of the job may be added
+ * from any thread.
+ * </p>
+ */
+public final class SpillingPartition implements Closeable {
+    private static final Logger logger = LogManager.getLogger(SpillingPartition.class);
+    // estimated heap of a position: a TextPosition of two ints, 24 bytes, and the reference to it in its list
+    public static final int POSITION_HEAP_BYTES = 28;
+    public static final int MAX_MERGE_RUNS = 64;
+    private static final int SEGMENT_POSITIONS = 8192;
+    private static final int RUN_BUFFER_BYTES = 64 * 1024;
+    private static final Comparator<TextPosition> POSITION_ORDER =
+            Comparator.comparingInt(TextPosition::getLineNumber).thenComparingInt(TextPosition::getColumnNumber);
+
+    private final String jobId;
+    private final long maxHeapBytes;
+    private final Path spillDirectory;
+    // every document added, so documents without positions are kept once the others spilled
+    private final Set<String> documents = new LinkedHashSet<>();
+    private final List<Path> runs = new ArrayList<>();
+    private Map<String, Map<String, List<TextPosition>>> positions = new HashMap<>();
+    private long heapBytes;
+    private boolean closed;
+
+    /**
+     * Creates an empty partition.
+     *
+     * @param jobId          the id of the job, naming its run files
+     * @param maxHeapBytes   the estimated heap the positions may take before they spill
+     * @param spillDirectory the directory of the run files, created when the first run spills
+     */
+    public SpillingPartition(String jobId, long maxHeapBytes, Path spillDirectory) {
+        this.jobId = jobId;
+        this.maxHeapBytes = maxHeapBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Adds the positions found in a document, spilling the positions on the heap if they exceed the budget.
+     *
+     * @param documentUrl     the URL of the document
+     * @param positionsByName the positions, grouped by name
+     * @throws IllegalStateException if the partition is closed
+     * @throws UncheckedIOException  if a run cannot be written
+     */
+    public synchronized void addAll(String documentUrl, Map<String, List<TextPosition>> positionsByName) {
+        checkOpen();
+        documents.add(documentUrl);
+        Map<String, List<TextPosition>> documentPositions = positions.computeIfAbsent(documentUrl,
+                url -> new HashMap<>());
+        positionsByName.forEach((name, namePositions) -> {
+            documentPositions.computeIfAbsent(name, n -> new ArrayList<>()).addAll(namePositions);
+            heapBytes += (long) namePositions.size() * POSITION_HEAP_BYTES;
+        });
+        if (heapBytes > maxHeapBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Tells whether positions were spilled to runs.
+     *
+     * @return true once a run was written
+     */
+    public synchronized boolean hasSpilled() {
+        return !runs.isEmpty();
+    }
+
+    /**
+     * Returns the number of run files the positions are spilled to.
+     *
+     * @return the number of runs
+     */
+    public synchronized int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the estimated heap taken by the positions not spilled.
+     *
+     * @return the estimated bytes
+     */
+    public synchronized long heapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * Returns all positions on the heap, keyed by document URL and then by name. Spilled positions are merged back,
+     * each list sorted by line and column.
+     *
+     * @return the positions
+     * @throws UncheckedIOException if a run cannot be read
+     */
+    public synchronized Map<String, Map<String, List<TextPosition>>> toMap() {
+        checkOpen();
+        if (runs.isEmpty()) {
+            return positions;
+        }
+        Map<String, Map<String, List<TextPosition>>> merged = new HashMap<>();
+        documents.forEach(documentUrl -> merged.put(documentUrl, new HashMap<>()));
+        mergeAll((documentUrl, name, batch) -> merged.get(documentUrl)
+                .computeIfAbsent(name, n -> new ArrayList<>()).addAll(batch));
+        return merged;
+    }
+
+    /**
+     * Merges all positions into an off-heap store, each list sorted by line and column.
+     *
+     * @param store the store to append the positions to
+     * @throws UncheckedIOException if a run cannot be read
+     */
+    public synchronized void mergeInto(OffHeapPositionStore store) {
+        checkOpen();
+        mergeAll(store::appendAll);
+    }
+
+    /**
+     * Drops the positions and deletes the run files.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        positions = new HashMap<>();
+        heapBytes = 0;
+        runs.forEach(SpillingPartition::delete);
+        runs.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The partition of job " + jobId + " is closed");
+        }
+    }
+
+    /**
+     * Writes the positions on the heap as a sorted run, then merges the runs into one if there are too many.
+     */
+    private void spill() {
+        Path run = newRun();
+        try (RunWriter writer = new RunWriter(run)) {
+            for (Map.Entry<String, Map<String, List<TextPosition>>> document : new TreeMap<>(positions).entrySet()) {
+                for (Map.Entry<String, List<TextPosition>> name : new TreeMap<>(document.getValue()).entrySet()) {
+                    name.getValue().sort(POSITION_ORDER);
+                    writer.accept(document.getKey(), name.getKey(), name.getValue());
+                }
+            }
+        } catch (IOException e) {
+            delete(run);
+            throw new UncheckedIOException("Could not spill the positions of job " + jobId + " to " + run, e);
+        }
+        runs.add(run);
+        logger.info("Job {} spilled {} bytes of positions to run {} of {}", jobId, heapBytes, runs.size(), run);
+        positions = new HashMap<>();
+        heapBytes = 0;
+        if (runs.size() > MAX_MERGE_RUNS) {
+            compactRuns();
+        }
+    }
+
+    private void compactRuns() {
+        Path compacted = newRun();
+        List<Cursor> cursors = new ArrayList<>();
+        try (RunWriter writer = new RunWriter(compacted)) {
+            for (Path run : runs) {
+                cursors.add(new RunCursor(run, cursors.size()));
+            }
+            merge(cursors, writer);
+        } catch (IOException e) {
+            delete(compacted);
+            throw new UncheckedIOException("Could not merge the runs of job " + jobId, e);
+        } finally {
+            cursors.forEach(Cursor::close);
+        }
+        runs.forEach(SpillingPartition::delete);
+        runs.clear();
+        runs.add(compacted);
+        logger.info("Job {} merged its runs into {}", jobId, compacted);
+    }
+
+    /**
+     * Merges the runs and the positions on the heap into the sink, in document, name, line and column order.
+     */
+    private void mergeAll(Sink sink) {
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                cursors.add(new RunCursor(run, cursors.size()));
+            }
+            cursors.add(new HeapCursor(positions, cursors.size()));
+            merge(cursors, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not merge the runs of job " + jobId, e);
+        } finally {
+            cursors.forEach(Cursor::close);
+        }
+    }
+
+    /**
+     * Merges sorted cursors with a heap of their current positions, passing the positions of each document and name
+     * on in batches of at most {@link #SEGMENT_POSITIONS}.
+     */
+    private static void merge(List<Cursor> cursors, Sink sink) throws IOException {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(cursors.size(), SpillingPartition::compare);
+        for (Cursor cursor : cursors) {
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        String document = null;
+        String name = null;
+        List<TextPosition> batch = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            Cursor head = heads.poll();
+            if (!head.document.equals(document) || !head.name.equals(name) || batch.size() == SEGMENT_POSITIONS) {
+                if (!batch.isEmpty()) {
+                    sink.accept(document, name, batch);
+                    batch = new ArrayList<>();
+                }
+                document = head.document;
+                name = head.name;
+            }
+            batch.add(new TextPosition(head.line, head.column));
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(document, name, batch);
+        }
+    }
+
+    private static int compare(Cursor a, Cursor b) {
+        int order = a.document.compareTo(b.document);
+        if (order == 0) {
+            order = a.name.compareTo(b.name);
+        }
+        if (order == 0) {
+            order = Integer.compare(a.line, b.line);
+        }
+        if (order == 0) {
+            order = Integer.compare(a.column, b.column);
+        }
+        // positions found twice, by scans of a followed document, keep the order they were added in
+        return order != 0 ? order : Integer.compare(a.source, b.source);
+    }
+
+    private Path newRun() {
+        try {
+            Files.createDirectories(spillDirectory);
+            return Files.createTempFile(spillDirectory, "run-" + jobId + "-", ".spill");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a run file in " + spillDirectory, e);
+        }
+    }
+
+    private static void delete(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            logger.warn("Could not delete the run file {}", run, e);
+        }
+    }
+
+    /**
+     * Receives merged positions, batch by batch.
+     */
+    @FunctionalInterface
+    private interface Sink {
+        void accept(String documentUrl, String name, List<TextPosition> positions) throws IOException;
+    }
+
+    /**
+     * Writes segments to a run file.
+     */
+    private static final class RunWriter implements Sink, Closeable {
+        private final DataOutputStream out;
+
+        private RunWriter(Path run) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_BYTES));
+        }
+
+        @Override
+        public void accept(String documentUrl, String name, List<TextPosition> positions) throws IOException {
+            for (int from = 0; from < positions.size(); from += SEGMENT_POSITIONS) {
+                int to = Math.min(positions.size(), from + SEGMENT_POSITIONS);
+                out.writeByte(1);
+                out.writeUTF(documentUrl);
+                out.writeUTF(name);
+                out.writeInt(to - from);
+                for (TextPosition position : positions.subList(from, to)) {
+                    out.writeInt(position.getLineNumber());
+                    out.writeInt(position.getColumnNumber());
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(0);
+            out.close();
+        }
+    }
+
+    /**
+     * Walks sorted positions one at a time.
+     */
+    private abstract static class Cursor {
+        // the index of the cursor in the merge, breaking ties between equal positions
+        final int source;
+        String document;
+        String name;
+        int line;
+        int column;
+
+        Cursor(int source) {
+            this.source = source;
+        }
+
+        /**
+         * Moves to the next position.
+         *
+         * @return false once there is none
+         */
+        abstract boolean advance() throws IOException;
+
+        void close() {
+        }
+    }
+
+    private static final class RunCursor extends Cursor {
+        private final Path run;
+        private final DataInputStream in;
+        private int remaining;
+
+        private RunCursor(Path run, int source) throws IOException {
+            super(source);
+            this.run = run;
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_BYTES));
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            while (remaining == 0) {
+                if (in.readByte() == 0) {
+                    return false;
+                }
+                document = in.readUTF();
+                name = in.readUTF();
+                remaining = in.readInt();
+            }
+            line = in.readInt();
+            column = in.readInt();
+            remaining--;
+            return true;
+        }
+
+        @Override
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the run file {}", run, e);
+            }
+        }
+    }
+
+    private static final class HeapCursor extends Cursor {
+        private final List<NameList> lists = new ArrayList<>();
+        private int list;
+        private int index = -1;
+
+        private HeapCursor(Map<String, Map<String, List<TextPosition>>> positions, int source) {
+            super(source);
+            new TreeMap<>(positions).forEach((documentUrl, names) -> new TreeMap<>(names).forEach((name, list) -> {
+                list.sort(POSITION_ORDER);
+                lists.add(new NameList(documentUrl, name, list));
+            }));
+        }
+
+        @Override
+        boolean advance() {
+            index++;
+            while (list < lists.size() && index >= lists.get(list).positions().size()) {
+                list++;
+                index = 0;
+            }
+            if (list == lists.size()) {
+                return false;
+            }
+            NameList current = lists.get(list);
+            document = current.documentUrl();
+            name = current.name();
+            TextPosition position = current.positions().get(index);
+            line = position.getLineNumber();
+            column = position.getColumnNumber();
+            return true;
+        }
+    }
+
+    private record NameList(String documentUrl, String name, List<TextPosition> positions) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.textsearcherv2.util;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The prefilter on the JDK Vector API: tests a whole register of characters per step with two lane-wise compares
+ * and only walks the set bits of the resulting mask.
+ *
+ * <p>
+ * Only instantiate through {@link CandidatePrefilters#select(String)}, which checks that the incubator module is
+ * present first.
+ * </p>
+ */
+final class VectorCandidatePrefilter implements CandidatePrefilter {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    @Override
+    public int findCandidates(char[] text, int from, int to, char low, char high, int[] out) {
+        int count = 0;
+        int lanes = SPECIES.length();
+        int upperBound = from + SPECIES.loopBound(to - from);
+        short lowLane = (short) low;
+        short span = (short) (high - low);
+        int i = from;
+        for (; i < upperBound; i += lanes) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            VectorMask<Short> candidates = chars.sub(lowLane).compare(VectorOperators.UNSIGNED_LE, span)
+                    .or(chars.eq((short) '\n'));
+            long bits = candidates.toLong();
+            while (bits != 0) {
+                out[count++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        int spanInt = high - low;
+        for (; i < to; i++) {
+            char c = text[i];
+            if ((char) (c - low) <= spanInt || c == '\n') {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.length() + " lanes)";
+    }
+}
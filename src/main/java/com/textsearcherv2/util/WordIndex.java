@@ -0,0 +1,314 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of every word of a text to its positions, built by one pass of a hand-written tokenizer, so that any word
+ * can be looked up after a single scan, not only the names of a fixed list.
+ *
+ * <p>
+ * A word is a maximal run of letters, digits, combining marks and underscores, supplementary characters included.
+ * On ASCII text this is what {@code \b\w+\b} finds; on other text it keeps words such as "Müller" whole, where the
+ * regex splits or drops them. Positions are the line of the word, counted from 0, and the column of its first char
+ * within the line.
+ * </p>
+ *
+ * <p>
+ * Each term is interned once into a term id, the key of an open addressing table probed with the hash of the chars
+ * in the text, so a word seen before costs no allocation: neither a substring, nor a boxed key, nor a position
+ * object. Positions are packed, line and column, into a growable {@code long} array per term, and only turned into
+ * {@link TextPosition}s when read.
+ * </p>
+ *
+ * <p>
+ * A text is indexed in parallel by building an index per chunk of whole lines with {@link #build(String, int, int)},
+ * then {@link #append(WordIndex) appending} the chunk indexes in text order, which shifts their lines by the lines
+ * before them and keeps the positions of every term sorted. An index is not thread-safe: a chunk index is built by
+ * one thread, and the merged index is read once the appends are done.
+ * </p>
+ */
+public final class WordIndex {
+    private static final int INITIAL_TERMS = 64;
+    private static final int INITIAL_POSITIONS = 4;
+    private static final boolean[] ASCII_WORD_CHARS = new boolean[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_WORD_CHARS[c] = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_';
+        }
+    }
+
+    // open addressing table of term id + 1, 0 for an empty slot, its size a power of two at most half full
+    private int[] slots = new int[INITIAL_TERMS * 2];
+    // per term id: the term, its hash, its packed positions and their count
+    private String[] terms = new String[INITIAL_TERMS];
+    private int[] hashes = new int[INITIAL_TERMS];
+    private long[][] positions = new long[INITIAL_TERMS][];
+    private int[] positionCounts = new int[INITIAL_TERMS];
+    private int termCount;
+    private long positionCount;
+    // line breaks of the text indexed, the line of the first position of an appended index
+    private int lineBreaks;
+
+    /**
+     * Indexes the words of a range of a text, lines counted from the start of the range.
+     *
+     * @param text the text
+     * @param from the index of the first char of the range, the first char of a line
+     * @param to   the index after the last char of the range, the first char of a line or the end of the text
+     * @return the index of the range
+     */
+    public static WordIndex build(String text, int from, int to) {
+        WordIndex index = new WordIndex();
+        int line = 0;
+        int lineStart = from;
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line++;
+                lineStart = ++i;
+                continue;
+            }
+            int width = wordCharWidth(text, i, to);
+            if (width == 0) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int hash = 0;
+            do {
+                for (int end = i + width; i < end; i++) {
+                    hash = 31 * hash + text.charAt(i);
+                }
+            } while (i < to && (width = wordCharWidth(text, i, to)) > 0);
+            index.add(index.intern(text, start, i, hash), pack(line, start - lineStart));
+        }
+        index.lineBreaks = line;
+        return index;
+    }
+
+    /**
+     * Returns the number of chars of the word char at an index of a text.
+     *
+     * @return 1 or 2 for a word char in the BMP or beyond it, 0 for any other char
+     */
+    private static int wordCharWidth(String text, int i, int to) {
+        char c = text.charAt(i);
+        if (c < 128) {
+            return ASCII_WORD_CHARS[c] ? 1 : 0;
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+            return isWordCodePoint(Character.toCodePoint(c, text.charAt(i + 1))) ? 2 : 0;
+        }
+        return isWordCodePoint(c) ? 1 : 0;
+    }
+
+    private static boolean isWordCodePoint(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static long pack(int line, int column) {
+        return ((long) line << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Appends the index of the text following the text of this index, which must end with a line break or be
+     * empty. The positions of the appended index are shifted by the lines of this one.
+     *
+     * @param next the index of the following text
+     * @return this index
+     */
+    public WordIndex append(WordIndex next) {
+        long shift = (long) lineBreaks << 32;
+        for (int id = 0; id < next.termCount; id++) {
+            String term = next.terms[id];
+            int target = intern(term, 0, term.length(), next.hashes[id], term);
+            long[] source = next.positions[id];
+            int count = next.positionCounts[id];
+            ensurePositions(target, count);
+            long[] destination = positions[target];
+            int offset = positionCounts[target];
+            for (int i = 0; i < count; i++) {
+                destination[offset + i] = source[i] + shift;
+            }
+            positionCounts[target] = offset + count;
+            positionCount += count;
+        }
+        lineBreaks += next.lineBreaks;
+        return this;
+    }
+
+    /**
+     * Returns the id of a word.
+     *
+     * @param word the word
+     * @return the id of the word, -1 if it is not in the index
+     */
+    public int termId(String word) {
+        int hash = word.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && terms[id].equals(word)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the word of an id.
+     *
+     * @param termId the id of the word
+     * @return the word
+     */
+    public String term(int termId) {
+        return terms[termId];
+    }
+
+    /**
+     * Returns the number of times a word occurs in the text.
+     *
+     * @param word the word
+     * @return the number of occurrences, 0 if the word is not in the index
+     */
+    public int frequency(String word) {
+        int id = termId(word);
+        return id < 0 ? 0 : positionCounts[id];
+    }
+
+    /**
+     * Returns the positions of a word in the text, in text order.
+     *
+     * @param word the word
+     * @return the positions, empty if the word is not in the index
+     */
+    public List<TextPosition> positions(String word) {
+        int id = termId(word);
+        return id < 0 ? new ArrayList<>() : positionsOf(id);
+    }
+
+    /**
+     * Returns the number of distinct words in the text.
+     *
+     * @return the number of terms
+     */
+    public int termCount() {
+        return termCount;
+    }
+
+    /**
+     * Returns the number of words in the text.
+     *
+     * @return the number of positions of all terms
+     */
+    public long positionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Returns every word of the text with its positions.
+     *
+     * @return a map of each word to its positions, in text order
+     */
+    public Map<String, List<TextPosition>> toMap() {
+        Map<String, List<TextPosition>> map = new HashMap<>(Math.max(16, termCount * 4 / 3 + 1));
+        for (int id = 0; id < termCount; id++) {
+            map.put(terms[id], positionsOf(id));
+        }
+        return map;
+    }
+
+    private List<TextPosition> positionsOf(int id) {
+        long[] packed = positions[id];
+        int count = positionCounts[id];
+        List<TextPosition> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(new TextPosition((int) (packed[i] >>> 32), (int) packed[i]));
+        }
+        return list;
+    }
+
+    private int intern(String text, int from, int to, int hash) {
+        return intern(text, from, to, hash, null);
+    }
+
+    /**
+     * Returns the id of the term in a range of a text, adding the term if it is new.
+     *
+     * @param term the term as a string, to store without copying the range, null to copy it when the term is new
+     */
+    private int intern(String text, int from, int to, int hash, String term) {
+        int length = to - from;
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            String candidate = terms[id];
+            if (hashes[id] == hash && candidate.length() == length && candidate.regionMatches(0, text, from, length)) {
+                return id;
+            }
+        }
+        int id = termCount++;
+        if (id == terms.length) {
+            int capacity = terms.length * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            positionCounts = Arrays.copyOf(positionCounts, capacity);
+        }
+        terms[id] = term != null ? term : text.substring(from, to);
+        hashes[id] = hash;
+        positions[id] = new long[INITIAL_POSITIONS];
+        slots[slot] = id + 1;
+        if (termCount * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int id = 0; id < termCount; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = id + 1;
+        }
+        slots = grown;
+    }
+
+    private static int mix(int hash) {
+        // spreads the string hash, whose low bits are poor for short words, over the slots
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void add(int id, long position) {
+        ensurePositions(id, 1);
+        positions[id][positionCounts[id]++] = position;
+        positionCount++;
+    }
+
+    private void ensurePositions(int id, int additional) {
+        long[] packed = positions[id];
+        int required = positionCounts[id] + additional;
+        if (required > packed.length) {
+            positions[id] = Arrays.copyOf(packed, Math.max(required, packed.length * 2));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.textsearcherv2.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The 64 bit xxHash (XXH64) of Yann Collet, a fast non-cryptographic hash used to recognise repeated content.
+ *
+ * <p>
+ * Strings are hashed over their UTF-16 code units in little endian order, without encoding them first, so
+ * {@code hash(s, seed)} equals the hash of the UTF-16LE bytes of {@code s}.
+ * </p>
+ */
+public final class XxHash64 {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private XxHash64() {
+    }
+
+    /**
+     * Hashes a range of bytes.
+     *
+     * @param bytes  the bytes
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @param seed   the seed
+     * @return the hash
+     */
+    public static long hash(byte[] bytes, int offset, int length, long seed) {
+        int end = offset + length;
+        int i = offset;
+        long h;
+        if (length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            for (; i <= end - 32; i += 32) {
+                v1 = round(v1, (long) LONG_LE.get(bytes, i));
+                v2 = round(v2, (long) LONG_LE.get(bytes, i + 8));
+                v3 = round(v3, (long) LONG_LE.get(bytes, i + 16));
+                v4 = round(v4, (long) LONG_LE.get(bytes, i + 24));
+            }
+            h = converge(v1, v2, v3, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += length;
+        for (; i <= end - 8; i += 8) {
+            h = mixLong(h, (long) LONG_LE.get(bytes, i));
+        }
+        if (i <= end - 4) {
+            h = mixInt(h, (int) INT_LE.get(bytes, i));
+            i += 4;
+        }
+        for (; i < end; i++) {
+            h = mixByte(h, bytes[i]);
+        }
+        return avalanche(h);
+    }
+
+    /**
+     * Hashes the UTF-16 code units of a string.
+     *
+     * @param text the string
+     * @param seed the seed
+     * @return the hash of the UTF-16LE bytes of the string
+     */
+    public static long hash(CharSequence text, long seed) {
+        int end = text.length();
+        int i = 0;
+        long h;
+        if (end >= 16) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            for (; i <= end - 16; i += 16) {
+                v1 = round(v1, charLane(text, i));
+                v2 = round(v2, charLane(text, i + 4));
+                v3 = round(v3, charLane(text, i + 8));
+                v4 = round(v4, charLane(text, i + 12));
+            }
+            h = converge(v1, v2, v3, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += 2L * end;
+        for (; i <= end - 4; i += 4) {
+            h = mixLong(h, charLane(text, i));
+        }
+        if (i <= end - 2) {
+            h = mixInt(h, text.charAt(i) | text.charAt(i + 1) << 16);
+            i += 2;
+        }
+        if (i < end) {
+            char c = text.charAt(i);
+            h = mixByte(mixByte(h, (byte) c), (byte) (c >>> 8));
+        }
+        return avalanche(h);
+    }
+
+    private static long charLane(CharSequence text, int i) {
+        return (long) text.charAt(i) | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32 | (long) text.charAt(i + 3) << 48;
+    }
+
+    private static long round(long acc, long lane) {
+        return Long.rotateLeft(acc + lane * P2, 31) * P1;
+    }
+
+    private static long converge(long v1, long v2, long v3, long v4) {
+        long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = (h ^ round(0, v1)) * P1 + P4;
+        h = (h ^ round(0, v2)) * P1 + P4;
+        h = (h ^ round(0, v3)) * P1 + P4;
+        return (h ^ round(0, v4)) * P1 + P4;
+    }
+
+    private static long mixLong(long h, long lane) {
+        return Long.rotateLeft(h ^ round(0, lane), 27) * P1 + P4;
+    }
+
+    private static long mixInt(long h, int lane) {
+        return Long.rotateLeft(h ^ (lane & 0xFFFFFFFFL) * P1, 23) * P2 + P3;
+    }
+
+    private static long mixByte(long h, byte lane) {
+        return Long.rotateLeft(h ^ (lane & 0xFFL) * P5, 11) * P1;
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        return h ^ h >>> 32;
+    }
+}
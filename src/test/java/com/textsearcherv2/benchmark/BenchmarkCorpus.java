@@ -0,0 +1,73 @@
+package com.textsearcherv2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+
+/**
+ * Generates big.txt-like English prose for benchmarks: mostly lower case filler words, sentence starts, and a
+ * sprinkle of dictionary names and misspelt names. The output only depends on the seed.
+ */
+public final class BenchmarkCorpus {
+    private static final String[] FILLER = ("the of and to in that it was he for on are with as his they at be this "
+            + "from have or by one had not but what all were when we there can an your which their said if do will "
+            + "each about how up out them then she many some so these would other into has more her two like him see "
+            + "time could no make than first been its who now people my made over did down only way find use may "
+            + "water long little very after words called just where most know get through back much before go good "
+            + "new write our used me man too any day same right look think also around another came come work three "
+            + "word must because does part even place well such here take why things help put years different away "
+            + "again off went old number great tell men say small every found still between name should Mr Home big "
+            + "give air line set own under read last never us left end along while might next sound below saw "
+            + "something thought both few those always looked show large often together asked house don't world "
+            + "going want school important until form food keep children feet land side without boy once animals "
+            + "life enough took sometimes four head above kind began almost live page got earth need far hand high "
+            + "year mother light parts country father let night following picture being study second eyes soon times "
+            + "story boys since white days ever paper hard near sentence better best across during today others sure "
+            + "means knew it's try told young miles sun ways thing whole hear example heard several change answer room "
+            + "sea against top turned learn point city play toward five using himself usually").split(" ");
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Generates the corpus.
+     *
+     * @param lines          the number of lines
+     * @param nameEveryWords on average one word in this many is a dictionary name
+     * @param seed           the random seed
+     * @return the lines joined with '\n'
+     */
+    public static String generate(int lines, int nameEveryWords, long seed) {
+        Random random = new Random(seed);
+        List<String> names = new ArrayList<>(PERSON_NAMES);
+        StringBuilder text = new StringBuilder(lines * 80);
+        for (int line = 0; line < lines; line++) {
+            int words = 8 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    text.append(' ');
+                }
+                if (random.nextInt(nameEveryWords) == 0) {
+                    String name = names.get(random.nextInt(names.size()));
+                    text.append(random.nextInt(4) == 0 ? misspell(name, random) : name);
+                } else {
+                    String word = FILLER[random.nextInt(FILLER.length)];
+                    text.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                }
+            }
+            text.append(random.nextInt(3) == 0 ? ".\n" : ",\n");
+        }
+        return text.toString();
+    }
+
+    private static String misspell(String name, Random random) {
+        char[] chars = name.toCharArray();
+        int i = 1 + random.nextInt(chars.length - 2);
+        char swap = chars[i];
+        chars[i] = chars[i + 1];
+        chars[i + 1] = swap;
+        return new String(chars);
+    }
+}
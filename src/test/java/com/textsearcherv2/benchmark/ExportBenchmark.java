@@ -0,0 +1,148 @@
+package com.textsearcherv2.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.BinaryResultReader;
+import com.textsearcherv2.util.BinaryResultWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading the results of a job, one million positions over 20 documents, in the binary export
+ * format, as the JSON of the job, and in the text form of {@link TextPosition#toString()}. The size of every form is
+ * printed at setup.
+ *
+ * <p>Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ExportBenchmark</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Map<String, List<TextPosition>>>> RESULTS_TYPE =
+            new TypeReference<>() {
+            };
+
+    @Param({"binary", "json", "text"})
+    private String format;
+
+    private Map<String, Map<String, List<TextPosition>>> results;
+    private byte[] written;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        results = new LinkedHashMap<>();
+        for (int document = 0; document < 20; document++) {
+            Map<String, List<TextPosition>> positionsByName = new LinkedHashMap<>();
+            for (int name = 0; name < 10; name++) {
+                List<TextPosition> positions = new ArrayList<>();
+                int line = 0;
+                for (int i = 0; i < 5000; i++) {
+                    line += random.nextInt(20);
+                    positions.add(new TextPosition(line, random.nextInt(80)));
+                }
+                positions.sort((p, q) -> p.getLineNumber() != q.getLineNumber()
+                        ? Integer.compare(p.getLineNumber(), q.getLineNumber())
+                        : Integer.compare(p.getColumnNumber(), q.getColumnNumber()));
+                positionsByName.put("Name" + name, positions);
+            }
+            results.put("http://corpus/" + document + ".txt", positionsByName);
+        }
+        written = write();
+        System.out.printf("%n%s: %d bytes for 1000000 positions%n", format, written.length);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        switch (format) {
+            case "binary" -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (BinaryResultWriter writer = new BinaryResultWriter(out)) {
+                    for (Map.Entry<String, Map<String, List<TextPosition>>> document : results.entrySet()) {
+                        writer.writeDocument(document.getKey(), document.getValue());
+                    }
+                }
+                return out.toByteArray();
+            }
+            case "json" -> {
+                return OBJECT_MAPPER.writeValueAsBytes(results);
+            }
+            default -> {
+                StringBuilder text = new StringBuilder();
+                results.forEach((url, positionsByName) -> positionsByName.forEach((name, positions) -> {
+                    text.append(url).append(' ').append(name).append(" -->");
+                    positions.forEach(position -> text.append(' ').append(position));
+                    text.append('\n');
+                }));
+                return text.toString().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        int positions = 0;
+        switch (format) {
+            case "binary" -> {
+                try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(written))) {
+                    while (reader.next()) {
+                        for (List<TextPosition> namePositions : reader.getPositionsByName().values()) {
+                            positions += namePositions.size();
+                        }
+                    }
+                }
+            }
+            case "json" -> {
+                for (Map<String, List<TextPosition>> document : OBJECT_MAPPER.readValue(written, RESULTS_TYPE).values()) {
+                    for (List<TextPosition> namePositions : document.values()) {
+                        positions += namePositions.size();
+                    }
+                }
+            }
+            default -> {
+                for (String line : new String(written, StandardCharsets.UTF_8).split("\n")) {
+                    positions += parseLine(line).size();
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Parses a line of the text form, "url name --> [lineOffset=1, charOffset=2] ...".
+     */
+    private static List<TextPosition> parseLine(String line) {
+        List<TextPosition> positions = new ArrayList<>();
+        int at = line.indexOf("-->");
+        while ((at = line.indexOf("[lineOffset=", at)) >= 0) {
+            int comma = line.indexOf(", charOffset=", at);
+            int end = line.indexOf(']', comma);
+            positions.add(new TextPosition(Integer.parseInt(line, at + 12, comma, 10),
+                    Integer.parseInt(line, comma + 13, end, 10)));
+            at = end;
+        }
+        return positions;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
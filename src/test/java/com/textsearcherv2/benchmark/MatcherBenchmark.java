@@ -0,0 +1,58 @@
+package com.textsearcherv2.benchmark;
+
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.service.MatcherService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of exact and fuzzy matching of one 1000 line chunk, the unit of work of a matcher
+ * thread.
+ *
+ * <p>Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MatcherBenchmark</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MatcherBenchmark {
+
+    @Param({"EXACT", "FUZZY"})
+    private MatchMode mode;
+
+    @Param({"1", "2"})
+    private int maxEdits;
+
+    private MatcherService matcherService;
+    private TextChunk chunk;
+    private SearchOptions options;
+
+    @Setup
+    public void setUp() {
+        matcherService = new MatcherService(null);
+        chunk = new TextChunk(0, 0, BenchmarkCorpus.generate(1000, 40, 42));
+        options = new SearchOptions();
+        options.setMatchMode(mode);
+        options.setMaxEdits(maxEdits);
+    }
+
+    @Benchmark
+    public Map<String, List<TextPosition>> matchChunk() {
+        return matcherService.matchChunk(chunk, options);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,53 @@
+package com.textsearcherv2.benchmark;
+
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.service.MatcherService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares exact matching of one 1000 line chunk without a prefilter (indexOf per line per name), behind the
+ * scalar prefilter and behind the Vector API prefilter, on a corpus with dense and with sparse names.
+ *
+ * <p>Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PrefilterBenchmark</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PrefilterBenchmark {
+
+    @Param({"off", "scalar", "vector"})
+    private String prefilter;
+
+    @Param({"40", "1000"})
+    private int nameEveryWords;
+
+    private MatcherService matcherService;
+    private TextChunk chunk;
+
+    @Setup
+    public void setUp() {
+        matcherService = new MatcherService(null);
+        matcherService.setPrefilterMode(prefilter);
+        chunk = new TextChunk(0, 0, BenchmarkCorpus.generate(1000, nameEveryWords, 42));
+    }
+
+    @Benchmark
+    public Map<String, List<TextPosition>> matchChunk() {
+        return matcherService.matchChunk(chunk);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PrefilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
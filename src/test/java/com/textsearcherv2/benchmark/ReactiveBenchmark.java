@@ -0,0 +1,139 @@
+package com.textsearcherv2.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.TextSearcherV2Application;
+import com.textsearcherv2.loadtest.CorpusServer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the job endpoints with the reactive ones under many concurrent searches of slow documents: the time for
+ * a burst of searches to complete, and the peak number of live threads it took. The documents are served with a
+ * latency and a bandwidth limit, so the searches mostly wait on the network, where the reactive pipeline holds no
+ * thread.
+ *
+ * <p>Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ReactiveBenchmark</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ReactiveBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({"jobs", "reactive"})
+    private String endpoint;
+
+    @Param({"1", "64"})
+    private int concurrency;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private ConfigurableApplicationContext context;
+    private CorpusServer corpusServer;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        corpusServer = new CorpusServer(CorpusServer.generate(64, 256 * 1024, 40), 50, 4L * 1024 * 1024);
+        context = SpringApplication.run(TextSearcherV2Application.class, "--server.port=0",
+                "--textsearcher.checkpoint.dir=", "--textsearcher.chunk-cache.max-bytes=0",
+                "--textsearcher.admission.max-queued-jobs=1024", "--textsearcher.admission.max-jobs-per-client=1024");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1";
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.println("Peak live threads: " + threads.getPeakThreadCount());
+        context.close();
+        corpusServer.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeakThreads() {
+        threads.resetPeakThreadCount();
+    }
+
+    @Benchmark
+    public long searchBurst() {
+        CompletableFuture<?>[] searches = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            String body = "[\"" + corpusServer.url(i) + "\"]";
+            searches[i] = "reactive".equals(endpoint) ? summarize(body) : runJob(body);
+        }
+        CompletableFuture.allOf(searches).join();
+        return threads.getPeakThreadCount();
+    }
+
+    private CompletableFuture<JsonNode> summarize(String body) {
+        return post("/reactive/summary", body).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("The search failed with HTTP " + response.statusCode());
+            }
+            return read(response.body());
+        });
+    }
+
+    private CompletableFuture<JsonNode> runJob(String body) {
+        return post("/process-url", body).thenCompose(response -> {
+            if (response.statusCode() != 202) {
+                throw new IllegalStateException("Submitting failed with HTTP " + response.statusCode());
+            }
+            return poll(read(response.body()).get("jobId").asText());
+        });
+    }
+
+    private CompletableFuture<JsonNode> poll(String jobId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/jobs/" + jobId)).build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenCompose(response -> {
+            JsonNode job = read(response.body());
+            String status = job.get("status").asText();
+            if ("COMPLETED".equals(status)) {
+                return CompletableFuture.completedFuture(job);
+            }
+            if ("FAILED".equals(status)) {
+                throw new IllegalStateException("The job failed: " + job.get("error"));
+            }
+            return CompletableFuture.supplyAsync(() -> jobId, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS))
+                    .thenCompose(this::poll);
+        });
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(String path, String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode read(String json) {
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable response: " + json, e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReactiveBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.textsearcherv2.benchmark;
+
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.service.ContentProcessorService;
+import com.textsearcherv2.service.MatcherService;
+import com.textsearcherv2.util.FairChunkScheduler;
+import com.textsearcherv2.util.JobTrace;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.textsearcherv2.controller.ControllerConstants.CORES;
+
+/**
+ * Measures how long a small job of 16 chunks takes when it is submitted right behind a large job that has 4096
+ * chunks queued, as a large scan of many documents has, with the matcher threads in one FIFO pool and with the fair
+ * chunk scheduler.
+ *
+ * <p>Run: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SchedulerBenchmark</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SchedulerBenchmark {
+    private static final int LARGE_JOB_CHUNKS = 4096;
+    private static final int SMALL_JOB_CHUNKS = 16;
+
+    @Param({"fifo", "fair"})
+    private String scheduler;
+
+    private final TextChunk chunk = new TextChunk(0, 0, BenchmarkCorpus.generate(1000, 40, 42));
+    private final SearchOptions options = SearchOptions.defaults();
+    private ExecutorService executor;
+    private ContentProcessorService contentProcessorService;
+    private List<CompletableFuture<Map<String, List<TextPosition>>>> largeJob;
+
+    @Setup(Level.Trial)
+    public void start() {
+        executor = "fair".equals(scheduler) ? new FairChunkScheduler(CORES, "matcher")
+                : Executors.newFixedThreadPool(CORES);
+        contentProcessorService = new ContentProcessorService(new MatcherService(null), executor, null, null, null);
+        contentProcessorService.startJob("large", JobPriority.NORMAL);
+        contentProcessorService.startJob("small", JobPriority.NORMAL);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Setup(Level.Invocation)
+    public void queueLargeJob() {
+        largeJob = submit("large", LARGE_JOB_CHUNKS);
+    }
+
+    @TearDown(Level.Invocation)
+    public void drainLargeJob() {
+        CompletableFuture.allOf(largeJob.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Benchmark
+    public Object smallJobLatency() {
+        List<CompletableFuture<Map<String, List<TextPosition>>>> smallJob = submit("small", SMALL_JOB_CHUNKS);
+        return CompletableFuture.allOf(smallJob.toArray(new CompletableFuture[0])).join();
+    }
+
+    private List<CompletableFuture<Map<String, List<TextPosition>>>> submit(String jobId, int chunks) {
+        List<CompletableFuture<Map<String, List<TextPosition>>>> futures = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            futures.add(contentProcessorService.matchChunk(jobId, chunk, options, JobTrace.NONE, null));
+        }
+        return futures;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SchedulerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+package com.textsearcherv2.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the application: the time from launching a new JVM to the result of its first job,
+ * which covers the JVM, the Spring context, the first fetch and the first match. Compares the Spring Boot fat jar
+ * as the Dockerfile used to run it, the unpacked jar of the {@code appcds} profile, and the same jar with its class
+ * data sharing archive.
+ *
+ * <p>Build the jars first, then run: mvn -Pappcds package -DskipTests &amp;&amp;
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=StartupBenchmark</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+    private static final Path TARGET = Paths.get("target").toAbsolutePath();
+    private static final Path FAT_JAR = TARGET.resolve("TextSearcherV2-0.0.1-SNAPSHOT.jar");
+    private static final Path CDS_DIRECTORY = TARGET.resolve("cds");
+    private static final Path CDS_JAR = CDS_DIRECTORY.resolve("TextSearcherV2-0.0.1-SNAPSHOT-cds.jar");
+    private static final Path CDS_ARCHIVE = CDS_DIRECTORY.resolve("application.jsa");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({"fatjar", "unpacked", "appcds"})
+    private String launch;
+
+    @Param({"EXACT", "FUZZY"})
+    private String mode;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private HttpServer corpusServer;
+    private String corpusUrl;
+    private Process application;
+
+    @Setup(Level.Trial)
+    public void startCorpusServer() throws IOException {
+        for (Path required : List.of(FAT_JAR, CDS_JAR, CDS_ARCHIVE)) {
+            if (!Files.exists(required)) {
+                throw new IllegalStateException(required + " is missing, build it with: mvn -Pappcds package");
+            }
+        }
+        byte[] corpus = BenchmarkCorpus.generate(1000, 40, 42).getBytes(StandardCharsets.UTF_8);
+        corpusServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        corpusServer.createContext("/corpus.txt", exchange -> {
+            exchange.sendResponseHeaders(200, corpus.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(corpus);
+            }
+        });
+        corpusServer.start();
+        corpusUrl = "http://localhost:" + corpusServer.getAddress().getPort() + "/corpus.txt";
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCorpusServer() {
+        corpusServer.stop(0);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopApplication() throws InterruptedException {
+        if (application != null) {
+            application.destroyForcibly().waitFor();
+            application = null;
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstMatch() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        application = launch(port);
+        String base = "http://localhost:" + port + "/v1";
+        String jobId = submit(base).get("jobId").asText();
+        while (true) {
+            JsonNode job = get(base + "/jobs/" + jobId);
+            String status = job.get("status").asText();
+            if ("COMPLETED".equals(status)) {
+                return job.get("resultsByDocument").get(corpusUrl).size();
+            }
+            if ("FAILED".equals(status)) {
+                throw new IllegalStateException("The first job failed: " + job);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private Process launch(int port) throws IOException {
+        List<String> command = new ArrayList<>(List.of("java", "--add-modules", "jdk.incubator.vector"));
+        switch (launch) {
+            case "fatjar" -> command.addAll(List.of("-jar", FAT_JAR.toString()));
+            case "unpacked" -> command.addAll(List.of("-jar", CDS_JAR.toString()));
+            default -> command.addAll(List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-jar", CDS_JAR.toString()));
+        }
+        command.add("--server.port=" + port);
+        command.add("--textsearcher.checkpoint.dir=");
+        return new ProcessBuilder(command)
+                .directory(CDS_DIRECTORY.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    /**
+     * Submits the corpus as soon as the application accepts connections.
+     */
+    private JsonNode submit(String base) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/process-url?mode=" + mode))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(List.of(corpusUrl))))
+                .build();
+        while (true) {
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 202) {
+                    throw new IllegalStateException("Submitting failed with HTTP " + response.statusCode());
+                }
+                return OBJECT_MAPPER.readTree(response.body());
+            } catch (ConnectException e) {
+                if (!application.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + application.exitValue());
+                }
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private JsonNode get(String url) throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StartupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
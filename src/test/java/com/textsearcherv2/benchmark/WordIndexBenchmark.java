@@ -0,0 +1,70 @@
+package com.textsearcherv2.benchmark;
+
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.service.AggregatorService;
+import com.textsearcherv2.util.WordIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares indexing every word of a 20000 line text with the former regex scan (a {@code \b\w+\b} matcher per line
+ * and a position object per word), with the tokenizer of {@link WordIndex} on one thread, and with the parallel
+ * chunks of {@link AggregatorService#indexContent(String)}.
+ *
+ * <p>Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WordIndexBenchmark</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordIndexBenchmark {
+    private static final Pattern WORD_PATTERN = Pattern.compile("\\b\\w+\\b");
+
+    private final AggregatorService aggregatorService = new AggregatorService();
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = BenchmarkCorpus.generate(20_000, 40, 42);
+    }
+
+    @Benchmark
+    public Map<String, List<TextPosition>> regex() {
+        Map<String, List<TextPosition>> matches = new HashMap<>();
+        String[] lines = content.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            Matcher wordMatcher = WORD_PATTERN.matcher(lines[i]);
+            while (wordMatcher.find()) {
+                matches.computeIfAbsent(wordMatcher.group(), k -> new ArrayList<>())
+                        .add(new TextPosition(i, wordMatcher.start()));
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public WordIndex tokenizer() {
+        return WordIndex.build(content, 0, content.length());
+    }
+
+    @Benchmark
+    public WordIndex parallelChunks() {
+        return aggregatorService.indexContent(content).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WordIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
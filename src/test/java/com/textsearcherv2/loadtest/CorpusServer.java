@@ -0,0 +1,141 @@
+package com.textsearcherv2.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.benchmark.BenchmarkCorpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the documents of a load test from memory over HTTP, as {@code /corpus/<index>.txt}.
+ *
+ * <p>
+ * The documents are generated big.txt-like prose, each from its own seed so they share no chunks, or copies of a
+ * given corpus. Every response can be delayed before its headers, to stand in for a remote server, and throttled
+ * to a bandwidth per connection, to stand in for a slow link. Requests are served concurrently.
+ * </p>
+ */
+public final class CorpusServer implements Closeable {
+    private static final int WRITE_SLICE_BYTES = 64 * 1024;
+
+    private final byte[][] documents;
+    private final long latencyMillis;
+    private final long bytesPerSecond;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "corpus-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts a server on a free local port.
+     *
+     * @param documents      the documents, served under their index
+     * @param latencyMillis  the delay before the headers of every response
+     * @param bytesPerSecond the bandwidth of every response, 0 for unthrottled
+     * @throws IOException if the server cannot bind
+     */
+    public CorpusServer(byte[][] documents, long latencyMillis, long bytesPerSecond) throws IOException {
+        this.documents = documents;
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/corpus/", this::serve);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Generates documents of about the given size.
+     *
+     * @param count          the number of documents
+     * @param bytes          the approximate size of every document
+     * @param nameEveryWords on average one word in this many is a dictionary name
+     * @return the documents
+     */
+    public static byte[][] generate(int count, int bytes, int nameEveryWords) {
+        byte[][] documents = new byte[count][];
+        // generated lines average about 60 bytes
+        int lines = Math.max(1, bytes / 60);
+        for (int i = 0; i < count; i++) {
+            documents[i] = BenchmarkCorpus.generate(lines, nameEveryWords, i).getBytes(StandardCharsets.UTF_8);
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the URL of a document.
+     *
+     * @param index the index of the document, wrapped around the number of documents
+     * @return the URL
+     */
+    public String url(int index) {
+        return "http://localhost:" + server.getAddress().getPort() + "/corpus/" + (index % documents.length) + ".txt";
+    }
+
+    /**
+     * Returns the size of a document.
+     *
+     * @param index the index of the document, wrapped around the number of documents
+     * @return the size in bytes
+     */
+    public int size(int index) {
+        return documents[index % documents.length].length;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            int index;
+            try {
+                index = Integer.parseInt(path.substring("/corpus/".length(), path.length() - ".txt".length()));
+            } catch (RuntimeException e) {
+                index = -1;
+            }
+            if (index < 0 || index >= documents.length) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            sleep(latencyMillis);
+            byte[] document = documents[index];
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, document.length);
+            OutputStream body = exchange.getResponseBody();
+            long started = System.nanoTime();
+            for (int written = 0; written < document.length; ) {
+                int slice = Math.min(WRITE_SLICE_BYTES, document.length - written);
+                body.write(document, written, slice);
+                written += slice;
+                if (bytesPerSecond > 0) {
+                    long due = TimeUnit.SECONDS.toNanos(written) / bytesPerSecond;
+                    sleep(TimeUnit.NANOSECONDS.toMillis(due - (System.nanoTime() - started)));
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.textsearcherv2.loadtest;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The garbage collections and heap use of the application over the measured part of a load test: taken from the
+ * management beans when the application runs in the load test JVM, and from its unified GC log when it runs in a
+ * JVM of its own.
+ *
+ * @param collections      the number of collections, pauses only when read from a GC log
+ * @param collectionMillis the time spent collecting, pause time only when read from a GC log
+ * @param peakHeapBytes    the peak heap use, summed over the heap pools, or the largest heap before a pause
+ */
+public record HeapGcStats(long collections, long collectionMillis, long peakHeapBytes) {
+    // [1.234s][info][gc] GC(7) Pause Young (Normal) (G1 Evacuation Pause) 52M->12M(256M) 3.141ms
+    private static final Pattern PAUSE = Pattern.compile("GC\\(\\d+\\) Pause .*? (\\d+)([KMG])->\\d+[KMG]\\(\\d+[KMG]\\) ([\\d.]+)ms");
+
+    /**
+     * Resets the peak use of the heap pools of this JVM and returns its collections so far.
+     *
+     * @return the collections and collection time so far, with no peak
+     */
+    public static HeapGcStats startInProcess() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        long collections = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new HeapGcStats(collections, millis, 0);
+    }
+
+    /**
+     * Returns the collections of this JVM since the given start, and the peak heap use since then.
+     *
+     * @param start the stats returned by {@link #startInProcess()}
+     * @return the stats of the measured part
+     */
+    public static HeapGcStats sinceInProcess(HeapGcStats start) {
+        HeapGcStats now = startInProcess();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return new HeapGcStats(now.collections - start.collections, now.collectionMillis - start.collectionMillis,
+                peak);
+    }
+
+    /**
+     * Reads the pauses logged by {@code -Xlog:gc} after the given line.
+     *
+     * @param gcLog     the GC log
+     * @param firstLine the number of lines written before the measured part
+     * @return the stats of the measured part
+     * @throws IOException if the log cannot be read
+     */
+    public static HeapGcStats fromGcLog(Path gcLog, int firstLine) throws IOException {
+        List<String> lines = Files.readAllLines(gcLog, StandardCharsets.UTF_8);
+        long pauses = 0;
+        double millis = 0;
+        long peak = 0;
+        for (String line : lines.subList(Math.min(firstLine, lines.size()), lines.size())) {
+            Matcher matcher = PAUSE.matcher(line);
+            if (matcher.find()) {
+                pauses++;
+                millis += Double.parseDouble(matcher.group(3));
+                peak = Math.max(peak, bytes(Long.parseLong(matcher.group(1)), matcher.group(2).charAt(0)));
+            }
+        }
+        return new HeapGcStats(pauses, Math.round(millis), peak);
+    }
+
+    /**
+     * Returns the number of lines of a GC log, where the measured part starts.
+     *
+     * @param gcLog the GC log
+     * @return the number of lines, 0 if the log does not exist yet
+     * @throws IOException if the log cannot be read
+     */
+    public static int lineCount(Path gcLog) throws IOException {
+        return Files.exists(gcLog) ? Files.readAllLines(gcLog, StandardCharsets.UTF_8).size() : 0;
+    }
+
+    private static long bytes(long value, char unit) {
+        switch (unit) {
+            case 'G':
+                return value << 30;
+            case 'M':
+                return value << 20;
+            default:
+                return value << 10;
+        }
+    }
+}
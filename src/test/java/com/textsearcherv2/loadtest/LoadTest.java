@@ -0,0 +1,363 @@
+package com.textsearcherv2.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.textsearcherv2.TextSearcherV2Application;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@code POST /v1/process-url} with concurrent jobs over documents served by a {@link CorpusServer}, and
+ * reports throughput, job latency and the heap and garbage collections of the application.
+ *
+ * <p>
+ * The application under test is started in this JVM by default, whose heap and collections then include the
+ * corpus server and the driver. With {@code --jar} it is launched from a jar in a JVM of its own, with a GC log
+ * the heap and pauses are read from, so two builds can be compared head to head.
+ * With {@code --target} an application already running is driven, and heap and GC are not reported. The chunk
+ * match cache of a started application is disabled unless {@code --chunk-cache=true}, since the documents are
+ * reused across jobs and the cache would otherwise serve every job after the first one.
+ * </p>
+ *
+ * <p>Run with: mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--concurrency=8 --jobs=200". Options, with
+ * their defaults:</p>
+ * <ul>
+ *     <li>{@code --concurrency=4} jobs in flight</li>
+ *     <li>{@code --jobs=50} measured jobs, after {@code --warmup-jobs=5}</li>
+ *     <li>{@code --urls-per-job=4} documents per job, out of {@code --documents=16}</li>
+ *     <li>{@code --document-mb=4} size of every generated document, or {@code --corpus=big.txt} to serve a file</li>
+ *     <li>{@code --name-every-words=40} density of names in generated documents</li>
+ *     <li>{@code --latency-ms=0} delay before every response, {@code --bandwidth-mbps=0} per response, 0 for
+ *     unlimited</li>
+ *     <li>{@code --mode=EXACT} and {@code --max-edits=1} of the jobs</li>
+ *     <li>{@code --jar=path}, {@code --jvm-args="-Xmx1g"}, or {@code --target=http://host:port}</li>
+ *     <li>{@code --label=name} and {@code --report=path.json} to keep the results for a later comparison</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long JOB_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Map<String, String> options;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final AtomicInteger nextDocument = new AtomicInteger();
+    private final AtomicInteger rejections = new AtomicInteger();
+    private final AtomicInteger failedDocuments = new AtomicInteger();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+        // executors of the application that its context does not shut down would keep the JVM alive
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int concurrency = intOption("concurrency", 4);
+        int jobs = intOption("jobs", 50);
+        int warmupJobs = intOption("warmup-jobs", 5);
+        byte[][] documents = options.containsKey("corpus")
+                ? new byte[][]{Files.readAllBytes(Paths.get(options.get("corpus")))}
+                : CorpusServer.generate(intOption("documents", 16), intOption("document-mb", 4) << 20,
+                intOption("name-every-words", 40));
+        long bytesPerSecond = (long) (Double.parseDouble(option("bandwidth-mbps", "0")) * 1_000_000 / 8);
+
+        try (CorpusServer corpus = new CorpusServer(documents, intOption("latency-ms", 0), bytesPerSecond);
+             Application application = startApplication()) {
+            System.out.printf("Driving %s with %d concurrent jobs of %d documents%n", application.baseUrl,
+                    concurrency, intOption("urls-per-job", 4));
+            runJobs(application, corpus, concurrency, warmupJobs);
+            rejections.set(0);
+            failedDocuments.set(0);
+
+            application.startMeasurement();
+            AtomicLong bytes = new AtomicLong();
+            AtomicLong matches = new AtomicLong();
+            long started = System.nanoTime();
+            List<Long> latencies = runJobs(application, corpus, concurrency, jobs, bytes, matches);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            HeapGcStats heapGc = application.endMeasurement();
+            report(jobs, seconds, bytes.get(), matches.get(), latencies, heapGc);
+        }
+    }
+
+    private void runJobs(Application application, CorpusServer corpus, int concurrency, int jobs) throws Exception {
+        runJobs(application, corpus, concurrency, jobs, new AtomicLong(), new AtomicLong());
+    }
+
+    /**
+     * Runs the jobs with the given number in flight, returning their latencies in microseconds.
+     */
+    private List<Long> runJobs(Application application, CorpusServer corpus, int concurrency, int jobs,
+                               AtomicLong bytes, AtomicLong matches) throws Exception {
+        ExecutorService drivers = Executors.newFixedThreadPool(concurrency);
+        AtomicInteger remaining = new AtomicInteger(jobs);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(drivers.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    List<String> urls = new ArrayList<>();
+                    for (int u = 0; u < intOption("urls-per-job", 4); u++) {
+                        int document = nextDocument.getAndIncrement();
+                        urls.add(corpus.url(document));
+                        bytes.addAndGet(corpus.size(document));
+                    }
+                    long started = System.nanoTime();
+                    matches.addAndGet(runJob(application.baseUrl, urls));
+                    latencies.add((System.nanoTime() - started) / 1000);
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            drivers.shutdownNow();
+        }
+        return latencies;
+    }
+
+    /**
+     * Submits a job, retrying while it is rejected by admission control, and polls it until it finishes.
+     *
+     * @return the number of matches of the job
+     */
+    private long runJob(String baseUrl, List<String> urls) throws IOException, InterruptedException {
+        String query = "mode=" + option("mode", "EXACT") + "&maxEdits=" + option("max-edits", "1");
+        HttpRequest submit = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/process-url?" + query))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", "loadtest-" + Thread.currentThread().getId())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(urls)))
+                .build();
+        HttpResponse<String> submitted = httpClient.send(submit, HttpResponse.BodyHandlers.ofString());
+        while (submitted.statusCode() == 429) {
+            rejections.incrementAndGet();
+            long retryAfter = submitted.headers().firstValueAsLong("Retry-After").orElse(1);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(retryAfter));
+            submitted = httpClient.send(submit, HttpResponse.BodyHandlers.ofString());
+        }
+        if (submitted.statusCode() != 202) {
+            throw new IllegalStateException("Submitting a job failed with " + submitted.statusCode() + ": "
+                    + submitted.body());
+        }
+        String jobId = OBJECT_MAPPER.readTree(submitted.body()).get("jobId").asText();
+        HttpRequest poll = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/jobs/" + jobId)).build();
+        long deadline = System.currentTimeMillis() + JOB_TIMEOUT_MILLIS;
+        long pollMillis = 2;
+        while (System.currentTimeMillis() < deadline) {
+            JsonNode job = OBJECT_MAPPER.readTree(httpClient.send(poll, HttpResponse.BodyHandlers.ofString()).body());
+            String status = job.path("status").asText();
+            if (status.equals("COMPLETED") || status.equals("FAILED")) {
+                failedDocuments.addAndGet(job.path("failedDocuments").size());
+                long matches = 0;
+                for (JsonNode positionsByName : job.path("resultsByDocument")) {
+                    for (JsonNode positions : positionsByName) {
+                        matches += positions.size();
+                    }
+                }
+                return matches;
+            }
+            Thread.sleep(pollMillis);
+            pollMillis = Math.min(50, pollMillis * 2);
+        }
+        throw new IllegalStateException("Job " + jobId + " did not finish within " + JOB_TIMEOUT_MILLIS + " ms");
+    }
+
+    private void report(int jobs, double seconds, long bytes, long matches, List<Long> latencies,
+                        HeapGcStats heapGc) throws IOException {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        ObjectNode report = OBJECT_MAPPER.createObjectNode();
+        report.put("label", option("label", "current"));
+        report.put("jobs", jobs);
+        report.put("seconds", seconds);
+        report.put("megabytes", bytes / 1e6);
+        report.put("megabytesPerSecond", bytes / 1e6 / seconds);
+        report.put("matches", matches);
+        report.put("matchesPerSecond", matches / seconds);
+        report.put("jobsPerSecond", jobs / seconds);
+        report.put("p50Millis", percentile(sorted, 50) / 1000.0);
+        report.put("p90Millis", percentile(sorted, 90) / 1000.0);
+        report.put("p99Millis", percentile(sorted, 99) / 1000.0);
+        report.put("maxMillis", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+        report.put("rejections", rejections.get());
+        report.put("failedDocuments", failedDocuments.get());
+        if (heapGc != null) {
+            report.put("gcCount", heapGc.collections());
+            report.put("gcMillis", heapGc.collectionMillis());
+            report.put("peakHeapMegabytes", heapGc.peakHeapBytes() / 1e6);
+        }
+        report.set("options", OBJECT_MAPPER.valueToTree(options));
+        System.out.printf("%n%-20s %s%n", "label", report.get("label").asText());
+        System.out.printf("%-20s %d in %.2f s (%.1f jobs/s)%n", "jobs", jobs, seconds, jobs / seconds);
+        System.out.printf("%-20s %.1f MB/s (%.1f MB)%n", "throughput", bytes / 1e6 / seconds, bytes / 1e6);
+        System.out.printf("%-20s %.0f matches/s (%d)%n", "matches", matches / seconds, matches);
+        System.out.printf("%-20s p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n", "latency",
+                report.get("p50Millis").asDouble(), report.get("p90Millis").asDouble(),
+                report.get("p99Millis").asDouble(), report.get("maxMillis").asDouble());
+        System.out.printf("%-20s %d rejections, %d failed documents%n", "errors", rejections.get(),
+                failedDocuments.get());
+        if (heapGc != null) {
+            System.out.printf("%-20s %d collections, %d ms, peak heap %.1f MB%n", "heap/gc", heapGc.collections(),
+                    heapGc.collectionMillis(), heapGc.peakHeapBytes() / 1e6);
+        } else {
+            System.out.printf("%-20s not measured for a --target%n", "heap/gc");
+        }
+        if (options.containsKey("report")) {
+            Path path = Paths.get(options.get("report"));
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+            System.out.println("Report written to " + path.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the value at the given percentile of sorted values, by the nearest rank.
+     */
+    static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private Application startApplication() throws Exception {
+        List<String> applicationArgs = new ArrayList<>();
+        if (!Boolean.parseBoolean(option("chunk-cache", "false"))) {
+            applicationArgs.add("--textsearcher.chunk-cache.max-bytes=0");
+        }
+        applicationArgs.add("--textsearcher.checkpoint.dir=");
+        if (options.containsKey("target")) {
+            return new Application(option("target", null), null, null, null);
+        }
+        if (options.containsKey("jar")) {
+            int port = freePort();
+            Path gcLog = Files.createTempFile("loadtest-gc-", ".log");
+            List<String> command = new ArrayList<>(List.of("java", "-Xlog:gc:file=" + gcLog));
+            command.addAll(Arrays.asList(option("jvm-args", "").split(" +")));
+            command.removeIf(String::isEmpty);
+            command.addAll(List.of("-jar", option("jar", null), "--server.port=" + port));
+            command.addAll(applicationArgs);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            Application application = new Application("http://localhost:" + port, null, process, gcLog);
+            application.awaitReady(httpClient);
+            return application;
+        }
+        applicationArgs.add("--server.port=0");
+        ConfigurableApplicationContext context = SpringApplication.run(TextSearcherV2Application.class,
+                applicationArgs.toArray(new String[0]));
+        String port = context.getEnvironment().getProperty("local.server.port");
+        return new Application("http://localhost:" + port, context, null, null);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(option(name, String.valueOf(defaultValue)));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * The application under test, started in this JVM, launched from a jar or already running.
+     */
+    private static final class Application implements AutoCloseable {
+        private final String baseUrl;
+        private final ConfigurableApplicationContext context;
+        private final Process process;
+        private final Path gcLog;
+        private HeapGcStats inProcessStart;
+        private int gcLogStart;
+
+        private Application(String baseUrl, ConfigurableApplicationContext context, Process process, Path gcLog) {
+            this.baseUrl = baseUrl;
+            this.context = context;
+            this.process = process;
+            this.gcLog = gcLog;
+        }
+
+        private void awaitReady(HttpClient httpClient) throws InterruptedException {
+            HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/admission")).build();
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+            while (System.currentTimeMillis() < deadline && process.isAlive()) {
+                try {
+                    httpClient.send(probe, HttpResponse.BodyHandlers.discarding());
+                    return;
+                } catch (IOException e) {
+                    // not listening yet
+                    Thread.sleep(100);
+                }
+            }
+            throw new IllegalStateException("The application at " + baseUrl + " did not start");
+        }
+
+        private void startMeasurement() throws IOException {
+            if (context != null) {
+                System.gc();
+                inProcessStart = HeapGcStats.startInProcess();
+            } else if (gcLog != null) {
+                gcLogStart = HeapGcStats.lineCount(gcLog);
+            }
+        }
+
+        private HeapGcStats endMeasurement() throws IOException {
+            if (context != null) {
+                return HeapGcStats.sinceInProcess(inProcessStart);
+            }
+            return gcLog == null ? null : HeapGcStats.fromGcLog(gcLog, gcLogStart);
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (context != null) {
+                context.close();
+            }
+            if (process != null) {
+                process.destroy();
+                process.waitFor(30, TimeUnit.SECONDS);
+                Files.deleteIfExists(gcLog);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.SearchJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the run slots, queue, quotas, lanes and byte budget of AdmissionControlService.
+ */
+class AdmissionControlServiceTest {
+    private final List<String> started = new ArrayList<>();
+
+    /**
+     * Tests that jobs beyond the run slots are queued and started by lane, then by arrival, as slots free up.
+     */
+    @Test
+    void testComplete_startsQueuedJobsByLane() {
+        //init
+        AdmissionControlService admission = new AdmissionControlService(1, 10, 10, 1024);
+        SearchJob running = job("running", "a", JobPriority.NORMAL);
+        admission.admit(running, () -> start(running));
+        SearchJob low = job("low", "b", JobPriority.LOW);
+        SearchJob normal = job("normal", "c", JobPriority.NORMAL);
+        SearchJob high1 = job("high1", "d", JobPriority.HIGH);
+        SearchJob high2 = job("high2", "e", JobPriority.HIGH);
+        for (SearchJob job : List.of(low, normal, high1, high2)) {
+            admission.admit(job, () -> start(job));
+        }
+
+        //when
+        assertEquals(JobStatus.QUEUED, low.getStatus());
+        for (String jobId : List.of("running", "high1", "high2", "normal")) {
+            admission.complete(find(jobId, running, low, normal, high1, high2));
+        }
+
+        //then
+        assertEquals(List.of("running", "high1", "high2", "normal", "low"), started);
+    }
+
+    /**
+     * Tests that the client id header names the client only on requests from a trusted proxy, and that any other
+     * request counts against its principal, or else its remote address, whatever id it sends.
+     */
+    @Test
+    void testClientOf_trustsHeaderFromProxiesOnly() {
+        //init
+        AdmissionControlService admission = new AdmissionControlService(1, 10, 2, 1024);
+        admission.setTrustedProxies(Set.of("10.0.0.1"));
+
+        //then
+        assertEquals("reports", admission.clientOf(null, "10.0.0.1", "reports"));
+        assertEquals("reports", admission.clientOf("proxy-user", "10.0.0.1", "reports"));
+        assertEquals("10.0.0.1", admission.clientOf(null, "10.0.0.1", " "));
+        assertEquals("192.168.1.7", admission.clientOf(null, "192.168.1.7", "reports"));
+        assertEquals("alice", admission.clientOf("alice", "192.168.1.7", "reports"));
+        assertEquals("alice", admission.clientOf("alice", "192.168.1.7", null));
+    }
+
+    /**
+     * Tests that a job is rejected once its client has reached its quota, while other clients are still admitted.
+     */
+    @Test
+    void testAdmit_rejectsClientOverQuota() {
+        //init
+        AdmissionControlService admission = new AdmissionControlService(1, 10, 2, 1024);
+        admission.admit(job("1", "batch", JobPriority.LOW), () -> started.add("1"));
+        admission.admit(job("2", "batch", JobPriority.LOW), () -> started.add("2"));
+
+        //when
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.admit(job("3", "batch", JobPriority.LOW), () -> started.add("3")));
+        admission.admit(job("4", "ui", JobPriority.HIGH), () -> started.add("4"));
+
+        //then
+        assertTrue(rejected.getRetryAfterSeconds() > 0);
+        assertEquals(3, admission.stats().getQueuedJobs().values().stream().mapToInt(Integer::intValue).sum()
+                + admission.stats().getRunningJobs());
+        assertEquals(1, admission.stats().getRejectedJobs());
+    }
+
+    /**
+     * Tests that a job is rejected when every run slot is taken and the queue is full.
+     */
+    @Test
+    void testAdmit_rejectsWhenQueueFull() {
+        //init
+        AdmissionControlService admission = new AdmissionControlService(1, 1, 10, 1024);
+        admission.admit(job("1", "a", JobPriority.NORMAL), () -> started.add("1"));
+        admission.admit(job("2", "b", JobPriority.NORMAL), () -> started.add("2"));
+
+        //when, then
+        assertThrows(AdmissionRejectedException.class,
+                () -> admission.admit(job("3", "c", JobPriority.HIGH), () -> started.add("3")));
+        assertEquals(List.of("1"), started);
+    }
+
+    /**
+     * Tests that a reader blocks once the in-flight byte budget is used up and resumes when bytes are released.
+     */
+    @Test
+    void testAcquireBytes_blocksUntilReleased() throws Exception {
+        //init
+        AdmissionControlService admission = new AdmissionControlService(1, 1, 1, 1000);
+        int first = admission.acquireBytes(800);
+
+        //when
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return admission.acquireBytes(5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        boolean blocked = !second.isDone();
+        admission.releaseBytes(first);
+
+        //then
+        assertTrue(blocked, "The second chunk should wait for the budget");
+        assertEquals(1000, second.get(5, TimeUnit.SECONDS), "A chunk larger than the budget takes the whole budget");
+        assertEquals(1000, admission.stats().getInFlightBytes());
+        assertFalse(admission.stats().getInFlightBytes() > admission.stats().getMaxInFlightBytes());
+    }
+
+    private void start(SearchJob job) {
+        job.setStatus(JobStatus.RUNNING);
+        started.add(job.getJobId());
+    }
+
+    private SearchJob find(String jobId, SearchJob... jobs) {
+        for (SearchJob job : jobs) {
+            if (job.getJobId().equals(jobId)) {
+                return job;
+            }
+        }
+        throw new IllegalArgumentException(jobId);
+    }
+
+    private SearchJob job(String jobId, String clientId, JobPriority priority) {
+        SearchJob job = new SearchJob(jobId, List.of("http://localhost/" + jobId));
+        job.setClientId(clientId);
+        job.setPriority(priority);
+        return job;
+    }
+}
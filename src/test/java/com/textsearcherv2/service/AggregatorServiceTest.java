@@ -1,12 +1,24 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.model.CoOccurrence;
+import com.textsearcherv2.model.DocumentPosition;
+import com.textsearcherv2.model.DocumentStatistics;
+import com.textsearcherv2.model.JobStatistics;
 import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.NameStatistics;
+import com.textsearcherv2.util.OffHeapPositionStore;
+import com.textsearcherv2.util.SpillingPartition;
+import com.textsearcherv2.util.WordIndex;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -58,4 +70,138 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
         //then
         assertTrue(resultMap.isEmpty(), "The result map should be empty.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that content longer than one chunk is indexed in parallel chunks whose lines follow each other, so that
+     * any word can be looked up with its positions across the whole content.
+     */
+    @Test
+    void testIndexContent_mergesChunksInOrder() {
+        //init
+        int lines = 2 * ServiceConstants.WORD_INDEX_CHUNK_CHARS / 20;
+        String content = "John met Paul line\n".repeat(lines) + "last Zoë";
+        AggregatorService aggregatorService = new AggregatorService();
+
+        //when
+        WordIndex index = aggregatorService.indexContent(content).join();
+
+        //then
+        assertEquals(6, index.termCount());
+        assertEquals(lines, index.frequency("Paul"));
+        List<TextPosition> positions = index.positions("Paul");
+        assertTrue(IntStream.range(0, lines).allMatch(line -> positions.get(line).equals(new TextPosition(line, 9))));
+        assertEquals(List.of(new TextPosition(lines, 5)), index.positions("Zoë"));
+    }
+
+    /**
+     * Tests that documents aggregated for different jobs land in separate partitions, that the merged view keeps
+     * the document of every position, and that releasing a job leaves nothing of it in the aggregator.
+     */
+    @Test
+    void testAggregateDocument_partitionsPerJobAndReleasesOnCompletion() {
+        //init
+        AggregatorService aggregatorService = new AggregatorService();
+        aggregatorService.openJob("job-1");
+        aggregatorService.openJob("job-2");
+
+        //when
+        aggregatorService.aggregateDocument("job-1", "http://a", Map.of("John", List.of(new TextPosition(0, 0)))).join();
+        aggregatorService.aggregateDocument("job-1", "http://b", Map.of("John", List.of(new TextPosition(3, 7)))).join();
+        aggregatorService.aggregateDocument("job-2", "http://a", Map.of("Mark", List.of(new TextPosition(1, 1)))).join();
+        Map<String, Map<String, List<TextPosition>>> job1 = aggregatorService.releaseJob("job-1");
+
+        //then
+        assertEquals(2, job1.size(), "Each document should have its own partition.");
+        assertEquals(List.of(new TextPosition(3, 7)), job1.get("http://b").get("John"));
+        assertTrue(job1.values().stream().noneMatch(results -> results.containsKey("Mark")),
+                "Results of another job must not leak into the job.");
+        assertEquals(1, aggregatorService.openPartitionCount(), "The released job should be dropped.");
+        Map<String, List<DocumentPosition>> merged = aggregatorService.mergeDocumentResults(job1);
+        assertEquals(2, merged.get("John").size());
+        assertTrue(merged.get("John").contains(new DocumentPosition("http://b", 3, 7)));
+    }
+
+    /**
+     * Tests that an off-heap aggregator keeps the documents of a job apart from other jobs and hands over a store
+     * with the same results as the heap partition.
+     */
+    @Test
+    void testAggregateDocument_offHeapStore(@TempDir Path spillDirectory) {
+        //init
+        AggregatorService aggregatorService = new AggregatorService(1 << 20, spillDirectory);
+        aggregatorService.openJob("job-1");
+        aggregatorService.openJob("job-2");
+
+        //when
+        aggregatorService.aggregateDocument("job-1", "http://a", Map.of("John", List.of(new TextPosition(0, 0)))).join();
+        aggregatorService.aggregateDocument("job-1", "http://a", Map.of("John", List.of(new TextPosition(2, 5)))).join();
+        aggregatorService.aggregateDocument("job-2", "http://a", Map.of("Mark", List.of(new TextPosition(1, 1)))).join();
+        OffHeapPositionStore store = aggregatorService.releaseJobStore("job-1");
+        Map<String, Map<String, List<TextPosition>>> job2 = aggregatorService.releaseJob("job-2");
+
+        //then
+        assertEquals(Map.of("http://a", Map.of("John", List.of(new TextPosition(0, 0), new TextPosition(2, 5)))),
+                store.asMap());
+        assertEquals(Map.of("http://a", Map.of("Mark", List.of(new TextPosition(1, 1)))), job2);
+        assertEquals(0, aggregatorService.openPartitionCount());
+        store.close();
+        assertEquals(0, aggregatorService.directBytesInUse());
+    }
+
+    /**
+     * Tests that the positions of a job beyond its heap budget spill, and that the job hands them over merged into a
+     * store, in order and without keeping anything behind.
+     */
+    @Test
+    void testReleaseJobStore_mergesSpilledPartition(@TempDir Path spillDirectory) {
+        //init
+        AggregatorService aggregatorService = new AggregatorService(100L * SpillingPartition.POSITION_HEAP_BYTES,
+                1 << 20, spillDirectory);
+        AggregatorService unbounded = new AggregatorService();
+        aggregatorService.openJob("job");
+        unbounded.openJob("job");
+
+        //when
+        for (int document = 0; document < 10; document++) {
+            Map<String, List<TextPosition>> positions = Map.of("John", IntStream.range(0, 60)
+                    .mapToObj(line -> new TextPosition(line, 3)).toList());
+            aggregatorService.aggregateDocument("job", "http://" + document, positions).join();
+            unbounded.aggregateDocument("job", "http://" + document, positions).join();
+        }
+        OffHeapPositionStore store = aggregatorService.releaseJobStore("job");
+
+        //then
+        assertEquals(unbounded.releaseJob("job"), store.asMap());
+        assertEquals(0, aggregatorService.openPartitionCount());
+        store.close();
+    }
+
+    /**
+     * Tests that statistics merged from chunks on parallel threads are kept per document and combined across
+     * documents, and are released with the job.
+     */
+    @Test
+    void testAggregateStatistics_perDocumentAndCombined() {
+        //init
+        AggregatorService aggregatorService = new AggregatorService();
+
+        //when
+        CompletableFuture.allOf(IntStream.range(0, 50).mapToObj(chunk -> CompletableFuture.runAsync(() -> {
+            NameStatistics statistics = aggregatorService.newStatistics();
+            statistics.addChunk(Map.of("John", List.of(new TextPosition(chunk, 0)),
+                    "Paul", List.of(new TextPosition(chunk, 10))));
+            aggregatorService.aggregateStatistics("job", chunk % 2 == 0 ? "http://a" : "http://b", statistics);
+        })).toArray(CompletableFuture[]::new)).join();
+        JobStatistics statistics = aggregatorService.releaseStatistics("job");
+
+        //then
+        assertEquals(Map.of("John", 50L, "Paul", 50L), statistics.getMatchesByName());
+        assertEquals(List.of(new CoOccurrence("John", "Paul", 50)), statistics.getCoOccurrences());
+        DocumentStatistics a = statistics.getDocuments().get(0);
+        assertEquals("http://a", a.getDocumentUrl());
+        assertEquals(25, a.getNames().get(0).getCount());
+        assertEquals(new TextPosition(48, 0), a.getNames().get(0).getLast());
+        assertEquals(List.of(new CoOccurrence("John", "Paul", 25)), a.getCoOccurrences());
+        assertTrue(aggregatorService.releaseStatistics("job").getDocuments().isEmpty());
+    }
+}
@@ -0,0 +1,169 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.util.CancellationToken;
+import com.textsearcherv2.util.FairChunkScheduler;
+import com.textsearcherv2.validation.UrlValidationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that cancelling a job, on request or at its deadline, stops its scan in flight and frees what it holds.
+ */
+class CancellationServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final String JOB_ID = "job";
+
+    @TempDir
+    Path tempDir;
+
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final FairChunkScheduler scheduler = new FairChunkScheduler(2, "test");
+    private final CancellationService cancellationService = new CancellationService();
+    private final AdmissionControlService admissionControlService = new AdmissionControlService(1, 1, 1, 64 * 1024);
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow.txt", exchange -> {
+            // streams part of the document, then stalls as a slow server would
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("John met Michael and Paul\n".repeat(2000).getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                stalled.countDown();
+                released.await();
+            } catch (InterruptedException | IOException e) {
+                // the client went away
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/slow.txt";
+    }
+
+    @AfterEach
+    void stop() {
+        released.countDown();
+        server.stop(0);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Tests that a job cancelled while its reader waits for the rest of a stalled body fails right away with the
+     * reason of the cancellation, and that its chunks give back every byte they reserved.
+     */
+    @Test
+    void testCancel_stopsScanWaitingForBody() throws InterruptedException {
+        //init
+        ContentProcessorService contentProcessorService =
+                new ContentProcessorService(new MatcherService(null), scheduler, null, null, null);
+        FileReaderService fileReaderService = fileReaderService(contentProcessorService);
+        CancellationToken token = cancellationService.open(JOB_ID);
+        token.onCancel(() -> contentProcessorService.cancelJob(JOB_ID));
+        contentProcessorService.startJob(JOB_ID, JobPriority.NORMAL);
+        CompletableFuture<Void> scan = fileReaderService.fetchContentAndProcess(JOB_ID, url, 50,
+                SearchOptions.defaults());
+        assertTrue(stalled.await(10, TimeUnit.SECONDS));
+
+        //when
+        long started = System.nanoTime();
+        assertTrue(cancellationService.cancel(JOB_ID, "Cancelled on request"));
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> scan.orTimeout(5, TimeUnit.SECONDS).join());
+
+        //then
+        assertInstanceOf(CancellationException.class, failure.getCause());
+        assertEquals("Cancelled on request", failure.getCause().getMessage());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, released.getCount(), "The server should still be stalled");
+        awaitReleasedBytes();
+        assertFalse(cancellationService.cancel(JOB_ID, "again"));
+    }
+
+    /**
+     * Tests that a job is cancelled once its deadline passes, and a job whose deadline already passed right away.
+     */
+    @Test
+    void testScheduleDeadline_cancelsJobAtDeadline() throws InterruptedException {
+        //init
+        CancellationToken token = cancellationService.open(JOB_ID);
+        CancellationToken late = cancellationService.open("late");
+        CountDownLatch cancelled = new CountDownLatch(2);
+        token.onCancel(cancelled::countDown);
+        late.onCancel(cancelled::countDown);
+
+        //when
+        cancellationService.scheduleDeadline(JOB_ID, Instant.now().plusMillis(50));
+        cancellationService.scheduleDeadline("late", Instant.now().minusSeconds(1));
+
+        //then
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(token.getReason().startsWith("Deadline of"));
+        assertTrue(late.isCancelled());
+    }
+
+    /**
+     * Tests that closing a job drops its token and its deadline, so a finished job is no longer cancelled.
+     */
+    @Test
+    void testClose_dropsTokenAndDeadline() throws InterruptedException {
+        //init
+        CancellationToken token = cancellationService.open(JOB_ID);
+        cancellationService.scheduleDeadline(JOB_ID, Instant.now().plusMillis(50));
+
+        //when
+        cancellationService.close(JOB_ID);
+        Thread.sleep(200);
+
+        //then
+        assertFalse(token.isCancelled());
+        assertEquals(CancellationToken.NONE, cancellationService.token(JOB_ID));
+        assertFalse(cancellationService.cancel(JOB_ID, "Cancelled on request"));
+    }
+
+    private FileReaderService fileReaderService(ContentProcessorService contentProcessorService) {
+        FileReaderService fileReaderService = new FileReaderService();
+        fileReaderService.setUrlValidationService(new UrlValidationService());
+        fileReaderService.setAggregatorService(new AggregatorService());
+        fileReaderService.setCheckpointService(new CheckpointService(tempDir.toString(), OBJECT_MAPPER));
+        fileReaderService.setAdmissionControlService(admissionControlService);
+        fileReaderService.setFollowService(new FollowService(10));
+        fileReaderService.setContentProcessorService(contentProcessorService);
+        fileReaderService.setCancellationService(cancellationService);
+        return fileReaderService;
+    }
+
+    private void awaitReleasedBytes() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admissionControlService.stats().getInFlightBytes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, admissionControlService.stats().getInFlightBytes());
+    }
+}
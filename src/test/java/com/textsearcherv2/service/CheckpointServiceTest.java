@@ -0,0 +1,192 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.JobCheckpoint;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.textsearcherv2.service.ScanFixture.lines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that an interrupted document scan resumes from its checkpoint with a Range request and gives the same
+ * results as an uninterrupted scan.
+ */
+class CheckpointServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final int LINES_PER_CHUNK = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<String> rangeHeaders = new ArrayList<>();
+    private HttpServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a resumed scan requests only the bytes after the last complete checkpoint record, ignores a torn
+     * record, and finds every position of the uninterrupted scan.
+     */
+    @Test
+    void testResume_rangeRequestFromLastCheckpoint() throws IOException {
+        //init
+        String url = startServer(lines(0, 500), true);
+        Map<String, List<TextPosition>> expected = scan(tempDir.resolve("full"), "full", url);
+        Path crashedLog = crashedLog(tempDir.resolve("full").resolve("full"), tempDir.resolve("resumed"), 3);
+        rangeHeaders.clear();
+
+        //when
+        Map<String, List<TextPosition>> resumed = scan(tempDir.resolve("resumed"), "job", url);
+
+        //then
+        assertEquals(1, rangeHeaders.size());
+        assertTrue(rangeHeaders.get(0).matches("bytes=[1-9][0-9]*-"), "Expected a Range request, got " + rangeHeaders);
+        assertEquals(expected, resumed);
+        assertFalse(Files.readString(crashedLog).contains("torn"), "The torn record should have been truncated");
+    }
+
+    /**
+     * Tests that a resumed scan skips the already matched bytes itself when the server ignores the Range request.
+     */
+    @Test
+    void testResume_serverIgnoringRange() throws IOException {
+        //init
+        String url = startServer(lines(0, 500), false);
+        Map<String, List<TextPosition>> expected = scan(tempDir.resolve("full"), "full", url);
+        crashedLog(tempDir.resolve("full").resolve("full"), tempDir.resolve("resumed"), 2);
+
+        //when
+        Map<String, List<TextPosition>> resumed = scan(tempDir.resolve("resumed"), "job", url);
+
+        //then
+        assertEquals(expected, resumed);
+    }
+
+    /**
+     * Tests that a gzip document is decoded while it streams in, and that its resumed scan refetches it without a
+     * Range request, since its offsets count decoded bytes, and skips the decoded bytes already matched.
+     */
+    @Test
+    void testResume_compressedDocumentSkipsDecodedBytes() throws IOException {
+        //init
+        String plainUrl = startServer(lines(0, 500), true);
+        Map<String, List<TextPosition>> expected = scan(tempDir.resolve("plain"), "plain", plainUrl);
+        String url = serve("/document.txt.gz", gzip(lines(0, 500)), true);
+        Map<String, List<TextPosition>> full = scan(tempDir.resolve("full"), "full", url);
+        crashedLog(tempDir.resolve("full").resolve("full"), tempDir.resolve("resumed"), 4);
+        rangeHeaders.clear();
+
+        //when
+        Map<String, List<TextPosition>> resumed = scan(tempDir.resolve("resumed"), "job", url);
+
+        //then
+        assertEquals(expected, full);
+        assertEquals(expected, resumed);
+        assertTrue(rangeHeaders.isEmpty(), "A compressed document should be refetched from its first byte");
+    }
+
+    /**
+     * Tests that started jobs are listed for resumption until they complete.
+     */
+    @Test
+    void testPendingJobs_untilCompleted() {
+        //init
+        CheckpointService checkpointService = new CheckpointService(tempDir.toString(), OBJECT_MAPPER);
+        JobCheckpoint checkpoint = new JobCheckpoint("job", List.of("http://localhost/a.txt"), 1000,
+                SearchOptions.defaults(), Instant.parse("2024-01-01T00:00:00Z"), "client", JobPriority.LOW);
+
+        //when
+        checkpointService.startJob(checkpoint);
+        List<JobCheckpoint> pending = checkpointService.pendingJobs();
+        checkpointService.completeJob("job");
+
+        //then
+        assertEquals(List.of(checkpoint), pending);
+        assertTrue(checkpointService.pendingJobs().isEmpty());
+    }
+
+    private Map<String, List<TextPosition>> scan(Path checkpointDir, String jobId, String url) {
+        return new ScanFixture(executor, checkpointDir.toString())
+                .scan(jobId, url, LINES_PER_CHUNK, SearchOptions.defaults());
+    }
+
+    /**
+     * Copies the first records of a complete document log into a new job, followed by a torn record, as a crash in
+     * the middle of the scan leaves it.
+     */
+    private Path crashedLog(Path completeJobDir, Path checkpointDir, int records) throws IOException {
+        Path completeLog;
+        try (Stream<Path> logs = Files.list(completeJobDir)) {
+            completeLog = logs.filter(path -> path.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        List<String> lines = Files.readAllLines(completeLog);
+        Path crashedLog = Files.createDirectories(checkpointDir.resolve("job")).resolve(completeLog.getFileName());
+        Files.writeString(crashedLog, String.join("\n", lines.subList(0, records)) + "\n{\"torn");
+        return crashedLog;
+    }
+
+    private byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private String startServer(String content, boolean honourRange) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+        return serve("/document.txt", content.getBytes(StandardCharsets.UTF_8), honourRange);
+    }
+
+    private String serve(String path, byte[] bytes, boolean honourRange) {
+        server.createContext(path, exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            if (range != null) {
+                rangeHeaders.add(range);
+                if (honourRange) {
+                    start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                    exchange.getResponseHeaders().add("Content-Range",
+                            "bytes " + start + "-" + (bytes.length - 1) + "/" + bytes.length);
+                }
+            }
+            exchange.sendResponseHeaders(start > 0 ? 206 : 200, bytes.length - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes, start, bytes.length - start);
+            }
+        });
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
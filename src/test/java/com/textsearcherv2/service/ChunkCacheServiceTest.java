@@ -0,0 +1,139 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.model.ChunkCacheStats;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that ChunkCacheService serves repeated chunks without matching them, shifted to their own first line,
+ * and respects its key and memory budget.
+ */
+class ChunkCacheServiceTest {
+    private static final String BOILERPLATE = "Licensed by John Smith\nMaintained by Michael and John";
+
+    private final MatcherService matcherService = new MatcherService(null);
+    private final AtomicInteger matched = new AtomicInteger();
+
+    /**
+     * Tests that a chunk repeated at another line is served from the cache with the positions a fresh match gives.
+     */
+    @Test
+    void testMatch_repeatedChunkIsShiftedToItsFirstLine() {
+        //init
+        ChunkCacheService cache = new ChunkCacheService(1024 * 1024);
+        SearchOptions options = SearchOptions.defaults();
+        cache.match(new TextChunk(0, 0, BOILERPLATE), options, 1, this::match);
+        TextChunk repeated = new TextChunk(7, 120, BOILERPLATE);
+
+        //when
+        Map<String, List<TextPosition>> positions = cache.match(repeated, options, 1, this::match);
+
+        //then
+        assertEquals(1, matched.get(), "The repeated chunk should not be matched again");
+        assertEquals(matcherService.matchChunk(repeated, options), positions);
+        assertEquals(List.of(new TextPosition(120, 12), new TextPosition(121, 26)), positions.get("John"));
+        ChunkCacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    /**
+     * Tests that another dictionary version or other match options do not share cached results.
+     */
+    @Test
+    void testMatch_keyedByDictionaryVersionAndOptions() {
+        //init
+        ChunkCacheService cache = new ChunkCacheService(1024 * 1024);
+        SearchOptions fuzzy = new SearchOptions();
+        fuzzy.setMatchMode(MatchMode.FUZZY);
+        fuzzy.setMaxEdits(1);
+        cache.match(new TextChunk(0, 0, BOILERPLATE), SearchOptions.defaults(), 1, this::match);
+
+        //when
+        cache.match(new TextChunk(0, 0, BOILERPLATE), SearchOptions.defaults(), 2, this::match);
+        cache.match(new TextChunk(0, 0, BOILERPLATE), fuzzy, 1, this::match);
+        cache.match(new TextChunk(0, 0, BOILERPLATE + " "), SearchOptions.defaults(), 1, this::match);
+
+        //then
+        assertEquals(4, matched.get());
+        assertEquals(0, cache.stats().getHits());
+    }
+
+    /**
+     * Tests that the cache evicts the least recently used chunks to stay within its memory budget.
+     */
+    @Test
+    void testMatch_evictsLeastRecentlyUsedBeyondBudget() {
+        //init
+        ChunkCacheService cache = new ChunkCacheService(1000);
+        SearchOptions options = SearchOptions.defaults();
+        for (int i = 0; i < 20; i++) {
+            cache.match(new TextChunk(i, 0, "Paul " + i), options, 1, this::match);
+        }
+
+        //when
+        ChunkCacheStats stats = cache.stats();
+        cache.match(new TextChunk(0, 0, "Paul 19"), options, 1, this::match);
+        cache.match(new TextChunk(0, 0, "Paul 0"), options, 1, this::match);
+
+        //then
+        assertTrue(stats.getBytes() <= 1000, "The cache should stay within its budget");
+        assertTrue(stats.getEvictions() > 0, "The oldest chunks should have been evicted");
+        assertEquals(20 - stats.getEvictions(), stats.getEntries());
+        assertEquals(1, cache.stats().getHits(), "Only the most recent chunk should still be cached");
+    }
+
+    /**
+     * Tests that a cache without budget matches every chunk.
+     */
+    @Test
+    void testMatch_disabledWithoutBudget() {
+        //init
+        ChunkCacheService cache = new ChunkCacheService(0);
+
+        //when
+        cache.match(new TextChunk(0, 0, BOILERPLATE), SearchOptions.defaults(), 1, this::match);
+        cache.match(new TextChunk(1, 5, BOILERPLATE), SearchOptions.defaults(), 1, this::match);
+
+        //then
+        assertEquals(2, matched.get());
+        assertEquals(0, cache.stats().getEntries());
+    }
+
+    /**
+     * Tests that a chunk matched asynchronously, e.g. on a worker node, is cached as well.
+     */
+    @Test
+    void testMatchAsync_cachesCompletedResult() {
+        //init
+        ChunkCacheService cache = new ChunkCacheService(1024 * 1024);
+        SearchOptions options = SearchOptions.defaults();
+        cache.matchAsync(new TextChunk(0, 0, BOILERPLATE), options, 1,
+                chunk -> CompletableFuture.supplyAsync(() -> match(chunk))).join();
+
+        //when
+        Map<String, List<TextPosition>> positions = cache.matchAsync(new TextChunk(1, 10, BOILERPLATE), options, 1,
+                chunk -> CompletableFuture.supplyAsync(() -> match(chunk))).join();
+
+        //then
+        assertEquals(1, matched.get());
+        assertEquals(List.of(new TextPosition(11, 14)), positions.get("Michael"));
+    }
+
+    private Map<String, List<TextPosition>> match(TextChunk chunk) {
+        matched.incrementAndGet();
+        return matcherService.matchChunk(chunk, SearchOptions.defaults());
+    }
+}
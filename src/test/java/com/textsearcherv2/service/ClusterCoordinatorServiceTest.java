@@ -0,0 +1,122 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.ChunkResult;
+import com.textsearcherv2.model.ChunkTask;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the re-dispatch and local fallback of ClusterCoordinatorService against worker stubs on localhost.
+ */
+class ClusterCoordinatorServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * Tests that a chunk failed by one worker is re-dispatched to the next worker, and that the result carries the
+     * first line of the chunk in its document.
+     */
+    @Test
+    void testDispatch_failingWorkerRedispatches() throws IOException {
+        //init
+        AtomicInteger failedCalls = new AtomicInteger();
+        String failing = startWorker(500, null, failedCalls);
+        ChunkResult answer = new ChunkResult(3, 0, Map.of("James", List.of(new TextPosition(1, 4))), null);
+        String healthy = startWorker(200, OBJECT_MAPPER.writeValueAsBytes(answer), new AtomicInteger());
+        ClusterCoordinatorService coordinator = coordinator(List.of(failing, healthy));
+
+        //when
+        ChunkResult result = coordinator.dispatch(new TextChunk(3, 2000, "line\nby James"), SearchOptions.defaults())
+                .join();
+
+        //then
+        assertEquals(1, failedCalls.get(), "The failing worker should have been tried once");
+        assertEquals(healthy, result.getWorker(), "The chunk should have been matched by the healthy worker");
+        assertEquals(2000, result.getFirstLine(), "The coordinator should restore the first line of the chunk");
+        assertEquals(List.of(new TextPosition(1, 4)), result.getPositionsByName().get("James"));
+    }
+
+    /**
+     * Tests that a chunk is matched locally when every worker fails.
+     */
+    @Test
+    void testDispatch_allWorkersFailMatchesLocally() {
+        //init
+        String failing = startWorker(503, null, new AtomicInteger());
+        ClusterCoordinatorService coordinator = coordinator(List.of(failing, "http://localhost:1"));
+
+        //when
+        ChunkResult result = coordinator.dispatch(new TextChunk(0, 10, "line\nby James"), SearchOptions.defaults())
+                .join();
+
+        //then
+        assertEquals(ClusterCoordinatorService.LOCAL_WORKER, result.getWorker());
+        assertEquals(10, result.getFirstLine());
+        assertEquals(List.of(new TextPosition(1, 3)), result.getPositionsByName().get("James"),
+                "Local results should use chunk relative line numbers like worker results");
+    }
+
+    /**
+     * Tests that the worker side matches the chunk it receives with line numbers relative to the chunk.
+     */
+    @Test
+    void testMatchLocally_chunkRelativeLines() {
+        //init
+        ClusterCoordinatorService coordinator = coordinator(List.of());
+        ChunkTask task = new ChunkTask(new TextChunk(5, 0, "Thomas\n\nThomas"), SearchOptions.defaults());
+
+        //when
+        ChunkResult result = coordinator.matchLocally(task, 0, "worker");
+
+        //then
+        assertEquals(5, result.getChunkIndex());
+        assertEquals(List.of(new TextPosition(0, 0), new TextPosition(2, 0)),
+                result.getPositionsByName().get("Thomas"));
+    }
+
+    private ClusterCoordinatorService coordinator(List<String> workers) {
+        return new ClusterCoordinatorService(workers, 5000, 60000, new MatcherService(null), OBJECT_MAPPER);
+    }
+
+    private String startWorker(int status, byte[] body, AtomicInteger calls) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v1/worker/chunks", exchange -> {
+                calls.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                byte[] response = body == null ? new byte[0] : body;
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            server.start();
+            servers.add(server);
+            return "http://localhost:" + server.getAddress().getPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.RegexTimeoutException;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.LineChunkReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static com.textsearcherv2.service.ServiceConstants.REGEX_LOOKAHEAD_CHARS;
+
+/**
+ * ContentProcessorServiceTest tests chunk-parallel matching in ContentProcessorService, in particular regex
+ * matches crossing chunk boundaries.
+ */
+class ContentProcessorServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ContentProcessorService contentProcessorService =
+            new ContentProcessorService(new MatcherService(null), executor, null, null, null);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that chunk-parallel regex matching finds exactly the matches of one sequential scan over the whole
+     * content, for patterns whose matches cross line and therefore chunk boundaries.
+     */
+    @Test
+    void testMatchContentInChunks_regexEqualsSequentialScan() {
+        Random random = new Random(11);
+        String[] patterns = {"a[ab\\n]*?b", "b\\s*a", "(a|\\n)+b", "Dr\\.\\s+[A-Z][a-z]+"};
+        for (int round = 0; round < 30; round++) {
+            //init
+            String content = randomContent(random, 200);
+            String regex = patterns[round % patterns.length];
+            SearchOptions options = new SearchOptions();
+            options.setMatchMode(MatchMode.REGEX);
+            options.setPattern(regex);
+
+            //when
+            Map<String, List<TextPosition>> chunked =
+                    contentProcessorService.matchContentInChunks(content, 1 + round % 3, options).join();
+
+            //then
+            assertEquals(sequentialScan(content, Pattern.compile(regex)), chunked, "pattern " + regex);
+        }
+    }
+
+    /**
+     * Tests that matches running further into the following chunks than the lookahead are found in full, not cut
+     * short or missed, and that matching realigns with the chunk results past them.
+     */
+    @Test
+    void testMatchContentInChunks_regexMatchesLongerThanLookahead() {
+        //init
+        String filler = "x".repeat(300);
+        StringBuilder content = new StringBuilder("Begin here");
+        for (int line = 0; line < 30; line++) {
+            content.append('\n').append(filler).append(line == 12 ? " End Begin" : "").append(line == 25 ? " End" : "");
+        }
+        content.append("\nshort Begin End tail");
+        String[] patterns = {"(?s)Begin.*?End", "(?s)Begin[^!]*", "Begin(?s:.*)(?<!tail)$", "x{250,}", "\\w+ End"};
+
+        for (String regex : patterns) {
+            SearchOptions options = new SearchOptions();
+            options.setMatchMode(MatchMode.REGEX);
+            options.setPattern(regex);
+
+            //when
+            Map<String, List<TextPosition>> chunked =
+                    contentProcessorService.matchContentInChunks(content.toString(), 2, options).join();
+
+            //then
+            assertEquals(sequentialScan(content.toString(), Pattern.compile(regex)), chunked, "pattern " + regex);
+        }
+        assertTrue(REGEX_LOOKAHEAD_CHARS < 12 * 301, "The first match must run past the lookahead");
+    }
+
+    /**
+     * Tests that a catastrophically backtracking pattern is aborted by the time budget instead of hanging a
+     * matcher thread.
+     */
+    @Test
+    void testMatchChunkRegex_backtrackingIsBounded() {
+        //init
+        MatcherService matcherService = new MatcherService(null);
+        TextChunk chunk = new TextChunk(0, 0, "a".repeat(28) + "!");
+
+        //then
+        assertThrows(RegexTimeoutException.class,
+                () -> matcherService.matchChunkRegex(chunk, Pattern.compile("(.*){1,32000}[bc]"), 0));
+    }
+
+    /**
+     * Tests that a chunk timing out fails the whole content with the timeout as cause.
+     */
+    @Test
+    void testMatchContentInChunks_timeoutFailsContent() {
+        //init
+        SearchOptions options = new SearchOptions();
+        options.setMatchMode(MatchMode.REGEX);
+        options.setPattern("(.*){1,32000}[bc]");
+
+        //when
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> contentProcessorService.matchContentInChunks("a".repeat(28), 10, options).join());
+
+        //then
+        assertInstanceOf(RegexTimeoutException.class, ex.getCause());
+    }
+
+    /**
+     * Tests that matching a long line cut into overlapping segments finds exactly the exact and fuzzy matches of the
+     * whole line, including names cut by segment boundaries, each once.
+     */
+    @Test
+    void testMatchChunk_segmentsEqualWholeLine() throws IOException {
+        MatcherService matcherService = contentProcessorService.getMatcherService();
+        Random random = new Random(5);
+        String[] words = {"John", "Jonh", "Michael", "Mary", "Jürgen", "and", "€", "x", "Johnson", ",", "Thomas"};
+        for (int round = 0; round < 20; round++) {
+            //init
+            StringBuilder line = new StringBuilder();
+            while (line.length() < 400) {
+                line.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : ", ");
+            }
+            SearchOptions options = new SearchOptions();
+            options.setMatchMode(round % 2 == 0 ? MatchMode.EXACT : MatchMode.FUZZY);
+            options.setMaxEdits(round % 2 == 0 ? 0 : 1);
+            byte[] bytes = ("first\n" + line + "\nlast").getBytes(StandardCharsets.UTF_8);
+
+            //when
+            Map<String, List<TextPosition>> segmented = new HashMap<>();
+            try (LineChunkReader reader = new LineChunkReader(new ByteArrayInputStream(bytes), 10, 0, 0, 0, false,
+                    8 + round, matcherService.getSegmentOverlap())) {
+                for (TextChunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                    matcherService.matchChunk(chunk, options).forEach((name, positions) ->
+                            segmented.computeIfAbsent(name, k -> new ArrayList<>()).addAll(positions));
+                }
+            }
+
+            //then
+            Map<String, List<TextPosition>> whole =
+                    matcherService.matchChunk(new TextChunk(0, 0, "first\n" + line + "\nlast"), options);
+            assertEquals(whole, segmented, "round " + round);
+        }
+    }
+
+    /**
+     * Tests that a query listing its own names finds those names only, including names outside the default
+     * dictionary, and finds the default names it lists where the default dictionary does.
+     */
+    @Test
+    void testMatchChunk_queryNames() {
+        //init
+        MatcherService matcherService = contentProcessorService.getMatcherService();
+        TextChunk chunk = new TextChunk(0, 0, "John met Paul\nthe robot Zorg met Jonh\nZorgg and Paul");
+        SearchOptions options = new SearchOptions();
+        options.setNames(List.of("Paul", "Zorg", "John"));
+        SearchOptions fuzzy = new SearchOptions();
+        fuzzy.setMatchMode(MatchMode.FUZZY);
+        fuzzy.setMaxEdits(1);
+        fuzzy.setNames(List.of("Zorg"));
+
+        //when
+        Map<String, List<TextPosition>> exact = matcherService.matchChunk(chunk, options);
+        Map<String, List<TextPosition>> defaults = matcherService.matchChunk(chunk, SearchOptions.defaults());
+
+        //then
+        assertEquals(Map.of("John", defaults.get("John"), "Paul", defaults.get("Paul"),
+                "Zorg", List.of(new TextPosition(1, 10), new TextPosition(2, 0))), exact);
+        assertEquals(Map.of("Zorg", List.of(new TextPosition(1, 10), new TextPosition(2, 0))),
+                matcherService.matchChunk(chunk, fuzzy));
+        assertEquals(matcherService.getDictionaryVersion(options),
+                matcherService.getDictionaryVersion(withNames(List.of("John", "Zorg", "Paul", "Paul"))));
+    }
+
+    private static SearchOptions withNames(List<String> names) {
+        SearchOptions options = new SearchOptions();
+        options.setNames(names);
+        return options;
+    }
+
+    private static String randomContent(Random random, int length) {
+        String alphabet = "aab b\n\nxDr. Smith";
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return content.toString().replace("\n\n", "\n x\n");
+    }
+
+    private static Map<String, List<TextPosition>> sequentialScan(String content, Pattern pattern) {
+        Map<String, List<TextPosition>> matches = new HashMap<>();
+        Matcher matcher = pattern.matcher(content);
+        while (matcher.find()) {
+            if (matcher.end() == matcher.start()) {
+                continue;
+            }
+            int lineStart = content.lastIndexOf('\n', matcher.start() - 1) + 1;
+            int line = (int) content.substring(0, matcher.start()).chars().filter(c -> c == '\n').count();
+            matches.computeIfAbsent(matcher.group(), k -> new ArrayList<>())
+                    .add(new TextPosition(line, matcher.start() - lineStart));
+        }
+        return matches;
+    }
+}
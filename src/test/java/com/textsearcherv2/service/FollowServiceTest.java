@@ -0,0 +1,143 @@
+package com.textsearcherv2.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.textsearcherv2.service.ScanFixture.lines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that follow scans of a growing document fetch and match only the appended lines, and give the results of a
+ * full scan of the document.
+ */
+class FollowServiceTest {
+    private static final int LINES_PER_CHUNK = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<String> rangeHeaders = new ArrayList<>();
+    private final FollowService followService = new FollowService(10);
+    private volatile byte[] document = new byte[0];
+    private HttpServer server;
+    private String url;
+    private int jobs;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/document.log", exchange -> {
+            byte[] bytes = document;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            if (range != null) {
+                rangeHeaders.add(range);
+                start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                if (start >= bytes.length) {
+                    exchange.getResponseHeaders().add("Content-Range", "bytes */" + bytes.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + start + "-" + (bytes.length - 1) + "/" + bytes.length);
+            }
+            exchange.sendResponseHeaders(start > 0 ? 206 : 200, bytes.length - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes, start, bytes.length - start);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/document.log";
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a follow scan after an append requests the bytes after the last complete line, and that its
+     * results, including the line that was incomplete before, equal those of a full scan.
+     */
+    @Test
+    void testFollow_appendedLinesOnly() {
+        //init
+        String written = lines(0, 120) + "Thomas met Mi";
+        String appended = written + "chael\n" + lines(120, 300);
+        document = written.getBytes(StandardCharsets.UTF_8);
+        scan(true);
+        rangeHeaders.clear();
+
+        //when
+        document = appended.getBytes(StandardCharsets.UTF_8);
+        Map<String, List<TextPosition>> followed = scan(true);
+        List<String> followRanges = new ArrayList<>(rangeHeaders);
+        Map<String, List<TextPosition>> full = scan(false);
+
+        //then
+        assertEquals(List.of("bytes=" + lines(0, 120).getBytes(StandardCharsets.UTF_8).length + "-"), followRanges);
+        assertEquals(full, followed);
+    }
+
+    /**
+     * Tests that a follow scan of an unchanged document keeps the results of the previous scan.
+     */
+    @Test
+    void testFollow_unchangedDocument() {
+        //init
+        document = lines(0, 200).getBytes(StandardCharsets.UTF_8);
+        Map<String, List<TextPosition>> first = scan(true);
+
+        //when
+        Map<String, List<TextPosition>> second = scan(true);
+
+        //then
+        assertEquals(first, second);
+        assertEquals(1, rangeHeaders.size());
+    }
+
+    /**
+     * Tests that a document found shorter than the point the last follow scan reached is scanned in full again.
+     */
+    @Test
+    void testFollow_truncatedDocumentRescanned() {
+        //init
+        document = lines(0, 300).getBytes(StandardCharsets.UTF_8);
+        scan(true);
+
+        //when
+        document = lines(500, 80).getBytes(StandardCharsets.UTF_8);
+        Map<String, List<TextPosition>> followed = scan(true);
+        Map<String, List<TextPosition>> full = scan(false);
+
+        //then
+        assertEquals(full, followed);
+    }
+
+    private Map<String, List<TextPosition>> scan(boolean follow) {
+        String jobId = "job" + jobs++;
+        SearchOptions options = SearchOptions.defaults();
+        options.setFollow(follow);
+        return new ScanFixture(executor, tempDir.toString()).followService(followService)
+                .scan(jobId, url, LINES_PER_CHUNK, options);
+    }
+}
@@ -1,7 +1,16 @@
 package com.textsearcherv2.service;
 
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.exception.JobNotFoundException;
+import com.textsearcherv2.model.JobPriority;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.util.CancellationToken;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -12,6 +21,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 
@@ -22,6 +33,24 @@ class ProcessingServiceTest {
     @Mock
     private FileReaderService fileReaderService;
 
+    @Mock
+    private AdmissionControlService admissionControlService;
+
+    @Mock
+    private CancellationService cancellationService;
+
+    @Mock
+    private AggregatorService aggregatorService;
+
+    @Mock
+    private CheckpointService checkpointService;
+
+    @Mock
+    private TracingService tracingService;
+
+    @Mock
+    private ContentProcessorService contentProcessorService;
+
     @InjectMocks
     private ProcessingService unit;
 
@@ -55,4 +84,88 @@ class ProcessingServiceTest {
 
         Mockito.verify(fileReaderService).getFutureListFromUrl(eq(fileURLs), eq(linesPerPart));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a URL listed twice in a job is scanned once, the URLs keeping their order, so that no document is
+     * reported twice nor shares its checkpoint log with a second scan of itself.
+     */
+    @Test
+    void testSubmit_deduplicatesUrlsInOrder() {
+        //init
+        Mockito.when(cancellationService.token(any())).thenReturn(CancellationToken.NONE);
+
+        //when
+        SearchJob job = unit.submit(List.of("http://b", "http://a", "http://b", "http://a"), 8);
+
+        //then
+        assertEquals(List.of("http://b", "http://a"), job.getUrls());
+        Mockito.verify(admissionControlService).admit(eq(job), any());
+    }
+
+    /**
+     * Tests that a job cancelled while it is being admitted is completed once admitted, withdrawn from the queue
+     * without freeing a run slot it never took.
+     */
+    @Test
+    void testSubmit_cancelledDuringAdmission() {
+        //init
+        CancellationToken token = new CancellationToken();
+        Mockito.when(cancellationService.token(any())).thenReturn(token);
+        Mockito.doAnswer(invocation -> token.cancel("Cancelled on request"))
+                .when(admissionControlService).admit(any(), any());
+        Mockito.when(admissionControlService.withdraw(any())).thenReturn(true);
+
+        //when
+        SearchJob job = unit.submit(List.of("http://a"), 8);
+
+        //then
+        assertEquals(JobStatus.CANCELLED, job.getStatus());
+        assertEquals("Cancelled on request", job.getCancellationReason());
+        Mockito.verify(admissionControlService).withdraw(job);
+        Mockito.verify(admissionControlService, Mockito.never()).complete(any());
+    }
+
+    /**
+     * Tests that the deadline of a job is scheduled before the job is admitted, and that a job rejected by the
+     * admission drops its token and deadline and is forgotten.
+     */
+    @Test
+    void testSubmit_rejectedJobDropsDeadline() {
+        //init
+        Mockito.when(cancellationService.token(any())).thenReturn(new CancellationToken());
+        Mockito.doThrow(new AdmissionRejectedException("The job queue is full", 5))
+                .when(admissionControlService).admit(any(), any());
+        SearchOptions options = new SearchOptions();
+        options.setTimeoutMillis(60_000);
+
+        //when
+        assertThrows(AdmissionRejectedException.class,
+                () -> unit.submit(List.of("http://a"), 8, options, "client", JobPriority.NORMAL));
+
+        //then
+        ArgumentCaptor<SearchJob> job = ArgumentCaptor.forClass(SearchJob.class);
+        InOrder inOrder = Mockito.inOrder(cancellationService, admissionControlService);
+        inOrder.verify(cancellationService).scheduleDeadline(any(), any());
+        inOrder.verify(admissionControlService).admit(job.capture(), any());
+        inOrder.verify(cancellationService).close(job.getValue().getJobId());
+        assertThrows(JobNotFoundException.class, () -> unit.getJob(job.getValue().getJobId()));
+    }
+
+    /**
+     * Tests that a query listing a name with a line break or longer than the limit is rejected before any job is
+     * created, since names are matched within a line.
+     */
+    @Test
+    void testSubmit_rejectsNamesWithLineBreaksOrTooLong() {
+        for (String name : List.of("John\nSmith", "John\r", "J".repeat(SearchOptions.MAX_NAME_LENGTH + 1))) {
+            //init
+            SearchOptions options = new SearchOptions();
+            options.setNames(List.of("Paul", name));
+
+            //then
+            assertThrows(IllegalArgumentException.class,
+                    () -> unit.submit(List.of("http://a"), 8, options, "client", JobPriority.NORMAL));
+        }
+        Mockito.verifyNoInteractions(admissionControlService);
+    }
+}
@@ -0,0 +1,142 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.RecordingStateException;
+import com.textsearcherv2.model.RecordingStatus;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.JobTrace;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that ProfilingService records the events of the search pipeline and dumps them to disk.
+ */
+class ProfilingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a recording started while a chunk is matched and a document aggregated holds an event of each, with
+     * the size, match count and executor wait of the chunk, in the file it is dumped to once stopped.
+     */
+    @Test
+    void testStop_dumpsPipelineEvents() throws IOException {
+        //init
+        ProfilingService profilingService = new ProfilingService(tempDir, 60, 16 * 1024 * 1024);
+        ContentProcessorService contentProcessorService =
+                new ContentProcessorService(new MatcherService(null), executor, null, null, null);
+        AggregatorService aggregatorService = new AggregatorService();
+        aggregatorService.openJob("job");
+        String text = "John met Michael\nand Paul met John for 5 €, said Müller \uD835\uDC00\n";
+        profilingService.start("default");
+
+        //when
+        Map<String, List<TextPosition>> positions = contentProcessorService.matchChunk("job",
+                new TextChunk(0, 0, text), SearchOptions.defaults(), JobTrace.NONE, "http://a").join();
+        aggregatorService.aggregateDocument("job", "http://a", positions).join();
+        RecordingStatus status = profilingService.stop();
+
+        //then
+        assertFalse(status.isRunning());
+        assertTrue(status.getDumpFile().startsWith(tempDir.toString()));
+        assertEquals(Files.size(Path.of(status.getDumpFile())), status.getDumpBytes());
+        Map<String, RecordedEvent> events = RecordingFile.readAllEvents(Path.of(status.getDumpFile())).stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.textsearcherv2."))
+                .collect(Collectors.toMap(event -> event.getEventType().getName(), event -> event, (a, b) -> a));
+        RecordedEvent matched = events.get("com.textsearcherv2.ChunkMatched");
+        assertEquals("job", matched.getString("jobId"));
+        assertEquals("http://a", matched.getString("document"));
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, matched.getLong("size"));
+        assertEquals("BYPASS", matched.getString("cacheOutcome"));
+        assertEquals(4, matched.getInt("matchCount"));
+        assertTrue(matched.getDuration("executorWait").toNanos() >= 0);
+        RecordedEvent aggregated = events.get("com.textsearcherv2.DocumentAggregated");
+        assertEquals(4, aggregated.getInt("matchCount"));
+        assertFalse(aggregated.getBoolean("spilled"));
+    }
+
+    /**
+     * Tests that the events of a chunk matched twice through the chunk match cache tell the miss that stored it from
+     * the hit that served it.
+     */
+    @Test
+    void testStop_recordsCacheOutcome() throws IOException {
+        //init
+        ProfilingService profilingService = new ProfilingService(tempDir, 60, 16 * 1024 * 1024);
+        ContentProcessorService contentProcessorService = new ContentProcessorService(new MatcherService(null),
+                executor, null, null, new ChunkCacheService(1024 * 1024));
+        TextChunk chunk = new TextChunk(0, 0, "John met Michael\n");
+        profilingService.start("default");
+
+        //when
+        for (int i = 0; i < 2; i++) {
+            contentProcessorService.matchChunk("job", chunk, SearchOptions.defaults(), JobTrace.NONE, "http://a")
+                    .join();
+        }
+        RecordingStatus status = profilingService.stop();
+
+        //then
+        List<String> outcomes = RecordingFile.readAllEvents(Path.of(status.getDumpFile())).stream()
+                .filter(event -> event.getEventType().getName().equals("com.textsearcherv2.ChunkMatched"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .map(event -> event.getString("cacheOutcome"))
+                .toList();
+        assertEquals(List.of("MISS", "HIT"), outcomes);
+    }
+
+    /**
+     * Tests that a running recording is dumped to a new file each time without stopping, that a second recording
+     * cannot start while one runs, and that dumping or stopping without a running recording is refused.
+     */
+    @Test
+    void testDump_keepsRecordingAndRejectsInvalidStates() {
+        //init
+        ProfilingService profilingService = new ProfilingService(tempDir, 60, 16 * 1024 * 1024);
+        assertThrows(RecordingStateException.class, profilingService::dump);
+        assertThrows(IllegalArgumentException.class, () -> profilingService.start("no-such-settings"));
+        profilingService.start("default");
+
+        //when
+        RecordingStatus first = profilingService.dump();
+        RecordingStatus second = profilingService.dump();
+
+        //then
+        assertTrue(second.isRunning());
+        assertTrue(Files.exists(Path.of(first.getDumpFile())));
+        assertTrue(Files.exists(Path.of(second.getDumpFile())));
+        assertThrows(RecordingStateException.class, () -> profilingService.start("default"));
+        RecordingStatus stopped = profilingService.stop();
+        assertNotEquals(second.getDumpFile(), stopped.getDumpFile());
+        assertEquals(stopped, profilingService.status());
+        assertThrows(RecordingStateException.class, profilingService::stop);
+    }
+}
@@ -0,0 +1,166 @@
+package com.textsearcherv2.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.exception.AdmissionRejectedException;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.NameMatch;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.SearchSummary;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.validation.UrlValidationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that ReactiveSearchService finds the matches of the chunked scans in a streamed body, in document order.
+ */
+class ReactiveSearchServiceTest {
+    private static final String CONTENT = "John met Mary\r\nThomas and James\n\nJürgen, John\n".repeat(700) + "Paul";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final ContentProcessorService contentProcessorService =
+            new ContentProcessorService(new MatcherService(null), executor, null, null, null);
+    private final ReactiveSearchService reactiveSearchService =
+            new ReactiveSearchService(contentProcessorService, new UrlValidationService(),
+                    new AdmissionControlService(1, 1, 1, 1024), 2, 2, 100, 10);
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        byte[] document = CONTENT.getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/document.txt", exchange -> {
+            exchange.sendResponseHeaders(200, document.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                // small writes, so the body arrives in many buffers
+                for (int i = 0; i < document.length; i += 1000) {
+                    out.write(document, i, Math.min(1000, document.length - i));
+                    out.flush();
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the streamed matches of two documents are the matches of a chunked scan of each, ordered by
+     * document, line and column.
+     */
+    @Test
+    void testMatches_equalChunkedScanInDocumentOrder() {
+        //init
+        SearchOptions options = new SearchOptions();
+        Map<String, List<TextPosition>> expectedByName =
+                contentProcessorService.matchContentInChunks(CONTENT, 100, options).join();
+        String first = url("/document.txt");
+        String second = url("/document.txt?again");
+
+        //when
+        List<NameMatch> matches = reactiveSearchService.matches(List.of(first, second), options, "client").collectList().block();
+
+        //then
+        List<NameMatch> expected = new ArrayList<>();
+        for (String url : List.of(first, second)) {
+            List<NameMatch> document = new ArrayList<>();
+            expectedByName.forEach((name, positions) -> positions.forEach(position ->
+                    document.add(new NameMatch(name, url, position.getLineNumber(), position.getColumnNumber()))));
+            document.sort((a, b) -> a.getLineNumber() != b.getLineNumber()
+                    ? Integer.compare(a.getLineNumber(), b.getLineNumber())
+                    : Integer.compare(a.getColumnNumber(), b.getColumnNumber()));
+            expected.addAll(document);
+        }
+        assertTrue(expected.size() > 1000, "The document should have matches");
+        assertEquals(expected, matches);
+    }
+
+    /**
+     * Tests that the summary counts the matches of every name and reports a missing document without failing the
+     * others.
+     */
+    @Test
+    void testSummary_countsNamesAndReportsFailures() {
+        //init
+        SearchOptions options = new SearchOptions();
+        Map<String, List<TextPosition>> expectedByName =
+                contentProcessorService.matchContentInChunks(CONTENT, 100, options).join();
+        String missing = url("/missing.txt");
+
+        //when
+        SearchSummary summary = reactiveSearchService.summary(List.of(url("/document.txt"), missing), options, "client").block();
+
+        //then
+        expectedByName.forEach((name, positions) ->
+                assertEquals(positions.size(), summary.getMatchesByName().get(name), name));
+        assertEquals(expectedByName.values().stream().mapToLong(List::size).sum(), summary.getMatches());
+        assertEquals(CONTENT.getBytes(StandardCharsets.UTF_8).length, summary.getBytes());
+        assertEquals(2, summary.getDocuments());
+        assertTrue(summary.getFailedDocuments().get(missing).contains("404"));
+    }
+
+    /**
+     * Tests that regex searches and unsafe URLs are rejected before anything is fetched.
+     */
+    @Test
+    void testMatches_rejectsUnsupportedSearches() {
+        //init
+        SearchOptions regex = new SearchOptions();
+        regex.setMatchMode(MatchMode.REGEX);
+        regex.setPattern("Jo.n");
+
+        //then
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveSearchService.matches(List.of(url("/document.txt")), regex, "client"));
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveSearchService.summary(List.of("file:///etc/passwd"), new SearchOptions(), "client"));
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveSearchService.summary(Collections.nCopies(11, url("/document.txt")),
+                        new SearchOptions(), "client"));
+    }
+
+    /**
+     * Tests that a search counts against the quota of its client until its response ends, and that a search over
+     * the quota is rejected before anything is fetched.
+     */
+    @Test
+    void testSummary_holdsClientQuotaUntilDone() {
+        //init
+        SearchOptions options = new SearchOptions();
+        Mono<SearchSummary> first = reactiveSearchService.summary(List.of(url("/document.txt")), options, "client");
+
+        //when
+        assertThrows(AdmissionRejectedException.class,
+                () -> reactiveSearchService.summary(List.of(url("/document.txt")), options, "client"));
+        first.block();
+
+        //then
+        assertEquals(1, reactiveSearchService.summary(List.of(url("/document.txt")), options, "client")
+                .block().getDocuments());
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
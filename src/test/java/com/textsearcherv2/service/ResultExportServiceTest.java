@@ -0,0 +1,65 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.JobNotCompletedException;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.util.BinaryResultReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that ResultExportService exports the results of completed jobs only.
+ */
+class ResultExportServiceTest {
+    private final ResultExportService resultExportService = new ResultExportService();
+
+    /**
+     * Tests that the export of a completed job reads back as its results, documents in URL order.
+     */
+    @Test
+    void testExport_readsBackAsJobResults() throws IOException {
+        //init
+        SearchJob job = new SearchJob("job", List.of("http://b", "http://a"));
+        Map<String, Map<String, List<TextPosition>>> results = Map.of(
+                "http://b", Map.of("John", List.of(new TextPosition(0, 1), new TextPosition(4, 2))),
+                "http://a", Map.of("Paul", List.of(new TextPosition(7, 0)), "John", List.of(new TextPosition(9, 9))));
+        job.setResultsByDocument(results);
+        job.setStatus(JobStatus.COMPLETED);
+
+        //when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resultExportService.export(job, out);
+        Map<String, Map<String, List<TextPosition>>> read = new LinkedHashMap<>();
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(out.toByteArray()))) {
+            while (reader.next()) {
+                read.put(reader.getDocumentUrl(), reader.getPositionsByName());
+            }
+        }
+
+        //then
+        assertEquals(results, read);
+        assertEquals(List.of("http://a", "http://b"), List.copyOf(read.keySet()));
+    }
+
+    /**
+     * Tests that a running job is not exported.
+     */
+    @Test
+    void testExport_rejectsRunningJob() {
+        //init
+        SearchJob job = new SearchJob("running", List.of("http://a"));
+
+        //then
+        assertThrows(JobNotCompletedException.class, () -> resultExportService.export(job, new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,95 @@
+package com.textsearcherv2.service;
+
+import com.textsearcherv2.exception.JobNotCompletedException;
+import com.textsearcherv2.model.DocumentPosition;
+import com.textsearcherv2.model.JobStatus;
+import com.textsearcherv2.model.MatchPage;
+import com.textsearcherv2.model.SearchJob;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that ResultQueryService pages through the matches of a name in sorted order with cursors.
+ */
+class ResultQueryServiceTest {
+    private final ResultQueryService resultQueryService = new ResultQueryService();
+
+    /**
+     * Tests that following the cursors returns every match of the name exactly once, sorted by document URL, line
+     * and column, even when a document list is out of order.
+     */
+    @Test
+    void testPage_cursorsCoverSortedMatches() {
+        //init
+        List<TextPosition> shuffled = positions(250);
+        Collections.shuffle(shuffled);
+        SearchJob job = completedJob(Map.of(
+                "http://b", Map.of("John", positions(120), "Paul", positions(3)),
+                "http://a", Map.of("John", shuffled),
+                "http://c", Map.of("Paul", positions(9))));
+
+        //when
+        List<DocumentPosition> matches = new ArrayList<>();
+        List<MatchPage> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            MatchPage page = resultQueryService.page(job, "John", cursor, 100);
+            pages.add(page);
+            matches.addAll(page.getMatches());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        //then
+        List<DocumentPosition> expected = new ArrayList<>();
+        positions(250).forEach(p -> expected.add(new DocumentPosition("http://a", p.getLineNumber(), p.getColumnNumber())));
+        positions(120).forEach(p -> expected.add(new DocumentPosition("http://b", p.getLineNumber(), p.getColumnNumber())));
+        assertEquals(expected, matches);
+        assertEquals(4, pages.size());
+        assertEquals(370, pages.get(0).getTotal());
+        assertEquals(70, pages.get(3).getMatches().size());
+        assertEquals(0, resultQueryService.page(job, "Mark", null, 10).getTotal());
+        assertNull(resultQueryService.page(job, "Mark", null, 10).getNextCursor());
+    }
+
+    /**
+     * Tests that running jobs, out of range limits and foreign cursors are rejected.
+     */
+    @Test
+    void testPage_rejectsInvalidQueries() {
+        //init
+        SearchJob running = new SearchJob("running", List.of("http://a"));
+        SearchJob job = completedJob(Map.of("http://a", Map.of("John", positions(5), "Paul", positions(50))));
+        String paulCursor = resultQueryService.page(job, "Paul", null, 10).getNextCursor();
+
+        //then
+        assertThrows(JobNotCompletedException.class, () -> resultQueryService.page(running, "John", null, 10));
+        assertThrows(IllegalArgumentException.class, () -> resultQueryService.page(job, "John", null, 0));
+        assertThrows(IllegalArgumentException.class, () -> resultQueryService.page(job, "John", null, 1001));
+        assertThrows(IllegalArgumentException.class, () -> resultQueryService.page(job, "John", "bm9wZQ", 10));
+        assertThrows(IllegalArgumentException.class, () -> resultQueryService.page(job, "John", paulCursor, 10));
+    }
+
+    private SearchJob completedJob(Map<String, Map<String, List<TextPosition>>> results) {
+        SearchJob job = new SearchJob("job", new ArrayList<>(results.keySet()));
+        job.setResultsByDocument(results);
+        job.setStatus(JobStatus.COMPLETED);
+        return job;
+    }
+
+    private List<TextPosition> positions(int count) {
+        List<TextPosition> positions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            positions.add(new TextPosition(i / 3, (i % 3) * 10));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,227 @@
+package com.textsearcherv2.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.MatchMode;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that concurrent jobs over the same document share one download and one scan, and each receive the
+ * positions of their own names.
+ */
+class ScanBatchServiceTest {
+    private static final int LINES_PER_CHUNK = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final byte[] document = lines(400).getBytes(StandardCharsets.UTF_8);
+    private HttpServer server;
+    private String url;
+    private int jobs;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/document.txt", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, document.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(document);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/document.txt";
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that jobs with the default dictionary and with their own names, submitted within the batch window,
+     * fetch the document once, and each find what it finds scanning the document alone.
+     */
+    @Test
+    void testScan_concurrentJobsShareOneFetch() {
+        //init
+        List<SearchOptions> queries = List.of(SearchOptions.defaults(), withNames("John", "Zorg"),
+                withNames("Paul"));
+        List<Map<String, List<TextPosition>>> alone = new ArrayList<>();
+        for (SearchOptions options : queries) {
+            alone.add(scan(new ScanBatchService(false, 0), List.of(options)).get(0));
+        }
+        requests.set(0);
+
+        //when
+        List<Map<String, List<TextPosition>>> batched = scan(new ScanBatchService(true, 500), queries);
+
+        //then
+        assertEquals(1, requests.get());
+        assertEquals(alone, batched);
+        assertEquals(Map.of("John", alone.get(0).get("John")), withoutKey(batched.get(1), "Zorg"));
+        assertTrue(batched.get(1).get("Zorg").size() > 0);
+        assertNull(batched.get(0).get("Zorg"));
+    }
+
+    /**
+     * Tests that a job of the default dictionary that led a batch with a job of its own names, restored from its
+     * checkpoints, gets the positions of the default names only, though its checkpoints hold those of the batch.
+     */
+    @Test
+    void testScan_restoredDefaultLeaderKeepsOwnNames() {
+        //init
+        Map<String, List<TextPosition>> alone = scan(new ScanBatchService(false, 0),
+                List.of(SearchOptions.defaults())).get(0);
+        String leader = "job" + jobs;
+        scan(new ScanBatchService(true, 500), List.of(SearchOptions.defaults(), withNames("Zorg")));
+        requests.set(0);
+
+        //when
+        Map<String, List<TextPosition>> restored = new ScanFixture(executor, tempDir.toString())
+                .scan(leader, url, LINES_PER_CHUNK, SearchOptions.defaults());
+
+        //then
+        assertEquals(0, requests.get());
+        assertEquals(alone, restored);
+        assertNull(restored.get("Zorg"));
+    }
+
+    /**
+     * Tests that a job arriving once a scan started joins it if the scan covers its names, and opens the next batch
+     * otherwise.
+     */
+    @Test
+    void testScan_startedBatchTakesCoveredJobsOnly() {
+        //init
+        ScanBatchService scanBatchService = new ScanBatchService(true, 0);
+        List<SearchOptions> scans = new ArrayList<>();
+        List<CompletableFuture<Map<String, List<TextPosition>>>> results = new ArrayList<>();
+        Map<String, List<TextPosition>> positions = Map.of("John", List.of(new TextPosition(0, 0)),
+                "Zorg", List.of(new TextPosition(1, 4)), "Paul", List.of(new TextPosition(2, 8)));
+
+        //when
+        CompletableFuture<Map<String, List<TextPosition>>> leader = scanBatchService.scan("a", url,
+                withNames("John", "Zorg"), options -> scanned(scans, results, options));
+        CompletableFuture<Map<String, List<TextPosition>>> covered = scanBatchService.scan("b", url,
+                withNames("Zorg"), options -> scanned(scans, results, options));
+        CompletableFuture<Map<String, List<TextPosition>>> uncovered = scanBatchService.scan("c", url,
+                withNames("Paul"), options -> scanned(scans, results, options));
+        results.forEach(result -> result.complete(positions));
+
+        //then
+        assertEquals(List.of(List.of("John", "Zorg"), List.of("Paul")),
+                scans.stream().map(SearchOptions::getNames).toList());
+        assertEquals(withoutKey(positions, "Paul"), leader.join());
+        assertEquals(Map.of("Zorg", positions.get("Zorg")), covered.join());
+        assertEquals(Map.of("Paul", positions.get("Paul")), uncovered.join());
+    }
+
+    /**
+     * Tests that the members of a batch whose leader was cancelled scan the document on their own.
+     */
+    @Test
+    void testScan_membersRescanWhenLeaderCancelled() {
+        //init
+        ScanBatchService scanBatchService = new ScanBatchService(true, 500);
+        List<SearchOptions> scans = new ArrayList<>();
+        Map<String, List<TextPosition>> positions = Map.of("Zorg", List.of(new TextPosition(1, 4)));
+
+        //when
+        CompletableFuture<Map<String, List<TextPosition>>> leader = scanBatchService.scan("a", url,
+                withNames("John"), options -> CompletableFuture.failedFuture(new CancellationException("cancelled")));
+        CompletableFuture<Map<String, List<TextPosition>>> member = scanBatchService.scan("b", url,
+                withNames("Zorg"), options -> {
+                    scans.add(options);
+                    return CompletableFuture.completedFuture(positions);
+                });
+
+        //then
+        assertThrows(CompletionException.class, leader::join);
+        assertEquals(positions, member.join());
+        assertEquals(List.of(List.of("Zorg")), scans.stream().map(SearchOptions::getNames).toList());
+    }
+
+    private CompletableFuture<Map<String, List<TextPosition>>> scanned(
+            List<SearchOptions> scans, List<CompletableFuture<Map<String, List<TextPosition>>>> results,
+            SearchOptions options) {
+        CompletableFuture<Map<String, List<TextPosition>>> result = new CompletableFuture<>();
+        scans.add(options);
+        results.add(result);
+        return result;
+    }
+
+    private List<Map<String, List<TextPosition>>> scan(ScanBatchService scanBatchService,
+                                                       List<SearchOptions> queries) {
+        ScanFixture fixture = new ScanFixture(executor, tempDir.toString()).followService(new FollowService(10))
+                .scanBatchService(scanBatchService);
+        List<String> jobIds = new ArrayList<>();
+        List<CompletableFuture<Void>> scans = new ArrayList<>();
+        for (SearchOptions options : queries) {
+            String jobId = "job" + jobs++;
+            jobIds.add(jobId);
+            scans.add(fixture.start(jobId, url, LINES_PER_CHUNK, options));
+        }
+        scans.forEach(CompletableFuture::join);
+        List<Map<String, List<TextPosition>>> results = new ArrayList<>();
+        for (String jobId : jobIds) {
+            results.add(fixture.release(jobId, url));
+        }
+        return results;
+    }
+
+    private static Map<String, List<TextPosition>> withoutKey(Map<String, List<TextPosition>> positions,
+                                                              String name) {
+        Map<String, List<TextPosition>> copy = new HashMap<>(positions);
+        copy.remove(name);
+        return copy;
+    }
+
+    private static SearchOptions withNames(String... names) {
+        SearchOptions options = new SearchOptions();
+        options.setMatchMode(MatchMode.EXACT);
+        options.setNames(List.of(names));
+        return options;
+    }
+
+    private static String lines(int count) {
+        StringBuilder content = new StringBuilder();
+        String[] words = {"John", "met", "Michael", "and", "Zorg", "Müller", "said", "Paul"};
+        for (int line = 0; line < count; line++) {
+            for (int word = 0; word < 9; word++) {
+                content.append(words[(line * 7 + word * 3) % words.length]).append(' ');
+            }
+            content.append('\n');
+        }
+        return content.toString();
+    }
+}
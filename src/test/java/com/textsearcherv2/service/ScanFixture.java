@@ -0,0 +1,100 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TextPosition;
+import com.textsearcherv2.validation.UrlValidationService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ScanFixture wires the real services of a document scan around a FileReaderService, for the tests that run documents
+ * served over HTTP through it: one run slot, a 64 KiB chunk budget and exact matching on the given executor. The
+ * services a test is about, such as follow, batching or tracing, are added to it before scanning.
+ */
+final class ScanFixture {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final String[] WORDS = {"John", "met", "Michael", "and", "Thomas", "Müller", "said", "Paul"};
+
+    private final AggregatorService aggregatorService = new AggregatorService();
+    private final FileReaderService fileReaderService = new FileReaderService();
+
+    /**
+     * @param executor      the executor the chunks are matched on
+     * @param checkpointDir the directory of the checkpoints, empty for none
+     */
+    ScanFixture(ExecutorService executor, String checkpointDir) {
+        fileReaderService.setUrlValidationService(new UrlValidationService());
+        fileReaderService.setAggregatorService(aggregatorService);
+        fileReaderService.setCheckpointService(new CheckpointService(checkpointDir, OBJECT_MAPPER));
+        fileReaderService.setAdmissionControlService(new AdmissionControlService(1, 1, 1, 64 * 1024));
+        fileReaderService.setContentProcessorService(
+                new ContentProcessorService(new MatcherService(null), executor, null, null, null));
+    }
+
+    ScanFixture followService(FollowService followService) {
+        fileReaderService.setFollowService(followService);
+        return this;
+    }
+
+    ScanFixture scanBatchService(ScanBatchService scanBatchService) {
+        fileReaderService.setScanBatchService(scanBatchService);
+        return this;
+    }
+
+    ScanFixture tracingService(TracingService tracingService) {
+        fileReaderService.setTracingService(tracingService);
+        return this;
+    }
+
+    /**
+     * Opens a job and starts scanning a document for it.
+     *
+     * @return a future completed once the document was scanned
+     */
+    CompletableFuture<Void> start(String jobId, String url, int linesPerChunk, SearchOptions options) {
+        aggregatorService.openJob(jobId);
+        return fileReaderService.fetchContentAndProcess(jobId, url, linesPerChunk, options);
+    }
+
+    /**
+     * Releases a job and returns the positions it found in a document.
+     *
+     * @return the positions by name, null if the job has no results for the document
+     */
+    Map<String, List<TextPosition>> release(String jobId, String url) {
+        return aggregatorService.releaseJob(jobId).get(url);
+    }
+
+    /**
+     * Scans a document for a new job and releases the job.
+     *
+     * @return the positions by name the job found in the document
+     */
+    Map<String, List<TextPosition>> scan(String jobId, String url, int linesPerChunk, SearchOptions options) {
+        start(jobId, url, linesPerChunk, options).join();
+        return release(jobId, url);
+    }
+
+    /**
+     * Returns lines of names and other words, every third one ended by {@code \r\n}. The lines depend on their
+     * number only, so the lines of a range are the same whatever the range they are generated in.
+     *
+     * @param firstLine the number of the first line
+     * @param count     the number of lines
+     * @return the lines, each ended by a line break
+     */
+    static String lines(int firstLine, int count) {
+        StringBuilder content = new StringBuilder();
+        for (int line = firstLine; line < firstLine + count; line++) {
+            for (int word = 0; word < 9; word++) {
+                content.append(WORDS[(line * 7 + word * 3) % WORDS.length]).append(' ');
+            }
+            content.append(line % 3 == 0 ? "\r\n" : "\n");
+        }
+        return content.toString();
+    }
+}
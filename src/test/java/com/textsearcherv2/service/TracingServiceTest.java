@@ -0,0 +1,128 @@
+package com.textsearcherv2.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.textsearcherv2.model.SearchOptions;
+import com.textsearcherv2.model.TraceFormat;
+import com.textsearcherv2.model.TraceStage;
+import com.textsearcherv2.util.JobTrace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that TracingService records the stages of sampled jobs only and exports them as Chrome and OTLP traces.
+ */
+class TracingServiceTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void start() throws IOException {
+        byte[] document = "John met Mary\nThomas\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/document.txt", exchange -> {
+            exchange.sendResponseHeaders(200, document.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(document);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/document.txt";
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a forced trace records every stage of the scan, with one match span per chunk, and that the
+     * exported Chrome and OTLP traces hold the spans under the job span.
+     */
+    @Test
+    void testStartJob_forcedTraceRecordsStages() throws IOException {
+        //init
+        TracingService tracingService = new TracingService(0, 100_000, 10, tempDir.toString(), TraceFormat.CHROME,
+                OBJECT_MAPPER);
+        JobTrace trace = tracingService.startJob("traced", true);
+
+        //when
+        scan(tracingService, "traced");
+        tracingService.finishJob("traced");
+
+        //then
+        Set<TraceStage> stages = EnumSet.noneOf(TraceStage.class);
+        trace.spans().forEach(span -> stages.add(span.getStage()));
+        assertEquals(EnumSet.of(TraceStage.JOB, TraceStage.FETCH, TraceStage.READ, TraceStage.ADMIT,
+                TraceStage.QUEUE, TraceStage.MATCH, TraceStage.COMMIT, TraceStage.AGGREGATE), stages);
+        long matchSpans = trace.spans().stream().filter(span -> span.getStage() == TraceStage.MATCH).count();
+        assertEquals(10, matchSpans, "1000 lines in chunks of 100 lines");
+
+        JsonNode chrome = OBJECT_MAPPER.readTree(tempDir.resolve("traced.chrome.json").toFile());
+        assertEquals("job", chrome.get("traceEvents").get(0).get("name").asText());
+        assertTrue(chrome.get("traceEvents").findValuesAsText("ph").contains("M"), "Threads should be named");
+
+        Map<String, Object> otlp = tracingService.timeline("traced", TraceFormat.OTLP).orElseThrow();
+        JsonNode spans = OBJECT_MAPPER.valueToTree(otlp).at("/resourceSpans/0/scopeSpans/0/spans");
+        assertEquals(trace.spans().size(), spans.size());
+        String jobSpanId = spans.get(0).get("spanId").asText();
+        for (int i = 1; i < spans.size(); i++) {
+            assertEquals(jobSpanId, spans.get(i).get("parentSpanId").asText());
+        }
+    }
+
+    /**
+     * Tests that jobs outside the sample rate get the empty trace, have no timeline and export nothing.
+     */
+    @Test
+    void testStartJob_unsampledJobRecordsNothing() throws IOException {
+        //init
+        TracingService tracingService = new TracingService(0, 100_000, 10, tempDir.toString(), TraceFormat.CHROME,
+                OBJECT_MAPPER);
+
+        //when
+        JobTrace trace = tracingService.startJob("untraced", false);
+        scan(tracingService, "untraced");
+        tracingService.finishJob("untraced");
+
+        //then
+        assertSame(JobTrace.NONE, trace);
+        assertFalse(trace.isEnabled());
+        assertEquals(0, trace.now());
+        assertTrue(trace.spans().isEmpty());
+        assertTrue(tracingService.timeline("untraced", TraceFormat.CHROME).isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("untraced.chrome.json")));
+    }
+
+    private void scan(TracingService tracingService, String jobId) {
+        new ScanFixture(executor, "").tracingService(tracingService)
+                .scan(jobId, url, 100, SearchOptions.defaults());
+    }
+}
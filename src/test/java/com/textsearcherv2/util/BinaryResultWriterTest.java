@@ -0,0 +1,104 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that BinaryResultReader reads back what BinaryResultWriter wrote, and rejects what it did not.
+ */
+class BinaryResultWriterTest {
+
+    /**
+     * Tests that documents with names shared and not, positions out of order, large line and column numbers and
+     * more positions than fit in a block read back in document order.
+     */
+    @Test
+    void testWriteDocument_readsBackInDocumentOrder() throws IOException {
+        //init
+        Random random = new Random(9);
+        Map<String, Map<String, List<TextPosition>>> documents = new LinkedHashMap<>();
+        documents.put("http://a", Map.of("John", positions(random, 200_000), "Jürgen", positions(random, 3)));
+        List<TextPosition> shuffled = positions(random, 1000);
+        Collections.shuffle(shuffled, random);
+        documents.put("http://b", Map.of("John", shuffled, "Mary", List.of(new TextPosition(Integer.MAX_VALUE, 7))));
+        documents.put("http://c", Map.of());
+
+        //when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(out)) {
+            for (Map.Entry<String, Map<String, List<TextPosition>>> document : documents.entrySet()) {
+                writer.writeDocument(document.getKey(), document.getValue());
+            }
+        }
+        Map<String, Map<String, List<TextPosition>>> read = new LinkedHashMap<>();
+        try (BinaryResultReader reader = new BinaryResultReader(new ByteArrayInputStream(out.toByteArray()))) {
+            while (reader.next()) {
+                read.put(reader.getDocumentUrl(), reader.getPositionsByName());
+            }
+            assertFalse(reader.next());
+        }
+
+        //then
+        assertEquals(List.copyOf(documents.keySet()), List.copyOf(read.keySet()));
+        documents.forEach((url, positionsByName) -> positionsByName.forEach((name, positions) -> {
+            List<TextPosition> sorted = new ArrayList<>(positions);
+            sorted.sort((p, q) -> p.getLineNumber() != q.getLineNumber()
+                    ? Integer.compare(p.getLineNumber(), q.getLineNumber())
+                    : Integer.compare(p.getColumnNumber(), q.getColumnNumber()));
+            assertEquals(sorted, read.get(url).get(name), url + " " + name);
+        }));
+        assertTrue(read.get("http://c").isEmpty());
+        assertTrue(out.size() < 201_004 * 3, "Dense positions should take about 2 bytes each, took " + out.size());
+    }
+
+    /**
+     * Tests that another format and a truncated export are rejected.
+     */
+    @Test
+    void testNext_rejectsMalformedExports() throws IOException {
+        //init
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryResultWriter writer = new BinaryResultWriter(out)) {
+            writer.writeDocument("http://a", Map.of("John", List.of(new TextPosition(1, 2), new TextPosition(300, 4))));
+        }
+        byte[] export = out.toByteArray();
+
+        //then
+        assertThrows(IOException.class, () -> new BinaryResultReader(new ByteArrayInputStream("[{}]".getBytes())));
+        BinaryResultReader truncated = new BinaryResultReader(
+                new ByteArrayInputStream(Arrays.copyOf(export, export.length - 3)));
+        assertThrows(EOFException.class, truncated::next);
+    }
+
+    private List<TextPosition> positions(Random random, int count) {
+        List<TextPosition> positions = new ArrayList<>();
+        int line = 0;
+        int column = 0;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(3) == 0) {
+                line += 1 + random.nextInt(5);
+                column = 0;
+            }
+            column += 1 + random.nextInt(40);
+            positions.add(new TextPosition(line, column));
+        }
+        return positions;
+    }
+}
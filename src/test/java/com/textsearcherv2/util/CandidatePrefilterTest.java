@@ -0,0 +1,64 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextChunk;
+import com.textsearcherv2.service.MatcherService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CandidatePrefilterTest checks that the vectorized and scalar prefilters agree and that exact matching behind a
+ * prefilter finds exactly what the indexOf scan finds.
+ */
+class CandidatePrefilterTest {
+
+    /**
+     * Tests that the Vector API prefilter, which the test JVM is started with, reports the same candidates as the
+     * scalar one, including in the unaligned tail.
+     */
+    @Test
+    void testFindCandidates_vectorMatchesScalar() {
+        //init
+        CandidatePrefilter vector = CandidatePrefilters.select("vector");
+        CandidatePrefilter scalar = CandidatePrefilters.select("scalar");
+        Random random = new Random(7);
+        char[] text = new char[1003];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = random.nextInt(20) == 0 ? '\n' : (char) (' ' + random.nextInt(200));
+        }
+        int[] vectorOut = new int[text.length];
+        int[] scalarOut = new int[text.length];
+
+        //when
+        int vectorCount = vector.findCandidates(text, 3, text.length, 'A', 'Z', vectorOut);
+        int scalarCount = scalar.findCandidates(text, 3, text.length, 'A', 'Z', scalarOut);
+
+        //then
+        assertTrue(vector.name().startsWith("vector"), "The test JVM should run with the Vector API module.");
+        assertEquals(scalarCount, vectorCount);
+        assertArrayEquals(Arrays.copyOf(scalarOut, scalarCount), Arrays.copyOf(vectorOut, vectorCount));
+    }
+
+    /**
+     * Tests that exact matching gives identical results with and without a prefilter, for overlapping occurrences,
+     * names inside words and names at line and chunk ends.
+     */
+    @Test
+    void testMatchChunk_prefilteredEqualsIndexOfScan() {
+        //init
+        TextChunk chunk = new TextChunk(0, 40, "JohnJohn Johnson met Mark\nDr. Michael\n\nEric said Larry\nPeter");
+        MatcherService withPrefilter = new MatcherService(null);
+        withPrefilter.setPrefilterMode("auto");
+        MatcherService withoutPrefilter = new MatcherService(null);
+        withoutPrefilter.setPrefilterMode("off");
+
+        //then
+        assertEquals(withoutPrefilter.matchChunk(chunk), withPrefilter.matchChunk(chunk));
+        assertEquals(3, withPrefilter.matchChunk(chunk).get("John").size());
+    }
+}
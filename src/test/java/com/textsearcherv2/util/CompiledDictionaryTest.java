@@ -0,0 +1,82 @@
+package com.textsearcherv2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that a serialized CompiledDictionary loads back into matchers equivalent to freshly compiled ones.
+ */
+class CompiledDictionaryTest {
+    private static final List<String> WORDS = List.of("John", "Jonh", "Micheal", "Cristopher", "Robrt", "Rogers",
+            "Jhon", "Mike", "the", "Gregroy", "Anthny", "Brain");
+
+    /**
+     * Tests that every fuzzy index read back finds the same closest names as the compiled one.
+     */
+    @Test
+    void testReadFrom_equivalentToCompiled() throws IOException {
+        //init
+        CompiledDictionary compiled = CompiledDictionary.compile(PERSON_NAMES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compiled.writeTo(out);
+
+        //when
+        CompiledDictionary loaded = CompiledDictionary.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        //then
+        assertEquals(compiled.getVersion(), loaded.getVersion());
+        assertEquals(compiled.getDictionary().getNames(), loaded.getDictionary().getNames());
+        assertEquals(compiled.getFuzzyIndexes().keySet(), loaded.getFuzzyIndexes().keySet());
+        compiled.getFuzzyIndexes().forEach((edits, index) -> {
+            for (String word : WORDS) {
+                assertEquals(index.closestName(word), loaded.getFuzzyIndexes().get(edits).closestName(word),
+                        word + " within " + edits + " edits");
+            }
+        });
+    }
+
+    /**
+     * Tests that the dictionary written by the build is loaded, and that a resource compiled from other names is
+     * ignored in favour of compiling the expected names.
+     */
+    @Test
+    void testLoadOrCompile_usesOnlyMatchingResource() {
+        //init
+        List<String> otherNames = List.of("Ada", "Grace");
+
+        //when
+        CompiledDictionary personNames = CompiledDictionary.loadOrCompile(CompiledDictionary.PERSON_NAMES_RESOURCE,
+                PERSON_NAMES);
+        CompiledDictionary others = CompiledDictionary.loadOrCompile(CompiledDictionary.PERSON_NAMES_RESOURCE,
+                otherNames);
+
+        //then
+        assertEquals(NameDictionary.compile(PERSON_NAMES).getVersion(), personNames.getVersion());
+        assertEquals(NameDictionary.compile(otherNames).getVersion(), others.getVersion());
+        assertEquals("Grace", others.getFuzzyIndexes().get(1).closestName("Grcae"));
+    }
+
+    /**
+     * Tests that truncated or foreign input is rejected instead of producing a broken index.
+     */
+    @Test
+    void testReadFrom_rejectsInvalidInput() throws IOException {
+        //init
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledDictionary.compile(PERSON_NAMES).writeTo(out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() / 2);
+
+        //then
+        assertThrows(IOException.class, () -> CompiledDictionary.readFrom(new ByteArrayInputStream(truncated)));
+        assertThrows(IOException.class, () -> CompiledDictionary.readFrom(new ByteArrayInputStream(new byte[64])));
+    }
+}
@@ -0,0 +1,184 @@
+package com.textsearcherv2.util;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the detection and streaming decoders of Compression, including the parallel BGZF decoder.
+ */
+class CompressionTest {
+    private static final int BGZF_BLOCK_INPUT = 65280;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the Content-Encoding wins over the extension, which is used when the header is missing or
+     * identity.
+     */
+    @Test
+    void testDetect_headerThenExtension() {
+        //when, then
+        assertEquals(Compression.GZIP, Compression.detect("gzip", "http://host/big.txt"));
+        assertEquals(Compression.ZSTD, Compression.detect(null, "http://host/corpus/big.txt.zst?version=2"));
+        assertEquals(Compression.BZIP2, Compression.detect("identity", "http://host/big.txt.bz2"));
+        assertEquals(Compression.GZIP, Compression.detect(null, "http://host/big.TXT.GZ"));
+        assertEquals(Compression.NONE, Compression.detect(null, "http://host/big.txt"));
+    }
+
+    /**
+     * Tests that concatenated gzip members, zstd and concatenated bzip2 streams decode to the original text.
+     */
+    @Test
+    void testDecode_sequentialFormats() throws IOException {
+        //init
+        byte[] first = text(3000, 1);
+        byte[] second = text(2000, 2);
+        byte[] both = concat(first, second);
+
+        //when, then
+        assertArrayEquals(both, decode(Compression.GZIP, concat(gzip(first), gzip(second))));
+        assertArrayEquals(both, decode(Compression.ZSTD, compress(both, ZstdCompressorOutputStream::new)));
+        assertArrayEquals(both, decode(Compression.BZIP2, concat(compress(first, BZip2CompressorOutputStream::new),
+                compress(second, BZip2CompressorOutputStream::new))));
+        assertArrayEquals(both, decode(Compression.NONE, both));
+    }
+
+    /**
+     * Tests that a BGZF document is detected and its members are decoded in parallel, in order, including the
+     * empty end-of-file member.
+     */
+    @Test
+    void testDecode_bgzfInParallel() throws IOException {
+        //init
+        byte[] text = text(40000, 3);
+        byte[] bgzf = bgzf(text);
+
+        //when
+        InputStream decoded = Compression.GZIP.decode(new ByteArrayInputStream(bgzf), executor, 3);
+
+        //then
+        assertTrue(text.length > 10 * BGZF_BLOCK_INPUT, "The text should span many members");
+        assertInstanceOf(ParallelGzipInputStream.class, decoded);
+        assertArrayEquals(text, decoded.readAllBytes());
+        assertFalse(ParallelGzipInputStream.isBgzf(new BufferedInputStream(new ByteArrayInputStream(gzip(text)))));
+    }
+
+    /**
+     * Tests that a corrupted BGZF member fails the read instead of returning wrong text.
+     */
+    @Test
+    void testDecode_corruptBgzfMemberFails() throws IOException {
+        //init
+        byte[] bgzf = bgzf(text(20000, 4));
+        bgzf[BGZF_BLOCK_INPUT / 4] ^= 0x55;
+
+        //when, then
+        InputStream decoded = Compression.GZIP.decode(new ByteArrayInputStream(bgzf), executor, 2);
+        assertThrows(IOException.class, decoded::readAllBytes);
+    }
+
+    private byte[] decode(Compression compression, byte[] compressed) throws IOException {
+        try (InputStream decoded = compression.decode(new ByteArrayInputStream(compressed), executor, 4)) {
+            return decoded.readAllBytes();
+        }
+    }
+
+    private static byte[] text(int lines, int seed) {
+        StringBuilder text = new StringBuilder();
+        String[] words = {"John", "Jürgen", "met", "Michael", "and", "€", "Thomas", "said"};
+        for (int line = 0; line < lines; line++) {
+            for (int word = 0; word < 6; word++) {
+                text.append(words[(line * seed + word * 5 + seed) % words.length]).append(' ');
+            }
+            text.append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        return compress(data, GZIPOutputStream::new);
+    }
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    private static byte[] compress(byte[] data, Compressor compressor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compressor.wrap(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    /**
+     * Writes the data in the BGZF layout: gzip members of at most 65280 input bytes with a BC extra field holding
+     * the member size, followed by the empty end-of-file member.
+     */
+    static byte[] bgzf(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int from = 0; from < data.length; from += BGZF_BLOCK_INPUT) {
+            writeBgzfMember(out, Arrays.copyOfRange(data, from, Math.min(data.length, from + BGZF_BLOCK_INPUT)));
+        }
+        writeBgzfMember(out, new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void writeBgzfMember(ByteArrayOutputStream out, byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[input.length + 1024];
+        int payloadLength = deflater.deflate(buffer);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(input);
+        int blockSize = 18 + payloadLength + 8;
+        out.writeBytes(new byte[]{0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF, 6, 0, 'B', 'C', 2, 0,
+                (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)});
+        out.write(buffer, 0, payloadLength);
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, input.length);
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+}
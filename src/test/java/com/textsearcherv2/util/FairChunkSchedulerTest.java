@@ -0,0 +1,169 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.JobPriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that FairChunkScheduler interleaves the tasks of concurrent jobs by priority rather than in submission order.
+ */
+class FairChunkSchedulerTest {
+    private FairChunkScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Tests that the tasks of a small job submitted behind thousands of tasks of a large one start right away,
+     * alternating with the large job, and that the large job then has the worker to itself.
+     */
+    @Test
+    void testForJob_smallJobNotStuckBehindLargeJob() throws InterruptedException {
+        //init
+        scheduler = new FairChunkScheduler(1, "test");
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = blockWorker();
+
+        //when
+        for (int i = 0; i < 5000; i++) {
+            scheduler.forJob("large").execute(() -> order.add("large"));
+        }
+        for (int i = 0; i < 10; i++) {
+            scheduler.forJob("small").execute(() -> order.add("small"));
+        }
+        release.countDown();
+        awaitTasks(order, 5010);
+
+        //then
+        assertEquals(19, order.lastIndexOf("small"), "The small job should alternate with the large one");
+        assertEquals(0, scheduler.queuedTasks());
+    }
+
+    /**
+     * Tests that jobs with queued work share the worker in proportion to the weights of their priorities.
+     */
+    @Test
+    void testRegisterJob_sharesFollowPriorities() throws InterruptedException {
+        //init
+        scheduler = new FairChunkScheduler(1, "test");
+        scheduler.registerJob("high", JobPriority.HIGH);
+        scheduler.registerJob("low", JobPriority.LOW);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = blockWorker();
+
+        //when
+        for (int i = 0; i < 300; i++) {
+            scheduler.forJob("low").execute(() -> order.add("low"));
+            scheduler.forJob("normal").execute(() -> order.add("normal"));
+            scheduler.forJob("high").execute(() -> order.add("high"));
+        }
+        release.countDown();
+        awaitTasks(order, 900);
+
+        //then
+        List<String> first = order.subList(0, 140);
+        assertEquals(80, Collections.frequency(first, "high"));
+        assertEquals(40, Collections.frequency(first, "normal"));
+        assertEquals(20, Collections.frequency(first, "low"));
+    }
+
+    /**
+     * Tests that every worker takes work while any job has some, and that shutting down runs the queued tasks.
+     */
+    @Test
+    void testShutdown_runsQueuedTasksOnAllWorkers() throws InterruptedException {
+        //init
+        scheduler = new FairChunkScheduler(4, "test");
+        CountDownLatch allBusy = new CountDownLatch(4);
+        AtomicInteger completed = new AtomicInteger();
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            scheduler.forJob("job").execute(() -> {
+                allBusy.countDown();
+                try {
+                    allBusy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completed.incrementAndGet();
+            });
+        }
+        scheduler.shutdown();
+
+        //then
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, completed.get());
+    }
+
+    /**
+     * Tests that cancelling a job hands back its queued tasks without running them, rejects the tasks it submits
+     * afterwards and leaves the other jobs alone.
+     */
+    @Test
+    void testCancelJob_dropsQueuedTasksAndRejectsNewOnes() throws InterruptedException {
+        //init
+        scheduler = new FairChunkScheduler(1, "test");
+        scheduler.registerJob("cancelled", JobPriority.NORMAL);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = blockWorker();
+        for (int i = 0; i < 100; i++) {
+            scheduler.forJob("cancelled").execute(() -> order.add("cancelled"));
+            scheduler.forJob("other").execute(() -> order.add("other"));
+        }
+
+        //when
+        List<Runnable> dropped = scheduler.cancelJob("cancelled");
+        release.countDown();
+        awaitTasks(order, 100);
+
+        //then
+        assertEquals(100, dropped.size());
+        assertEquals(100, Collections.frequency(order, "other"));
+        assertThrows(RejectedExecutionException.class,
+                () -> scheduler.forJob("cancelled").execute(() -> order.add("cancelled")));
+        scheduler.unregisterJob("cancelled");
+        scheduler.forJob("cancelled").execute(() -> order.add("cancelled"));
+        awaitTasks(order, 101);
+    }
+
+    /**
+     * Occupies the single worker until the returned latch is released, so the tasks submitted meanwhile queue up.
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        return release;
+    }
+
+    private static void awaitTasks(List<String> order, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (order.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, order.size());
+    }
+}
@@ -0,0 +1,70 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.textsearcherv2.service.ServiceConstants.PERSON_NAMES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FuzzyNameIndexTest tests the bounded edit distance lookups of FuzzyNameIndex over the PERSON_NAMES dictionary.
+ */
+class FuzzyNameIndexTest {
+
+    /**
+     * Tests that typos within the allowed distance resolve to the dictionary spelling, with a transposition
+     * counting as one edit, while words further away do not match.
+     */
+    @Test
+    void testClosestName_typosWithinDistance() {
+        //init
+        FuzzyNameIndex index = FuzzyNameIndex.compile(PERSON_NAMES, 1);
+
+        //then
+        assertEquals("John", index.closestName("Jonh"));
+        assertEquals("Michael", index.closestName("Micheal"));
+        assertEquals("Richard", index.closestName("Richrd"));
+        assertEquals("George", index.closestName("George"));
+        assertNull(index.closestName("Mickel"), "Two edits away must not match with maxEdits=1.");
+        assertNull(index.closestName("house"));
+    }
+
+    /**
+     * Tests that two edits are only tolerated for long names, so short everyday words do not turn into names.
+     */
+    @Test
+    void testClosestName_twoEditsOnlyForLongNames() {
+        //init
+        FuzzyNameIndex index = FuzzyNameIndex.compile(PERSON_NAMES, 2);
+
+        //then
+        assertEquals("Michael", index.closestName("Mihcal"));
+        assertEquals("Christopher", index.closestName("Christofer"));
+        assertNull(index.closestName("Jn"), "A four letter name allows a single edit only.");
+        assertNull(index.closestName("Ian"), "A three letter word must not match a four letter name with two edits.");
+    }
+
+    /**
+     * Tests that matchLine reports whole words at their column under the dictionary spelling.
+     */
+    @Test
+    void testMatchLine_reportsWordColumns() {
+        //init
+        FuzzyNameIndex index = FuzzyNameIndex.compile(PERSON_NAMES, 1);
+        Map<String, List<TextPosition>> positions = new HashMap<>();
+
+        //when
+        index.matchLine("Then Jonh met Micheal, and John left.", 7, 0, positions);
+
+        //then
+        assertEquals(List.of(new TextPosition(7, 5), new TextPosition(7, 27)), positions.get("John"));
+        assertEquals(List.of(new TextPosition(7, 14)), positions.get("Michael"));
+        assertTrue(positions.keySet().stream().allMatch(PERSON_NAMES::contains));
+    }
+}
@@ -0,0 +1,161 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextChunk;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that LineChunkReader splits lines like BufferedReader and reports resumable byte offsets.
+ */
+class LineChunkReaderTest {
+
+    /**
+     * Tests that every line terminator, empty lines, a missing final terminator and multi-byte characters give the
+     * same lines as BufferedReader.
+     */
+    @Test
+    void testNext_linesMatchBufferedReader() throws IOException {
+        //init
+        String content = "Jürgen met John\r\n\nMichael\rThomas\n\n€ and Paul";
+
+        //when
+        List<String> lines = new ArrayList<>();
+        try (LineChunkReader reader = reader(content, 0, 2)) {
+            for (TextChunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                assertEquals(lines.size(), chunk.getFirstLine(), "A chunk should know its first line");
+                lines.addAll(Arrays.asList(chunk.getText().split("\n", -1)));
+            }
+        }
+
+        //then
+        List<String> expected = new BufferedReader(new StringReader(content)).lines().collect(Collectors.toList());
+        assertEquals(expected, lines);
+    }
+
+    /**
+     * Tests that a reader started at the offset reported after a chunk reads the remaining chunks exactly.
+     */
+    @Test
+    void testGetOffset_resumesAtChunkBoundary() throws IOException {
+        //init
+        String content = "Ünal\r\nJohn\n\nMary\r\nPaul\n";
+        LineChunkReader first = reader(content, 0, 2);
+        first.next();
+        TextChunk expectedSecond = first.next();
+        TextChunk expectedThird = first.next();
+
+        LineChunkReader probe = reader(content, 0, 2);
+        probe.next();
+        long offset = probe.getOffset();
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        //when
+        LineChunkReader resumed = new LineChunkReader(new ByteArrayInputStream(bytes, (int) offset,
+                bytes.length - (int) offset), 2, offset, probe.getNextLine(), probe.getNextChunkIndex());
+
+        //then
+        assertEquals(expectedSecond, resumed.next());
+        assertEquals(expectedThird, resumed.next());
+        assertNull(resumed.next());
+        assertEquals(bytes.length, resumed.getOffset());
+    }
+
+    /**
+     * Tests that a reader of complete lines only leaves a final line without its terminator, or ending in a carriage
+     * return that a line feed may still follow, for a reader resuming at its offset once the line is complete.
+     */
+    @Test
+    void testNext_completeLinesOnlyHoldsBackPartialLine() throws IOException {
+        //init
+        byte[] written = "John\nMary\r\nPa".getBytes(StandardCharsets.UTF_8);
+        byte[] appended = "John\nMary\r\nPaul\nAnn\r".getBytes(StandardCharsets.UTF_8);
+        LineChunkReader first = new LineChunkReader(new ByteArrayInputStream(written), 2, 0, 0, 0, true);
+
+        //when
+        List<String> firstLines = lines(first);
+        long offset = first.getOffset();
+        LineChunkReader next = new LineChunkReader(new ByteArrayInputStream(appended, (int) offset,
+                appended.length - (int) offset), 2, offset, first.getNextLine(), first.getNextChunkIndex(), true);
+        List<String> nextLines = lines(next);
+
+        //then
+        assertEquals(List.of("John", "Mary"), firstLines);
+        assertEquals(11, offset);
+        assertEquals(List.of("Paul"), nextLines);
+        assertEquals(3, next.getNextLine());
+        assertEquals(16, next.getOffset());
+    }
+
+    /**
+     * Tests that a line longer than the chunk budget is cut into segments between characters, which rebuild the line,
+     * overlap their neighbours and keep the reported offset at the line start until the last segment.
+     */
+    @Test
+    void testNext_longLineCutIntoSegments() throws IOException {
+        //init
+        String longLine = "John€Mary".repeat(6);
+        String content = "Paul\n" + longLine + "\r\nAnn";
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        LineChunkReader reader = new LineChunkReader(new ByteArrayInputStream(bytes), 3, 0, 0, 0, false, 16, 3);
+
+        //when
+        List<TextChunk> chunks = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (TextChunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+            chunks.add(chunk);
+            offsets.add(reader.getOffset());
+        }
+
+        //then
+        assertEquals("Paul", chunks.get(0).getText());
+        assertEquals(5, offsets.get(0));
+        List<TextChunk> segments = chunks.subList(1, chunks.size() - 1);
+        StringBuilder rebuilt = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            TextChunk segment = segments.get(i);
+            assertTrue(segment.isSegment());
+            assertEquals(1, segment.getFirstLine());
+            assertEquals(rebuilt.length(), segment.getFirstColumn());
+            assertTrue(segment.getText().getBytes(StandardCharsets.UTF_8).length <= 16);
+            if (i > 0) {
+                assertEquals(rebuilt.substring(rebuilt.length() - 3), segment.getLookbehind());
+            }
+            rebuilt.append(segment.getText());
+            boolean last = i == segments.size() - 1;
+            if (!last) {
+                assertEquals(longLine.substring(rebuilt.length(), rebuilt.length() + 3), segment.getLookahead());
+            }
+            assertEquals(last ? bytes.length - 3 : 5, offsets.get(i + 1));
+        }
+        assertEquals(longLine, rebuilt.toString());
+        assertEquals(new TextChunk(segments.size() + 1, 2, "Ann"), chunks.get(chunks.size() - 1));
+        assertFalse(chunks.get(chunks.size() - 1).isSegment());
+    }
+
+    private List<String> lines(LineChunkReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (TextChunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+            lines.addAll(Arrays.asList(chunk.getText().split("\n", -1)));
+        }
+        return lines;
+    }
+
+    private LineChunkReader reader(String content, int offset, int linesPerChunk) {
+        return new LineChunkReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), linesPerChunk,
+                offset, 0, 0);
+    }
+}
@@ -0,0 +1,133 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.CoOccurrence;
+import com.textsearcherv2.model.DocumentStatistics;
+import com.textsearcherv2.model.NameStats;
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that NameStatistics accumulated per chunk and merged in any order equal the statistics of the whole
+ * document, computed naively.
+ */
+class NameStatisticsTest {
+    private static final String[] NAMES = {"John", "Paul", "Mary", "Thomas", "James"};
+
+    /**
+     * Tests that counts, first and last occurrences, window counts and co-occurrences of chunks merged in shuffled
+     * order equal those counted over the whole document at once and by brute force.
+     */
+    @Test
+    void testMerge_chunksInAnyOrderEqualWholeDocument() {
+        //init
+        Random random = new Random(3);
+        List<Map<String, List<TextPosition>>> chunks = new ArrayList<>();
+        Map<String, List<TextPosition>> whole = new HashMap<>();
+        for (int chunk = 0; chunk < 40; chunk++) {
+            Map<String, List<TextPosition>> positions = new HashMap<>();
+            for (int line = chunk * 100; line < chunk * 100 + 100; line++) {
+                for (int column = random.nextInt(30); column < 200; column += 1 + random.nextInt(60)) {
+                    String name = NAMES[random.nextInt(NAMES.length)];
+                    positions.computeIfAbsent(name, n -> new ArrayList<>()).add(new TextPosition(line, column));
+                    whole.computeIfAbsent(name, n -> new ArrayList<>()).add(new TextPosition(line, column));
+                }
+            }
+            chunks.add(positions);
+        }
+        Collections.shuffle(chunks, random);
+
+        //when
+        NameStatistics merged = statistics();
+        for (Map<String, List<TextPosition>> chunk : chunks) {
+            NameStatistics part = statistics();
+            part.addChunk(chunk);
+            merged.merge(part);
+        }
+        NameStatistics single = statistics();
+        single.addChunk(whole);
+
+        //then
+        DocumentStatistics mergedStatistics = merged.toDocumentStatistics("doc");
+        assertEquals(single.toDocumentStatistics("doc"), mergedStatistics);
+        for (NameStats stats : mergedStatistics.getNames()) {
+            List<TextPosition> positions = whole.get(stats.getName());
+            assertEquals(positions.size(), stats.getCount());
+            assertEquals(positions.get(0), stats.getFirst());
+            assertEquals(positions.get(positions.size() - 1), stats.getLast());
+            Map<Integer, Long> windows = new TreeMap<>();
+            positions.forEach(p -> windows.merge(p.getLineNumber() / 250, 1L, Long::sum));
+            assertEquals(windows, stats.getCountsByWindow());
+        }
+        Map<String, Long> expectedPairs = bruteForcePairs(whole, 20);
+        assertEquals(expectedPairs.size(), mergedStatistics.getCoOccurrences().size());
+        for (CoOccurrence coOccurrence : mergedStatistics.getCoOccurrences()) {
+            // a sketch as wide as this one counts a handful of pairs exactly
+            assertEquals(expectedPairs.get(coOccurrence.getFirst() + "+" + coOccurrence.getSecond()),
+                    coOccurrence.getCount());
+        }
+    }
+
+    /**
+     * Tests that with more pairs than reported, the most frequent pairs are reported and no estimate falls short
+     * of the true count.
+     */
+    @Test
+    void testCoOccurrences_reportsMostFrequentPairs() {
+        //init
+        NameStatistics statistics = new NameStatistics(100, 5, 64, 4, 3);
+        Map<String, List<TextPosition>> positions = new HashMap<>();
+        int line = 0;
+        for (int name = 1; name < 40; name++) {
+            // pair (a, n<name>) occurs name times
+            for (int i = 0; i < name; i++, line++) {
+                positions.computeIfAbsent("a", n -> new ArrayList<>()).add(new TextPosition(line, 0));
+                positions.computeIfAbsent("n" + name, n -> new ArrayList<>()).add(new TextPosition(line, 3));
+            }
+        }
+
+        //when
+        statistics.addChunk(positions);
+
+        //then
+        List<CoOccurrence> coOccurrences = statistics.coOccurrences();
+        assertEquals(3, coOccurrences.size());
+        for (CoOccurrence coOccurrence : coOccurrences) {
+            int trueCount = Integer.parseInt(coOccurrence.getSecond().substring(1));
+            assertTrue(trueCount >= 30, "A rare pair was reported: " + coOccurrence);
+            assertTrue(coOccurrence.getCount() >= trueCount, "An estimate fell short: " + coOccurrence);
+        }
+    }
+
+    private NameStatistics statistics() {
+        return new NameStatistics(250, 20, 4096, 4, 100);
+    }
+
+    private Map<String, Long> bruteForcePairs(Map<String, List<TextPosition>> positions, int distance) {
+        Map<String, Long> pairs = new HashMap<>();
+        positions.forEach((first, firstPositions) -> positions.forEach((second, secondPositions) -> {
+            if (first.compareTo(second) >= 0) {
+                return;
+            }
+            for (TextPosition a : firstPositions) {
+                for (TextPosition b : secondPositions) {
+                    if (a.getLineNumber() == b.getLineNumber()
+                            && Math.abs(a.getColumnNumber() - b.getColumnNumber()) <= distance) {
+                        pairs.merge(first + "+" + second, 1L, Long::sum);
+                    }
+                }
+            }
+        }));
+        return pairs;
+    }
+}
@@ -0,0 +1,94 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that OffHeapPositionStore reads back the positions appended to it, from direct and spilled pages alike.
+ */
+class OffHeapPositionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that positions interleaved across documents and names, beyond the direct memory budget, read back in
+     * order as views and as pages, and that closing the store deletes its spill file.
+     */
+    @Test
+    void testAppendAll_spillsBeyondDirectBudget() throws IOException {
+        //init
+        AtomicLong directBytesInUse = new AtomicLong();
+        OffHeapPositionStore store = new OffHeapPositionStore(2L * OffHeapPositionStore.PAGE_BYTES,
+                directBytesInUse, tempDir);
+        List<TextPosition> john = new ArrayList<>();
+        List<TextPosition> paul = new ArrayList<>();
+        List<TextPosition> other = new ArrayList<>();
+
+        //when
+        for (int batch = 0; batch < 100; batch++) {
+            List<TextPosition> johnBatch = positions(batch * 3000, 3000);
+            List<TextPosition> paulBatch = positions(batch, 7);
+            List<TextPosition> otherBatch = positions(-batch, 500);
+            store.appendAll("a.txt", "John", johnBatch);
+            store.appendAll("a.txt", "Paul", paulBatch);
+            store.appendAll("b.txt", "John", otherBatch);
+            john.addAll(johnBatch);
+            paul.addAll(paulBatch);
+            other.addAll(otherBatch);
+        }
+        Map<String, Map<String, List<TextPosition>>> views = store.asMap();
+
+        //then
+        assertEquals(Map.of("a.txt", Map.of("John", john, "Paul", paul), "b.txt", Map.of("John", other)), views);
+        assertEquals(john.subList(150_000, 150_100), store.page("a.txt", "John", 150_000, 100));
+        assertEquals(paul.subList(690, 700), store.page("a.txt", "Paul", 690, 100));
+        assertTrue(store.page("a.txt", "Paul", 700, 100).isEmpty());
+        assertEquals(2L * OffHeapPositionStore.PAGE_BYTES, directBytesInUse.get());
+        assertTrue(store.spilledBytes() > 0, "Positions beyond the direct budget should spill");
+
+        store.close();
+        assertEquals(0, directBytesInUse.get());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "Closing should delete the spill file");
+        }
+        assertThrows(IllegalStateException.class, () -> views.get("a.txt").get("John").get(0));
+    }
+
+    /**
+     * Tests that the blocks of a list cover every index exactly once, growing up to their maximum size.
+     */
+    @Test
+    void testBlockOf_blocksCoverIndexes() {
+        for (int index = 0; index < 100_000; index++) {
+            int block = OffHeapPositionStore.blockOf(index);
+            int start = OffHeapPositionStore.blockStart(block);
+            assertTrue(start <= index && index < start + OffHeapPositionStore.blockPositions(block),
+                    "Index " + index + " is outside its block " + block);
+        }
+        assertEquals(OffHeapPositionStore.MAX_BLOCK_POSITIONS,
+                OffHeapPositionStore.blockPositions(OffHeapPositionStore.blockOf(100_000)));
+    }
+
+    private List<TextPosition> positions(int firstLine, int count) {
+        List<TextPosition> positions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            positions.add(new TextPosition(firstLine + i, i % 80));
+        }
+        return positions;
+    }
+}
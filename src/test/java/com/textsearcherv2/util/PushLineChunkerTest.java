@@ -0,0 +1,83 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextChunk;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that PushLineChunker cuts pushed buffers into the same chunks as LineChunkReader reads from a stream.
+ */
+class PushLineChunkerTest {
+
+    /**
+     * Tests that the chunks do not depend on where the buffers split the document, even inside a "\r\n" or a
+     * multi-byte character.
+     */
+    @Test
+    void testPush_chunksMatchLineChunkReader() throws IOException {
+        //init
+        Random random = new Random(5);
+        String[] pieces = {"John", "Jürgen", "€", " ", "\n", "\r\n", "\r", "\n\n"};
+        for (int round = 0; round < 50; round++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                content.append(pieces[random.nextInt(pieces.length)]);
+            }
+            byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+            int linesPerChunk = 1 + round % 4;
+            List<TextChunk> expected = new ArrayList<>();
+            try (LineChunkReader reader = new LineChunkReader(new ByteArrayInputStream(bytes), linesPerChunk, 0, 0, 0)) {
+                for (TextChunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                    expected.add(chunk);
+                }
+            }
+
+            //when
+            PushLineChunker chunker = new PushLineChunker(linesPerChunk);
+            List<TextChunk> chunks = new ArrayList<>();
+            for (int start = 0; start < bytes.length; ) {
+                int end = Math.min(bytes.length, start + 1 + random.nextInt(7));
+                int middle = start + (end - start) / 2;
+                chunks.addAll(chunker.push(List.of(ByteBuffer.wrap(bytes, start, middle - start),
+                        ByteBuffer.wrap(bytes, middle, end - middle))));
+                start = end;
+            }
+            TextChunk last = chunker.finish();
+            if (last != null) {
+                chunks.add(last);
+            }
+
+            //then
+            assertEquals(expected, chunks, "round " + round);
+            assertEquals(bytes.length, chunker.getBytes());
+        }
+    }
+
+    /**
+     * Tests that a document ending with a complete chunk leaves no last chunk, and an empty one none at all.
+     */
+    @Test
+    void testFinish_noChunkWithoutLines() {
+        //init
+        PushLineChunker chunker = new PushLineChunker(2);
+        PushLineChunker empty = new PushLineChunker(2);
+
+        //when
+        List<TextChunk> chunks = chunker.push(List.of(ByteBuffer.wrap("John\r\nPaul\r\n".getBytes(StandardCharsets.UTF_8))));
+
+        //then
+        assertEquals(List.of(new TextChunk(0, 0, "John\nPaul")), chunks);
+        assertNull(chunker.finish());
+        assertNull(empty.finish());
+    }
+}
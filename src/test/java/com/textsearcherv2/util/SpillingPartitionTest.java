@@ -0,0 +1,129 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that SpillingPartition spills positions beyond its heap budget and merges them back in order.
+ */
+class SpillingPartitionTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that documents added beyond the budget spill to runs, and that merging the runs with the positions left
+     * on the heap gives every position back, sorted, on the heap and off-heap alike, including a document without
+     * positions. Closing deletes the runs.
+     */
+    @Test
+    void testAddAll_spillsAndMergesInOrder() throws IOException {
+        //init
+        SpillingPartition partition = new SpillingPartition("job", 500L * SpillingPartition.POSITION_HEAP_BYTES,
+                tempDir);
+        Map<String, Map<String, List<TextPosition>>> expected = new HashMap<>();
+
+        //when
+        for (int document = 0; document < 20; document++) {
+            String url = "http://" + (document * 7 % 20);
+            Map<String, List<TextPosition>> positions = Map.of("John", positions(document, 90),
+                    "Paul", positions(-document, 30));
+            partition.addAll(url, positions);
+            positions.forEach((name, namePositions) -> expected.computeIfAbsent(url, u -> new HashMap<>())
+                    .computeIfAbsent(name, n -> new ArrayList<>()).addAll(namePositions));
+        }
+        // a followed document scanned again later, interleaving with its earlier positions
+        partition.addAll("http://0", Map.of("John", List.of(new TextPosition(5, 1))));
+        expected.get("http://0").get("John").add(new TextPosition(5, 1));
+        partition.addAll("http://empty", Map.of());
+        expected.put("http://empty", Map.of());
+        expected.values().forEach(names -> names.values().forEach(list -> list.sort((a, b) ->
+                a.getLineNumber() != b.getLineNumber() ? Integer.compare(a.getLineNumber(), b.getLineNumber())
+                        : Integer.compare(a.getColumnNumber(), b.getColumnNumber()))));
+        OffHeapPositionStore store = new OffHeapPositionStore(1 << 20, new AtomicLong(), tempDir.resolve("store"));
+        partition.mergeInto(store);
+
+        //then
+        assertTrue(partition.runCount() > 1, "Positions beyond the budget should spill");
+        assertTrue(partition.heapBytes() <= 500L * SpillingPartition.POSITION_HEAP_BYTES);
+        assertEquals(expected, partition.toMap());
+        Map<String, Map<String, List<TextPosition>>> withoutEmpty = new HashMap<>(expected);
+        withoutEmpty.remove("http://empty");
+        assertEquals(withoutEmpty, store.asMap());
+        store.close();
+        partition.close();
+        try (Stream<Path> files = Files.list(tempDir).filter(Files::isRegularFile)) {
+            assertEquals(0, files.count(), "Closing should delete the runs");
+        }
+    }
+
+    /**
+     * Tests that runs beyond the merge fan-in are merged into one, so the number of run files stays bounded.
+     */
+    @Test
+    void testAddAll_mergesRunsBeyondFanIn() throws IOException {
+        //init
+        SpillingPartition partition = new SpillingPartition("job", SpillingPartition.POSITION_HEAP_BYTES, tempDir);
+        List<TextPosition> expected = new ArrayList<>();
+
+        //when
+        for (int line = 0; line < 3 * SpillingPartition.MAX_MERGE_RUNS; line++) {
+            List<TextPosition> positions = List.of(new TextPosition(line, 0), new TextPosition(line, 4));
+            partition.addAll("http://a", Map.of("John", positions));
+            expected.addAll(positions);
+        }
+
+        //then
+        assertTrue(partition.runCount() <= SpillingPartition.MAX_MERGE_RUNS);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(partition.runCount(), files.count());
+        }
+        assertEquals(Map.of("http://a", Map.of("John", expected)), partition.toMap());
+        partition.close();
+    }
+
+    /**
+     * Tests that a partition within its budget writes nothing and hands its map over without copying it.
+     */
+    @Test
+    void testToMap_withinBudgetKeepsMap() throws IOException {
+        //init
+        SpillingPartition partition = new SpillingPartition("job", 1 << 20, tempDir);
+
+        //when
+        partition.addAll("http://a", Map.of("John", positions(0, 100)));
+
+        //then
+        assertFalse(partition.hasSpilled());
+        assertSame(partition.toMap(), partition.toMap());
+        assertEquals(Map.of("http://a", Map.of("John", positions(0, 100))), partition.toMap());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+        partition.close();
+    }
+
+    private static List<TextPosition> positions(int firstLine, int count) {
+        List<TextPosition> positions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            positions.add(new TextPosition(firstLine + i, i % 80));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,102 @@
+package com.textsearcherv2.util;
+
+import com.textsearcherv2.model.TextPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that WordIndex tokenizes text as the word regex it replaces, and that appended chunk indexes give the index
+ * of the whole text.
+ */
+class WordIndexTest {
+    private static final Pattern WORD_PATTERN = Pattern.compile("\\b\\w+\\b");
+    private static final String[] WORDS = {"John", "Michael", "the", "a", "of", "river_bank", "1999", "x2", "Paul"};
+    private static final String[] SEPARATORS = {" ", " ", ", ", ". ", "\n", "\r\n", "\t", "--", "\n\n"};
+
+    /**
+     * Tests that on ASCII text the index finds the words and positions the regex {@code \b\w+\b} finds line by line,
+     * and that appending the indexes of chunks cut at line breaks gives the same index as indexing the whole text.
+     */
+    @Test
+    void testBuildAndAppend_matchWordRegex() {
+        //init
+        String text = randomText(new Random(7), 20_000);
+        Map<String, List<TextPosition>> expected = regexIndex(text);
+
+        //when
+        WordIndex whole = WordIndex.build(text, 0, text.length());
+        WordIndex appended = new WordIndex();
+        int from = 0;
+        while (from < text.length()) {
+            int lineBreak = text.indexOf('\n', from + 997);
+            int to = lineBreak < 0 ? text.length() : lineBreak + 1;
+            appended.append(WordIndex.build(text, from, to));
+            from = to;
+        }
+
+        //then
+        assertEquals(expected, whole.toMap());
+        assertEquals(expected, appended.toMap());
+        assertEquals(expected.size(), appended.termCount());
+        assertEquals(expected.values().stream().mapToLong(List::size).sum(), appended.positionCount());
+        assertEquals(expected.get("John"), appended.positions("John"));
+        assertEquals(expected.get("John").size(), appended.frequency("John"));
+        assertEquals("John", appended.term(appended.termId("John")));
+    }
+
+    /**
+     * Tests that words with letters beyond ASCII, combining marks and supplementary characters are kept whole, that
+     * other chars separate words, and that a missing word has no positions.
+     */
+    @Test
+    void testBuild_keepsUnicodeWordsWhole() {
+        //init
+        String text = "Müller met Zoë\nnaïve cafe\u0301 \uD835\uDC00bc, 東京 — end";
+
+        //when
+        WordIndex index = WordIndex.build(text, 0, text.length());
+
+        //then
+        assertEquals(List.of(new TextPosition(0, 0)), index.positions("Müller"));
+        assertEquals(List.of(new TextPosition(0, 11)), index.positions("Zoë"));
+        assertEquals(List.of(new TextPosition(1, 6)), index.positions("cafe\u0301"));
+        assertEquals(List.of(new TextPosition(1, 12)), index.positions("\uD835\uDC00bc"));
+        assertEquals(List.of(new TextPosition(1, 18)), index.positions("東京"));
+        assertEquals(List.of(new TextPosition(1, 23)), index.positions("end"));
+        assertEquals(8, index.termCount());
+        assertTrue(index.positions("Mu").isEmpty());
+        assertEquals(-1, index.termId("Mu"));
+        assertEquals(0, index.frequency("Mu"));
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(random.nextInt(10) == 0 ? "w" + random.nextInt(5000) : WORDS[random.nextInt(WORDS.length)]);
+            text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static Map<String, List<TextPosition>> regexIndex(String text) {
+        Map<String, List<TextPosition>> index = new HashMap<>();
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            Matcher matcher = WORD_PATTERN.matcher(lines[i]);
+            while (matcher.find()) {
+                index.computeIfAbsent(matcher.group(), word -> new ArrayList<>()).add(new TextPosition(i, matcher.start()));
+            }
+        }
+        return index;
+    }
+}
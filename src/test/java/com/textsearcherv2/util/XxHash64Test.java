@@ -0,0 +1,71 @@
+package com.textsearcherv2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Tests XxHash64 against the reference XXH64 and the string hash against the hash of its UTF-16LE bytes.
+ */
+class XxHash64Test {
+
+    /**
+     * Tests published XXH64 values with seed 0, covering the short path and the striped path of 32 bytes and more.
+     */
+    @Test
+    void testHash_matchesReferenceValues() {
+        //init
+        byte[] empty = new byte[0];
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        byte[] sentence = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+
+        //when
+        long emptyHash = XxHash64.hash(empty, 0, 0, 0);
+        long abcHash = XxHash64.hash(abc, 0, abc.length, 0);
+        long sentenceHash = XxHash64.hash(sentence, 0, sentence.length, 0);
+
+        //then
+        assertEquals(0xEF46DB3751D8E999L, emptyHash);
+        assertEquals(0x44BC2CF5AD770999L, abcHash);
+        assertEquals(0xFBCEA83C8A378BF1L, sentenceHash);
+    }
+
+    /**
+     * Tests that hashing a string equals hashing its UTF-16LE bytes for every length up to several stripes, so no
+     * tail case of the char path diverges from the byte path.
+     */
+    @Test
+    void testHash_stringEqualsUtf16LeBytes() {
+        //init
+        String text = "John met Jürgen at the café € in Paris, then Michael; ".repeat(3);
+
+        for (int length = 0; length <= text.length(); length++) {
+            //when
+            String prefix = text.substring(0, length);
+            byte[] bytes = prefix.getBytes(StandardCharsets.UTF_16LE);
+
+            //then
+            assertEquals(XxHash64.hash(bytes, 0, bytes.length, 42), XxHash64.hash(prefix, 42),
+                    "Length " + length);
+        }
+    }
+
+    /**
+     * Tests that the seed and a single changed character change the hash.
+     */
+    @Test
+    void testHash_sensitiveToSeedAndContent() {
+        //init
+        String text = "Robert and Thomas";
+
+        //when
+        long hash = XxHash64.hash(text, 0);
+
+        //then
+        assertNotEquals(hash, XxHash64.hash(text, 1));
+        assertNotEquals(hash, XxHash64.hash("Robert and Thoma5", 0));
+    }
+}